@@ -5,20 +5,48 @@
  */
 package com.anaptecs.jeaf.spi.persistence.base;
 
+import java.util.ArrayList;
 import java.util.Enumeration;
+import java.util.List;
 import java.util.MissingResourceException;
 import java.util.Properties;
 import java.util.ResourceBundle;
+import java.util.stream.Stream;
 
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.EntityTransaction;
 import javax.persistence.Persistence;
+import javax.persistence.TypedQuery;
+
+import org.hibernate.Session;
+import org.hibernate.StatelessSession;
 
 import com.anaptecs.jeaf.core.api.Component;
 import com.anaptecs.jeaf.core.api.MessageConstants;
 import com.anaptecs.jeaf.core.servicechannel.jpa.JPATxContext;
 import com.anaptecs.jeaf.core.spi.ComponentImplementation;
+import com.anaptecs.jeaf.spi.persistence.base.bootstrap.BootstrapPhase;
+import com.anaptecs.jeaf.spi.persistence.base.bootstrap.BootstrapProfiler;
+import com.anaptecs.jeaf.spi.persistence.base.bootstrap.PhaseMeasurement;
+import com.anaptecs.jeaf.spi.persistence.base.bootstrap.SchemaFingerprintManagementTool;
+import com.anaptecs.jeaf.spi.persistence.base.jfr.EntityManagerCreationEvent;
+import com.anaptecs.jeaf.spi.persistence.base.jfr.FactoryBootstrapEvent;
+import com.anaptecs.jeaf.spi.persistence.base.jfr.JFRSupport;
+import com.anaptecs.jeaf.spi.persistence.base.jfr.TransactionBeginEvent;
+import com.anaptecs.jeaf.spi.persistence.base.jfr.TransactionCompletionEvent;
+import com.anaptecs.jeaf.spi.persistence.base.jfr.TransactionEventListener;
+import com.anaptecs.jeaf.spi.persistence.base.management.PersistenceUnitRegistry;
+import com.anaptecs.jeaf.spi.persistence.base.pool.ConnectionPoolRegistry;
+import com.anaptecs.jeaf.spi.persistence.base.pool.ConnectionPriorityContext;
+import com.anaptecs.jeaf.spi.persistence.base.pool.ConnectionPriorityListener;
+import com.anaptecs.jeaf.spi.persistence.base.pool.PriorityClass;
+import com.anaptecs.jeaf.spi.persistence.base.query.NPlusOneDetector;
+import com.anaptecs.jeaf.spi.persistence.base.query.NPlusOneSuspect;
+import com.anaptecs.jeaf.spi.persistence.base.query.QueryCacheInterceptor;
+import com.anaptecs.jeaf.spi.persistence.base.query.QueryPlanWarmer;
+import com.anaptecs.jeaf.spi.persistence.base.query.StreamingQuery;
+import com.anaptecs.jeaf.spi.persistence.base.query.StreamingQuery.ReleaseMode;
 import com.anaptecs.jeaf.xfun.api.XFun;
 import com.anaptecs.jeaf.xfun.api.checks.Assert;
 import com.anaptecs.jeaf.xfun.api.trace.Trace;
@@ -35,6 +63,16 @@ public final class JSETxContext extends JPATxContext {
    */
   private static final long serialVersionUID = 1L;
 
+  /**
+   * Stateless sessions of the entity managers of this transaction context. The registry is created on first use.
+   */
+  private transient StatelessSessionRegistry statelessSessions;
+
+  /**
+   * Detectors for N+1 selects of the entity managers of this transaction context. The list is created on first use.
+   */
+  private transient List<NPlusOneDetector> nPlusOneDetectors;
+
   /**
    * Initialize object.
    */
@@ -81,6 +119,63 @@ public final class JSETxContext extends JPATxContext {
     lEntityManager.getTransaction().setRollbackOnly();
   }
 
+  /**
+   * Method returns the result of the passed query as stream with constant memory consumption. Rows are read with the
+   * default fetch size and detached from the current entity manager after they were consumed (see
+   * {@link StreamingQuery}). The returned stream has to be closed after it was used.
+   * 
+   * @param pQuery Query that was created by the current entity manager. The parameter must not be null.
+   * @return {@link Stream} Stream of the query's result. The method never returns null.
+   */
+  public <T> Stream<T> stream( TypedQuery<T> pQuery ) {
+    return this.stream(pQuery, StreamingQuery.DEFAULT_FETCH_SIZE, ReleaseMode.DETACH);
+  }
+
+  /**
+   * Method returns the result of the passed query as stream with constant memory consumption (see
+   * {@link StreamingQuery}). The returned stream has to be closed after it was used.
+   * 
+   * @param pQuery Query that was created by the current entity manager. The parameter must not be null.
+   * @param pFetchSize Number of rows that are read from the database at once. The value must be greater than 0.
+   * @param pReleaseMode Defines how consumed rows are released from the persistence context. The parameter must not
+   * be null.
+   * @return {@link Stream} Stream of the query's result. The method never returns null.
+   */
+  public <T> Stream<T> stream( TypedQuery<T> pQuery, int pFetchSize, ReleaseMode pReleaseMode ) {
+    return StreamingQuery.stream(this.getCurrentEntityManager(), pQuery, pFetchSize, pReleaseMode);
+  }
+
+  /**
+   * Method returns a stateless session for the current entity manager. Batch components can use it to execute inserts,
+   * updates and queries without persistence context and thus with constant memory consumption. The session uses the
+   * connection and transaction of the current entity manager (see {@link StatelessSessionRegistry}).
+   * 
+   * @return {@link StatelessSession} Stateless session of the current entity manager. The method never returns null.
+   */
+  public StatelessSession getStatelessSession( ) {
+    if (statelessSessions == null) {
+      statelessSessions = new StatelessSessionRegistry();
+    }
+    return statelessSessions.getStatelessSession(this.getCurrentEntityManager());
+  }
+
+  /**
+   * Method returns the N+1 selects that were detected so far within this transaction context. Detection has to be
+   * enabled for the persistence units of the components (see {@link NPlusOneDetector}).
+   * 
+   * @return {@link List} Detected N+1 selects of all entity managers of this transaction context. The method never
+   * returns null.
+   */
+  public List<NPlusOneSuspect> getNPlusOneSuspects( ) {
+    List<NPlusOneSuspect> lSuspects = new ArrayList<>();
+    if (nPlusOneDetectors != null) {
+      for (NPlusOneDetector lNext : nPlusOneDetectors) {
+        lSuspects.addAll(lNext.getSuspects());
+      }
+    }
+    return lSuspects;
+  }
+
   /**
    * Method performs a lookup for the entity manager for the passed component. This method is based on the design that
    * every JEAF Component has its own entity manager. In this implementation the entity manager is created in the way as
@@ -95,14 +190,58 @@ public final class JSETxContext extends JPATxContext {
     // Check parameter for null.
     Assert.assertNotNull(pComponent, "pComponent");
 
-    // Get factory and use it to create a new entity manager.
+    // Get factory and use it to create a new entity manager. If configured for the persistence unit its statements are
+    // checked for N+1 selects and the size of its persistence context is bounded.
     final EntityManagerFactory lFactory = this.lookupEntityManagerFactory(pComponent);
-    EntityManager lEntityManager = lFactory.createEntityManager();
+    final String lPersistenceUnitName = pComponent.getPersistenceUnitName();
+    final boolean lJFRAvailable = JFRSupport.isAvailable();
+    Object lCreationEvent = null;
+    if (lJFRAvailable == true && EntityManagerCreationEvent.isRecording() == true) {
+      lCreationEvent = EntityManagerCreationEvent.start();
+    }
+    NPlusOneDetector lDetector = NPlusOneDetector.forComponent(lFactory, lPersistenceUnitName, pComponent.getName());
+    EntityManager lEntityManager;
+    if (lDetector != null) {
+      lEntityManager = lDetector.createEntityManager(lFactory);
+      if (nPlusOneDetectors == null) {
+        nPlusOneDetectors = new ArrayList<>();
+      }
+      nPlusOneDetectors.add(lDetector);
+    }
+    else {
+      lEntityManager = lFactory.createEntityManager();
+    }
+    lEntityManager = PersistenceContextGuard.guard(lEntityManager, lFactory.getProperties());
+    PersistenceUnitRegistry.monitor(lPersistenceUnitName, lEntityManager);
+    if (lCreationEvent != null) {
+      EntityManagerCreationEvent.commit(lCreationEvent, lPersistenceUnitName, pComponent.getName(),
+          this.getAllEntityManagers().size());
+    }
 
-    // Make sure that the entity manager belongs to the current transaction.
+    // Make sure that the entity manager belongs to the current transaction. As Hibernate acquires connections lazily,
+    // the priority class of the component is applied by a session listener whenever a connection is acquired. Priority
+    // classes are only supported by the JEAF connection pool.
     EntityTransaction lTransaction = lEntityManager.getTransaction();
     if (lTransaction.isActive() == false) {
+      // Commit and rollback are triggered outside of this class so they are recorded by a session listener.
+      if (lJFRAvailable == true && TransactionCompletionEvent.isRecording() == true) {
+        lEntityManager.unwrap(Session.class).addEventListeners(new TransactionEventListener(lPersistenceUnitName,
+            pComponent.getName(), ( ) -> this.getAllEntityManagers().size()));
+      }
+      Object lBeginEvent = null;
+      if (lJFRAvailable == true && TransactionBeginEvent.isRecording() == true) {
+        lBeginEvent = TransactionBeginEvent.start();
+      }
+      String lPriorityClassName = null;
+      if (ConnectionPoolRegistry.getConnectionPool(lPersistenceUnitName) != null) {
+        PriorityClass lPriorityClass = ConnectionPriorityContext.resolvePriorityClass(pComponent.getClass());
+        lEntityManager.unwrap(Session.class).addEventListeners(new ConnectionPriorityListener(lPriorityClass));
+        lPriorityClassName = lPriorityClass.name();
+      }
       lTransaction.begin();
+      if (lBeginEvent != null) {
+        TransactionBeginEvent.commit(lBeginEvent, lPersistenceUnitName, pComponent.getName(), lPriorityClassName);
+      }
     }
 
     // Return created entity manager
@@ -125,33 +264,85 @@ public final class JSETxContext extends JPATxContext {
     final String lPersistenceUnitName = pComponent.getPersistenceUnitName();
     EntityManagerFactory lFactory = JPATxContext.getCachedEntityManagerFactory(lPersistenceUnitName);
 
-    // Factory was not yet used.
-    if (lFactory == null) {
-      // Load properties for persistence unit if defined
-      Trace lTrace = XFun.getTrace();
-      Properties lProperties = new Properties();
-
+    // Factory was not yet used or was evicted via JMX.
+    if (lFactory == null || lFactory.isOpen() == false) {
+      // Bootstrap is recorded independent of whether it succeeds.
+      Object lBootstrapEvent = null;
+      if (JFRSupport.isAvailable() == true && FactoryBootstrapEvent.isRecording() == true) {
+        lBootstrapEvent = FactoryBootstrapEvent.begin(lPersistenceUnitName);
+      }
+      boolean lSuccessful = false;
       try {
-        final ResourceBundle lBundle = ResourceBundle.getBundle(lPersistenceUnitName);
-        final Enumeration<String> lKeys = lBundle.getKeys();
-        while (lKeys.hasMoreElements()) {
-          final String lKey = lKeys.nextElement();
-          lProperties.setProperty(lKey, lBundle.getString(lKey));
-        }
-        lTrace.write(MessageConstants.USING_JPA_CONFIGURATION_FROM_PROPERTIES, lPersistenceUnitName);
+        lFactory = this.createEntityManagerFactory(lPersistenceUnitName);
+        lSuccessful = true;
       }
-      // No properties file defined for persistence unit.
-      catch (MissingResourceException e) {
-        // No exception handling required.
-        lTrace.write(MessageConstants.USING_JPA_CONFIGURATION_FROM_PERSISTENCE_XML, lPersistenceUnitName);
+      finally {
+        if (lBootstrapEvent != null) {
+          FactoryBootstrapEvent.commit(lBootstrapEvent, lSuccessful);
+        }
       }
-      lFactory = Persistence.createEntityManagerFactory(lPersistenceUnitName, lProperties);
 
-      // Add factory to static map with all factories.
+      // Add factory to static map with all factories and make it manageable via JMX.
       this.registerEntityManagerFactory(lPersistenceUnitName, lFactory);
+      PersistenceUnitRegistry.register(lPersistenceUnitName, lFactory);
     }
 
     // Return entity manager factory.
     return lFactory;
   }
+
+  /**
+   * Method creates the entity manager factory of the passed persistence unit. Besides Hibernate's bootstrap this
+   * includes loading of the configuration and the warm up of the query plan cache.
+   *
+   * @param pPersistenceUnitName Name of the persistence unit whose factory should be created. The parameter must not be
+   * null.
+   * @return {@link EntityManagerFactory} Created entity manager factory. The method never returns null.
+   */
+  private EntityManagerFactory createEntityManagerFactory( String pPersistenceUnitName ) {
+    // Load properties for persistence unit if defined
+    Trace lTrace = XFun.getTrace();
+    Properties lProperties = new Properties();
+
+    PhaseMeasurement lMeasurement = BootstrapProfiler.start(BootstrapPhase.CONFIGURATION_LOOKUP);
+    try {
+      final ResourceBundle lBundle = ResourceBundle.getBundle(pPersistenceUnitName);
+      final Enumeration<String> lKeys = lBundle.getKeys();
+      while (lKeys.hasMoreElements()) {
+        final String lKey = lKeys.nextElement();
+        lProperties.setProperty(lKey, lBundle.getString(lKey));
+      }
+      lTrace.write(MessageConstants.USING_JPA_CONFIGURATION_FROM_PROPERTIES, pPersistenceUnitName);
+    }
+    // No properties file defined for persistence unit.
+    catch (MissingResourceException e) {
+      // No exception handling required.
+      lTrace.write(MessageConstants.USING_JPA_CONFIGURATION_FROM_PERSISTENCE_XML, pPersistenceUnitName);
+    }
+    lMeasurement.stop(pPersistenceUnitName);
+
+    // Create factory and report how long its bootstrap took.
+    lMeasurement = BootstrapProfiler.start(BootstrapPhase.ENTITY_MANAGER_FACTORY);
+    SchemaFingerprintManagementTool.configure(lProperties);
+    QueryCacheInterceptor.configure(lProperties, pPersistenceUnitName);
+    QueryPlanWarmer.configure(lProperties);
+    EntityManagerFactory lFactory = Persistence.createEntityManagerFactory(pPersistenceUnitName, lProperties);
+    lMeasurement.stop(pPersistenceUnitName);
+
+    // Warm up query plan cache before the factory is used. Factories with invalid named queries must not be used.
+    lMeasurement = BootstrapProfiler.start(BootstrapPhase.QUERY_PRECOMPILATION);
+    try {
+      QueryPlanWarmer.warmUp(lFactory, pPersistenceUnitName);
+      NPlusOneDetector.install(lFactory);
+    }
+    catch (RuntimeException e) {
+      lFactory.close();
+      throw e;
+    }
+    finally {
+      lMeasurement.stop(pPersistenceUnitName);
+    }
+    lTrace.info(BootstrapProfiler.getReport().toString(pPersistenceUnitName));
+    return lFactory;
+  }
 }
\ No newline at end of file
@@ -6,7 +6,12 @@
 
 package com.anaptecs.jeaf.spi.persistence.base;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import com.anaptecs.jeaf.spi.persistence.ClassID;
+import com.anaptecs.jeaf.spi.persistence.base.jfr.IDBlockReservationEvent;
+import com.anaptecs.jeaf.spi.persistence.base.jfr.JFRSupport;
 import com.anaptecs.jeaf.xfun.api.checks.Assert;
 import com.anaptecs.jeaf.xfun.types.Base36;
 
@@ -79,4 +84,45 @@ public final class ObjectIDGenerator {
     lBuffer.append(pClassID.toString());
     return lBuffer.toString();
   }
+
+  /**
+   * Method reserves a block of object ids for business objects with the passed class id. In contrast to calling
+   * {@link #getNextObjectID(ClassID)} several times the sequence numbers of the whole block are reserved at once.
+   * 
+   * @param pClassID ClassID of the business objects for which new object ids are required. The parameter must not be
+   * null.
+   * @param pCount Number of required object ids. The value must not be negative.
+   * @return {@link List} New object ids in ascending order of their sequence numbers. The method never returns null.
+   */
+  public List<String> getNextObjectIDs( ClassID pClassID, int pCount ) {
+    // Check parameters.
+    Assert.assertNotNull(pClassID, "pClassID");
+    if (pCount < 0) {
+      throw new IllegalArgumentException("Number of object ids must not be negative but is " + pCount + ".");
+    }
+
+    // Reserve sequence numbers of the whole block within one synchronized block. If recorded the JFR event also covers
+    // the time waiting for other threads.
+    Object lEvent = null;
+    if (JFRSupport.isAvailable() == true && IDBlockReservationEvent.isRecording() == true) {
+      lEvent = IDBlockReservationEvent.start();
+    }
+    String[] lSequenceNumbers = new String[pCount];
+    synchronized (this) {
+      for (int i = 0; i < pCount; i++) {
+        currentSequenceNumber = currentSequenceNumber.increment();
+        lSequenceNumbers[i] = currentSequenceNumber.toString();
+      }
+    }
+    if (lEvent != null) {
+      IDBlockReservationEvent.commit(lEvent, pClassID.toString(), pCount);
+    }
+
+    String lSuffix = sessionId.toString() + pClassID.toString();
+    List<String> lObjectIDs = new ArrayList<String>(pCount);
+    for (String lNext : lSequenceNumbers) {
+      lObjectIDs.add(lNext + lSuffix);
+    }
+    return lObjectIDs;
+  }
 }
@@ -0,0 +1,192 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+
+import com.anaptecs.jeaf.spi.persistence.base.pool.ConnectionPoolSettings;
+import com.anaptecs.jeaf.xfun.api.XFun;
+import com.anaptecs.jeaf.xfun.api.XFunMessages;
+import com.anaptecs.jeaf.xfun.api.checks.Check;
+import com.anaptecs.jeaf.xfun.api.errorhandling.JEAFSystemException;
+
+/**
+ * Enumeration defines performance profiles for persistence units. A profile is a set of persistence provider
+ * properties that are tuned for a certain kind of workload. Persistence units select a profile through property
+ * {@link PersistenceUnitInfoImpl#PERFORMANCE_PROFILE_PROPERTY}. Properties that are defined explicitly for the
+ * persistence unit always override the ones of the profile.
+ *
+ * Caching of JDBC statements is a matter of the connection pool and thus has to be configured through annotation
+ * {@link com.anaptecs.jeaf.spi.persistence.annotations.ConnectionPool}.
+ *
+ * All profiles let Hibernate skip checking and disabling auto-commit at the beginning of every transaction (see
+ * {@link ConnectionPoolSettings#PROVIDER_DISABLES_AUTOCOMMIT_PROPERTY}). This is only safe if the connection pool
+ * provides connections with auto-commit disabled. Thus the setting is only applied to persistence units with
+ * application managed connections, whose connection pool is then configured accordingly.
+ *
+ * @author JEAF Development Team
+ */
+public enum PerformanceProfile {
+  /**
+   * Profile for online transaction processing with many short transactions that read and write few rows.
+   */
+  OLTP(
+      "hibernate.jdbc.batch_size", "20",
+      "hibernate.order_inserts", "true",
+      "hibernate.order_updates", "true",
+      "hibernate.jdbc.batch_versioned_data", "true",
+      "hibernate.jdbc.fetch_size", "50",
+      "hibernate.default_batch_fetch_size", "16",
+      "hibernate.connection.provider_disables_autocommit", "true"),
+
+  /**
+   * Profile for jobs that write large numbers of rows.
+   */
+  BATCH_WRITE(
+      "hibernate.jdbc.batch_size", "100",
+      "hibernate.order_inserts", "true",
+      "hibernate.order_updates", "true",
+      "hibernate.jdbc.batch_versioned_data", "true",
+      "hibernate.jdbc.fetch_size", "100",
+      "hibernate.default_batch_fetch_size", "32",
+      "hibernate.connection.provider_disables_autocommit", "true",
+      "hibernate.generate_statistics", "false"),
+
+  /**
+   * Profile for read-mostly workloads that read large result sets.
+   */
+  REPORTING(
+      "hibernate.jdbc.batch_size", "10",
+      "hibernate.jdbc.fetch_size", "1000",
+      "hibernate.default_batch_fetch_size", "64",
+      "hibernate.query.plan_cache_max_size", "4096",
+      "hibernate.connection.provider_disables_autocommit", "true");
+
+  /**
+   * Properties of the profile in the order in which they were defined.
+   */
+  private final Map<String, String> properties;
+
+  /**
+   * Initialize object.
+   *
+   * @param pProperties Names and values of the properties of the profile in alternating order.
+   */
+  private PerformanceProfile( String... pProperties ) {
+    Map<String, String> lProperties = new LinkedHashMap<>();
+    for (int i = 0; i < pProperties.length; i += 2) {
+      lProperties.put(pProperties[i], pProperties[i + 1]);
+    }
+    properties = Collections.unmodifiableMap(lProperties);
+  }
+
+  /**
+   * Method returns the properties of this profile.
+   *
+   * @return {@link Map} Property names and their values. The method never returns null.
+   */
+  public Map<String, String> getProperties( ) {
+    return properties;
+  }
+
+  /**
+   * Method returns the properties of this profile that apply to a persistence unit. Property
+   * {@link ConnectionPoolSettings#PROVIDER_DISABLES_AUTOCOMMIT_PROPERTY} only applies if the connections of the
+   * persistence unit are pooled by one of the connection pool providers of JEAF, as only then the pool is configured to
+   * disable auto-commit.
+   *
+   * @param pPooledConnections Parameter defines whether the connections of the persistence unit are pooled by one of
+   * the connection pool providers of JEAF.
+   * @return {@link Map} Property names and their values. The method never returns null.
+   */
+  public Map<String, String> getProperties( boolean pPooledConnections ) {
+    Map<String, String> lProperties;
+    if (pPooledConnections == true) {
+      lProperties = properties;
+    }
+    else {
+      lProperties = new LinkedHashMap<>(properties);
+      lProperties.remove(ConnectionPoolSettings.PROVIDER_DISABLES_AUTOCOMMIT_PROPERTY);
+    }
+    return lProperties;
+  }
+
+  /**
+   * Method returns the name of the profile as it is used in the configuration of persistence units, e.g.
+   * <code>batch-write</code>.
+   *
+   * @return {@link String} Name of the profile. The method never returns null.
+   */
+  public String getProfileName( ) {
+    return this.name().toLowerCase(Locale.ROOT).replace('_', '-');
+  }
+
+  /**
+   * Method returns the profile with the passed name. Names are case insensitive and may use '-' or '_' as separator.
+   *
+   * @param pProfileName Name of the profile. The parameter must not be null.
+   * @return {@link PerformanceProfile} Profile with the passed name. The method never returns null.
+   * @throws JEAFSystemException if no profile with the passed name exists.
+   */
+  public static PerformanceProfile forName( String pProfileName ) {
+    // Check parameter
+    Check.checkInvalidParameterNull(pProfileName, "pProfileName");
+
+    String lName = pProfileName.trim().toUpperCase(Locale.ROOT).replace('-', '_');
+    for (PerformanceProfile lNext : values()) {
+      if (lNext.name().equals(lName)) {
+        return lNext;
+      }
+    }
+    throw new JEAFSystemException(XFunMessages.CONSTRAINT_VIOLATION, "Unknown performance profile '" + pProfileName
+        + "'. Supported profiles are "
+        + Arrays.toString(Arrays.stream(values()).map(PerformanceProfile::getProfileName).toArray()) + ".");
+  }
+
+  /**
+   * Method adds the properties of this profile to the passed properties unless they are already defined there. The
+   * effective settings are traced.
+   *
+   * @param pProperties Properties of a persistence unit. The parameter must not be null.
+   * @param pPersistenceUnitName Name of the persistence unit. The parameter must not be null.
+   * @param pPooledConnections Parameter defines whether the connections of the persistence unit are pooled by one of
+   * the connection pool providers of JEAF (see {@link #getProperties(boolean)}).
+   */
+  public void apply( Properties pProperties, String pPersistenceUnitName, boolean pPooledConnections ) {
+    // Check parameters
+    Check.checkInvalidParameterNull(pProperties, "pProperties");
+    Check.checkInvalidParameterNull(pPersistenceUnitName, "pPersistenceUnitName");
+
+    StringBuilder lEffective = new StringBuilder();
+    StringBuilder lOverridden = new StringBuilder();
+    for (Map.Entry<String, String> lNext : this.getProperties(pPooledConnections).entrySet()) {
+      String lName = lNext.getKey();
+      Object lExplicitValue = pProperties.putIfAbsent(lName, lNext.getValue());
+      if (lEffective.length() > 0) {
+        lEffective.append(", ");
+      }
+      lEffective.append(lName).append('=').append(pProperties.get(lName));
+      if (lExplicitValue != null && lExplicitValue.equals(lNext.getValue()) == false) {
+        if (lOverridden.length() > 0) {
+          lOverridden.append(", ");
+        }
+        lOverridden.append(lName);
+      }
+    }
+    StringBuilder lMessage = new StringBuilder();
+    lMessage.append("Persistence unit ").append(pPersistenceUnitName).append(" uses performance profile ");
+    lMessage.append(this.getProfileName()).append(": ").append(lEffective);
+    if (lOverridden.length() > 0) {
+      lMessage.append(" (explicitly defined: ").append(lOverridden).append(')');
+    }
+    XFun.getTrace().info(lMessage.toString());
+  }
+}
@@ -0,0 +1,283 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceException;
+
+import org.hibernate.engine.spi.EntityEntry;
+import org.hibernate.engine.spi.PersistenceContext;
+import org.hibernate.engine.spi.SessionImplementor;
+
+import com.anaptecs.jeaf.xfun.api.XFun;
+import com.anaptecs.jeaf.xfun.api.checks.Check;
+
+/**
+ * Class bounds the number of entities that are managed by the persistence context of an entity manager. Long running
+ * transactions that load or persist many entities otherwise let the persistence context grow without limit and every
+ * flush gets slower as all managed entities have to be dirty checked.
+ *
+ * The guard is configured per persistence unit through {@link #MAX_ENTITIES_PROPERTY} and {@link #MODE_PROPERTY}. In
+ * mode {@link Mode#STRICT}, which is the default, the number of managed entities is checked whenever the entity manager
+ * starts a new operation that loads or stores entities and the operation fails with a {@link PersistenceException} if
+ * the threshold is exceeded. In both modes the entity types with the most managed entities are traced.
+ *
+ * Clearing the persistence context detaches all entities, including the ones the application still works with.
+ * Therefore in mode {@link Mode#FLUSH_CLEAR} the persistence context is only flushed and cleared at checkpoints that
+ * the application marks explicitly through {@link #checkpoint(EntityManager)}, e.g. after a block of a batch was
+ * processed. At that point the application must not rely on entities that it loaded before to be still managed.
+ *
+ * @author JEAF Development Team
+ */
+public final class PersistenceContextGuard implements InvocationHandler {
+  /**
+   * Name of the property that defines the maximum number of managed entities of an entity manager. The guard is only
+   * active if the property is set to a value greater than 0.
+   */
+  public static final String MAX_ENTITIES_PROPERTY = "jeaf.persistence.context_guard.max_entities";
+
+  /**
+   * Name of the property that defines how the guard reacts if the maximum number of managed entities is exceeded. The
+   * value has to be the name of one of the literals of {@link Mode}. Default is {@link Mode#STRICT}.
+   */
+  public static final String MODE_PROPERTY = "jeaf.persistence.context_guard.mode";
+
+  /**
+   * Number of entity types that are traced if the maximum number of managed entities is exceeded.
+   */
+  private static final int TRACED_ENTITY_TYPES = 5;
+
+  /**
+   * Methods of the entity manager at which the persistence context is checked in mode {@link Mode#STRICT}.
+   */
+  private static final Set<String> SAFE_POINTS = new HashSet<>(Arrays.asList("persist", "merge", "find",
+      "getReference", "createQuery", "createNamedQuery", "createNativeQuery", "createStoredProcedureQuery",
+      "createNamedStoredProcedureQuery"));
+
+  /**
+   * Enumeration defines how the guard reacts if the maximum number of managed entities is exceeded.
+   */
+  public enum Mode {
+    /**
+     * Persistence context is flushed and cleared at the next checkpoint (see
+     * {@link PersistenceContextGuard#checkpoint(EntityManager)}).
+     */
+    FLUSH_CLEAR,
+
+    /**
+     * Operation fails with a {@link PersistenceException}.
+     */
+    STRICT;
+  }
+
+  /**
+   * Guarded entity manager. The reference is never null.
+   */
+  private final EntityManager entityManager;
+
+  /**
+   * Session of the guarded entity manager. The reference is never null.
+   */
+  private final SessionImplementor session;
+
+  /**
+   * Maximum number of managed entities. The value is always greater than 0.
+   */
+  private final int maxEntities;
+
+  /**
+   * Reaction if the maximum number of managed entities is exceeded. The reference is never null.
+   */
+  private final Mode mode;
+
+  /**
+   * Number of times the persistence context was cleared by this guard.
+   */
+  private int clearCount;
+
+  /**
+   * Initialize object.
+   *
+   * @param pEntityManager Entity manager that should be guarded. The parameter must not be null.
+   * @param pMaxEntities Maximum number of managed entities. The value must be greater than 0.
+   * @param pMode Reaction if the maximum number of managed entities is exceeded. The parameter must not be null.
+   */
+  private PersistenceContextGuard( EntityManager pEntityManager, int pMaxEntities, Mode pMode ) {
+    entityManager = pEntityManager;
+    session = pEntityManager.unwrap(SessionImplementor.class);
+    maxEntities = pMaxEntities;
+    mode = pMode;
+  }
+
+  /**
+   * Method returns the passed entity manager guarded according to the passed configuration.
+   *
+   * @param pEntityManager Entity manager that should be guarded. The parameter must not be null.
+   * @param pProperties Properties of the persistence unit of the entity manager. The parameter must not be null.
+   * @return {@link EntityManager} Guarded entity manager or the passed entity manager itself if no guard is configured.
+   * The method never returns null.
+   */
+  public static EntityManager guard( EntityManager pEntityManager, Map<String, Object> pProperties ) {
+    // Check parameters
+    Check.checkInvalidParameterNull(pEntityManager, "pEntityManager");
+    Check.checkInvalidParameterNull(pProperties, "pProperties");
+
+    EntityManager lEntityManager;
+    Object lMaxEntities = pProperties.get(MAX_ENTITIES_PROPERTY);
+    int lMax = lMaxEntities != null ? Integer.parseInt(lMaxEntities.toString().trim()) : 0;
+    if (lMax > 0) {
+      Object lModeName = pProperties.get(MODE_PROPERTY);
+      Mode lMode = lModeName != null ? Mode.valueOf(lModeName.toString().trim().toUpperCase(Locale.ROOT)) : Mode.STRICT;
+      PersistenceContextGuard lGuard = new PersistenceContextGuard(pEntityManager, lMax, lMode);
+      lEntityManager = (EntityManager) Proxy.newProxyInstance(PersistenceContextGuard.class.getClassLoader(),
+          new Class<?>[] { EntityManager.class }, lGuard);
+    }
+    else {
+      lEntityManager = pEntityManager;
+    }
+    return lEntityManager;
+  }
+
+  /**
+   * Method returns the guard of the passed entity manager.
+   *
+   * @param pEntityManager Entity manager. The parameter must not be null.
+   * @return {@link PersistenceContextGuard} Guard of the entity manager or null if it is not guarded.
+   */
+  public static PersistenceContextGuard getGuard( EntityManager pEntityManager ) {
+    // Check parameter
+    Check.checkInvalidParameterNull(pEntityManager, "pEntityManager");
+
+    PersistenceContextGuard lGuard = null;
+    if (Proxy.isProxyClass(pEntityManager.getClass()) == true) {
+      InvocationHandler lHandler = Proxy.getInvocationHandler(pEntityManager);
+      if (lHandler instanceof PersistenceContextGuard) {
+        lGuard = (PersistenceContextGuard) lHandler;
+      }
+    }
+    return lGuard;
+  }
+
+  /**
+   * Method marks a checkpoint of the passed entity manager. At a checkpoint the application does not work with any
+   * entities that it loaded before, e.g. because a block of a batch was completely processed. If the maximum number of
+   * managed entities is exceeded the persistence context is flushed and cleared in mode {@link Mode#FLUSH_CLEAR} and
+   * a {@link PersistenceException} is thrown in mode {@link Mode#STRICT}. Entity managers without guard are not
+   * affected.
+   *
+   * @param pEntityManager Entity manager whose persistence context should be checked. The parameter must not be null.
+   */
+  public static void checkpoint( EntityManager pEntityManager ) {
+    PersistenceContextGuard lGuard = getGuard(pEntityManager);
+    if (lGuard != null) {
+      lGuard.checkPersistenceContext(true);
+    }
+  }
+
+  /**
+   * Method returns how often the persistence context was cleared by this guard.
+   *
+   * @return int Number of times the persistence context was cleared.
+   */
+  public int getClearCount( ) {
+    return clearCount;
+  }
+
+  /**
+   * Method delegates all calls to the guarded entity manager. Only <code>equals(Object)</code> and
+   * <code>hashCode()</code> are implemented by the proxy itself based on its identity.
+   *
+   * @see InvocationHandler#invoke(Object, Method, Object[])
+   */
+  @Override
+  public Object invoke( Object pProxy, Method pMethod, Object[] pArgs ) throws Throwable {
+    String lMethodName = pMethod.getName();
+    Object lResult;
+    switch (lMethodName) {
+      case "equals":
+        lResult = pProxy == pArgs[0];
+        break;
+
+      case "hashCode":
+        lResult = System.identityHashCode(pProxy);
+        break;
+
+      default:
+        if (mode == Mode.STRICT && SAFE_POINTS.contains(lMethodName) == true) {
+          this.checkPersistenceContext(false);
+        }
+        try {
+          lResult = pMethod.invoke(entityManager, pArgs);
+        }
+        catch (InvocationTargetException e) {
+          throw e.getCause();
+        }
+    }
+    return lResult;
+  }
+
+  /**
+   * Method checks the number of managed entities and reacts according to the configured mode if it is exceeded.
+   *
+   * @param pCheckpoint Parameter defines whether the check is done at a checkpoint that was marked by the application.
+   * Only then the persistence context may be cleared.
+   */
+  private void checkPersistenceContext( boolean pCheckpoint ) {
+    PersistenceContext lPersistenceContext = session.getPersistenceContext();
+    int lManagedEntities = lPersistenceContext.getNumberOfManagedEntities();
+    if (lManagedEntities > maxEntities) {
+      String lMessage = "Persistence context manages " + lManagedEntities + " entities which exceeds the limit of "
+          + maxEntities + ". Largest entity types: " + this.getLargestEntityTypes(lPersistenceContext);
+      if (mode == Mode.STRICT) {
+        XFun.getTrace().error(lMessage);
+        throw new PersistenceException(lMessage);
+      }
+      // Persistence context can only be flushed within a transaction. Otherwise changes would get lost.
+      else if (pCheckpoint == true && entityManager.getTransaction().isActive() == true) {
+        XFun.getTrace().warn(lMessage + ". Flushing and clearing persistence context.");
+        entityManager.flush();
+        entityManager.clear();
+        clearCount++;
+      }
+    }
+  }
+
+  /**
+   * Method returns the entity types with the most managed entities.
+   *
+   * @param pPersistenceContext Persistence context. The parameter must not be null.
+   * @return {@link String} Entity types and their number of managed entities. The method never returns null.
+   */
+  private String getLargestEntityTypes( PersistenceContext pPersistenceContext ) {
+    Map<String, Integer> lCounts = new HashMap<>();
+    for (Map.Entry<Object, EntityEntry> lNext : pPersistenceContext.reentrantSafeEntityEntries()) {
+      lCounts.merge(lNext.getValue().getEntityName(), 1, Integer::sum);
+    }
+    List<Map.Entry<String, Integer>> lSorted = new ArrayList<>(lCounts.entrySet());
+    lSorted.sort(Map.Entry.<String, Integer> comparingByValue().reversed());
+    StringBuilder lBuilder = new StringBuilder();
+    for (int i = 0; i < lSorted.size() && i < TRACED_ENTITY_TYPES; i++) {
+      if (i > 0) {
+        lBuilder.append(", ");
+      }
+      lBuilder.append(lSorted.get(i).getKey()).append('=').append(lSorted.get(i).getValue());
+    }
+    return lBuilder.toString();
+  }
+}
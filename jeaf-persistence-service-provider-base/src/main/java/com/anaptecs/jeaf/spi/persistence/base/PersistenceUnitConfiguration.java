@@ -5,22 +5,502 @@
  */
 package com.anaptecs.jeaf.spi.persistence.base;
 
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
 import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.persistence.spi.PersistenceUnitInfo;
 
+import com.anaptecs.jeaf.spi.persistence.PersistenceServiceProviderMessages;
+import com.anaptecs.jeaf.spi.persistence.annotations.PersistenceConfig;
+import com.anaptecs.jeaf.tools.api.Tools;
+import com.anaptecs.jeaf.xfun.api.XFun;
+import com.anaptecs.jeaf.xfun.api.XFunMessages;
+import com.anaptecs.jeaf.xfun.api.checks.Check;
+import com.anaptecs.jeaf.xfun.api.errorhandling.JEAFSystemException;
+
+/**
+ * Class discovers all persistence units of an application. Persistence units are defined by classes with annotation
+ * {@link PersistenceConfig}.
+ *
+ * Discovery first looks for configuration files that list the names of these classes, one per line. Such files are
+ * generated at build time by the JEAF Maven Plugin (e.g. <code>META-INF/JEAF/Persistence/PersistenceConfig</code>).
+ * If no configuration file is found then all classes below the base package path are scanned. The result of the scan
+ * is cached in a file within directory {@link #DISCOVERY_CACHE_DIRECTORY_PROPERTY}. As long as the scanned classpath
+ * entries do not change, later startups use the cached result and skip scanning.
+ *
+ * @author JEAF Development Team
+ */
 public class PersistenceUnitConfiguration {
   /**
-   * 
+   * Name of the system property that defines the directory in which the results of classpath scans are cached. By
+   * default the user specific directory <code>jeaf-persistence-&lt;user.name&gt;</code> within
+   * <code>java.io.tmpdir</code> is used.
+   */
+  public static final String DISCOVERY_CACHE_DIRECTORY_PROPERTY = "jeaf.persistence.discovery.cache_dir";
+
+  /**
+   * Character that starts a comment line within configuration and cache files.
+   */
+  private static final String COMMENT = "#";
+
+  /**
+   * Prefix of the line within a cache file that contains the fingerprint of the scanned classpath entries.
+   */
+  private static final String FINGERPRINT_PREFIX = COMMENT + " fingerprint=";
+
+  /**
+   * Suffix of class files.
+   */
+  private static final String CLASS_FILE_SUFFIX = ".class";
+
+  /**
+   * Method resolves all persistence units that are defined within the classpath.
+   *
    * @param pConfigurationFileName Name of configuration file. The parameter must not be null. The passed file name will
    * be extended with <code>pBasePackage</code>.
-   * @param pBasePackagePath Path under which the file should be found in the classpath. The parameter may be null.
-   * @return
+   * @param pBasePackagePath Path under which the file should be found in the classpath. The parameter may be null. If
+   * no configuration file is found then all classes below this path are scanned for annotation
+   * {@link PersistenceConfig}. Without base package path the classpath will not be scanned.
+   * @return {@link List} Persistence units that were found. The method never returns null.
+   * @throws JEAFSystemException if at least one class does not define a valid persistence unit or if the configuration
+   * files or the classpath can not be read. All invalid persistence units are traced before the exception of the first
+   * one is thrown.
    */
   public List<PersistenceUnitInfo> resolvePersistenceUnitConfigurations( String pConfigurationFileName,
       String pBasePackagePath ) {
+    // Check parameter
+    Check.checkInvalidParameterNull(pConfigurationFileName, "pConfigurationFileName");
+
+    long lStart = System.nanoTime();
+    ClassLoader lClassLoader = Thread.currentThread().getContextClassLoader();
+    String lBasePath = this.normalizePath(pBasePackagePath);
+    String lResourceName;
+    if (lBasePath.isEmpty() == false) {
+      lResourceName = lBasePath + "/" + pConfigurationFileName;
+    }
+    else {
+      lResourceName = pConfigurationFileName;
+    }
+
+    try {
+      // Use generated configuration files if available. Otherwise the classpath has to be scanned.
+      List<String> lClassNames = this.readConfigurationFiles(lClassLoader, lResourceName);
+      if (lClassNames == null) {
+        if (lBasePath.isEmpty() == false) {
+          lClassNames = this.discoverPersistenceConfigs(lClassLoader, lBasePath, lResourceName);
+        }
+        else {
+          XFun.getTrace().warn("No configuration file " + lResourceName
+              + " found. Classpath is not scanned as no base package path is defined.");
+          lClassNames = Collections.emptyList();
+        }
+      }
+
+      List<PersistenceUnitInfo> lPersistenceUnits = this.createPersistenceUnitInfos(lClassNames, lClassLoader);
+      XFun.getTrace().info("Resolved " + lPersistenceUnits.size() + " persistence unit(s) in "
+          + (System.nanoTime() - lStart) / 1000000 + "ms.");
+      return lPersistenceUnits;
+    }
+    // Starting without persistence units would only hide the problem.
+    catch (IOException e) {
+      throw new JEAFSystemException(XFunMessages.FILE_NOT_FOUND, e, lResourceName);
+    }
+  }
+
+  /**
+   * Method converts the passed package path into the form <code>a/b/c</code>.
+   *
+   * @param pBasePackagePath Package path or package name. The parameter may be null.
+   * @return {@link String} Normalized path. The method never returns null.
+   */
+  private String normalizePath( String pBasePackagePath ) {
+    String lPath;
+    if (Tools.getStringTools().isRealString(pBasePackagePath) == true) {
+      lPath = pBasePackagePath.trim().replace('.', '/').replace('\\', '/');
+      while (lPath.startsWith("/")) {
+        lPath = lPath.substring(1);
+      }
+      while (lPath.endsWith("/")) {
+        lPath = lPath.substring(0, lPath.length() - 1);
+      }
+    }
+    else {
+      lPath = "";
+    }
+    return lPath;
+  }
+
+  /**
+   * Method reads all configuration files with the passed name.
+   *
+   * @param pClassLoader Class loader that is used to find the files. The parameter must not be null.
+   * @param pResourceName Name of the configuration files. The parameter must not be null.
+   * @return {@link List} Class names from all configuration files or null if no configuration file exists.
+   * @throws IOException if a configuration file can not be read.
+   */
+  private List<String> readConfigurationFiles( ClassLoader pClassLoader, String pResourceName ) throws IOException {
+    List<String> lClassNames = null;
+    Enumeration<URL> lResources = pClassLoader.getResources(pResourceName);
+    while (lResources.hasMoreElements()) {
+      if (lClassNames == null) {
+        lClassNames = new ArrayList<>();
+      }
+      try (InputStream lStream = lResources.nextElement().openStream()) {
+        for (String lNext : this.readLines(lStream)) {
+          if (lClassNames.contains(lNext) == false) {
+            lClassNames.add(lNext);
+          }
+        }
+      }
+    }
+    return lClassNames;
+  }
+
+  /**
+   * Method reads all lines of the passed stream that are neither empty nor comments.
+   *
+   * @param pStream Stream that should be read. The parameter must not be null.
+   * @return {@link List} Trimmed lines of the stream. The method never returns null.
+   * @throws IOException if the stream can not be read.
+   */
+  private List<String> readLines( InputStream pStream ) throws IOException {
+    BufferedReader lReader = new BufferedReader(new InputStreamReader(pStream, StandardCharsets.UTF_8));
+    List<String> lLines = new ArrayList<>();
+    String lLine;
+    while ((lLine = lReader.readLine()) != null) {
+      lLine = lLine.trim();
+      if (lLine.isEmpty() == false && lLine.startsWith(COMMENT) == false) {
+        lLines.add(lLine);
+      }
+    }
+    return lLines;
+  }
+
+  /**
+   * Method determines all classes with annotation {@link PersistenceConfig} below the passed base path. A cached
+   * result is used as long as the classpath entries below the base path did not change.
+   *
+   * @param pClassLoader Class loader whose classpath is scanned. The parameter must not be null.
+   * @param pBasePath Normalized base package path. The parameter must not be null.
+   * @param pResourceName Name of the configuration file. It identifies the cache file. The parameter must not be null.
+   * @return {@link List} Names of all classes with annotation {@link PersistenceConfig}. The method never returns null.
+   * @throws IOException if the classpath can not be read.
+   */
+  private List<String> discoverPersistenceConfigs( ClassLoader pClassLoader, String pBasePath, String pResourceName )
+    throws IOException {
 
-    return null;
+    // Collect candidates and calculate fingerprint of the scanned classpath entries. This only requires to list files
+    // whereas checking the candidates requires to load them.
+    List<String> lCandidates = new ArrayList<>();
+    StringBuilder lFingerprint = new StringBuilder();
+    Enumeration<URL> lRoots = pClassLoader.getResources(pBasePath);
+    while (lRoots.hasMoreElements()) {
+      this.collectCandidates(lRoots.nextElement(), pBasePath, lCandidates, lFingerprint);
+    }
+    String lFingerprintHash = this.hash(lFingerprint.toString());
 
+    // Try to use cached result.
+    File lCacheFile = this.getCacheFile(pResourceName);
+    List<String> lClassNames = this.readCacheFile(lCacheFile, lFingerprintHash);
+    if (lClassNames == null) {
+      lClassNames = new ArrayList<>();
+      boolean lComplete = true;
+      for (String lNext : lCandidates) {
+        try {
+          Class<?> lClass = Class.forName(lNext, false, pClassLoader);
+          if (lClass.isAnnotationPresent(PersistenceConfig.class) == true) {
+            lClassNames.add(lNext);
+          }
+        }
+        // If a class can not be loaded it is unknown whether it defines persistence units. Thus the result must not be
+        // cached as it may be incomplete.
+        catch (ClassNotFoundException | LinkageError e) {
+          XFun.getTrace().error("Unable to load class " + lNext + " during discovery of persistence units. Persistence "
+              + "units that are defined by this class are not available.", e);
+          lComplete = false;
+        }
+      }
+      Collections.sort(lClassNames);
+      if (lComplete == true) {
+        this.writeCacheFile(lCacheFile, lFingerprintHash, lClassNames);
+      }
+    }
+    return lClassNames;
+  }
+
+  /**
+   * Method collects the names of all classes within the passed classpath root.
+   *
+   * @param pRoot URL of the base path within a directory or jar file. The parameter must not be null.
+   * @param pBasePath Normalized base package path. The parameter must not be null.
+   * @param pCandidates List to which the class names are added. The parameter must not be null.
+   * @param pFingerprint Fingerprint to which the state of the root is added. The parameter must not be null.
+   * @throws IOException if the root can not be read.
+   */
+  private void collectCandidates( URL pRoot, String pBasePath, List<String> pCandidates, StringBuilder pFingerprint )
+    throws IOException {
+
+    pFingerprint.append(pRoot.toExternalForm()).append(';');
+    if ("file".equals(pRoot.getProtocol())) {
+      try {
+        this.collectCandidates(new File(pRoot.toURI()), pBasePath.replace('/', '.') + ".", pCandidates, pFingerprint);
+      }
+      catch (URISyntaxException e) {
+        throw new IOException("Invalid classpath entry " + pRoot, e);
+      }
+    }
+    else if ("jar".equals(pRoot.getProtocol())) {
+      URLConnection lConnection = pRoot.openConnection();
+      lConnection.setUseCaches(false);
+      try (JarFile lJarFile = ((JarURLConnection) lConnection).getJarFile()) {
+        File lFile = new File(lJarFile.getName());
+        pFingerprint.append(lFile.length()).append(';').append(lFile.lastModified()).append(';');
+        Enumeration<JarEntry> lEntries = lJarFile.entries();
+        while (lEntries.hasMoreElements()) {
+          String lName = lEntries.nextElement().getName();
+          if (lName.startsWith(pBasePath + "/") && lName.endsWith(CLASS_FILE_SUFFIX)) {
+            pCandidates.add(lName.substring(0, lName.length() - CLASS_FILE_SUFFIX.length()).replace('/', '.'));
+          }
+        }
+      }
+    }
+    else {
+      XFun.getTrace().warn("Classpath entry " + pRoot + " is not scanned for persistence units.");
+    }
+  }
+
+  /**
+   * Method collects the names of all classes within the passed directory recursively.
+   *
+   * @param pDirectory Directory that should be searched. The parameter must not be null.
+   * @param pPackagePrefix Package prefix of the classes within the directory. The parameter must not be null.
+   * @param pCandidates List to which the class names are added. The parameter must not be null.
+   * @param pFingerprint Fingerprint to which the modification times of the class files are added. The parameter must
+   * not be null.
+   */
+  private void collectCandidates( File pDirectory, String pPackagePrefix, List<String> pCandidates,
+      StringBuilder pFingerprint ) {
+
+    File[] lFiles = pDirectory.listFiles();
+    if (lFiles != null) {
+      for (File lNext : lFiles) {
+        String lName = lNext.getName();
+        if (lNext.isDirectory() == true) {
+          this.collectCandidates(lNext, pPackagePrefix + lName + ".", pCandidates, pFingerprint);
+        }
+        else if (lName.endsWith(CLASS_FILE_SUFFIX)) {
+          pCandidates.add(pPackagePrefix + lName.substring(0, lName.length() - CLASS_FILE_SUFFIX.length()));
+          pFingerprint.append(lNext.lastModified()).append(';');
+        }
+      }
+    }
+  }
+
+  /**
+   * Method returns the cache file for the passed configuration file.
+   *
+   * @param pResourceName Name of the configuration file. The parameter must not be null.
+   * @return {@link File} Cache file. The method never returns null.
+   */
+  private File getCacheFile( String pResourceName ) {
+    String lDirectory = System.getProperty(DISCOVERY_CACHE_DIRECTORY_PROPERTY);
+    File lCacheDirectory;
+    if (Tools.getStringTools().isRealString(lDirectory) == true) {
+      lCacheDirectory = new File(lDirectory);
+    }
+    else {
+      // Directory is user specific as the temp directory may be shared by several users.
+      String lUser = System.getProperty("user.name", "unknown").replaceAll("[^A-Za-z0-9_.-]", "_");
+      lCacheDirectory = new File(System.getProperty("java.io.tmpdir"), "jeaf-persistence-" + lUser);
+    }
+    String lName = pResourceName.replaceAll("[^A-Za-z0-9]", "_");
+    String lKey = this.hash(pResourceName + "\n" + System.getProperty("java.class.path"));
+    return new File(lCacheDirectory, lName + "-" + lKey);
+  }
+
+  /**
+   * Method calculates the SHA-256 hash of the passed value. In contrast to {@link String#hashCode()} collisions are
+   * practically impossible so that a cache file is never used for a different classpath.
+   *
+   * @param pValue Value whose hash should be calculated. The parameter must not be null.
+   * @return {@link String} Hex representation of the hash. The method never returns null.
+   */
+  private String hash( String pValue ) {
+    try {
+      byte[] lHash = MessageDigest.getInstance("SHA-256").digest(pValue.getBytes(StandardCharsets.UTF_8));
+      StringBuilder lBuilder = new StringBuilder(lHash.length * 2);
+      for (byte lNext : lHash) {
+        lBuilder.append(Character.forDigit((lNext >> 4) & 0xF, 16)).append(Character.forDigit(lNext & 0xF, 16));
+      }
+      return lBuilder.toString();
+    }
+    // Every Java platform has to support SHA-256.
+    catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Method reads the passed cache file.
+   *
+   * @param pCacheFile Cache file. The parameter must not be null.
+   * @param pFingerprint Fingerprint of the current classpath entries. The parameter must not be null.
+   * @return {@link List} Cached class names or null if the cache file does not exist or is outdated.
+   */
+  private List<String> readCacheFile( File pCacheFile, String pFingerprint ) {
+    List<String> lClassNames = null;
+    if (pCacheFile.isFile() == true) {
+      try {
+        List<String> lLines = Files.readAllLines(pCacheFile.toPath(), StandardCharsets.UTF_8);
+        if (lLines.isEmpty() == false && lLines.get(0).equals(FINGERPRINT_PREFIX + pFingerprint)) {
+          lClassNames = new ArrayList<>();
+          for (String lNext : lLines.subList(1, lLines.size())) {
+            if (lNext.trim().isEmpty() == false) {
+              lClassNames.add(lNext.trim());
+            }
+          }
+        }
+      }
+      catch (IOException e) {
+        XFun.getTrace().warn("Unable to read discovery cache " + pCacheFile, e);
+      }
+    }
+    return lClassNames;
+  }
+
+  /**
+   * Method writes the passed class names to the cache file. As the cache is only an optimization errors are traced.
+   *
+   * @param pCacheFile Cache file. The parameter must not be null.
+   * @param pFingerprint Fingerprint of the current classpath entries. The parameter must not be null.
+   * @param pClassNames Class names that should be cached. The parameter must not be null.
+   */
+  private void writeCacheFile( File pCacheFile, String pFingerprint, List<String> pClassNames ) {
+    try {
+      // Write to temporary file first so that concurrently starting JVMs never see an incomplete file.
+      File lDirectory = pCacheFile.getParentFile();
+      Files.createDirectories(lDirectory.toPath());
+      File lTempFile = File.createTempFile(pCacheFile.getName(), ".tmp", lDirectory);
+      try (Writer lWriter = Files.newBufferedWriter(lTempFile.toPath(), StandardCharsets.UTF_8)) {
+        lWriter.write(FINGERPRINT_PREFIX + pFingerprint + "\n");
+        for (String lNext : pClassNames) {
+          lWriter.write(lNext + "\n");
+        }
+      }
+      Files.move(lTempFile.toPath(), pCacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+    catch (IOException e) {
+      XFun.getTrace().warn("Unable to write discovery cache " + pCacheFile, e);
+    }
+  }
+
+  /**
+   * Method creates the persistence unit infos for the passed classes. Persistence units are independent of each other
+   * so they are created in parallel. A dedicated executor is used instead of the common fork join pool, as its threads
+   * do not have the context class loader of the caller which may be required while the persistence units are created.
+   *
+   * @param pClassNames Names of classes with annotation {@link PersistenceConfig}. The parameter must not be null.
+   * @param pClassLoader Class loader that is used to load the classes. It is also set as context class loader of the
+   * threads that create the persistence units. The parameter must not be null.
+   * @return {@link List} Persistence unit infos in the order of the passed class names. The method never returns null.
+   * @throws JEAFSystemException if at least one class does not define a valid persistence unit.
+   */
+  private List<PersistenceUnitInfo> createPersistenceUnitInfos( List<String> pClassNames, ClassLoader pClassLoader ) {
+    List<PersistenceUnitInfo> lPersistenceUnits = new ArrayList<>(pClassNames.size());
+    if (pClassNames.isEmpty() == false) {
+      int lThreads = Math.min(pClassNames.size(), Runtime.getRuntime().availableProcessors());
+      AtomicInteger lThreadNumber = new AtomicInteger();
+      ExecutorService lExecutor = Executors.newFixedThreadPool(lThreads, pRunnable -> {
+        Thread lThread = new Thread(pRunnable, "JEAF-Persistence-Unit-Discovery-" + lThreadNumber.incrementAndGet());
+        lThread.setDaemon(true);
+        lThread.setContextClassLoader(pClassLoader);
+        return lThread;
+      });
+      try {
+        List<Future<PersistenceUnitInfo>> lFutures = new ArrayList<>(pClassNames.size());
+        for (String lNext : pClassNames) {
+          lFutures.add(lExecutor.submit(( ) -> this.createPersistenceUnitInfo(lNext, pClassLoader)));
+        }
+
+        // Wait for all persistence units so that every invalid one is reported and not only the first one.
+        RuntimeException lFirstError = null;
+        for (int i = 0; i < lFutures.size(); i++) {
+          try {
+            lPersistenceUnits.add(lFutures.get(i).get());
+          }
+          catch (ExecutionException e) {
+            RuntimeException lError;
+            if (e.getCause() instanceof RuntimeException) {
+              lError = (RuntimeException) e.getCause();
+            }
+            else {
+              lError = new IllegalStateException(e.getCause());
+            }
+            XFun.getTrace().error("Unable to resolve persistence unit from class " + pClassNames.get(i), lError);
+            if (lFirstError == null) {
+              lFirstError = lError;
+            }
+            else {
+              lFirstError.addSuppressed(lError);
+            }
+          }
+        }
+        if (lFirstError != null) {
+          throw lFirstError;
+        }
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while resolving persistence units.", e);
+      }
+      finally {
+        lExecutor.shutdownNow();
+      }
+    }
+    return lPersistenceUnits;
+  }
+
+  /**
+   * Method creates the persistence unit info for the passed class.
+   *
+   * @param pClassName Name of class with annotation {@link PersistenceConfig}. The parameter must not be null.
+   * @param pClassLoader Class loader that is used to load the class. The parameter must not be null.
+   * @return {@link PersistenceUnitInfo} Persistence unit info. The method never returns null.
+   * @throws JEAFSystemException if the class can not be loaded or does not define a valid persistence unit.
+   */
+  private PersistenceUnitInfo createPersistenceUnitInfo( String pClassName, ClassLoader pClassLoader ) {
+    PersistenceUnitInfo lPersistenceUnitInfo;
+    try {
+      lPersistenceUnitInfo = new PersistenceUnitInfoImpl(Class.forName(pClassName, true, pClassLoader));
+    }
+    catch (ClassNotFoundException e) {
+      throw new JEAFSystemException(PersistenceServiceProviderMessages.CLASS_DOES_NOT_DECLARE_PERSISTENCE_CONFIG, e,
+          pClassName);
+    }
+    return lPersistenceUnitInfo;
   }
 }
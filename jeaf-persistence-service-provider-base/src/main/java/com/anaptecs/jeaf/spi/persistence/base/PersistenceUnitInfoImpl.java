@@ -1,12 +1,15 @@
 package com.anaptecs.jeaf.spi.persistence.base;
 
+import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import javax.naming.InitialContext;
 import javax.naming.NamingException;
@@ -27,6 +30,23 @@ import com.anaptecs.jeaf.spi.persistence.annotations.MappingFiles;
 import com.anaptecs.jeaf.spi.persistence.annotations.PersistenceConfig;
 import com.anaptecs.jeaf.spi.persistence.annotations.PersistenceUnit;
 import com.anaptecs.jeaf.spi.persistence.annotations.Property;
+import com.anaptecs.jeaf.spi.persistence.base.bootstrap.BootstrapCache;
+import com.anaptecs.jeaf.spi.persistence.base.bootstrap.BootstrapPhase;
+import com.anaptecs.jeaf.spi.persistence.base.bootstrap.BootstrapProfiler;
+import com.anaptecs.jeaf.spi.persistence.base.bootstrap.PersistenceUnitFingerprint;
+import com.anaptecs.jeaf.spi.persistence.base.bootstrap.PhaseMeasurement;
+import com.anaptecs.jeaf.spi.persistence.base.bootstrap.SchemaFingerprintManagementTool;
+import com.anaptecs.jeaf.spi.persistence.base.enhancement.InstrumentationAgent;
+import com.anaptecs.jeaf.spi.persistence.base.enhancement.TemporaryClassLoader;
+import com.anaptecs.jeaf.spi.persistence.base.index.EntityIndex;
+import com.anaptecs.jeaf.spi.persistence.base.index.EntityIndexGenerator;
+import com.anaptecs.jeaf.spi.persistence.base.jdbc.JdbcStatistics;
+import com.anaptecs.jeaf.spi.persistence.base.jdbc.MonitoredDataSource;
+import com.anaptecs.jeaf.spi.persistence.base.jdbc.MonitoredDriver;
+import com.anaptecs.jeaf.spi.persistence.base.pool.ConnectionPoolProvider;
+import com.anaptecs.jeaf.spi.persistence.base.pool.ConnectionPoolProviderFactory;
+import com.anaptecs.jeaf.spi.persistence.base.pool.ConnectionPoolSettings;
+import com.anaptecs.jeaf.spi.persistence.base.query.QueryCacheInterceptor;
 import com.anaptecs.jeaf.tools.api.Tools;
 import com.anaptecs.jeaf.tools.api.string.StringTools;
 import com.anaptecs.jeaf.xfun.api.XFun;
@@ -41,6 +61,56 @@ public class PersistenceUnitInfoImpl implements PersistenceUnitInfo {
    */
   public static final String JPA_VERSION = "2.1";
 
+  /**
+   * Hibernate property that defines which artifacts are detected when jar files are scanned.
+   */
+  private static final String ARCHIVE_AUTODETECTION_PROPERTY = "hibernate.archive.autodetection";
+
+  /**
+   * Name of the property that enables the bootstrap cache (see {@link BootstrapCache}). If it is set to
+   * <code>true</code> the classes that were found by scanning jar files without an entity index are cached on local
+   * disk and reused as long as the fingerprint of the persistence unit does not change.
+   */
+  public static final String BOOTSTRAP_CACHE_PROPERTY = "jeaf.persistence.bootstrap_cache";
+
+  /**
+   * Name of the property that enables the schema fingerprint (see {@link SchemaFingerprintManagementTool}). If it is
+   * set to <code>true</code> and the schema is validated through <code>hibernate.hbm2ddl.auto=validate</code> then
+   * full validation is only done if the mapping or the database schema changed since the last successful validation.
+   */
+  public static final String SCHEMA_FINGERPRINT_PROPERTY =
+      SchemaFingerprintManagementTool.SCHEMA_FINGERPRINT_PROPERTY;
+
+  /**
+   * Name of the property that selects the performance profile of the persistence unit (see
+   * {@link PerformanceProfile}), e.g. <code>oltp</code>, <code>batch-write</code> or <code>reporting</code>.
+   */
+  public static final String PERFORMANCE_PROFILE_PROPERTY = "jeaf.persistence.performance_profile";
+
+  /**
+   * Hibernate property that defines the region factory of the second-level cache.
+   */
+  private static final String REGION_FACTORY_PROPERTY = "hibernate.cache.region.factory_class";
+
+  /**
+   * Class name of the second-level cache region factory of the persistence base. The class is referenced by its name as
+   * it requires Hibernate at runtime.
+   */
+  private static final String TINY_LFU_REGION_FACTORY =
+      "com.anaptecs.jeaf.spi.persistence.base.cache.TinyLfuRegionFactory";
+
+  /**
+   * Name of the property that enables the query result cache (see
+   * {@link com.anaptecs.jeaf.spi.persistence.base.query.QueryResultCache}). If it is set to <code>true</code> then
+   * changes that are committed through this persistence unit invalidate depending query results.
+   */
+  public static final String QUERY_CACHE_PROPERTY = "jeaf.persistence.query_cache";
+
+  /**
+   * Key of the scanned class names within the bootstrap cache.
+   */
+  private static final String SCANNED_CLASSES_KEY = "scanned.classes";
+
   /**
    * Reference to PersistenceConfig annotation that is used to configure this persistence unit. The reference is never
    * null.
@@ -80,6 +150,32 @@ public class PersistenceUnitInfoImpl implements PersistenceUnitInfo {
    */
   private final List<MappingFiles> mappingFilesConfig;
 
+  /**
+   * Data source that was created by the connection pool provider. The reference may be null.
+   */
+  private DataSource pooledDataSource;
+
+  /**
+   * Flag indicates if the connection pool provider was already asked to create a data source.
+   */
+  private boolean pooledDataSourceResolved;
+
+  /**
+   * Class transformers that were registered by the persistence provider.
+   */
+  private final List<ClassTransformer> transformers = new CopyOnWriteArrayList<>();
+
+  /**
+   * Classes from the entity indexes of all jar files of the persistence unit. The list is null if the persistence unit
+   * has no jar files or if at least one of them does not contain an index.
+   */
+  private List<String> indexedClassNames;
+
+  /**
+   * Flag indicates whether the entity indexes of the jar files were already read.
+   */
+  private boolean entityIndexResolved;
+
   /**
    * Initialize object.
    * 
@@ -89,6 +185,7 @@ public class PersistenceUnitInfoImpl implements PersistenceUnitInfo {
   public PersistenceUnitInfoImpl( Class<?> pClass ) {
     // Check parameter
     Check.checkInvalidParameterNull(pClass, "pClass");
+    PhaseMeasurement lMeasurement = BootstrapProfiler.start(BootstrapPhase.ANNOTATION_RESOLUTION);
 
     // Resolve persistence configuration.
     persistenceConfig = this.resolvePersistenceConfig(pClass);
@@ -128,6 +225,7 @@ public class PersistenceUnitInfoImpl implements PersistenceUnitInfo {
         throw new JEAFSystemException(PersistenceServiceProviderMessages.NO_PERSISTENT_CLASSES, persistenceUnit.name());
       }
     }
+    lMeasurement.stop(persistenceUnit.name());
   }
 
   /**
@@ -398,6 +496,82 @@ public class PersistenceUnitInfoImpl implements PersistenceUnitInfo {
     return lApplicationManagedConnections;
   }
 
+  /**
+   * Method returns all properties that are configured for this persistence unit. Properties of the application managed
+   * connections take precedence over the ones of the persistence unit. System properties within the values will be
+   * replaced.
+   *
+   * @return {@link Properties} Configured properties. The method never returns null.
+   */
+  private Properties getConfiguredProperties( ) {
+    ConfigurationProvider lHelper = XFun.getConfigurationProvider();
+    Properties lProperties = new Properties();
+    for (Property lNextProperty : persistenceUnit.properties()) {
+      lProperties.put(lNextProperty.name(), lHelper.replaceSystemProperties(lNextProperty.value()));
+    }
+    if (applicationManagedConnectionConfig != null) {
+      for (Property lNextProperty : applicationManagedConnectionConfig.properties()) {
+        lProperties.put(lNextProperty.name(), lHelper.replaceSystemProperties(lNextProperty.value()));
+      }
+    }
+    else if (containerManagedConnectionConfig != null) {
+      for (Property lNextProperty : containerManagedConnectionConfig.properties()) {
+        lProperties.put(lNextProperty.name(), lHelper.replaceSystemProperties(lNextProperty.value()));
+      }
+    }
+    return lProperties;
+  }
+
+  /**
+   * Method returns the connection pool provider that is configured for this persistence unit. The provider is selected
+   * through property {@link ConnectionPoolProvider#CONNECTION_POOL_PROVIDER_PROPERTY}.
+   *
+   * @return {@link ConnectionPoolProvider} Connection pool provider of the persistence unit. The method never returns
+   * null.
+   */
+  public ConnectionPoolProvider getConnectionPoolProvider( ) {
+    String lProviderName =
+        this.getConfiguredProperties().getProperty(ConnectionPoolProvider.CONNECTION_POOL_PROVIDER_PROPERTY);
+    return ConnectionPoolProviderFactory.getConnectionPoolProvider(lProviderName);
+  }
+
+  /**
+   * Method returns the resolved connection pool settings of this persistence unit.
+   *
+   * @return {@link ConnectionPoolSettings} Connection pool settings. The method never returns null.
+   */
+  private ConnectionPoolSettings getConnectionPoolSettings( ) {
+    Assert.assertNotNull(applicationManagedConnectionConfig, "applicationManagedConnectionConfig");
+
+    // Settings of the performance profile also apply to the connection pool unless they are defined explicitly.
+    Properties lProperties = this.getConfiguredProperties();
+    PerformanceProfile lProfile = this.getPerformanceProfile(lProperties);
+    if (lProfile != null) {
+      for (Map.Entry<String, String> lNext : lProfile.getProperties(true).entrySet()) {
+        lProperties.putIfAbsent(lNext.getKey(), lNext.getValue());
+      }
+    }
+    return new ConnectionPoolSettings(this.getPersistenceUnitName(), applicationManagedConnectionConfig, lProperties);
+  }
+
+  /**
+   * Method returns the performance profile that is selected within the passed properties.
+   *
+   * @param pProperties Properties of this persistence unit. The parameter must not be null.
+   * @return {@link PerformanceProfile} Performance profile of the persistence unit or null if no profile is selected.
+   */
+  private PerformanceProfile getPerformanceProfile( Properties pProperties ) {
+    String lProfileName = pProperties.getProperty(PERFORMANCE_PROFILE_PROPERTY);
+    PerformanceProfile lProfile;
+    if (lProfileName != null) {
+      lProfile = PerformanceProfile.forName(XFun.getConfigurationProvider().replaceSystemProperties(lProfileName));
+    }
+    else {
+      lProfile = null;
+    }
+    return lProfile;
+  }
+
   /**
    * @see PersistenceUnitInfo#getPersistenceUnitName()
    */
@@ -474,7 +648,7 @@ public class PersistenceUnitInfoImpl implements PersistenceUnitInfo {
     else {
       lJTADataSource = null;
     }
-    return lJTADataSource;
+    return this.monitorDataSource(lJTADataSource);
   }
 
   /**
@@ -494,11 +668,47 @@ public class PersistenceUnitInfoImpl implements PersistenceUnitInfo {
         lJTADataSource = null;
       }
     }
-    // Persistence unit uses application managed connections, thus we will return null here.
+    // Persistence unit uses application managed connections. Depending on the connection pool provider the pool is
+    // either created by the persistence provider or passed to it as data source.
     else {
-      lJTADataSource = null;
+      lJTADataSource = this.getPooledDataSource();
+    }
+    return this.monitorDataSource(lJTADataSource);
+  }
+
+  /**
+   * Method wraps the passed data source so that statement statistics are recorded if they are enabled for this
+   * persistence unit (see {@link JdbcStatistics#ENABLED_PROPERTY}).
+   *
+   * @param pDataSource Data source of this persistence unit. The parameter may be null.
+   * @return {@link DataSource} Monitored data source or the passed one if statistics are disabled.
+   */
+  private DataSource monitorDataSource( DataSource pDataSource ) {
+    DataSource lDataSource;
+    if (pDataSource != null) {
+      JdbcStatistics lStatistics =
+          JdbcStatistics.forPersistenceUnit(this.getPersistenceUnitName(), this.getConfiguredProperties());
+      lDataSource = MonitoredDataSource.wrap(pDataSource, lStatistics);
+    }
+    else {
+      lDataSource = null;
+    }
+    return lDataSource;
+  }
+
+  /**
+   * Method returns the data source that was created by the connection pool provider of this persistence unit. The data
+   * source is only created once per persistence unit info.
+   *
+   * @return {@link DataSource} Data source of the connection pool or null if the persistence provider creates the
+   * connection pool itself.
+   */
+  private synchronized DataSource getPooledDataSource( ) {
+    if (pooledDataSourceResolved == false) {
+      pooledDataSource = this.getConnectionPoolProvider().createDataSource(this.getConnectionPoolSettings());
+      pooledDataSourceResolved = true;
     }
-    return lJTADataSource;
+    return pooledDataSource;
   }
 
   private DataSource lookupDataSource( String lJTADataSourceName ) {
@@ -577,12 +787,21 @@ public class PersistenceUnitInfoImpl implements PersistenceUnitInfo {
   public List<String> getManagedClassNames( ) {
     // Managed classes are defined
     List<String> lClassNames;
-    if (managedClassesConfig != null) {
-      Class<?>[] lManagedClasses = managedClassesConfig.managedClasses();
-      int lSize = lManagedClasses.length;
-      lClassNames = new ArrayList<>(lSize);
-      for (int i = 0; i < lSize; i++) {
-        lClassNames.add(lManagedClasses[i].getName());
+    List<String> lIndexedClassNames = this.getIndexedClassNames();
+    if (managedClassesConfig != null || lIndexedClassNames != null) {
+      lClassNames = new ArrayList<>();
+      if (managedClassesConfig != null) {
+        for (Class<?> lNext : managedClassesConfig.managedClasses()) {
+          lClassNames.add(lNext.getName());
+        }
+      }
+      // Classes from the entity indexes of the jar files are also passed as managed classes.
+      if (lIndexedClassNames != null) {
+        for (String lNext : lIndexedClassNames) {
+          if (lClassNames.contains(lNext) == false) {
+            lClassNames.add(lNext);
+          }
+        }
       }
     }
     // No managed classes configured
@@ -592,6 +811,127 @@ public class PersistenceUnitInfoImpl implements PersistenceUnitInfo {
     return lClassNames;
   }
 
+  /**
+   * Method returns the classes from the entity indexes (see {@link EntityIndex}) of all jar files of the persistence
+   * unit. Indexes are only used if all jar files provide one as otherwise the jar files have to be scanned anyway.
+   *
+   * @return {@link List} Names of all indexed classes or null if the persistence unit has no jar files or at least one
+   * of them does not contain an index.
+   */
+  public synchronized List<String> getIndexedClassNames( ) {
+    if (entityIndexResolved == false) {
+      List<URL> lJarFileURLs = this.getJarFileUrls();
+      List<String> lClassNames;
+      if (lJarFileURLs.isEmpty() == false) {
+        lClassNames = new ArrayList<>();
+        List<URL> lUnindexedJarFileURLs = new ArrayList<>();
+        for (URL lNext : lJarFileURLs) {
+          List<String> lIndex = EntityIndex.readIndex(lNext);
+          if (lIndex != null) {
+            lClassNames.addAll(lIndex);
+          }
+          else {
+            lUnindexedJarFileURLs.add(lNext);
+          }
+        }
+        // Jar files without index can only be handled through the bootstrap cache.
+        if (lUnindexedJarFileURLs.isEmpty() == false) {
+          List<String> lScannedClassNames = this.getScannedClassNames(lUnindexedJarFileURLs);
+          if (lScannedClassNames != null) {
+            lClassNames.addAll(lScannedClassNames);
+          }
+          else {
+            XFun.getTrace().info("Jar files " + lUnindexedJarFileURLs + " of persistence unit "
+                + this.getPersistenceUnitName() + " do not contain an entity index. Jar files will be scanned.");
+            lClassNames = null;
+          }
+        }
+      }
+      else {
+        lClassNames = null;
+      }
+      if (lClassNames != null) {
+        indexedClassNames = Collections.unmodifiableList(lClassNames);
+      }
+      entityIndexResolved = true;
+    }
+    return indexedClassNames;
+  }
+
+  /**
+   * Method returns the entity classes of the passed jar files using the bootstrap cache. If the cache does not contain
+   * an entry for the current fingerprint of the persistence unit the jar files are scanned once and the result is
+   * stored in the cache.
+   *
+   * @param pJarFileURLs Jar files without entity index. The parameter must not be null.
+   * @return {@link List} Names of the entity classes of the jar files or null if the bootstrap cache is not enabled or
+   * the jar files could not be scanned.
+   */
+  private List<String> getScannedClassNames( List<URL> pJarFileURLs ) {
+    List<String> lClassNames;
+    Properties lConfiguredProperties = this.getConfiguredProperties();
+    if (Boolean.parseBoolean(lConfiguredProperties.getProperty(BOOTSTRAP_CACHE_PROPERTY)) == true) {
+      // Fingerprint covers everything from which the persistence provider derives its metadata.
+      PersistenceUnitFingerprint lFingerprint = new PersistenceUnitFingerprint(this.getClassLoader());
+      lFingerprint.addValue(JPA_VERSION).addArchives(pJarFileURLs).addResources(this.getMappingFileNames());
+      if (managedClassesConfig != null) {
+        List<String> lManagedClasses = new ArrayList<>();
+        for (Class<?> lNext : managedClassesConfig.managedClasses()) {
+          lManagedClasses.add(lNext.getName());
+        }
+        lFingerprint.addClasses(lManagedClasses);
+      }
+      String lFingerprintValue = lFingerprint.addProperties(lConfiguredProperties).getValue();
+
+      BootstrapCache lCache = BootstrapCache.getDefault();
+      String lUnitName = this.getPersistenceUnitName();
+      Properties lArtifacts = lCache.load(lUnitName, lFingerprintValue);
+      if (lArtifacts != null) {
+        lClassNames = new ArrayList<>();
+        for (String lNext : lArtifacts.getProperty(SCANNED_CLASSES_KEY, "").split(",")) {
+          if (lNext.isEmpty() == false) {
+            lClassNames.add(lNext);
+          }
+        }
+        XFun.getTrace().info("Reusing bootstrap cache of persistence unit " + lUnitName + ".");
+      }
+      else {
+        lClassNames = this.scanJarFiles(pJarFileURLs);
+        if (lClassNames != null) {
+          lArtifacts = new Properties();
+          lArtifacts.setProperty(SCANNED_CLASSES_KEY, String.join(",", lClassNames));
+          lCache.store(lUnitName, lFingerprintValue, lArtifacts);
+        }
+      }
+    }
+    else {
+      lClassNames = null;
+    }
+    return lClassNames;
+  }
+
+  /**
+   * Method scans the passed jar files for entity classes.
+   *
+   * @param pJarFileURLs Jar files that should be scanned. The parameter must not be null.
+   * @return {@link List} Names of the entity classes of the jar files or null if one of them could not be scanned.
+   */
+  private List<String> scanJarFiles( List<URL> pJarFileURLs ) {
+    List<String> lClassNames = new ArrayList<>();
+    for (URL lNext : pJarFileURLs) {
+      try {
+        lClassNames.addAll(EntityIndexGenerator.generateIndex(lNext, this.getClassLoader()));
+      }
+      catch (IOException e) {
+        XFun.getTrace().warn("Unable to scan jar file " + lNext + " of persistence unit "
+            + this.getPersistenceUnitName() + ".", e);
+        lClassNames = null;
+        break;
+      }
+    }
+    return lClassNames;
+  }
+
   /**
    * @see PersistenceUnitInfo#excludeUnlistedClasses()
    */
@@ -666,34 +1006,9 @@ public class PersistenceUnitInfoImpl implements PersistenceUnitInfo {
         lProperties.put("hibernate.connection.password", lPassword);
       }
 
-      // Connection pool settings are also returned as properties.
-      String lMinSize = lHelper.replaceSystemProperties(connectionPoolConfig.minSize());
-      String lMaxSize = lHelper.replaceSystemProperties(connectionPoolConfig.maxSize());
-      String lIncrementSize = lHelper.replaceSystemProperties(connectionPoolConfig.incrementSize());
-      String lPreparedStatementCacheSize =
-          lHelper.replaceSystemProperties(connectionPoolConfig.preparedStatementCacheSize());
-      String lTimeout = lHelper.replaceSystemProperties(connectionPoolConfig.timeout());
-      String lIdleTestPeriod = lHelper.replaceSystemProperties(connectionPoolConfig.idleTestPeriod());
-
-      // Map connection pool settings to their matching c3p0 properties
-      if (lTools.isRealString(lMinSize)) {
-        lProperties.put("hibernate.c3p0.min_size", lMinSize);
-      }
-      if (lTools.isRealString(lMaxSize)) {
-        lProperties.put("hibernate.c3p0.max_size", lMaxSize);
-      }
-      if (lTools.isRealString(lIncrementSize)) {
-        lProperties.put("hibernate.c3p0.acquire_increment", lIncrementSize);
-      }
-      if (lTools.isRealString(lPreparedStatementCacheSize)) {
-        lProperties.put("hibernate.c3p0.max_statements", lPreparedStatementCacheSize);
-      }
-      if (lTools.isRealString(lTimeout)) {
-        lProperties.put("hibernate.c3p0.timeout", lTimeout);
-      }
-      if (lTools.isRealString(lIdleTestPeriod)) {
-        lProperties.put("hibernate.c3p0.idle_test_period", lIdleTestPeriod);
-      }
+      // Connection pool settings are also returned as properties. How they are mapped depends on the connection pool
+      // provider of the persistence unit.
+      this.getConnectionPoolProvider().addConnectionPoolProperties(this.getConnectionPoolSettings(), lProperties);
 
       // Add properties that were configured directly on annotation @ApplicationManagedConnections as properties
       lPropertiesConfig = applicationManagedConnectionConfig.properties();
@@ -712,6 +1027,46 @@ public class PersistenceUnitInfoImpl implements PersistenceUnitInfo {
       }
     }
 
+    // Expand performance profile. Properties that were defined explicitly are not overridden.
+    PerformanceProfile lProfile = this.getPerformanceProfile(lProperties);
+    if (lProfile != null) {
+      lProfile.apply(lProperties, this.getPersistenceUnitName(), this.hasApplicationManagedConnections());
+    }
+
+    // If all jar files provide an entity index then their classes are already listed as managed classes. Thus jar
+    // files only have to be scanned for mapping files.
+    if (this.getIndexedClassNames() != null && lProperties.containsKey(ARCHIVE_AUTODETECTION_PROPERTY) == false) {
+      lProperties.put(ARCHIVE_AUTODETECTION_PROPERTY, "hbm");
+    }
+
+    // If shared caching is enabled and no other cache is configured then the second-level cache of the persistence base
+    // is used.
+    SharedCacheMode lSharedCacheMode = this.getSharedCacheMode();
+    if ((lSharedCacheMode == SharedCacheMode.ALL || lSharedCacheMode == SharedCacheMode.ENABLE_SELECTIVE
+        || lSharedCacheMode == SharedCacheMode.DISABLE_SELECTIVE)
+        && lProperties.containsKey(REGION_FACTORY_PROPERTY) == false) {
+      lProperties.put(REGION_FACTORY_PROPERTY, TINY_LFU_REGION_FACTORY);
+      lProperties.putIfAbsent("hibernate.cache.use_second_level_cache", "true");
+    }
+
+    // Committed changes have to invalidate the query result cache of the persistence unit.
+    QueryCacheInterceptor.configure(lProperties, this.getPersistenceUnitName());
+
+    // Schema validation can be skipped if the schema fingerprint did not change since the last successful validation.
+    // The fingerprint is checked by Hibernate's schema management so no connection is required here.
+    SchemaFingerprintManagementTool.configure(lProperties);
+
+    // If the persistence provider creates the connections itself statement statistics are recorded by a proxy driver.
+    // Data sources are wrapped when they are returned (see getNonJtaDataSource()).
+    String lUnitName = this.getPersistenceUnitName();
+    if (this.hasApplicationManagedConnections() == true
+        && JdbcStatistics.forPersistenceUnit(lUnitName, lProperties) != null) {
+      MonitoredDriver.register(lUnitName, applicationManagedConnectionConfig.jdbcDriver());
+      lProperties.put("hibernate.connection.driver_class", MonitoredDriver.class.getName());
+      String lConnectionURL = lProperties.getProperty("hibernate.connection.url");
+      lProperties.put("hibernate.connection.url", MonitoredDriver.toMonitoredURL(lUnitName, lConnectionURL));
+    }
+
     // Return properties.
     return lProperties;
   }
@@ -733,16 +1088,54 @@ public class PersistenceUnitInfoImpl implements PersistenceUnitInfo {
   }
 
   /**
+   * Method returns a new class loader that defines all application classes again from the class files of
+   * {@link #getClassLoader()}. This way the persistence provider can inspect classes without loading them into the
+   * real class loader before they were transformed.
+   *
    * @see PersistenceUnitInfo#getNewTempClassLoader()
    */
   @Override
   public ClassLoader getNewTempClassLoader( ) {
-    return null;
+    return new TemporaryClassLoader(this.getClassLoader());
   }
 
+  /**
+   * Method registers the passed transformer of the persistence provider. In JSE environments transformers can only be
+   * applied if the JVM was started with {@link InstrumentationAgent}. Otherwise classes have to be enhanced at build
+   * time. Transformers are registered only once per persistence unit. When the entity manager factory is created again
+   * the transformer of the previous factory is replaced (see
+   * {@link InstrumentationAgent#addTransformer(String, ClassTransformer)}).
+   *
+   * @see PersistenceUnitInfo#addTransformer(ClassTransformer)
+   */
   @Override
   public void addTransformer( ClassTransformer pTransformer ) {
-    // Transformers are not supported by this implementation.
-    Assert.internalError("Transformers are not supported by this persistence unit implementation.");
+    // Check parameter
+    Check.checkInvalidParameterNull(pTransformer, "pTransformer");
+
+    transformers.add(pTransformer);
+    if (InstrumentationAgent.addTransformer(this.getPersistenceUnitName(), pTransformer) == false) {
+      XFun.getTrace().warn("Class transformer " + pTransformer.getClass().getName() + " of persistence unit "
+          + this.getPersistenceUnitName() + " can not be applied as JVM was not started with -javaagent option for "
+          + InstrumentationAgent.class.getName() + ". Classes have to be enhanced at build time.");
+    }
+  }
+
+  /**
+   * Method returns all class transformers that were registered for this persistence unit.
+   *
+   * @return {@link List} List with all registered transformers. The method never returns null.
+   */
+  public List<ClassTransformer> getTransformers( ) {
+    return Collections.unmodifiableList(transformers);
+  }
+
+  /**
+   * Method removes all class transformers of this persistence unit from the JVM. It should be called after the entity
+   * manager factory that was created from this persistence unit info was closed.
+   */
+  public void removeTransformers( ) {
+    transformers.clear();
+    InstrumentationAgent.removeTransformers(this.getPersistenceUnitName());
   }
 }
\ No newline at end of file
@@ -0,0 +1,121 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base;
+
+import java.sql.Connection;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import javax.persistence.EntityManager;
+import javax.transaction.Synchronization;
+
+import org.hibernate.Session;
+import org.hibernate.StatelessSession;
+
+import com.anaptecs.jeaf.xfun.api.checks.Check;
+
+/**
+ * Class manages the stateless sessions of a transaction context. A stateless session has no persistence context. Thus
+ * there is no first-level cache, no dirty checking and no cascading and inserts, updates and deletes are executed
+ * directly. This makes them the right choice for batch components that write large numbers of rows with constant
+ * memory consumption.
+ *
+ * The stateless session of an entity manager uses the JDBC connection of the entity manager. Its changes therefore are
+ * part of the entity manager's transaction and are committed or rolled back together with it. The session is closed
+ * automatically once the transaction completed. Stateless sessions must not begin transactions on their own.
+ *
+ * As changes done through a stateless session bypass the persistence context of the entity manager, the same entities
+ * should not be changed through both of them within one transaction.
+ *
+ * @author JEAF Development Team
+ */
+public final class StatelessSessionRegistry {
+  /**
+   * Open stateless sessions per entity manager.
+   */
+  private final Map<EntityManager, StatelessSession> sessions = new IdentityHashMap<>();
+
+  /**
+   * Method returns the stateless session that belongs to the passed entity manager. It is opened if the entity manager
+   * does not have one yet.
+   *
+   * @param pEntityManager Entity manager whose stateless session should be returned. The entity manager must have an
+   * active transaction. The parameter must not be null.
+   * @return {@link StatelessSession} Stateless session of the entity manager. The method never returns null.
+   */
+  public synchronized StatelessSession getStatelessSession( EntityManager pEntityManager ) {
+    // Check parameter
+    Check.checkInvalidParameterNull(pEntityManager, "pEntityManager");
+
+    StatelessSession lStatelessSession = sessions.get(pEntityManager);
+    if (lStatelessSession == null) {
+      Session lSession = pEntityManager.unwrap(Session.class);
+      Connection lConnection = lSession.doReturningWork(pConnection -> pConnection);
+      lStatelessSession = lSession.getSessionFactory().openStatelessSession(lConnection);
+      sessions.put(pEntityManager, lStatelessSession);
+      lSession.getTransaction().registerSynchronization(new SessionCloser(pEntityManager));
+    }
+    return lStatelessSession;
+  }
+
+  /**
+   * Method returns the number of open stateless sessions.
+   *
+   * @return int Number of open stateless sessions.
+   */
+  public synchronized int size( ) {
+    return sessions.size();
+  }
+
+  /**
+   * Method closes the stateless session of the passed entity manager.
+   *
+   * @param pEntityManager Entity manager whose transaction completed. The parameter must not be null.
+   */
+  private synchronized void close( EntityManager pEntityManager ) {
+    StatelessSession lStatelessSession = sessions.remove(pEntityManager);
+    if (lStatelessSession != null) {
+      lStatelessSession.close();
+    }
+  }
+
+  /**
+   * Class closes the stateless session of an entity manager after its transaction completed.
+   */
+  private final class SessionCloser implements Synchronization {
+    /**
+     * Entity manager whose stateless session is closed. The reference is never null.
+     */
+    private final EntityManager entityManager;
+
+    /**
+     * Initialize object.
+     *
+     * @param pEntityManager Entity manager whose stateless session should be closed. The parameter must not be null.
+     */
+    SessionCloser( EntityManager pEntityManager ) {
+      entityManager = pEntityManager;
+    }
+
+    /**
+     * @see Synchronization#beforeCompletion()
+     */
+    @Override
+    public void beforeCompletion( ) {
+      // Nothing to do.
+    }
+
+    /**
+     * Method closes the stateless session independent of the outcome of the transaction.
+     *
+     * @see Synchronization#afterCompletion(int)
+     */
+    @Override
+    public void afterCompletion( int pStatus ) {
+      StatelessSessionRegistry.this.close(entityManager);
+    }
+  }
+}
@@ -0,0 +1,156 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.bootstrap;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+import com.anaptecs.jeaf.tools.api.Tools;
+import com.anaptecs.jeaf.xfun.api.XFun;
+import com.anaptecs.jeaf.xfun.api.checks.Check;
+
+/**
+ * Class stores artifacts that were derived during the bootstrap of a persistence unit on local disk. Artifacts are
+ * stored together with the fingerprint of their inputs (see {@link PersistenceUnitFingerprint}) and are only returned
+ * as long as the fingerprint matches. As the cache is only an optimization all I/O errors are traced and treated like
+ * cache misses.
+ *
+ * @author JEAF Development Team
+ */
+public final class BootstrapCache {
+  /**
+   * Name of the system property that defines the directory of the cache. By default the user specific directory
+   * <code>jeaf-persistence-&lt;user.name&gt;/bootstrap</code> within <code>java.io.tmpdir</code> is used.
+   */
+  public static final String CACHE_DIRECTORY_PROPERTY = "jeaf.persistence.bootstrap_cache.dir";
+
+  /**
+   * Key under which the fingerprint is stored within a cache file.
+   */
+  private static final String FINGERPRINT_KEY = "jeaf.fingerprint";
+
+  /**
+   * Directory of the cache. The reference is never null.
+   */
+  private final File directory;
+
+  /**
+   * Initialize object.
+   *
+   * @param pDirectory Directory of the cache. The parameter must not be null.
+   */
+  public BootstrapCache( File pDirectory ) {
+    // Check parameter
+    Check.checkInvalidParameterNull(pDirectory, "pDirectory");
+
+    directory = pDirectory;
+  }
+
+  /**
+   * Method returns the cache within the directory that is defined by {@link #CACHE_DIRECTORY_PROPERTY}.
+   *
+   * @return {@link BootstrapCache} Default cache. The method never returns null.
+   */
+  public static BootstrapCache getDefault( ) {
+    String lDirectory = System.getProperty(CACHE_DIRECTORY_PROPERTY);
+    File lCacheDirectory;
+    if (Tools.getStringTools().isRealString(lDirectory) == true) {
+      lCacheDirectory = new File(lDirectory);
+    }
+    else {
+      // Directory is user specific as the temp directory may be shared by several users.
+      String lUser = System.getProperty("user.name", "unknown").replaceAll("[^A-Za-z0-9_.-]", "_");
+      File lBaseDirectory = new File(System.getProperty("java.io.tmpdir"), "jeaf-persistence-" + lUser);
+      lCacheDirectory = new File(lBaseDirectory, "bootstrap");
+    }
+    return new BootstrapCache(lCacheDirectory);
+  }
+
+  /**
+   * Method returns the directory of the cache.
+   *
+   * @return {@link File} Directory of the cache. The method never returns null.
+   */
+  public File getDirectory( ) {
+    return directory;
+  }
+
+  /**
+   * Method returns the cached artifacts of the passed persistence unit.
+   *
+   * @param pPersistenceUnitName Name of the persistence unit. The parameter must not be null.
+   * @param pFingerprint Current fingerprint of the persistence unit. The parameter must not be null.
+   * @return {@link Properties} Cached artifacts or null if nothing is cached for the passed fingerprint.
+   */
+  public Properties load( String pPersistenceUnitName, String pFingerprint ) {
+    // Check parameters
+    Check.checkInvalidParameterNull(pPersistenceUnitName, "pPersistenceUnitName");
+    Check.checkInvalidParameterNull(pFingerprint, "pFingerprint");
+
+    File lFile = this.getCacheFile(pPersistenceUnitName);
+    Properties lArtifacts = null;
+    if (lFile.isFile() == true) {
+      Properties lProperties = new Properties();
+      try (InputStream lStream = Files.newInputStream(lFile.toPath())) {
+        lProperties.load(lStream);
+        if (pFingerprint.equals(lProperties.remove(FINGERPRINT_KEY))) {
+          lArtifacts = lProperties;
+        }
+      }
+      catch (IOException e) {
+        XFun.getTrace().warn("Unable to read bootstrap cache " + lFile, e);
+      }
+    }
+    return lArtifacts;
+  }
+
+  /**
+   * Method stores the passed artifacts of the passed persistence unit. Previously cached artifacts are replaced.
+   *
+   * @param pPersistenceUnitName Name of the persistence unit. The parameter must not be null.
+   * @param pFingerprint Fingerprint of the inputs from which the artifacts were derived. The parameter must not be
+   * null.
+   * @param pArtifacts Artifacts that should be cached. The parameter must not be null.
+   */
+  public void store( String pPersistenceUnitName, String pFingerprint, Properties pArtifacts ) {
+    // Check parameters
+    Check.checkInvalidParameterNull(pPersistenceUnitName, "pPersistenceUnitName");
+    Check.checkInvalidParameterNull(pFingerprint, "pFingerprint");
+    Check.checkInvalidParameterNull(pArtifacts, "pArtifacts");
+
+    File lFile = this.getCacheFile(pPersistenceUnitName);
+    Properties lProperties = new Properties();
+    lProperties.putAll(pArtifacts);
+    lProperties.setProperty(FINGERPRINT_KEY, pFingerprint);
+    try {
+      // Write to temporary file first so that concurrently starting JVMs never see an incomplete file.
+      Files.createDirectories(directory.toPath());
+      File lTempFile = File.createTempFile(lFile.getName(), ".tmp", directory);
+      try (OutputStream lStream = Files.newOutputStream(lTempFile.toPath())) {
+        lProperties.store(lStream, "Bootstrap artifacts of persistence unit " + pPersistenceUnitName);
+      }
+      Files.move(lTempFile.toPath(), lFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+    catch (IOException e) {
+      XFun.getTrace().warn("Unable to write bootstrap cache " + lFile, e);
+    }
+  }
+
+  /**
+   * Method returns the cache file of the passed persistence unit.
+   *
+   * @param pPersistenceUnitName Name of the persistence unit. The parameter must not be null.
+   * @return {@link File} Cache file. The method never returns null.
+   */
+  public File getCacheFile( String pPersistenceUnitName ) {
+    return new File(directory, pPersistenceUnitName.replaceAll("[^A-Za-z0-9_.-]", "_") + ".properties");
+  }
+}
@@ -0,0 +1,43 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.bootstrap;
+
+/**
+ * Enumeration defines the phases of the bootstrap of a persistence unit that are measured by
+ * {@link BootstrapProfiler}. Phases may be nested, e.g. filling the connection pool is part of the creation of the
+ * entity manager factory. Measurements are always inclusive.
+ *
+ * @author JEAF Development Team
+ */
+public enum BootstrapPhase {
+  /**
+   * Resolution of the persistence configuration from its annotations (see
+   * {@link com.anaptecs.jeaf.spi.persistence.base.PersistenceUnitInfoImpl}).
+   */
+  ANNOTATION_RESOLUTION,
+
+  /**
+   * Lookup of the properties file of a persistence unit through a resource bundle.
+   */
+  CONFIGURATION_LOOKUP,
+
+  /**
+   * Creation of the entity manager factory by the persistence provider.
+   */
+  ENTITY_MANAGER_FACTORY,
+
+  /**
+   * Filling or pre-warming of the connection pool of a persistence unit. Connections that are created in the
+   * background are not included.
+   */
+  POOL_FILL,
+
+  /**
+   * Compilation of named queries and of recorded dynamic queries into the query plan cache (see
+   * {@link com.anaptecs.jeaf.spi.persistence.base.query.QueryPlanWarmer}).
+   */
+  QUERY_PRECOMPILATION;
+}
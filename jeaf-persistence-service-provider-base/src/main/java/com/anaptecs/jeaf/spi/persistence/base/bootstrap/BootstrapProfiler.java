@@ -0,0 +1,93 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.bootstrap;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.anaptecs.jeaf.xfun.api.checks.Check;
+
+/**
+ * Class measures the bootstrap phases of all persistence units (see {@link BootstrapPhase}). Measurements are collected
+ * in a startup report (see {@link BootstrapReport}) and are also emitted as JFR events if Java Flight Recorder is
+ * available.
+ *
+ * <pre>
+ * PhaseMeasurement lMeasurement = BootstrapProfiler.start(BootstrapPhase.ENTITY_MANAGER_FACTORY);
+ * ...
+ * lMeasurement.stop(lPersistenceUnitName);
+ * </pre>
+ *
+ * @author JEAF Development Team
+ */
+public final class BootstrapProfiler {
+  /**
+   * Latest measurement of every phase and persistence unit in the order in which they were finished. If a persistence
+   * unit is bootstrapped again, its previous measurements are replaced so that the list does not grow over time. Access
+   * to the list has to be synchronized on the list itself.
+   */
+  private static final List<PhaseMeasurement> MEASUREMENTS = new ArrayList<>();
+
+  /**
+   * Constructor is private to ensure that no instances of this class will be created.
+   */
+  private BootstrapProfiler( ) {
+    // Nothing to do.
+  }
+
+  /**
+   * Method starts the measurement of the passed bootstrap phase.
+   *
+   * @param pPhase Phase that should be measured. The parameter must not be null.
+   * @return {@link PhaseMeasurement} Started measurement. The method never returns null.
+   */
+  public static PhaseMeasurement start( BootstrapPhase pPhase ) {
+    // Check parameter
+    Check.checkInvalidParameterNull(pPhase, "pPhase");
+
+    return new PhaseMeasurement(pPhase);
+  }
+
+  /**
+   * Method adds the passed finished measurement to the startup report. A previous measurement of the same phase and
+   * persistence unit is replaced.
+   *
+   * @param pMeasurement Finished measurement. The parameter must not be null.
+   */
+  static void record( PhaseMeasurement pMeasurement ) {
+    synchronized (MEASUREMENTS) {
+      MEASUREMENTS.removeIf(pNext -> pNext.getPhase() == pMeasurement.getPhase()
+          && pNext.getPersistenceUnitName().equals(pMeasurement.getPersistenceUnitName()));
+      MEASUREMENTS.add(pMeasurement);
+    }
+  }
+
+  /**
+   * Method returns the startup report with the latest measurement of every phase and persistence unit.
+   *
+   * @return {@link BootstrapReport} Startup report. The method never returns null.
+   */
+  public static BootstrapReport getReport( ) {
+    synchronized (MEASUREMENTS) {
+      return new BootstrapReport(new ArrayList<>(MEASUREMENTS));
+    }
+  }
+
+  /**
+   * Method removes all measurements of the passed persistence unit, e.g. after its entity manager factory was evicted
+   * and will be bootstrapped again.
+   *
+   * @param pPersistenceUnitName Name of the persistence unit. The parameter must not be null.
+   */
+  public static void clear( String pPersistenceUnitName ) {
+    // Check parameter
+    Check.checkInvalidParameterNull(pPersistenceUnitName, "pPersistenceUnitName");
+
+    synchronized (MEASUREMENTS) {
+      MEASUREMENTS.removeIf(pNext -> pPersistenceUnitName.equals(pNext.getPersistenceUnitName()));
+    }
+  }
+}
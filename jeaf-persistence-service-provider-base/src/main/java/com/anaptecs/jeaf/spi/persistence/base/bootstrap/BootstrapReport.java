@@ -0,0 +1,126 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.bootstrap;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import com.anaptecs.jeaf.xfun.api.checks.Check;
+
+/**
+ * Class represents a snapshot of all bootstrap measurements (see {@link BootstrapProfiler}). Its string representation
+ * is a human readable table with one line per phase and persistence unit.
+ *
+ * @author JEAF Development Team
+ */
+public final class BootstrapReport {
+  /**
+   * Measurements of the report. The list is never null.
+   */
+  private final List<PhaseMeasurement> measurements;
+
+  /**
+   * Initialize object.
+   *
+   * @param pMeasurements Measurements of the report. The parameter must not be null.
+   */
+  BootstrapReport( List<PhaseMeasurement> pMeasurements ) {
+    measurements = Collections.unmodifiableList(pMeasurements);
+  }
+
+  /**
+   * Method returns all measurements of the report.
+   *
+   * @return {@link List} All measurements in the order in which they were finished. The method never returns null.
+   */
+  public List<PhaseMeasurement> getMeasurements( ) {
+    return measurements;
+  }
+
+  /**
+   * Method returns the names of all persistence units with measurements.
+   *
+   * @return {@link Set} Names of all persistence units. The method never returns null.
+   */
+  public Set<String> getPersistenceUnitNames( ) {
+    Set<String> lNames = new LinkedHashSet<>();
+    for (PhaseMeasurement lNext : measurements) {
+      lNames.add(lNext.getPersistenceUnitName());
+    }
+    return lNames;
+  }
+
+  /**
+   * Method returns all measurements of the passed persistence unit.
+   *
+   * @param pPersistenceUnitName Name of the persistence unit. The parameter must not be null.
+   * @return {@link List} Measurements of the persistence unit. The method never returns null.
+   */
+  public List<PhaseMeasurement> getMeasurements( String pPersistenceUnitName ) {
+    // Check parameter
+    Check.checkInvalidParameterNull(pPersistenceUnitName, "pPersistenceUnitName");
+
+    List<PhaseMeasurement> lMeasurements = new ArrayList<>();
+    for (PhaseMeasurement lNext : measurements) {
+      if (pPersistenceUnitName.equals(lNext.getPersistenceUnitName())) {
+        lMeasurements.add(lNext);
+      }
+    }
+    return lMeasurements;
+  }
+
+  /**
+   * Method returns the measurement of the passed phase of the passed persistence unit.
+   *
+   * @param pPersistenceUnitName Name of the persistence unit. The parameter must not be null.
+   * @param pPhase Bootstrap phase. The parameter must not be null.
+   * @return {@link PhaseMeasurement} Latest measurement of the phase or null if the phase was not measured.
+   */
+  public PhaseMeasurement getMeasurement( String pPersistenceUnitName, BootstrapPhase pPhase ) {
+    // Check parameter
+    Check.checkInvalidParameterNull(pPhase, "pPhase");
+
+    PhaseMeasurement lResult = null;
+    for (PhaseMeasurement lNext : this.getMeasurements(pPersistenceUnitName)) {
+      if (lNext.getPhase() == pPhase) {
+        lResult = lNext;
+      }
+    }
+    return lResult;
+  }
+
+  /**
+   * Method returns the report of the passed persistence unit as human readable table.
+   *
+   * @param pPersistenceUnitName Name of the persistence unit. The parameter must not be null.
+   * @return {@link String} Report of the persistence unit. The method never returns null.
+   */
+  public String toString( String pPersistenceUnitName ) {
+    StringBuilder lBuilder = new StringBuilder();
+    lBuilder.append("Bootstrap of persistence unit ").append(pPersistenceUnitName).append(':');
+    for (PhaseMeasurement lNext : this.getMeasurements(pPersistenceUnitName)) {
+      lBuilder.append(String.format("%n  %-24s %8d ms %10d KB  [%s]", lNext.getPhase(),
+          TimeUnit.NANOSECONDS.toMillis(lNext.getDuration()), lNext.getAllocatedBytes() / 1024, lNext.getThreadName()));
+    }
+    return lBuilder.toString();
+  }
+
+  @Override
+  public String toString( ) {
+    StringBuilder lBuilder = new StringBuilder();
+    for (String lNext : this.getPersistenceUnitNames()) {
+      if (lBuilder.length() > 0) {
+        lBuilder.append(System.lineSeparator());
+      }
+      lBuilder.append(this.toString(lNext));
+    }
+    return lBuilder.toString();
+  }
+}
@@ -0,0 +1,230 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.bootstrap;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import com.anaptecs.jeaf.xfun.api.checks.Check;
+
+/**
+ * Class calculates a fingerprint of everything that the metadata of a persistence unit is derived from. Bootstrap
+ * artifacts that were derived from the same inputs can be reused as long as the fingerprint does not change (see
+ * {@link BootstrapCache}).
+ *
+ * The fingerprint is a SHA-256 hash over the byte code of classes, the content of resources like mapping files, the
+ * size and modification time of archives and over properties. Inputs are added in a defined order so that the same
+ * inputs always result in the same fingerprint.
+ *
+ * @author JEAF Development Team
+ */
+public final class PersistenceUnitFingerprint {
+  /**
+   * Class loader from which classes and resources are read. The reference is never null.
+   */
+  private final ClassLoader classLoader;
+
+  /**
+   * Digest that calculates the fingerprint. The reference is never null.
+   */
+  private final MessageDigest digest;
+
+  /**
+   * Initialize object.
+   *
+   * @param pClassLoader Class loader from which classes and resources are read. The parameter must not be null.
+   */
+  public PersistenceUnitFingerprint( ClassLoader pClassLoader ) {
+    // Check parameter
+    Check.checkInvalidParameterNull(pClassLoader, "pClassLoader");
+
+    classLoader = pClassLoader;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    }
+    catch (NoSuchAlgorithmException e) {
+      // Every JVM has to support SHA-256.
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Method adds the byte code of the passed classes to the fingerprint.
+   *
+   * @param pClassNames Names of the classes. The parameter must not be null.
+   * @return {@link PersistenceUnitFingerprint} This object. The method never returns null.
+   */
+  public PersistenceUnitFingerprint addClasses( Collection<String> pClassNames ) {
+    // Check parameter
+    Check.checkInvalidParameterNull(pClassNames, "pClassNames");
+
+    for (String lNext : this.sort(pClassNames)) {
+      this.addResource(lNext, lNext.replace('.', '/') + ".class");
+    }
+    return this;
+  }
+
+  /**
+   * Method adds the content of the passed resources, e.g. mapping files, to the fingerprint.
+   *
+   * @param pResourceNames Names of the resources. The parameter must not be null.
+   * @return {@link PersistenceUnitFingerprint} This object. The method never returns null.
+   */
+  public PersistenceUnitFingerprint addResources( Collection<String> pResourceNames ) {
+    // Check parameter
+    Check.checkInvalidParameterNull(pResourceNames, "pResourceNames");
+
+    for (String lNext : this.sort(pResourceNames)) {
+      this.addResource(lNext, lNext);
+    }
+    return this;
+  }
+
+  /**
+   * Method adds the passed archives to the fingerprint. As reading complete archives would take too long only their
+   * size and modification time are used.
+   *
+   * @param pArchiveURLs URLs of jar files or directories. The parameter must not be null.
+   * @return {@link PersistenceUnitFingerprint} This object. The method never returns null.
+   */
+  public PersistenceUnitFingerprint addArchives( Collection<URL> pArchiveURLs ) {
+    // Check parameter
+    Check.checkInvalidParameterNull(pArchiveURLs, "pArchiveURLs");
+
+    for (URL lNext : pArchiveURLs) {
+      this.update(lNext.toExternalForm());
+      File lFile = this.toFile(lNext);
+      if (lFile != null && lFile.exists()) {
+        this.update(lFile.length() + ";" + lFile.lastModified());
+      }
+      else {
+        this.update("<missing>");
+      }
+    }
+    return this;
+  }
+
+  /**
+   * Method adds the passed properties to the fingerprint.
+   *
+   * @param pProperties Properties that should be added. The parameter must not be null.
+   * @return {@link PersistenceUnitFingerprint} This object. The method never returns null.
+   */
+  public PersistenceUnitFingerprint addProperties( Properties pProperties ) {
+    // Check parameter
+    Check.checkInvalidParameterNull(pProperties, "pProperties");
+
+    for (String lNext : this.sort(pProperties.stringPropertyNames())) {
+      this.update(lNext + "=" + pProperties.getProperty(lNext));
+    }
+    return this;
+  }
+
+  /**
+   * Method adds the passed value to the fingerprint.
+   *
+   * @param pValue Value that should be added. The parameter must not be null.
+   * @return {@link PersistenceUnitFingerprint} This object. The method never returns null.
+   */
+  public PersistenceUnitFingerprint addValue( String pValue ) {
+    // Check parameter
+    Check.checkInvalidParameterNull(pValue, "pValue");
+
+    this.update(pValue);
+    return this;
+  }
+
+  /**
+   * Method returns the fingerprint of all inputs that were added so far.
+   *
+   * @return {@link String} Fingerprint as hex string. The method never returns null.
+   */
+  public String getValue( ) {
+    try {
+      byte[] lHash = ((MessageDigest) digest.clone()).digest();
+      StringBuilder lBuilder = new StringBuilder(lHash.length * 2);
+      for (byte lNext : lHash) {
+        lBuilder.append(String.format("%02x", lNext));
+      }
+      return lBuilder.toString();
+    }
+    catch (CloneNotSupportedException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Method adds the content of the passed resource to the fingerprint. Missing resources are also part of the
+   * fingerprint.
+   *
+   * @param pName Name under which the resource is added. The parameter must not be null.
+   * @param pResourceName Name of the resource within the class loader. The parameter must not be null.
+   */
+  private void addResource( String pName, String pResourceName ) {
+    this.update(pName);
+    try (InputStream lStream = classLoader.getResourceAsStream(pResourceName)) {
+      if (lStream != null) {
+        byte[] lBuffer = new byte[4096];
+        int lRead;
+        while ((lRead = lStream.read(lBuffer)) != -1) {
+          digest.update(lBuffer, 0, lRead);
+        }
+      }
+      else {
+        this.update("<missing>");
+      }
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException("Unable to read resource " + pResourceName, e);
+    }
+  }
+
+  private void update( String pValue ) {
+    digest.update(pValue.getBytes(StandardCharsets.UTF_8));
+    digest.update((byte) 0);
+  }
+
+  private List<String> sort( Collection<String> pValues ) {
+    List<String> lSorted = new ArrayList<>(pValues);
+    Collections.sort(lSorted);
+    return lSorted;
+  }
+
+  /**
+   * Method converts the passed URL into a file.
+   *
+   * @param pURL URL of a jar file or directory. The parameter must not be null.
+   * @return {@link File} File or null if the URL does not point to the local file system.
+   */
+  private File toFile( URL pURL ) {
+    File lFile;
+    if ("file".equals(pURL.getProtocol())) {
+      try {
+        lFile = new File(pURL.toURI());
+      }
+      // Relative file URLs can not be converted into URIs.
+      catch (URISyntaxException | IllegalArgumentException e) {
+        lFile = new File(pURL.getPath());
+      }
+    }
+    else {
+      lFile = null;
+    }
+    return lFile;
+  }
+}
@@ -0,0 +1,214 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.bootstrap;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.TimeUnit;
+
+import com.anaptecs.jeaf.spi.persistence.base.jfr.BootstrapPhaseEvent;
+import com.anaptecs.jeaf.spi.persistence.base.jfr.JFRSupport;
+import com.anaptecs.jeaf.xfun.api.checks.Check;
+
+/**
+ * Class represents the measurement of one bootstrap phase of a persistence unit. Measurements are started through
+ * {@link BootstrapProfiler#start(BootstrapPhase)} and have to be stopped by the same thread.
+ *
+ * Besides the wall-clock time also the number of bytes that were allocated by the measuring thread is recorded if the
+ * JVM supports it. Allocations of other threads, e.g. threads that open connections in parallel, are not included.
+ *
+ * @author JEAF Development Team
+ */
+public final class PhaseMeasurement {
+  /**
+   * Thread MXBean that provides allocation information. The reference is null if the JVM does not support measuring
+   * allocated memory per thread.
+   */
+  private static final com.sun.management.ThreadMXBean ALLOCATION_MXBEAN = resolveAllocationMXBean();
+
+  /**
+   * Phase that is measured. The reference is never null.
+   */
+  private final BootstrapPhase phase;
+
+  /**
+   * Name of the thread that started the measurement. The reference is never null.
+   */
+  private final String threadName;
+
+  /**
+   * Point in time (see {@link System#currentTimeMillis()}) when the measurement was started.
+   */
+  private final long startTime;
+
+  /**
+   * Value of {@link System#nanoTime()} when the measurement was started. It is used to calculate the duration.
+   */
+  private final long startNanos;
+
+  /**
+   * Number of bytes that were allocated by the measuring thread when the measurement was started or -1 if allocations
+   * can not be measured.
+   */
+  private final long startAllocatedBytes;
+
+  /**
+   * JFR event of the measurement. The reference is null if JFR is not available.
+   */
+  private final Object event;
+
+  /**
+   * Name of the persistence unit that was bootstrapped. The reference is null until the measurement was stopped.
+   */
+  private String persistenceUnitName;
+
+  /**
+   * Duration of the phase in nanoseconds or -1 if the measurement was not yet stopped.
+   */
+  private long duration = -1;
+
+  /**
+   * Number of bytes that were allocated by the measuring thread during the phase or -1 if they are unknown.
+   */
+  private long allocatedBytes = -1;
+
+  /**
+   * Initialize object and start measurement.
+   *
+   * @param pPhase Phase that is measured. The parameter must not be null.
+   */
+  PhaseMeasurement( BootstrapPhase pPhase ) {
+    phase = pPhase;
+    threadName = Thread.currentThread().getName();
+    startTime = System.currentTimeMillis();
+    startAllocatedBytes = currentAllocatedBytes();
+    if (JFRSupport.isAvailable() == true) {
+      event = BootstrapPhaseEvent.begin(pPhase.name());
+    }
+    else {
+      event = null;
+    }
+    startNanos = System.nanoTime();
+  }
+
+  /**
+   * Method stops the measurement and adds it to the report of {@link BootstrapProfiler}. Further calls are ignored.
+   *
+   * @param pPersistenceUnitName Name of the persistence unit that was bootstrapped. The parameter must not be null.
+   */
+  public void stop( String pPersistenceUnitName ) {
+    // Check parameter
+    Check.checkInvalidParameterNull(pPersistenceUnitName, "pPersistenceUnitName");
+
+    if (duration < 0) {
+      duration = System.nanoTime() - startNanos;
+      if (startAllocatedBytes >= 0) {
+        allocatedBytes = currentAllocatedBytes() - startAllocatedBytes;
+      }
+      persistenceUnitName = pPersistenceUnitName;
+      if (event != null) {
+        BootstrapPhaseEvent.commit(event, pPersistenceUnitName, allocatedBytes);
+      }
+      BootstrapProfiler.record(this);
+    }
+  }
+
+  /**
+   * Method returns the name of the persistence unit that was bootstrapped.
+   *
+   * @return {@link String} Name of the persistence unit or null if the measurement was not yet stopped.
+   */
+  public String getPersistenceUnitName( ) {
+    return persistenceUnitName;
+  }
+
+  /**
+   * Method returns the phase that is measured.
+   *
+   * @return {@link BootstrapPhase} Measured phase. The method never returns null.
+   */
+  public BootstrapPhase getPhase( ) {
+    return phase;
+  }
+
+  /**
+   * Method returns the name of the thread that started the measurement.
+   *
+   * @return {@link String} Name of the measuring thread. The method never returns null.
+   */
+  public String getThreadName( ) {
+    return threadName;
+  }
+
+  /**
+   * Method returns when the phase was started.
+   *
+   * @return long Start of the phase in milliseconds since the epoch.
+   */
+  public long getStartTime( ) {
+    return startTime;
+  }
+
+  /**
+   * Method returns how long the phase took.
+   *
+   * @return long Duration in nanoseconds or -1 if the measurement was not yet stopped.
+   */
+  public long getDuration( ) {
+    return duration;
+  }
+
+  /**
+   * Method returns how many bytes were allocated by the measuring thread during the phase.
+   *
+   * @return long Number of allocated bytes or -1 if the JVM does not support measuring allocations.
+   */
+  public long getAllocatedBytes( ) {
+    return allocatedBytes;
+  }
+
+  /**
+   * @see Object#toString()
+   */
+  @Override
+  public String toString( ) {
+    return phase + ": " + TimeUnit.NANOSECONDS.toMillis(duration) + "ms, " + allocatedBytes / 1024 + "KB allocated ["
+        + threadName + "]";
+  }
+
+  /**
+   * Method returns the number of bytes that were allocated by the current thread so far.
+   *
+   * @return long Number of allocated bytes or -1 if the JVM does not support it.
+   */
+  private static long currentAllocatedBytes( ) {
+    long lAllocatedBytes;
+    if (ALLOCATION_MXBEAN != null) {
+      lAllocatedBytes = ALLOCATION_MXBEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+    else {
+      lAllocatedBytes = -1;
+    }
+    return lAllocatedBytes;
+  }
+
+  /**
+   * Method resolves the thread MXBean if it supports measuring allocated memory per thread.
+   *
+   * @return {@link com.sun.management.ThreadMXBean} MXBean or null if allocations can not be measured.
+   */
+  private static com.sun.management.ThreadMXBean resolveAllocationMXBean( ) {
+    com.sun.management.ThreadMXBean lResult = null;
+    ThreadMXBean lMXBean = ManagementFactory.getThreadMXBean();
+    if (lMXBean instanceof com.sun.management.ThreadMXBean) {
+      com.sun.management.ThreadMXBean lSunMXBean = (com.sun.management.ThreadMXBean) lMXBean;
+      if (lSunMXBean.isThreadAllocatedMemorySupported() && lSunMXBean.isThreadAllocatedMemoryEnabled()) {
+        lResult = lSunMXBean;
+      }
+    }
+    return lResult;
+  }
+}
@@ -0,0 +1,261 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.bootstrap;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import org.hibernate.boot.Metadata;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.engine.jdbc.connections.spi.JdbcConnectionAccess;
+import org.hibernate.mapping.Column;
+import org.hibernate.mapping.Table;
+import org.hibernate.tool.schema.internal.HibernateSchemaManagementTool;
+import org.hibernate.tool.schema.internal.exec.JdbcContext;
+import org.hibernate.tool.schema.spi.ExecutionOptions;
+import org.hibernate.tool.schema.spi.SchemaValidator;
+
+import com.anaptecs.jeaf.xfun.api.XFun;
+import com.anaptecs.jeaf.xfun.api.checks.Check;
+
+/**
+ * Class extends the schema management of Hibernate so that schema validation is skipped as long as neither the mapping
+ * of a persistence unit nor the schema of its database changed since the last successful validation (see
+ * {@link SchemaFingerprintStore}).
+ *
+ * The fingerprint is calculated when Hibernate validates the schema, i.e. while the entity manager factory is created.
+ * It covers the tables and columns of the mapping as well as the columns of the database schemas that contain these
+ * tables. The database side is read with a single metadata query per schema, which is much cheaper than the table by
+ * table validation of Hibernate. The fingerprint is only stored after the validation succeeded.
+ *
+ * The tool is activated through property <code>hibernate.schema_management_tool</code> (see
+ * {@link #configure(Map)}). Without property {@link #SCHEMA_FINGERPRINT_PROPERTY} it behaves like the default schema
+ * management tool of Hibernate.
+ *
+ * @author JEAF Development Team
+ */
+public class SchemaFingerprintManagementTool extends HibernateSchemaManagementTool {
+  /**
+   * Default serial version UID.
+   */
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * Name of the property that enables the schema fingerprint. If it is set to <code>true</code> and the schema is
+   * validated through <code>hibernate.hbm2ddl.auto=validate</code> then full validation is only done if the mapping or
+   * the database schema changed since the last successful validation.
+   */
+  public static final String SCHEMA_FINGERPRINT_PROPERTY = "jeaf.persistence.schema_fingerprint";
+
+  /**
+   * Name of the setting in which Hibernate provides the name of the persistence unit.
+   */
+  private static final String PERSISTENCE_UNIT_NAME_SETTING = "hibernate.ejb.persistenceUnitName";
+
+  /**
+   * Name of the persistence unit that is used if Hibernate does not provide one.
+   */
+  private static final String DEFAULT_UNIT_NAME = "default";
+
+  /**
+   * Method activates this schema management tool within the passed configuration if the schema fingerprint is enabled
+   * and no other schema management tool is configured.
+   *
+   * @param pProperties Configuration of a persistence unit. The parameter must not be null.
+   */
+  public static void configure( Map<Object, Object> pProperties ) {
+    // Check parameter
+    Check.checkInvalidParameterNull(pProperties, "pProperties");
+
+    if (isEnabled(pProperties) == true) {
+      String lToolName = SchemaFingerprintManagementTool.class.getName();
+      pProperties.putIfAbsent(AvailableSettings.SCHEMA_MANAGEMENT_TOOL, lToolName);
+    }
+  }
+
+  /**
+   * Method checks whether the schema fingerprint is enabled within the passed configuration.
+   *
+   * @param pProperties Configuration of a persistence unit. The parameter must not be null.
+   * @return boolean Method returns true if the schema fingerprint is enabled and false otherwise.
+   */
+  private static boolean isEnabled( Map<?, ?> pProperties ) {
+    return Boolean.parseBoolean(Objects.toString(pProperties.get(SCHEMA_FINGERPRINT_PROPERTY), null));
+  }
+
+  /**
+   * @see HibernateSchemaManagementTool#getSchemaValidator(Map)
+   */
+  @SuppressWarnings("rawtypes")
+  @Override
+  public SchemaValidator getSchemaValidator( Map pOptions ) {
+    SchemaValidator lValidator = super.getSchemaValidator(pOptions);
+    if (isEnabled(pOptions) == true) {
+      lValidator = new FingerprintValidator(lValidator);
+    }
+    return lValidator;
+  }
+
+  /**
+   * Method calculates the schema fingerprint of the passed mapping and the current schema of the database.
+   *
+   * @param pMetadata Mapping of the persistence unit. The parameter must not be null.
+   * @param pDialect Dialect of the database. The parameter must not be null.
+   * @param pConnection Connection to the database. The parameter must not be null.
+   * @return {@link String} Schema fingerprint. The method never returns null.
+   * @throws SQLException if the metadata of the database can not be read.
+   */
+  private String calculateFingerprint( Metadata pMetadata, Dialect pDialect, Connection pConnection )
+    throws SQLException {
+
+    PersistenceUnitFingerprint lFingerprint = new PersistenceUnitFingerprint(this.getClass().getClassLoader());
+
+    // Mapping side: every physical table with its columns as Hibernate expects them.
+    Set<List<String>> lNamespaces = new LinkedHashSet<>();
+    List<String> lMappedTables = new ArrayList<>();
+    for (Table lTable : pMetadata.collectTableMappings()) {
+      if (lTable.isPhysicalTable() == true) {
+        StringBuilder lBuilder = new StringBuilder(lTable.getQualifiedTableName().render());
+        Iterator<?> lColumns = lTable.getColumnIterator();
+        while (lColumns.hasNext()) {
+          Column lColumn = (Column) lColumns.next();
+          lBuilder.append(';').append(lColumn.getName()).append(' ').append(lColumn.getSqlType(pDialect, pMetadata))
+              .append(lColumn.isNullable() == true ? " null" : " not null");
+        }
+        lMappedTables.add(lBuilder.toString());
+        lNamespaces.add(Arrays.asList(lTable.getCatalog(), lTable.getSchema()));
+      }
+    }
+    Collections.sort(lMappedTables);
+    for (String lNext : lMappedTables) {
+      lFingerprint.addValue(lNext);
+    }
+
+    // Database side: all columns of the schemas that contain mapped tables. The fingerprint table itself is ignored as
+    // it is created after the first validation.
+    DatabaseMetaData lMetaData = pConnection.getMetaData();
+    for (List<String> lNamespace : lNamespaces) {
+      String lCatalog = lNamespace.get(0) != null ? lNamespace.get(0) : pConnection.getCatalog();
+      String lSchema = lNamespace.get(1) != null ? lNamespace.get(1) : pConnection.getSchema();
+      List<String> lDatabaseColumns = new ArrayList<>();
+      try (ResultSet lResultSet = lMetaData.getColumns(lCatalog, lSchema, "%", "%")) {
+        while (lResultSet.next()) {
+          String lTableName = lResultSet.getString("TABLE_NAME");
+          if (SchemaFingerprintStore.TABLE_NAME.equalsIgnoreCase(lTableName) == false) {
+            lDatabaseColumns.add(lResultSet.getString("TABLE_SCHEM") + "." + lTableName + "."
+                + lResultSet.getString("COLUMN_NAME") + " " + lResultSet.getString("TYPE_NAME") + "("
+                + lResultSet.getInt("COLUMN_SIZE") + "," + lResultSet.getInt("DECIMAL_DIGITS") + ") "
+                + lResultSet.getInt("NULLABLE"));
+          }
+        }
+      }
+      Collections.sort(lDatabaseColumns);
+      lFingerprint.addValue(lCatalog + "." + lSchema);
+      for (String lNext : lDatabaseColumns) {
+        lFingerprint.addValue(lNext);
+      }
+    }
+    return lFingerprint.getValue();
+  }
+
+  /**
+   * Class validates the schema only if its fingerprint changed since the last successful validation.
+   */
+  private class FingerprintValidator implements SchemaValidator {
+    /**
+     * Validator of Hibernate that does the full validation. The reference is never null.
+     */
+    private final SchemaValidator delegate;
+
+    /**
+     * Initialize object.
+     *
+     * @param pDelegate Validator of Hibernate that does the full validation. The parameter must not be null.
+     */
+    FingerprintValidator( SchemaValidator pDelegate ) {
+      delegate = pDelegate;
+    }
+
+    /**
+     * @see SchemaValidator#doValidation(Metadata, ExecutionOptions)
+     */
+    @Override
+    public void doValidation( Metadata pMetadata, ExecutionOptions pOptions ) {
+      Map<?, ?> lConfiguration = pOptions.getConfigurationValues();
+      String lUnitName = Objects.toString(lConfiguration.get(PERSISTENCE_UNIT_NAME_SETTING), DEFAULT_UNIT_NAME);
+      JdbcContext lJdbcContext = SchemaFingerprintManagementTool.this.resolveJdbcContext(lConfiguration);
+      JdbcConnectionAccess lConnectionAccess = lJdbcContext.getJdbcConnectionAccess();
+
+      // As the fingerprint is only an optimization the schema is validated if it can not be calculated.
+      String lFingerprint;
+      boolean lUnchanged;
+      try {
+        Connection lConnection = lConnectionAccess.obtainConnection();
+        try {
+          lFingerprint = SchemaFingerprintManagementTool.this.calculateFingerprint(pMetadata,
+              lJdbcContext.getDialect(), lConnection);
+          lUnchanged = lFingerprint.equals(SchemaFingerprintStore.readFingerprint(lConnection, lUnitName));
+        }
+        finally {
+          lConnectionAccess.releaseConnection(lConnection);
+        }
+      }
+      catch (SQLException e) {
+        XFun.getTrace().warn("Unable to calculate schema fingerprint of persistence unit " + lUnitName, e);
+        lFingerprint = null;
+        lUnchanged = false;
+      }
+
+      if (lUnchanged == true) {
+        XFun.getTrace().info("Schema fingerprint of persistence unit " + lUnitName + " did not change since last "
+            + "successful validation. Skipping schema validation.");
+      }
+      // Validation failures are reported by Hibernate and prevent that the fingerprint is stored.
+      else {
+        delegate.doValidation(pMetadata, pOptions);
+        if (lFingerprint != null) {
+          this.storeFingerprint(lConnectionAccess, lUnitName, lFingerprint);
+        }
+      }
+    }
+
+    /**
+     * Method stores the fingerprint of a successfully validated schema. As the fingerprint is only an optimization
+     * errors are traced.
+     *
+     * @param pConnectionAccess Access to connections of the database. The parameter must not be null.
+     * @param pUnitName Name of the persistence unit. The parameter must not be null.
+     * @param pFingerprint Fingerprint that should be stored. The parameter must not be null.
+     */
+    private void storeFingerprint( JdbcConnectionAccess pConnectionAccess, String pUnitName, String pFingerprint ) {
+      try {
+        Connection lConnection = pConnectionAccess.obtainConnection();
+        try {
+          SchemaFingerprintStore.writeFingerprint(lConnection, pUnitName, pFingerprint);
+          XFun.getTrace().info("Stored schema fingerprint of persistence unit " + pUnitName + ".");
+        }
+        finally {
+          pConnectionAccess.releaseConnection(lConnection);
+        }
+      }
+      catch (SQLException e) {
+        XFun.getTrace().warn("Unable to store schema fingerprint of persistence unit " + pUnitName, e);
+      }
+    }
+  }
+}
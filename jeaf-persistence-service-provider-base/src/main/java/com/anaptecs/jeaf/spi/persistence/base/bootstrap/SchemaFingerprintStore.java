@@ -0,0 +1,150 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.bootstrap;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.Locale;
+
+import com.anaptecs.jeaf.xfun.api.checks.Check;
+
+/**
+ * Class stores the schema fingerprint of persistence units in table {@link #TABLE_NAME} of their database. The
+ * fingerprint is written after Hibernate successfully validated the schema of a persistence unit (see
+ * {@link SchemaFingerprintManagementTool}). As long as the fingerprint does not change later bootstraps can skip the
+ * full validation against the database's metadata.
+ *
+ * @author JEAF Development Team
+ */
+public final class SchemaFingerprintStore {
+  /**
+   * Name of the table that contains the schema fingerprints.
+   */
+  public static final String TABLE_NAME = "JEAF_SCHEMA_FINGERPRINT";
+
+  /**
+   * Constructor is private to ensure that no instances of this class will be created.
+   */
+  private SchemaFingerprintStore( ) {
+    // Nothing to do.
+  }
+
+  /**
+   * Method reads the schema fingerprint of the passed persistence unit.
+   *
+   * @param pConnection Connection to the database of the persistence unit. The parameter must not be null.
+   * @param pPersistenceUnitName Name of the persistence unit. The parameter must not be null.
+   * @return {@link String} Stored fingerprint or null if no fingerprint is stored or the table does not exist yet.
+   * @throws SQLException if the fingerprint can not be read.
+   */
+  public static String readFingerprint( Connection pConnection, String pPersistenceUnitName ) throws SQLException {
+    // Check parameters
+    Check.checkInvalidParameterNull(pConnection, "pConnection");
+    Check.checkInvalidParameterNull(pPersistenceUnitName, "pPersistenceUnitName");
+
+    String lFingerprint = null;
+    if (tableExists(pConnection) == true) {
+      String lSQL = "SELECT FINGERPRINT FROM " + TABLE_NAME + " WHERE PERSISTENCE_UNIT = ?";
+      try (PreparedStatement lStatement = pConnection.prepareStatement(lSQL)) {
+        lStatement.setString(1, pPersistenceUnitName);
+        try (ResultSet lResultSet = lStatement.executeQuery()) {
+          if (lResultSet.next() == true) {
+            lFingerprint = lResultSet.getString(1);
+          }
+        }
+      }
+    }
+    return lFingerprint;
+  }
+
+  /**
+   * Method writes the schema fingerprint of the passed persistence unit. The table is created if it does not exist yet.
+   * All changes are done within one transaction, so they also work on connections whose auto-commit is disabled.
+   *
+   * @param pConnection Connection to the database of the persistence unit. The parameter must not be null.
+   * @param pPersistenceUnitName Name of the persistence unit. The parameter must not be null.
+   * @param pFingerprint Fingerprint of the successfully validated schema. The parameter must not be null.
+   * @throws SQLException if the fingerprint can not be written.
+   */
+  public static void writeFingerprint( Connection pConnection, String pPersistenceUnitName, String pFingerprint )
+    throws SQLException {
+    // Check parameters
+    Check.checkInvalidParameterNull(pConnection, "pConnection");
+    Check.checkInvalidParameterNull(pPersistenceUnitName, "pPersistenceUnitName");
+    Check.checkInvalidParameterNull(pFingerprint, "pFingerprint");
+
+    boolean lAutoCommit = pConnection.getAutoCommit();
+    try {
+      pConnection.setAutoCommit(false);
+      try {
+        // Checking the table first avoids a failing CREATE TABLE which would abort transactions on some databases.
+        if (tableExists(pConnection) == false) {
+          createTable(pConnection);
+        }
+        try (PreparedStatement lDelete =
+            pConnection.prepareStatement("DELETE FROM " + TABLE_NAME + " WHERE PERSISTENCE_UNIT = ?");
+            PreparedStatement lInsert = pConnection.prepareStatement(
+                "INSERT INTO " + TABLE_NAME + " (PERSISTENCE_UNIT, FINGERPRINT, VALIDATED_AT) VALUES (?, ?, ?)")) {
+          lDelete.setString(1, pPersistenceUnitName);
+          lDelete.executeUpdate();
+          lInsert.setString(1, pPersistenceUnitName);
+          lInsert.setString(2, pFingerprint);
+          lInsert.setTimestamp(3, new Timestamp(System.currentTimeMillis()));
+          lInsert.executeUpdate();
+        }
+        pConnection.commit();
+      }
+      catch (SQLException e) {
+        pConnection.rollback();
+        throw e;
+      }
+    }
+    finally {
+      pConnection.setAutoCommit(lAutoCommit);
+    }
+  }
+
+  /**
+   * Method checks whether the fingerprint table exists in the current schema of the passed connection.
+   *
+   * @param pConnection Connection to the database. The parameter must not be null.
+   * @return boolean Method returns true if the table exists and false otherwise.
+   * @throws SQLException if the metadata of the database can not be read.
+   */
+  private static boolean tableExists( Connection pConnection ) throws SQLException {
+    DatabaseMetaData lMetaData = pConnection.getMetaData();
+    String lTableName;
+    if (lMetaData.storesLowerCaseIdentifiers() == true) {
+      lTableName = TABLE_NAME.toLowerCase(Locale.ROOT);
+    }
+    else {
+      lTableName = TABLE_NAME;
+    }
+    try (ResultSet lResultSet =
+        lMetaData.getTables(pConnection.getCatalog(), pConnection.getSchema(), lTableName, new String[] { "TABLE" })) {
+      return lResultSet.next();
+    }
+  }
+
+  /**
+   * Method creates the fingerprint table.
+   *
+   * @param pConnection Connection to the database. The parameter must not be null.
+   * @throws SQLException if the table can not be created.
+   */
+  private static void createTable( Connection pConnection ) throws SQLException {
+    try (Statement lStatement = pConnection.createStatement()) {
+      lStatement.executeUpdate("CREATE TABLE " + TABLE_NAME
+          + " (PERSISTENCE_UNIT VARCHAR(255) NOT NULL PRIMARY KEY, FINGERPRINT VARCHAR(64) NOT NULL,"
+          + " VALIDATED_AT TIMESTAMP NOT NULL)");
+    }
+  }
+}
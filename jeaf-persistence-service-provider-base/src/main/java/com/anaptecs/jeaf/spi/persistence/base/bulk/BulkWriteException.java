@@ -0,0 +1,78 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.bulk;
+
+import javax.persistence.PersistenceException;
+
+import com.anaptecs.jeaf.spi.persistence.PersistentObject;
+
+/**
+ * Exception is thrown if a {@link BulkWriter} was unable to write a row. All chunks before the chunk of the failing row
+ * were committed, the chunk of the failing row was rolled back.
+ *
+ * @author JEAF Development Team
+ */
+public class BulkWriteException extends PersistenceException {
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * Index of the failing row within the written stream or -1 if the failing row is unknown.
+   */
+  private final long rowIndex;
+
+  /**
+   * Failing object. The object is not serialized with the exception.
+   */
+  private final transient PersistentObject failedObject;
+
+  /**
+   * Number of rows that were committed before the failure.
+   */
+  private final long committedRows;
+
+  /**
+   * Initialize object.
+   *
+   * @param pRowIndex Index of the failing row within the written stream or -1 if it is unknown.
+   * @param pFailedObject Failing object. The parameter may be null if the failing row is unknown.
+   * @param pCommittedRows Number of rows that were committed before the failure.
+   * @param pCause Cause of the failure. The parameter may be null.
+   */
+  public BulkWriteException( long pRowIndex, PersistentObject pFailedObject, long pCommittedRows, Throwable pCause ) {
+    super("Bulk write failed at row " + pRowIndex + " (" + (pFailedObject != null ? pFailedObject.getClass().getName()
+        : "unknown") + "). " + pCommittedRows + " rows were committed before.", pCause);
+    rowIndex = pRowIndex;
+    failedObject = pFailedObject;
+    committedRows = pCommittedRows;
+  }
+
+  /**
+   * Method returns the index of the failing row within the written stream.
+   *
+   * @return long Index starting with 0 or -1 if the failing row could not be determined.
+   */
+  public long getRowIndex( ) {
+    return rowIndex;
+  }
+
+  /**
+   * Method returns the object that could not be written.
+   *
+   * @return {@link PersistentObject} Failing object or null if it could not be determined.
+   */
+  public PersistentObject getFailedObject( ) {
+    return failedObject;
+  }
+
+  /**
+   * Method returns the number of rows that were committed before the failure.
+   *
+   * @return long Number of committed rows.
+   */
+  public long getCommittedRows( ) {
+    return committedRows;
+  }
+}
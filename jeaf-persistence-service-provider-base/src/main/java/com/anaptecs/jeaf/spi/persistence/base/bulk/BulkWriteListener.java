@@ -0,0 +1,21 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.bulk;
+
+/**
+ * Interface is implemented by classes that want to be informed about the progress of a {@link BulkWriter}.
+ *
+ * @author JEAF Development Team
+ */
+public interface BulkWriteListener {
+  /**
+   * Method is called after a chunk was committed.
+   *
+   * @param pChunkRows Number of rows of the committed chunk.
+   * @param pCommittedRows Number of rows that were committed so far including the passed chunk.
+   */
+  void chunkCommitted( int pChunkRows, long pCommittedRows );
+}
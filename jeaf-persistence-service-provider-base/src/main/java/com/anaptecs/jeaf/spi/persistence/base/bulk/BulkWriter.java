@@ -0,0 +1,268 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.bulk;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import javax.persistence.FlushModeType;
+
+import org.hibernate.Session;
+
+import com.anaptecs.jeaf.spi.persistence.PersistentObject;
+import com.anaptecs.jeaf.spi.persistence.base.ObjectIDGenerator;
+import com.anaptecs.jeaf.xfun.api.XFun;
+import com.anaptecs.jeaf.xfun.api.checks.Check;
+
+/**
+ * Class writes large numbers of new persistent objects with high throughput. Objects are written in chunks of the
+ * configured chunk size. Each chunk is written in its own transaction with its own entity manager so that the memory
+ * consumption does not depend on the number of written objects.
+ *
+ * Within a chunk object ids are reserved in blocks per class id (see {@link ObjectIDGenerator#getNextObjectIDs}) and
+ * objects are grouped by their type. Types are written in the order in which they first appear within the chunk. Thus
+ * consecutive inserts of the same type can be executed as JDBC batches of the configured batch size.
+ *
+ * If a chunk can not be committed it is rolled back and written again row by row with a new entity manager in order
+ * to find the failing row (see {@link BulkWriteException}). This transaction is always rolled back. All previous
+ * chunks remain committed and no further chunks are written. Object ids are assigned before a chunk is written and
+ * can not be removed afterwards. Thus objects of a chunk that was rolled back keep their object id although they were
+ * not written. Such objects can not be passed to a bulk writer again.
+ *
+ * Bulk writers use their own entity manager and transactions and thus must not be used within the transaction of a
+ * component. Instances are not thread-safe.
+ *
+ * @author JEAF Development Team
+ */
+public final class BulkWriter {
+  /**
+   * Number of statements per JDBC batch that is used if no other value is defined.
+   */
+  public static final int DEFAULT_BATCH_SIZE = 50;
+
+  /**
+   * Number of objects per transaction that is used if no other value is defined.
+   */
+  public static final int DEFAULT_CHUNK_SIZE = 1000;
+
+  /**
+   * Factory of the entity manager that is used to write the objects. The reference is never null.
+   */
+  private final EntityManagerFactory entityManagerFactory;
+
+  /**
+   * Generator that is used to assign object ids. The reference is never null.
+   */
+  private final ObjectIDGenerator objectIDGenerator;
+
+  /**
+   * Number of insert statements that are sent to the database as one JDBC batch. It only limits the size of a batch.
+   * Objects of one chunk are written in as many batches as required.
+   */
+  private final int batchSize;
+
+  /**
+   * Number of objects that are written within one transaction. The persistence context of a transaction contains at
+   * most this number of objects.
+   */
+  private final int chunkSize;
+
+  /**
+   * Initialize object.
+   *
+   * @param pEntityManagerFactory Factory of the entity manager that is used to write the objects. The parameter must
+   * not be null.
+   * @param pObjectIDGenerator Generator that is used to assign object ids. The parameter must not be null.
+   * @param pBatchSize Number of statements per JDBC batch. The value must be greater than 0.
+   * @param pChunkSize Number of objects per transaction. The value must be greater than 0.
+   */
+  public BulkWriter( EntityManagerFactory pEntityManagerFactory, ObjectIDGenerator pObjectIDGenerator, int pBatchSize,
+      int pChunkSize ) {
+    // Check parameters
+    Check.checkInvalidParameterNull(pEntityManagerFactory, "pEntityManagerFactory");
+    Check.checkInvalidParameterNull(pObjectIDGenerator, "pObjectIDGenerator");
+    if (pBatchSize <= 0 || pChunkSize <= 0) {
+      throw new IllegalArgumentException(
+          "Batch size (" + pBatchSize + ") and chunk size (" + pChunkSize + ") have to be greater than 0.");
+    }
+
+    entityManagerFactory = pEntityManagerFactory;
+    objectIDGenerator = pObjectIDGenerator;
+    batchSize = pBatchSize;
+    chunkSize = pChunkSize;
+  }
+
+  /**
+   * Method writes the passed objects.
+   *
+   * @param pObjects New objects that should be written. Object ids must not have been assigned to them yet. The
+   * parameter must not be null.
+   * @return long Number of written objects.
+   * @throws BulkWriteException if an object can not be written. Objects of the failed chunk keep the object ids that
+   * were assigned to them.
+   */
+  public long write( Stream<? extends PersistentObject> pObjects ) {
+    return this.write(pObjects, null);
+  }
+
+  /**
+   * Method writes the passed objects and reports the progress to the passed listener.
+   *
+   * @param pObjects New objects that should be written. Object ids must not have been assigned to them yet. The
+   * parameter must not be null.
+   * @param pListener Listener that is informed about every committed chunk. The parameter may be null.
+   * @return long Number of written objects.
+   * @throws BulkWriteException if an object can not be written. Objects of the failed chunk keep the object ids that
+   * were assigned to them.
+   */
+  public long write( Stream<? extends PersistentObject> pObjects, BulkWriteListener pListener ) {
+    // Check parameter
+    Check.checkInvalidParameterNull(pObjects, "pObjects");
+
+    long lStart = System.nanoTime();
+    long lCommittedRows = 0;
+    List<PersistentObject> lChunk = new ArrayList<>(chunkSize);
+    Iterator<? extends PersistentObject> lIterator = pObjects.iterator();
+    while (lIterator.hasNext() == true) {
+      lChunk.add(lIterator.next());
+      if (lChunk.size() == chunkSize || lIterator.hasNext() == false) {
+        this.writeChunk(lChunk, lCommittedRows);
+        lCommittedRows += lChunk.size();
+        if (pListener != null) {
+          pListener.chunkCommitted(lChunk.size(), lCommittedRows);
+        }
+        lChunk.clear();
+      }
+    }
+
+    long lDuration = Math.max((System.nanoTime() - lStart) / 1000000, 1);
+    XFun.getTrace().info("Bulk write of " + lCommittedRows + " objects took " + lDuration + "ms ("
+        + lCommittedRows * 1000 / lDuration + " objects/s).");
+    return lCommittedRows;
+  }
+
+  /**
+   * Method creates a new entity manager that writes objects with JDBC batches of the configured size.
+   *
+   * @return {@link EntityManager} Created entity manager. The method never returns null.
+   */
+  private EntityManager createEntityManager( ) {
+    EntityManager lEntityManager = entityManagerFactory.createEntityManager();
+    lEntityManager.setFlushMode(FlushModeType.COMMIT);
+    lEntityManager.unwrap(Session.class).setJdbcBatchSize(batchSize);
+    return lEntityManager;
+  }
+
+  /**
+   * Method writes the passed chunk within its own transaction and entity manager.
+   *
+   * @param pChunk Objects of the chunk in the order of the stream. The parameter must not be null.
+   * @param pCommittedRows Number of rows that were committed before this chunk.
+   */
+  private void writeChunk( List<PersistentObject> pChunk, long pCommittedRows ) {
+    // Group objects by their type and assign object ids in blocks.
+    Map<Class<?>, List<PersistentObject>> lObjectsByType = new LinkedHashMap<>();
+    for (PersistentObject lNext : pChunk) {
+      lObjectsByType.computeIfAbsent(lNext.getClass(), pType -> new ArrayList<>()).add(lNext);
+    }
+    for (List<PersistentObject> lObjects : lObjectsByType.values()) {
+      List<String> lObjectIDs =
+          objectIDGenerator.getNextObjectIDs(lObjects.get(0).getClassID(), lObjects.size());
+      for (int i = 0; i < lObjects.size(); i++) {
+        lObjects.get(i).assignObjectID(lObjectIDs.get(i));
+      }
+    }
+
+    // Entity managers must not be used any longer after a failure. Thus the failing row is searched with a new one.
+    RuntimeException lFailure = null;
+    EntityManager lEntityManager = this.createEntityManager();
+    try {
+      lEntityManager.getTransaction().begin();
+      for (List<PersistentObject> lObjects : lObjectsByType.values()) {
+        for (PersistentObject lNext : lObjects) {
+          lEntityManager.persist(lNext);
+        }
+      }
+      lEntityManager.getTransaction().commit();
+    }
+    catch (RuntimeException e) {
+      this.rollback(lEntityManager);
+      lFailure = e;
+    }
+    finally {
+      lEntityManager.close();
+    }
+    if (lFailure != null) {
+      throw this.locateFailure(pChunk, pCommittedRows, lFailure);
+    }
+  }
+
+  /**
+   * Method writes the objects of a failed chunk row by row with a new entity manager in order to find the failing row.
+   * The transaction is always rolled back.
+   *
+   * @param pChunk Objects of the failed chunk in the order of the stream. The parameter must not be null.
+   * @param pCommittedRows Number of rows that were committed before the chunk.
+   * @param pCause Exception that was thrown when the chunk was written. The parameter must not be null.
+   * @return {@link BulkWriteException} Exception that describes the failure. The method never returns null.
+   */
+  private BulkWriteException locateFailure( List<PersistentObject> pChunk, long pCommittedRows,
+      RuntimeException pCause ) {
+    BulkWriteException lException = null;
+    EntityManager lEntityManager = this.createEntityManager();
+    try {
+      lEntityManager.getTransaction().begin();
+      for (int i = 0; i < pChunk.size() && lException == null; i++) {
+        try {
+          // Objects of the failed chunk are detached after the roll back and thus have to be merged.
+          lEntityManager.merge(pChunk.get(i));
+          lEntityManager.flush();
+        }
+        catch (RuntimeException e) {
+          lException = new BulkWriteException(pCommittedRows + i, pChunk.get(i), pCommittedRows, e);
+        }
+      }
+    }
+    catch (RuntimeException e) {
+      XFun.getTrace().warn("Unable to determine failing row of bulk write.", e);
+    }
+    finally {
+      try {
+        this.rollback(lEntityManager);
+      }
+      finally {
+        lEntityManager.close();
+      }
+    }
+
+    // Failure could not be reproduced row by row, e.g. because it occurred during commit.
+    if (lException == null) {
+      lException = new BulkWriteException(-1, null, pCommittedRows, pCause);
+    }
+    XFun.getTrace().error(lException.getMessage(), lException.getCause());
+    return lException;
+  }
+
+  /**
+   * Method rolls back the transaction of the passed entity manager if it is still active. Objects that were written
+   * within the transaction keep their object ids.
+   *
+   * @param pEntityManager Entity manager whose transaction should be rolled back. The parameter must not be null.
+   */
+  private void rollback( EntityManager pEntityManager ) {
+    EntityTransaction lTransaction = pEntityManager.getTransaction();
+    if (lTransaction.isActive() == true) {
+      lTransaction.rollback();
+    }
+  }
+}
@@ -0,0 +1,156 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.cache;
+
+/**
+ * Class estimates how often elements were accessed recently using a Count-Min sketch with 4 bit counters. It is the
+ * TinyLFU part of {@link TinyLfuCache}. In order to adapt to changing access patterns all counters are halved after
+ * a sample of ten times the maximum size of the cache was recorded.
+ *
+ * The class is not thread-safe. Callers have to synchronize access.
+ *
+ * @author JEAF Development Team
+ */
+final class FrequencySketch {
+  /**
+   * Seeds of the four hash functions of the sketch.
+   */
+  private static final long[] SEEDS =
+      { 0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L };
+
+  /**
+   * Mask that clears the highest bit of all 4 bit counters of a long after it was shifted by one.
+   */
+  private static final long RESET_MASK = 0x7777777777777777L;
+
+  /**
+   * Maximum value of a counter.
+   */
+  private static final int MAX_COUNT = 15;
+
+  /**
+   * Counters of the sketch. Each long contains 16 counters with 4 bit each.
+   */
+  private final long[] table;
+
+  /**
+   * Mask that maps a hash to an index of {@link #table}. The size of the table is a power of 2.
+   */
+  private final int tableMask;
+
+  /**
+   * Number of increments after which all counters are halved.
+   */
+  private final int sampleSize;
+
+  /**
+   * Number of increments since the last reset.
+   */
+  private int size;
+
+  /**
+   * Initialize object.
+   *
+   * @param pMaximumSize Maximum size of the cache whose accesses are recorded. The value must be greater than 0.
+   */
+  FrequencySketch( int pMaximumSize ) {
+    int lTableSize = Integer.highestOneBit(Math.max(pMaximumSize, 16) - 1) << 1;
+    table = new long[lTableSize];
+    tableMask = lTableSize - 1;
+    sampleSize = (int) Math.min(10L * pMaximumSize, Integer.MAX_VALUE);
+  }
+
+  /**
+   * Method returns the estimated number of recent accesses of the passed element.
+   *
+   * @param pElement Element. The parameter must not be null.
+   * @return int Estimated frequency between 0 and 15.
+   */
+  int frequency( Object pElement ) {
+    int lHash = spread(pElement.hashCode());
+    int lStart = (lHash & 3) << 2;
+    int lFrequency = MAX_COUNT;
+    for (int i = 0; i < 4; i++) {
+      int lIndex = this.indexOf(lHash, i);
+      int lCount = (int) ((table[lIndex] >>> ((lStart + i) << 2)) & 0xfL);
+      lFrequency = Math.min(lFrequency, lCount);
+    }
+    return lFrequency;
+  }
+
+  /**
+   * Method records an access of the passed element.
+   *
+   * @param pElement Element. The parameter must not be null.
+   */
+  void increment( Object pElement ) {
+    int lHash = spread(pElement.hashCode());
+    int lStart = (lHash & 3) << 2;
+    boolean lAdded = false;
+    for (int i = 0; i < 4; i++) {
+      lAdded |= this.incrementAt(this.indexOf(lHash, i), lStart + i);
+    }
+    if (lAdded == true && ++size >= sampleSize) {
+      this.reset();
+    }
+  }
+
+  /**
+   * Method increments the passed counter unless it already reached its maximum.
+   *
+   * @param pIndex Index of the long within the table.
+   * @param pCounter Index of the counter within the long.
+   * @return boolean Method returns true if the counter was incremented.
+   */
+  private boolean incrementAt( int pIndex, int pCounter ) {
+    int lOffset = pCounter << 2;
+    long lMask = 0xfL << lOffset;
+    boolean lIncremented;
+    if ((table[pIndex] & lMask) != lMask) {
+      table[pIndex] += 1L << lOffset;
+      lIncremented = true;
+    }
+    else {
+      lIncremented = false;
+    }
+    return lIncremented;
+  }
+
+  /**
+   * Method halves all counters so that old accesses lose their weight.
+   */
+  private void reset( ) {
+    for (int i = 0; i < table.length; i++) {
+      table[i] = (table[i] >>> 1) & RESET_MASK;
+    }
+    size = size >>> 1;
+  }
+
+  /**
+   * Method returns the index of the long within the table for the passed hash function.
+   *
+   * @param pHash Spread hash code of the element.
+   * @param pFunction Index of the hash function.
+   * @return int Index within the table.
+   */
+  private int indexOf( int pHash, int pFunction ) {
+    long lHash = (pHash + SEEDS[pFunction]) * SEEDS[pFunction];
+    lHash += lHash >>> 32;
+    return ((int) lHash) & tableMask;
+  }
+
+  /**
+   * Method improves the distribution of the passed hash code.
+   *
+   * @param pHashCode Hash code of an element.
+   * @return int Spread hash code.
+   */
+  private static int spread( int pHashCode ) {
+    int lHash = ((pHashCode >>> 16) ^ pHashCode) * 0x45d9f3b;
+    lHash = ((lHash >>> 16) ^ lHash) * 0x45d9f3b;
+    return (lHash >>> 16) ^ lHash;
+  }
+}
@@ -0,0 +1,164 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.cache;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.anaptecs.jeaf.xfun.api.checks.Check;
+
+/**
+ * Class contains all cache invalidations of a transaction. Invalidations either affect a single entry or a whole
+ * region. Batches are serializable so that they can be sent to other nodes.
+ *
+ * @author JEAF Development Team
+ */
+public final class InvalidationBatch implements Serializable {
+  /**
+   * Default serial version UID.
+   */
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * ID of the node that published the batch.
+   */
+  private final String originNodeID;
+
+  /**
+   * Scope of the invalidations. Only region factories with the same scope (name of the persistence unit) are affected.
+   */
+  private final String scope;
+
+  /**
+   * Invalidations in the order in which they occurred.
+   */
+  private final List<Invalidation> invalidations;
+
+  /**
+   * Initialize object.
+   *
+   * @param pOriginNodeID ID of the node that publishes the batch. The parameter must not be null.
+   * @param pScope Scope of the invalidations. The parameter must not be null.
+   * @param pInvalidations Invalidations of the batch. The parameter must not be null.
+   */
+  public InvalidationBatch( String pOriginNodeID, String pScope, List<Invalidation> pInvalidations ) {
+    // Check parameters
+    Check.checkInvalidParameterNull(pOriginNodeID, "pOriginNodeID");
+    Check.checkInvalidParameterNull(pScope, "pScope");
+    Check.checkInvalidParameterNull(pInvalidations, "pInvalidations");
+
+    originNodeID = pOriginNodeID;
+    scope = pScope;
+    invalidations = Collections.unmodifiableList(new ArrayList<>(pInvalidations));
+  }
+
+  /**
+   * Method returns the ID of the node that published the batch. Nodes use it to ignore their own batches.
+   *
+   * @return {@link String} ID of the origin node. The method never returns null.
+   */
+  public String getOriginNodeID( ) {
+    return originNodeID;
+  }
+
+  /**
+   * Method returns the scope of the invalidations.
+   *
+   * @return {@link String} Name of the persistence unit whose region factories are affected. The method never returns
+   * null.
+   */
+  public String getScope( ) {
+    return scope;
+  }
+
+  /**
+   * Method returns all invalidations of this batch.
+   *
+   * @return {@link List} Invalidations of the batch. The method never returns null.
+   */
+  public List<Invalidation> getInvalidations( ) {
+    return invalidations;
+  }
+
+  /**
+   * @see Object#toString()
+   */
+  @Override
+  public String toString( ) {
+    return "InvalidationBatch[origin=" + originNodeID + ", scope=" + scope + ", invalidations=" + invalidations + "]";
+  }
+
+  /**
+   * Class describes the invalidation of a single cache entry or of a whole region.
+   */
+  public static final class Invalidation implements Serializable {
+    /**
+     * Default serial version UID.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Name of the affected region. The reference is never null.
+     */
+    private final String regionName;
+
+    /**
+     * Key of the invalidated entry or null if the whole region is invalidated.
+     */
+    private final Serializable key;
+
+    /**
+     * Initialize object.
+     *
+     * @param pRegionName Name of the affected region. The parameter must not be null.
+     * @param pKey Key of the invalidated entry. The parameter may be null if the whole region is invalidated.
+     */
+    public Invalidation( String pRegionName, Serializable pKey ) {
+      // Check parameter
+      Check.checkInvalidParameterNull(pRegionName, "pRegionName");
+
+      regionName = pRegionName;
+      key = pKey;
+    }
+
+    /**
+     * Method returns the name of the affected region.
+     *
+     * @return {@link String} Name of the region. The method never returns null.
+     */
+    public String getRegionName( ) {
+      return regionName;
+    }
+
+    /**
+     * Method returns the key of the invalidated entry.
+     *
+     * @return {@link Serializable} Key of the entry or null if the whole region is invalidated.
+     */
+    public Serializable getKey( ) {
+      return key;
+    }
+
+    /**
+     * Method checks whether the whole region is invalidated.
+     *
+     * @return boolean Method returns true if the whole region is invalidated.
+     */
+    public boolean isRegionInvalidation( ) {
+      return key == null;
+    }
+
+    /**
+     * @see Object#toString()
+     */
+    @Override
+    public String toString( ) {
+      return regionName + (key != null ? "#" + key : "#*");
+    }
+  }
+}
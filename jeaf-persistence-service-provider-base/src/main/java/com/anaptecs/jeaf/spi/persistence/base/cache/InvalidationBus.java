@@ -0,0 +1,40 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.cache;
+
+/**
+ * Interface defines the SPI through which the second-level caches of several nodes inform each other about changed
+ * data (see {@link TinyLfuRegionFactory#INVALIDATION_BUS_PROPERTY}). Implementations are responsible for the transport,
+ * e.g. via JMS, multicast or a message broker. Batches have to be delivered to the listeners of all nodes including
+ * the publishing one. Listeners ignore batches that they published themselves.
+ *
+ * Implementations require a public default constructor. Within a JVM all region factories that use the same
+ * implementation share one instance.
+ *
+ * @author JEAF Development Team
+ */
+public interface InvalidationBus {
+  /**
+   * Method publishes the passed batch of invalidations to all nodes.
+   *
+   * @param pBatch Invalidations that should be published. The parameter must not be null.
+   */
+  void publish( InvalidationBatch pBatch );
+
+  /**
+   * Method subscribes the passed listener to all batches that are published through this bus.
+   *
+   * @param pListener Listener that should be subscribed. The parameter must not be null.
+   */
+  void subscribe( InvalidationListener pListener );
+
+  /**
+   * Method removes the passed listener from this bus.
+   *
+   * @param pListener Listener that should be unsubscribed. The parameter must not be null.
+   */
+  void unsubscribe( InvalidationListener pListener );
+}
@@ -0,0 +1,68 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.cache;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.anaptecs.jeaf.tools.api.Tools;
+import com.anaptecs.jeaf.xfun.api.checks.Check;
+
+/**
+ * Class is used to resolve the invalidation bus of a second-level cache. Besides the built-in bus
+ * <code>loopback</code> also custom implementations of {@link InvalidationBus} can be used by configuring their fully
+ * qualified class name. As a bus connects all region factories of a JVM with their peers, only one instance per
+ * implementation is created.
+ *
+ * @author JEAF Development Team
+ */
+public final class InvalidationBusFactory {
+  /**
+   * Map contains all buses that were already created. The configured name is used as key.
+   */
+  private static final ConcurrentHashMap<String, InvalidationBus> BUSES = new ConcurrentHashMap<>();
+
+  /**
+   * Constructor is private to ensure that no instances of this class will be created.
+   */
+  private InvalidationBusFactory( ) {
+    // Nothing to do.
+  }
+
+  /**
+   * Method returns the invalidation bus with the passed name.
+   *
+   * @param pBusName Name of a built-in bus or fully qualified class name of an implementation of
+   * {@link InvalidationBus}. The parameter must not be null.
+   * @return {@link InvalidationBus} Invalidation bus. The method never returns null.
+   */
+  public static InvalidationBus getInvalidationBus( String pBusName ) {
+    // Check parameter
+    Check.checkInvalidParameterNull(pBusName, "pBusName");
+
+    String lBusName = pBusName.trim();
+    if (LoopbackInvalidationBus.NAME.equalsIgnoreCase(lBusName) == true) {
+      lBusName = LoopbackInvalidationBus.NAME;
+    }
+    return BUSES.computeIfAbsent(lBusName, InvalidationBusFactory::createInvalidationBus);
+  }
+
+  /**
+   * Method creates the invalidation bus with the passed name.
+   *
+   * @param pBusName Name of a built-in bus or fully qualified class name. The parameter must not be null.
+   * @return {@link InvalidationBus} Created invalidation bus. The method never returns null.
+   */
+  private static InvalidationBus createInvalidationBus( String pBusName ) {
+    InvalidationBus lBus;
+    if (LoopbackInvalidationBus.NAME.equals(pBusName) == true) {
+      lBus = new LoopbackInvalidationBus();
+    }
+    else {
+      lBus = Tools.getReflectionTools().newInstance(pBusName, InvalidationBus.class);
+    }
+    return lBus;
+  }
+}
@@ -0,0 +1,166 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.cache;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+
+import com.anaptecs.jeaf.spi.persistence.base.cache.InvalidationBatch.Invalidation;
+import com.anaptecs.jeaf.xfun.api.XFun;
+
+/**
+ * Class collects the cache invalidations of the transactions of a region factory and publishes them through its
+ * {@link InvalidationBus}. Invalidations that happen within a transaction are batched and only published after the
+ * transaction was committed. Invalidations of rolled back transactions are discarded as the changes never became
+ * visible. Invalidations outside of a transaction are published immediately.
+ *
+ * @author JEAF Development Team
+ */
+final class InvalidationCollector {
+  /**
+   * Bus through which invalidations are published. The reference is never null.
+   */
+  private final InvalidationBus bus;
+
+  /**
+   * ID of the node on which the region factory runs. The reference is never null.
+   */
+  private final String nodeID;
+
+  /**
+   * Scope of the invalidations. The reference is never null.
+   */
+  private final String scope;
+
+  /**
+   * Invalidations of all sessions whose transaction is still in progress.
+   */
+  private final Map<SharedSessionContractImplementor, List<Invalidation>> pending = new ConcurrentHashMap<>();
+
+  /**
+   * Initialize object.
+   *
+   * @param pBus Bus through which invalidations are published. The parameter must not be null.
+   * @param pNodeID ID of the node on which the region factory runs. The parameter must not be null.
+   * @param pScope Scope of the invalidations. The parameter must not be null.
+   */
+  InvalidationCollector( InvalidationBus pBus, String pNodeID, String pScope ) {
+    bus = pBus;
+    nodeID = pNodeID;
+    scope = pScope;
+  }
+
+  /**
+   * Method returns the ID of the node on which the region factory runs.
+   *
+   * @return {@link String} ID of the node. The method never returns null.
+   */
+  String getNodeID( ) {
+    return nodeID;
+  }
+
+  /**
+   * Method returns the scope of the invalidations, i.e. the name of the persistence unit.
+   *
+   * @return {@link String} Scope of the invalidations. The method never returns null.
+   */
+  String getScope( ) {
+    return scope;
+  }
+
+  /**
+   * Method records the invalidation of the passed cache entry.
+   *
+   * @param pRegionName Name of the region. The parameter must not be null.
+   * @param pKey Key of the entry or null if the whole region is invalidated. Keys that are not serializable invalidate
+   * the whole region.
+   * @param pSession Session within which the invalidation happened. The parameter may be null.
+   */
+  void invalidate( String pRegionName, Object pKey, SharedSessionContractImplementor pSession ) {
+    Serializable lKey = pKey instanceof Serializable ? (Serializable) pKey : null;
+    Invalidation lInvalidation = new Invalidation(pRegionName, lKey);
+
+    if (pSession != null && pSession.isTransactionInProgress() == true) {
+      List<Invalidation> lInvalidations = pending.get(pSession);
+      if (lInvalidations == null) {
+        lInvalidations = new ArrayList<>();
+        pending.put(pSession, lInvalidations);
+        pSession.getTransactionCoordinator().getLocalSynchronizations()
+            .registerSynchronization(new PublishingSynchronization(pSession));
+      }
+      lInvalidations.add(lInvalidation);
+    }
+    else {
+      this.publish(Collections.singletonList(lInvalidation));
+    }
+  }
+
+  /**
+   * Method publishes the passed invalidations. As the transaction is already completed errors are only traced.
+   *
+   * @param pInvalidations Invalidations that should be published. The parameter must not be null.
+   */
+  private void publish( List<Invalidation> pInvalidations ) {
+    InvalidationBatch lBatch = new InvalidationBatch(nodeID, scope, pInvalidations);
+    try {
+      bus.publish(lBatch);
+    }
+    catch (RuntimeException e) {
+      XFun.getTrace().error("Unable to publish cache invalidations " + lBatch + ". Other nodes may return stale data.",
+          e);
+    }
+  }
+
+  /**
+   * Class publishes the invalidations of a session after its transaction was committed.
+   */
+  private final class PublishingSynchronization implements Synchronization {
+    /**
+     * Session whose invalidations are published. The reference is never null.
+     */
+    private final SharedSessionContractImplementor session;
+
+    /**
+     * Initialize object.
+     *
+     * @param pSession Session whose invalidations should be published. The parameter must not be null.
+     */
+    PublishingSynchronization( SharedSessionContractImplementor pSession ) {
+      session = pSession;
+    }
+
+    /**
+     * @see Synchronization#beforeCompletion()
+     */
+    @Override
+    public void beforeCompletion( ) {
+      // Nothing to do.
+    }
+
+    /**
+     * Method publishes the pending invalidations of the session if its transaction was committed and discards them
+     * otherwise.
+     *
+     * @see Synchronization#afterCompletion(int)
+     */
+    @Override
+    public void afterCompletion( int pStatus ) {
+      List<Invalidation> lInvalidations = pending.remove(session);
+      if (pStatus == Status.STATUS_COMMITTED && lInvalidations != null && lInvalidations.isEmpty() == false) {
+        InvalidationCollector.this.publish(lInvalidations);
+      }
+    }
+  }
+}
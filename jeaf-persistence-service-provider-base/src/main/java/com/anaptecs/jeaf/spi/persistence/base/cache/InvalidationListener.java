@@ -0,0 +1,20 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.cache;
+
+/**
+ * Interface is implemented by all classes that want to receive invalidations from an {@link InvalidationBus}.
+ *
+ * @author JEAF Development Team
+ */
+public interface InvalidationListener {
+  /**
+   * Method is called for every batch of invalidations that is published through the bus.
+   *
+   * @param pBatch Published invalidations. The parameter is never null.
+   */
+  void onInvalidation( InvalidationBatch pBatch );
+}
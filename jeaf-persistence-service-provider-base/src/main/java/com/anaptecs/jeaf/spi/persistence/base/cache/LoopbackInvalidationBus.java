@@ -0,0 +1,104 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import com.anaptecs.jeaf.xfun.api.XFun;
+import com.anaptecs.jeaf.xfun.api.checks.Check;
+
+/**
+ * Class implements an {@link InvalidationBus} that delivers batches synchronously to all listeners within the same JVM.
+ * It is intended for tests where several region factories simulate different nodes. Batches are serialized and
+ * deserialized before they are delivered so that they behave like batches that were received over the network.
+ *
+ * @author JEAF Development Team
+ */
+public class LoopbackInvalidationBus implements InvalidationBus {
+  /**
+   * Name under which the bus can be configured.
+   */
+  public static final String NAME = "loopback";
+
+  /**
+   * Listeners to which published batches are delivered.
+   */
+  private final List<InvalidationListener> listeners = new CopyOnWriteArrayList<>();
+
+  /**
+   * Initialize object.
+   */
+  public LoopbackInvalidationBus( ) {
+    // Nothing to do.
+  }
+
+  /**
+   * @see InvalidationBus#publish(InvalidationBatch)
+   */
+  @Override
+  public void publish( InvalidationBatch pBatch ) {
+    // Check parameter
+    Check.checkInvalidParameterNull(pBatch, "pBatch");
+
+    for (InvalidationListener lNext : listeners) {
+      try {
+        lNext.onInvalidation(copy(pBatch));
+      }
+      catch (RuntimeException e) {
+        XFun.getTrace().error("Listener " + lNext + " failed to process " + pBatch, e);
+      }
+    }
+  }
+
+  /**
+   * @see InvalidationBus#subscribe(InvalidationListener)
+   */
+  @Override
+  public void subscribe( InvalidationListener pListener ) {
+    // Check parameter
+    Check.checkInvalidParameterNull(pListener, "pListener");
+
+    listeners.add(pListener);
+  }
+
+  /**
+   * @see InvalidationBus#unsubscribe(InvalidationListener)
+   */
+  @Override
+  public void unsubscribe( InvalidationListener pListener ) {
+    // Check parameter
+    Check.checkInvalidParameterNull(pListener, "pListener");
+
+    listeners.remove(pListener);
+  }
+
+  /**
+   * Method creates a copy of the passed batch through serialization.
+   *
+   * @param pBatch Batch that should be copied. The parameter must not be null.
+   * @return {@link InvalidationBatch} Copy of the batch. The method never returns null.
+   */
+  private static InvalidationBatch copy( InvalidationBatch pBatch ) {
+    try {
+      ByteArrayOutputStream lBytes = new ByteArrayOutputStream();
+      try (ObjectOutputStream lOut = new ObjectOutputStream(lBytes)) {
+        lOut.writeObject(pBatch);
+      }
+      try (ObjectInputStream lIn = new ObjectInputStream(new ByteArrayInputStream(lBytes.toByteArray()))) {
+        return (InvalidationBatch) lIn.readObject();
+      }
+    }
+    catch (IOException | ClassNotFoundException e) {
+      throw new IllegalStateException("Unable to serialize " + pBatch, e);
+    }
+  }
+}
@@ -0,0 +1,569 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.cache;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.anaptecs.jeaf.xfun.api.checks.Check;
+
+/**
+ * Class implements a concurrent, size-bounded in-memory cache that uses W-TinyLFU as eviction policy. New entries are
+ * added to a small LRU window (1% of the maximum size). Entries that leave the window have to compete with the least
+ * recently used entry of the main space for admission. The entry that was accessed less often according to a
+ * {@link FrequencySketch} is evicted. The main space is a segmented LRU whose protected segment takes 80% of its size.
+ * This way one-hit wonders like entities that are read once by a report can not flush frequently used entries.
+ *
+ * Entries are stored in a {@link ConcurrentHashMap} so that reads do not block. Updates of the eviction policy are
+ * guarded by a lock. Reads only update the policy if the lock is free, so under heavy contention some accesses are
+ * not recorded. Writes always update the policy.
+ *
+ * Optionally entries expire after a fixed time to live that starts when they were written.
+ *
+ * @author JEAF Development Team
+ */
+public final class TinyLfuCache<K, V> {
+  /**
+   * Percentage of the maximum size that is used for the admission window.
+   */
+  private static final int WINDOW_PERCENTAGE = 1;
+
+  /**
+   * Percentage of the main space that is used for the protected segment.
+   */
+  private static final int PROTECTED_PERCENTAGE = 80;
+
+  /**
+   * Cached entries with their key. The map is read without locking.
+   */
+  private final ConcurrentHashMap<K, Node<K, V>> data;
+
+  /**
+   * Lock that guards the eviction policy, i.e. the access queues and the frequency sketch.
+   */
+  private final ReentrantLock lock = new ReentrantLock();
+
+  /**
+   * Sketch with the estimated access frequency of keys. It decides which entries are admitted to the main space.
+   */
+  private final FrequencySketch sketch;
+
+  /**
+   * Maximum number of entries of the cache.
+   */
+  private final int maximumSize;
+
+  /**
+   * Maximum number of entries within the admission window. The value is at least 1.
+   */
+  private final int windowMaximum;
+
+  /**
+   * Maximum number of entries within the protected segment of the main space.
+   */
+  private final int protectedMaximum;
+
+  /**
+   * Time to live of entries in nanoseconds. 0 means that entries never expire.
+   */
+  private final long timeToLive;
+
+  /**
+   * Admission window that contains new entries in access order.
+   */
+  private final AccessQueue<K, V> window = new AccessQueue<>();
+
+  /**
+   * Probation segment of the main space. It contains entries that were admitted to the main space but were not used
+   * again since then.
+   */
+  private final AccessQueue<K, V> probation = new AccessQueue<>();
+
+  /**
+   * Protected segment of the main space. It contains entries that were used again while they were on probation.
+   */
+  private final AccessQueue<K, V> protectedSegment = new AccessQueue<>();
+
+  /**
+   * Number of requests for which a value was found in the cache.
+   */
+  private final LongAdder hits = new LongAdder();
+
+  /**
+   * Number of requests for which no value was found in the cache.
+   */
+  private final LongAdder misses = new LongAdder();
+
+  /**
+   * Number of entries that were evicted because the cache exceeded its maximum size.
+   */
+  private final LongAdder evictions = new LongAdder();
+
+  /**
+   * Initialize object.
+   *
+   * @param pMaximumSize Maximum number of entries. The value must be greater than 0.
+   * @param pTimeToLive Time after which entries expire once they were written. 0 means that entries never expire.
+   * @param pTimeUnit Unit of the time to live. The parameter must not be null.
+   */
+  public TinyLfuCache( int pMaximumSize, long pTimeToLive, TimeUnit pTimeUnit ) {
+    // Check parameters
+    Check.checkInvalidParameterNull(pTimeUnit, "pTimeUnit");
+    if (pMaximumSize <= 0) {
+      throw new IllegalArgumentException("Maximum size of cache must be greater than 0 but is " + pMaximumSize);
+    }
+
+    maximumSize = pMaximumSize;
+    windowMaximum = Math.max(1, pMaximumSize * WINDOW_PERCENTAGE / 100);
+    protectedMaximum = (pMaximumSize - windowMaximum) * PROTECTED_PERCENTAGE / 100;
+    timeToLive = pTimeUnit.toNanos(Math.max(pTimeToLive, 0));
+    data = new ConcurrentHashMap<>(Math.min(pMaximumSize, 1024));
+    sketch = new FrequencySketch(pMaximumSize);
+  }
+
+  /**
+   * Method returns the cached value of the passed key.
+   *
+   * @param pKey Key of the entry. The parameter must not be null.
+   * @return V Cached value or null if the key is not cached or its entry expired.
+   */
+  public V get( K pKey ) {
+    Node<K, V> lNode = data.get(pKey);
+    V lValue;
+    if (lNode != null && this.isExpired(lNode) == false) {
+      lValue = lNode.value;
+      hits.increment();
+    }
+    else {
+      if (lNode != null) {
+        this.removeNode(lNode);
+      }
+      lValue = null;
+      misses.increment();
+    }
+
+    // Record access if this does not block.
+    if (lock.tryLock() == true) {
+      try {
+        sketch.increment(pKey);
+        if (lValue != null && lNode.queue != null) {
+          this.onAccess(lNode);
+        }
+      }
+      finally {
+        lock.unlock();
+      }
+    }
+    return lValue;
+  }
+
+  /**
+   * Method checks whether the passed key is cached. The check is not recorded as access.
+   *
+   * @param pKey Key of the entry. The parameter must not be null.
+   * @return boolean Method returns true if the key is cached and its entry did not expire.
+   */
+  public boolean containsKey( K pKey ) {
+    Node<K, V> lNode = data.get(pKey);
+    return lNode != null && this.isExpired(lNode) == false;
+  }
+
+  /**
+   * Method adds the passed entry to the cache. An existing entry with the same key is replaced. If the cache exceeds
+   * its maximum size entries are evicted.
+   *
+   * @param pKey Key of the entry. The parameter must not be null.
+   * @param pValue Value of the entry. The parameter must not be null.
+   */
+  public void put( K pKey, V pValue ) {
+    // Check parameters
+    Check.checkInvalidParameterNull(pKey, "pKey");
+    Check.checkInvalidParameterNull(pValue, "pValue");
+
+    long lExpiresAt = timeToLive > 0 ? System.nanoTime() + timeToLive : 0;
+    lock.lock();
+    try {
+      sketch.increment(pKey);
+      Node<K, V> lNode = data.get(pKey);
+      if (lNode != null) {
+        lNode.value = pValue;
+        lNode.expiresAt = lExpiresAt;
+        this.onAccess(lNode);
+      }
+      else {
+        lNode = new Node<>(pKey, pValue, lExpiresAt);
+        data.put(pKey, lNode);
+        window.addLast(lNode);
+        this.evictEntries();
+      }
+    }
+    finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Method removes the entry with the passed key from the cache.
+   *
+   * @param pKey Key of the entry. The parameter must not be null.
+   */
+  public void remove( K pKey ) {
+    lock.lock();
+    try {
+      Node<K, V> lNode = data.remove(pKey);
+      if (lNode != null) {
+        this.unlink(lNode);
+      }
+    }
+    finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Method removes all entries from the cache. Statistics are not reset.
+   */
+  public void clear( ) {
+    lock.lock();
+    try {
+      data.clear();
+      window.clear();
+      probation.clear();
+      protectedSegment.clear();
+    }
+    finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Method returns the number of cached entries. Expired entries that were not removed yet are included.
+   *
+   * @return int Number of cached entries.
+   */
+  public int size( ) {
+    return data.size();
+  }
+
+  /**
+   * Method returns the maximum number of entries of the cache.
+   *
+   * @return int Maximum number of entries.
+   */
+  public int getMaximumSize( ) {
+    return maximumSize;
+  }
+
+  /**
+   * Method returns the time to live of cache entries.
+   *
+   * @param pTimeUnit Unit in which the time to live should be returned. The parameter must not be null.
+   * @return long Time to live or 0 if entries never expire.
+   */
+  public long getTimeToLive( TimeUnit pTimeUnit ) {
+    return pTimeUnit.convert(timeToLive, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Method returns how often a requested key was found in the cache.
+   *
+   * @return long Number of cache hits.
+   */
+  public long getHitCount( ) {
+    return hits.sum();
+  }
+
+  /**
+   * Method returns how often a requested key was not found in the cache.
+   *
+   * @return long Number of cache misses.
+   */
+  public long getMissCount( ) {
+    return misses.sum();
+  }
+
+  /**
+   * Method returns how many entries were evicted because the cache exceeded its maximum size.
+   *
+   * @return long Number of evicted entries.
+   */
+  public long getEvictionCount( ) {
+    return evictions.sum();
+  }
+
+  /**
+   * Method returns the ratio of cache hits to all requests.
+   *
+   * @return double Hit ratio between 0 and 1. If the cache was not used yet 0 is returned.
+   */
+  public double getHitRatio( ) {
+    long lHits = hits.sum();
+    long lRequests = lHits + misses.sum();
+    return lRequests > 0 ? (double) lHits / lRequests : 0;
+  }
+
+  /**
+   * Method checks whether the passed node expired.
+   *
+   * @param pNode Node that should be checked. The parameter must not be null.
+   * @return boolean Method returns true if the node expired.
+   */
+  private boolean isExpired( Node<K, V> pNode ) {
+    return timeToLive > 0 && System.nanoTime() - pNode.expiresAt > 0;
+  }
+
+  /**
+   * Method removes the passed node unless it was already replaced.
+   *
+   * @param pNode Node that should be removed. The parameter must not be null.
+   */
+  private void removeNode( Node<K, V> pNode ) {
+    lock.lock();
+    try {
+      if (data.remove(pNode.key, pNode) == true) {
+        this.unlink(pNode);
+      }
+    }
+    finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Method moves the passed node according to the segmented LRU policy. The caller must hold the lock.
+   *
+   * @param pNode Node that was accessed. The parameter must not be null.
+   */
+  private void onAccess( Node<K, V> pNode ) {
+    if (pNode.queue == window) {
+      window.moveToLast(pNode);
+    }
+    else if (pNode.queue == probation) {
+      // Entry was used again so it is promoted to the protected segment.
+      probation.remove(pNode);
+      protectedSegment.addLast(pNode);
+      while (protectedSegment.size > protectedMaximum) {
+        Node<K, V> lDemoted = protectedSegment.first();
+        protectedSegment.remove(lDemoted);
+        probation.addLast(lDemoted);
+      }
+    }
+    else if (pNode.queue == protectedSegment) {
+      protectedSegment.moveToLast(pNode);
+    }
+  }
+
+  /**
+   * Method evicts entries until the cache does not exceed its maximum size. The caller must hold the lock.
+   */
+  private void evictEntries( ) {
+    // Entries that leave the window become candidates for admission to the main space.
+    Node<K, V> lCandidate = null;
+    while (window.size > windowMaximum) {
+      Node<K, V> lNode = window.first();
+      window.remove(lNode);
+      probation.addLast(lNode);
+      if (lCandidate == null) {
+        lCandidate = lNode;
+      }
+    }
+
+    while (data.size() > maximumSize) {
+      Node<K, V> lVictim = probation.first();
+      if (lVictim == null) {
+        lVictim = protectedSegment.first();
+      }
+      if (lVictim == null) {
+        lVictim = window.first();
+      }
+
+      // Candidate and victim compete. On a tie the candidate is rejected as the victim was used longer.
+      Node<K, V> lEvicted;
+      if (lCandidate == null || lCandidate == lVictim) {
+        lEvicted = lVictim;
+        lCandidate = null;
+      }
+      else if (sketch.frequency(lCandidate.key) > sketch.frequency(lVictim.key)) {
+        lEvicted = lVictim;
+      }
+      else {
+        lEvicted = lCandidate;
+        lCandidate = probation.next(lCandidate);
+      }
+      data.remove(lEvicted.key, lEvicted);
+      this.unlink(lEvicted);
+      evictions.increment();
+    }
+  }
+
+  /**
+   * Method removes the passed node from the queue it belongs to. The caller must hold the lock.
+   *
+   * @param pNode Node that should be removed. The parameter must not be null.
+   */
+  private void unlink( Node<K, V> pNode ) {
+    if (pNode.queue != null) {
+      pNode.queue.remove(pNode);
+    }
+  }
+
+  /**
+   * @see Object#toString()
+   */
+  @Override
+  public String toString( ) {
+    return "TinyLfuCache[size=" + this.size() + ", maximumSize=" + maximumSize + ", hits=" + this.getHitCount()
+        + ", misses=" + this.getMissCount() + ", evictions=" + this.getEvictionCount() + "]";
+  }
+
+  /**
+   * Class represents a cache entry. Nodes are linked within the queue of their segment.
+   */
+  private static final class Node<K, V> {
+    /**
+     * Key of the entry. The reference is only null for the head of an access queue.
+     */
+    private final K key;
+
+    /**
+     * Cached value. The reference is only null for the head of an access queue.
+     */
+    private volatile V value;
+
+    /**
+     * Point in time (see {@link System#nanoTime()}) when the entry expires. It is only used if the cache has a time to
+     * live.
+     */
+    private volatile long expiresAt;
+
+    /**
+     * Access queue to which the node currently belongs or null if it does not belong to any queue.
+     */
+    private AccessQueue<K, V> queue;
+
+    /**
+     * Previous node within the access queue.
+     */
+    private Node<K, V> previous;
+
+    /**
+     * Next node within the access queue.
+     */
+    private Node<K, V> next;
+
+    /**
+     * Initialize object.
+     *
+     * @param pKey Key of the entry. The parameter may only be null for the head of an access queue.
+     * @param pValue Cached value. The parameter may only be null for the head of an access queue.
+     * @param pExpiresAt Point in time when the entry expires or 0 if it never expires.
+     */
+    Node( K pKey, V pValue, long pExpiresAt ) {
+      key = pKey;
+      value = pValue;
+      expiresAt = pExpiresAt;
+    }
+  }
+
+  /**
+   * Class implements a doubly-linked queue of nodes in access order. The least recently used node is the first one.
+   */
+  private static final class AccessQueue<K, V> {
+    /**
+     * Sentinel node that links the first and the last node of the queue. The reference is never null.
+     */
+    private final Node<K, V> head = new Node<>(null, null, 0);
+
+    /**
+     * Number of nodes within the queue.
+     */
+    private int size;
+
+    /**
+     * Initialize object.
+     */
+    AccessQueue( ) {
+      head.previous = head;
+      head.next = head;
+    }
+
+    /**
+     * Method returns the least recently used node of the queue.
+     *
+     * @return {@link Node} First node of the queue or null if the queue is empty.
+     */
+    Node<K, V> first( ) {
+      return head.next != head ? head.next : null;
+    }
+
+    /**
+     * Method returns the node that follows the passed one within this queue.
+     *
+     * @param pNode Node whose successor should be returned. The parameter must not be null.
+     * @return {@link Node} Next node or null if the passed node is the last one or does not belong to this queue.
+     */
+    Node<K, V> next( Node<K, V> pNode ) {
+      return pNode.queue == this && pNode.next != head ? pNode.next : null;
+    }
+
+    /**
+     * Method adds the passed node as most recently used node to the queue.
+     *
+     * @param pNode Node that should be added. The node must not belong to any queue. The parameter must not be null.
+     */
+    void addLast( Node<K, V> pNode ) {
+      pNode.previous = head.previous;
+      pNode.next = head;
+      head.previous.next = pNode;
+      head.previous = pNode;
+      pNode.queue = this;
+      size++;
+    }
+
+    /**
+     * Method removes the passed node from the queue.
+     *
+     * @param pNode Node that should be removed. The node must belong to this queue. The parameter must not be null.
+     */
+    void remove( Node<K, V> pNode ) {
+      pNode.previous.next = pNode.next;
+      pNode.next.previous = pNode.previous;
+      pNode.previous = null;
+      pNode.next = null;
+      pNode.queue = null;
+      size--;
+    }
+
+    /**
+     * Method moves the passed node to the end of the queue as it was used again.
+     *
+     * @param pNode Node that was used. The node must belong to this queue. The parameter must not be null.
+     */
+    void moveToLast( Node<K, V> pNode ) {
+      this.remove(pNode);
+      this.addLast(pNode);
+    }
+
+    /**
+     * Method removes all nodes from the queue.
+     */
+    void clear( ) {
+      Node<K, V> lNode = head.next;
+      while (lNode != head) {
+        Node<K, V> lNext = lNode.next;
+        lNode.queue = null;
+        lNode.previous = null;
+        lNode.next = null;
+        lNode = lNext;
+      }
+      head.previous = head;
+      head.next = head;
+      size = 0;
+    }
+  }
+}
@@ -0,0 +1,284 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.cache;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.boot.spi.SessionFactoryOptions;
+import org.hibernate.cache.cfg.spi.DomainDataRegionBuildingContext;
+import org.hibernate.cache.cfg.spi.DomainDataRegionConfig;
+import org.hibernate.cache.spi.support.DomainDataStorageAccess;
+import org.hibernate.cache.spi.support.RegionFactoryTemplate;
+import org.hibernate.cache.spi.support.StorageAccess;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+
+import com.anaptecs.jeaf.tools.api.Tools;
+import com.anaptecs.jeaf.xfun.api.XFun;
+import com.anaptecs.jeaf.xfun.api.checks.Check;
+
+/**
+ * Class implements a Hibernate second-level cache region factory that stores the data of every region in its own
+ * {@link TinyLfuCache}. The factory is configured through the following properties of the persistence unit:
+ * <ul>
+ * <li>{@link #MAX_ENTRIES_PROPERTY}: Maximum number of entries per region. Default is
+ * {@value #DEFAULT_MAX_ENTRIES}.</li>
+ * <li>{@link #TIME_TO_LIVE_PROPERTY}: Time to live of entries in seconds. By default entries do not expire.</li>
+ * <li>{@link #REGION_PROPERTY_PREFIX}<code>&lt;region&gt;.max_entries</code> and
+ * {@link #REGION_PROPERTY_PREFIX}<code>&lt;region&gt;.ttl</code>: Settings of a single region.</li>
+ * </ul>
+ * The timestamps region of the query cache never uses the default time to live as otherwise outdated query results
+ * could be returned.
+ *
+ * If several nodes use the same database, their caches can be kept consistent through an {@link InvalidationBus} that
+ * is configured with {@link #INVALIDATION_BUS_PROPERTY}. Changes of entities and collections are then invalidated on
+ * all other nodes after the transaction was committed. Query results are not invalidated across nodes so on clusters
+ * they should only be cached with a short time to live.
+ *
+ * @author JEAF Development Team
+ */
+public class TinyLfuRegionFactory extends RegionFactoryTemplate {
+  /**
+   * Default serial version UID.
+   */
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * Name of the property that defines the maximum number of entries per region.
+   */
+  public static final String MAX_ENTRIES_PROPERTY = "jeaf.persistence.cache.max_entries";
+
+  /**
+   * Name of the property that defines the time to live of entries in seconds.
+   */
+  public static final String TIME_TO_LIVE_PROPERTY = "jeaf.persistence.cache.ttl";
+
+  /**
+   * Prefix of the properties that define the settings of a single region.
+   */
+  public static final String REGION_PROPERTY_PREFIX = "jeaf.persistence.cache.region.";
+
+  /**
+   * Name of the property that defines the {@link InvalidationBus} through which changes are published to other nodes.
+   * Either the name of a built-in bus (<code>loopback</code>) or a fully qualified class name can be configured. By
+   * default no invalidations are published.
+   */
+  public static final String INVALIDATION_BUS_PROPERTY = "jeaf.persistence.cache.invalidation_bus";
+
+  /**
+   * Hibernate property that contains the name of the persistence unit. It is used as scope of invalidations.
+   */
+  private static final String PERSISTENCE_UNIT_NAME_PROPERTY = "hibernate.ejb.persistenceUnitName";
+
+  /**
+   * Default maximum number of entries per region.
+   */
+  public static final int DEFAULT_MAX_ENTRIES = 10000;
+
+  /**
+   * Configuration of the session factory. The map is empty until the factory was started.
+   */
+  private Map<?, ?> configValues = Collections.emptyMap();
+
+  /**
+   * Caches of all regions. The name of the region is used as key.
+   */
+  private final Map<String, TinyLfuCache<Object, Object>> caches = new ConcurrentHashMap<>();
+
+  /**
+   * ID of this region factory within the cluster.
+   */
+  private final String nodeID = UUID.randomUUID().toString();
+
+  /**
+   * Collector of invalidations for other nodes. The reference is null if no invalidation bus is configured.
+   */
+  private volatile InvalidationCollector invalidationCollector;
+
+  /**
+   * Listener that applies the invalidations of other nodes. The reference is null if no invalidation bus is configured.
+   */
+  private InvalidationListener invalidationListener;
+
+  /**
+   * Initialize object.
+   */
+  public TinyLfuRegionFactory( ) {
+    // Nothing to do.
+  }
+
+  /**
+   * Method connects the region factory to the configured invalidation bus.
+   *
+   * @see RegionFactoryTemplate#prepareForUse(SessionFactoryOptions, Map)
+   */
+  @Override
+  protected void prepareForUse( SessionFactoryOptions pSettings, @SuppressWarnings("rawtypes") Map pConfigValues ) {
+    configValues = pConfigValues;
+
+    // Connect to other nodes
+    Object lBusName = configValues.get(INVALIDATION_BUS_PROPERTY);
+    if (lBusName != null && Tools.getStringTools().isRealString(lBusName.toString()) == true) {
+      Object lScope = configValues.get(PERSISTENCE_UNIT_NAME_PROPERTY);
+      InvalidationBus lBus = InvalidationBusFactory.getInvalidationBus(lBusName.toString());
+      invalidationCollector = new InvalidationCollector(lBus, nodeID, lScope != null ? lScope.toString() : "");
+      invalidationListener = this::applyInvalidations;
+      lBus.subscribe(invalidationListener);
+      XFun.getTrace().info("Second-level cache " + nodeID + " publishes invalidations through " + lBus);
+    }
+  }
+
+  /**
+   * Method disconnects the region factory from the invalidation bus and clears all caches.
+   *
+   * @see RegionFactoryTemplate#releaseFromUse()
+   */
+  @Override
+  protected void releaseFromUse( ) {
+    if (invalidationCollector != null) {
+      InvalidationBusFactory.getInvalidationBus(configValues.get(INVALIDATION_BUS_PROPERTY).toString())
+          .unsubscribe(invalidationListener);
+      invalidationCollector = null;
+      invalidationListener = null;
+    }
+    for (TinyLfuCache<Object, Object> lNext : caches.values()) {
+      lNext.clear();
+    }
+    caches.clear();
+  }
+
+  /**
+   * @see RegionFactoryTemplate#createDomainDataStorageAccess(DomainDataRegionConfig, DomainDataRegionBuildingContext)
+   */
+  @Override
+  protected DomainDataStorageAccess createDomainDataStorageAccess( DomainDataRegionConfig pRegionConfig,
+      DomainDataRegionBuildingContext pBuildingContext ) {
+    String lRegionName = pRegionConfig.getRegionName();
+    return new TinyLfuStorageAccess(lRegionName, this.createCache(lRegionName, true), invalidationCollector);
+  }
+
+  /**
+   * @see RegionFactoryTemplate#createQueryResultsRegionStorageAccess(String, SessionFactoryImplementor)
+   */
+  @Override
+  protected StorageAccess createQueryResultsRegionStorageAccess( String pRegionName,
+      SessionFactoryImplementor pSessionFactory ) {
+    return new TinyLfuStorageAccess(pRegionName, this.createCache(pRegionName, true), null);
+  }
+
+  /**
+   * Timestamps regions do not use the default time to live as expired timestamps could lead to stale query results.
+   *
+   * @see RegionFactoryTemplate#createTimestampsRegionStorageAccess(String, SessionFactoryImplementor)
+   */
+  @Override
+  protected StorageAccess createTimestampsRegionStorageAccess( String pRegionName,
+      SessionFactoryImplementor pSessionFactory ) {
+    return new TinyLfuStorageAccess(pRegionName, this.createCache(pRegionName, false), null);
+  }
+
+  /**
+   * Method creates the cache of the passed region.
+   *
+   * @param pRegionName Name of the region. The parameter must not be null.
+   * @param pUseDefaultTimeToLive Flag defines whether the default time to live applies to the region.
+   * @return {@link TinyLfuCache} Cache of the region. The method never returns null.
+   */
+  private TinyLfuCache<Object, Object> createCache( String pRegionName, boolean pUseDefaultTimeToLive ) {
+    int lMaxEntries = (int) this.getSetting(REGION_PROPERTY_PREFIX + pRegionName + ".max_entries",
+        this.getSetting(MAX_ENTRIES_PROPERTY, DEFAULT_MAX_ENTRIES));
+    long lDefaultTimeToLive = pUseDefaultTimeToLive ? this.getSetting(TIME_TO_LIVE_PROPERTY, 0) : 0;
+    long lTimeToLive = this.getSetting(REGION_PROPERTY_PREFIX + pRegionName + ".ttl", lDefaultTimeToLive);
+
+    TinyLfuCache<Object, Object> lCache = new TinyLfuCache<>(Math.max(lMaxEntries, 1), lTimeToLive, TimeUnit.SECONDS);
+    caches.put(pRegionName, lCache);
+    XFun.getTrace().info("Created second-level cache region " + pRegionName + " with max_entries=" + lMaxEntries
+        + ", ttl=" + lTimeToLive + "s");
+    return lCache;
+  }
+
+  /**
+   * Method applies the invalidations of other nodes to the local caches.
+   *
+   * @param pBatch Invalidations that were published. The parameter must not be null.
+   */
+  private void applyInvalidations( InvalidationBatch pBatch ) {
+    InvalidationCollector lCollector = invalidationCollector;
+    if (lCollector != null && nodeID.equals(pBatch.getOriginNodeID()) == false
+        && lCollector.getScope().equals(pBatch.getScope()) == true) {
+      for (InvalidationBatch.Invalidation lNext : pBatch.getInvalidations()) {
+        TinyLfuCache<Object, Object> lCache = caches.get(lNext.getRegionName());
+        if (lCache != null) {
+          if (lNext.isRegionInvalidation() == true) {
+            lCache.clear();
+          }
+          else {
+            lCache.remove(lNext.getKey());
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Method returns the ID of this region factory within the cluster.
+   *
+   * @return {@link String} ID of the node. The method never returns null.
+   */
+  public String getNodeID( ) {
+    return nodeID;
+  }
+
+  /**
+   * Method returns the value of the passed numeric setting.
+   *
+   * @param pName Name of the setting. The parameter must not be null.
+   * @param pDefault Default value if the setting is not defined or invalid.
+   * @return long Value of the setting.
+   */
+  private long getSetting( String pName, long pDefault ) {
+    Object lValue = configValues.get(pName);
+    long lSetting;
+    if (lValue != null) {
+      try {
+        lSetting = Long.parseLong(lValue.toString().trim());
+      }
+      catch (NumberFormatException e) {
+        XFun.getTrace().warn("Invalid value '" + lValue + "' for cache setting " + pName + ". Using " + pDefault);
+        lSetting = pDefault;
+      }
+    }
+    else {
+      lSetting = pDefault;
+    }
+    return lSetting;
+  }
+
+  /**
+   * Method returns the cache of the passed region, e.g. to read its hit and miss statistics.
+   *
+   * @param pRegionName Name of the region. The parameter must not be null.
+   * @return {@link TinyLfuCache} Cache of the region or null if no such region exists.
+   */
+  public TinyLfuCache<Object, Object> getCache( String pRegionName ) {
+    // Check parameter
+    Check.checkInvalidParameterNull(pRegionName, "pRegionName");
+
+    return caches.get(pRegionName);
+  }
+
+  /**
+   * Method returns the caches of all regions.
+   *
+   * @return {@link Map} Caches of all regions. The name of the region is used as key. The method never returns null.
+   */
+  public Map<String, TinyLfuCache<Object, Object>> getCaches( ) {
+    return Collections.unmodifiableMap(caches);
+  }
+}
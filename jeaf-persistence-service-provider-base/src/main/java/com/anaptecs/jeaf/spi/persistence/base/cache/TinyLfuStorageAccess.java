@@ -0,0 +1,146 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.cache;
+
+import org.hibernate.cache.spi.support.DomainDataStorageAccess;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+
+/**
+ * Class connects a cache region of Hibernate with its {@link TinyLfuCache}. If an {@link InvalidationCollector} is set
+ * then all changes except loads from the database are also invalidated on other nodes.
+ *
+ * @author JEAF Development Team
+ */
+final class TinyLfuStorageAccess implements DomainDataStorageAccess {
+  /**
+   * Name of the region. The reference is never null.
+   */
+  private final String regionName;
+
+  /**
+   * Cache that stores the data of the region. The reference is never null.
+   */
+  private final TinyLfuCache<Object, Object> cache;
+
+  /**
+   * Collector for invalidations that have to be sent to other nodes. The reference may be null.
+   */
+  private final InvalidationCollector invalidationCollector;
+
+  /**
+   * Initialize object.
+   *
+   * @param pRegionName Name of the region. The parameter must not be null.
+   * @param pCache Cache that stores the data of the region. The parameter must not be null.
+   * @param pInvalidationCollector Collector for invalidations of other nodes. The parameter may be null.
+   */
+  TinyLfuStorageAccess( String pRegionName, TinyLfuCache<Object, Object> pCache,
+      InvalidationCollector pInvalidationCollector ) {
+    regionName = pRegionName;
+    cache = pCache;
+    invalidationCollector = pInvalidationCollector;
+  }
+
+  /**
+   * @see DomainDataStorageAccess#getFromCache(Object, SharedSessionContractImplementor)
+   */
+  @Override
+  public Object getFromCache( Object pKey, SharedSessionContractImplementor pSession ) {
+    return cache.get(pKey);
+  }
+
+  /**
+   * Method caches data that was loaded from the database. As the data did not change other nodes are not informed.
+   *
+   * @see DomainDataStorageAccess#putFromLoad(Object, Object, SharedSessionContractImplementor)
+   */
+  @Override
+  public void putFromLoad( Object pKey, Object pValue, SharedSessionContractImplementor pSession ) {
+    // Data was loaded from the database so other nodes do not have to be informed.
+    cache.put(pKey, pValue);
+  }
+
+  /**
+   * Method caches changed data and invalidates the entry on other nodes.
+   *
+   * @see DomainDataStorageAccess#putIntoCache(Object, Object, SharedSessionContractImplementor)
+   */
+  @Override
+  public void putIntoCache( Object pKey, Object pValue, SharedSessionContractImplementor pSession ) {
+    cache.put(pKey, pValue);
+    this.invalidate(pKey, pSession);
+  }
+
+  /**
+   * Method removes the entry from the cache and invalidates it on other nodes.
+   *
+   * @see DomainDataStorageAccess#removeFromCache(Object, SharedSessionContractImplementor)
+   */
+  @Override
+  public void removeFromCache( Object pKey, SharedSessionContractImplementor pSession ) {
+    cache.remove(pKey);
+    this.invalidate(pKey, pSession);
+  }
+
+  /**
+   * Method clears the cache and invalidates the whole region on other nodes.
+   *
+   * @see DomainDataStorageAccess#clearCache(SharedSessionContractImplementor)
+   */
+  @Override
+  public void clearCache( SharedSessionContractImplementor pSession ) {
+    cache.clear();
+    this.invalidate(null, pSession);
+  }
+
+  /**
+   * @see DomainDataStorageAccess#contains(Object)
+   */
+  @Override
+  public boolean contains( Object pKey ) {
+    return cache.containsKey(pKey);
+  }
+
+  /**
+   * @see DomainDataStorageAccess#evictData()
+   */
+  @Override
+  public void evictData( ) {
+    cache.clear();
+    this.invalidate(null, null);
+  }
+
+  /**
+   * @see DomainDataStorageAccess#evictData(Object)
+   */
+  @Override
+  public void evictData( Object pKey ) {
+    cache.remove(pKey);
+    this.invalidate(pKey, null);
+  }
+
+  /**
+   * Method clears the local cache when the region is released. Other nodes are not affected.
+   *
+   * @see DomainDataStorageAccess#release()
+   */
+  @Override
+  public void release( ) {
+    cache.clear();
+  }
+
+  /**
+   * Method invalidates the passed entry on other nodes if an invalidation collector is set.
+   *
+   * @param pKey Key of the entry or null if the whole region is affected.
+   * @param pSession Session within which the entry was changed. The parameter may be null.
+   */
+  private void invalidate( Object pKey, SharedSessionContractImplementor pSession ) {
+    if (invalidationCollector != null) {
+      invalidationCollector.invalidate(regionName, pKey, pSession);
+    }
+  }
+}
@@ -0,0 +1,73 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.enhancement;
+
+import java.lang.instrument.ClassFileTransformer;
+import java.lang.instrument.IllegalClassFormatException;
+import java.security.ProtectionDomain;
+
+import javax.persistence.spi.ClassTransformer;
+
+import com.anaptecs.jeaf.xfun.api.XFun;
+import com.anaptecs.jeaf.xfun.api.checks.Check;
+
+/**
+ * Class adapts a {@link ClassTransformer} of a persistence provider to the {@link ClassFileTransformer} interface of
+ * the JVM. Classes of the bootstrap class loader and classes that are loaded by a {@link TemporaryClassLoader} are not
+ * transformed.
+ *
+ * @author JEAF Development Team
+ */
+public final class ClassTransformerAdapter implements ClassFileTransformer {
+  /**
+   * Transformer of the persistence provider. The reference is never null.
+   */
+  private final ClassTransformer transformer;
+
+  /**
+   * Initialize object.
+   *
+   * @param pTransformer Transformer of the persistence provider. The parameter must not be null.
+   */
+  public ClassTransformerAdapter( ClassTransformer pTransformer ) {
+    // Check parameter
+    Check.checkInvalidParameterNull(pTransformer, "pTransformer");
+
+    transformer = pTransformer;
+  }
+
+  /**
+   * Method returns the transformer of the persistence provider.
+   *
+   * @return {@link ClassTransformer} Adapted transformer. The method never returns null.
+   */
+  public ClassTransformer getTransformer( ) {
+    return transformer;
+  }
+
+  /**
+   * @see ClassFileTransformer#transform(ClassLoader, String, Class, ProtectionDomain, byte[])
+   */
+  @Override
+  public byte[] transform( ClassLoader pLoader, String pClassName, Class<?> pClassBeingRedefined,
+      ProtectionDomain pProtectionDomain, byte[] pClassfileBuffer ) throws IllegalClassFormatException {
+
+    byte[] lResult = null;
+    if (pLoader != null && pLoader instanceof TemporaryClassLoader == false && pClassName != null) {
+      try {
+        lResult = transformer.transform(pLoader, pClassName, pClassBeingRedefined, pProtectionDomain, pClassfileBuffer);
+      }
+      // Exceptions would be swallowed by the JVM so at least we trace them.
+      catch (RuntimeException e) {
+        XFun.getTrace().error("Unable to transform class " + pClassName, e);
+        IllegalClassFormatException lException = new IllegalClassFormatException(e.getMessage());
+        lException.initCause(e);
+        throw lException;
+      }
+    }
+    return lResult;
+  }
+}
@@ -0,0 +1,171 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.enhancement;
+
+import java.lang.instrument.Instrumentation;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import javax.persistence.spi.ClassTransformer;
+
+import com.anaptecs.jeaf.xfun.api.checks.Check;
+
+/**
+ * Class implements a Java agent that provides access to the {@link Instrumentation} of the JVM. In JSE environments
+ * there is no container that applies the class transformers of a persistence provider. If the JVM is started with
+ * <code>-javaagent:jeaf-persistence-service-provider-base-&lt;version&gt;.jar</code> then the transformers that are
+ * registered through <code>PersistenceUnitInfo.addTransformer(...)</code> are applied to all classes that are loaded
+ * afterwards. This enables load-time bytecode enhancement (e.g. lazy
+ * attribute loading and in-line dirty tracking).
+ *
+ * @author JEAF Development Team
+ */
+public final class InstrumentationAgent {
+  /**
+   * Instrumentation that was passed to the agent. The reference is null if the agent was not started.
+   */
+  private static volatile Instrumentation instrumentation;
+
+  /**
+   * Transformers that are currently registered with the instrumentation of the JVM. The name of the persistence unit
+   * is used as key. Access to the map has to be synchronized on the map itself.
+   */
+  private static final Map<String, List<ClassTransformerAdapter>> TRANSFORMERS = new HashMap<>();
+
+  /**
+   * Constructor is private to ensure that no instances of this class will be created.
+   */
+  private InstrumentationAgent( ) {
+    // Nothing to do.
+  }
+
+  /**
+   * Method is called by the JVM if the agent is passed on the command line.
+   *
+   * @param pArguments Arguments of the agent. They are not used.
+   * @param pInstrumentation Instrumentation of the JVM. The parameter must not be null.
+   */
+  public static void premain( String pArguments, Instrumentation pInstrumentation ) {
+    instrumentation = pInstrumentation;
+  }
+
+  /**
+   * Method is called by the JVM if the agent is attached to a running JVM.
+   *
+   * @param pArguments Arguments of the agent. They are not used.
+   * @param pInstrumentation Instrumentation of the JVM. The parameter must not be null.
+   */
+  public static void agentmain( String pArguments, Instrumentation pInstrumentation ) {
+    instrumentation = pInstrumentation;
+  }
+
+  /**
+   * Method returns the instrumentation of the JVM.
+   *
+   * @return {@link Instrumentation} Instrumentation of the JVM or null if the agent was not started.
+   */
+  public static Instrumentation getInstrumentation( ) {
+    return instrumentation;
+  }
+
+  /**
+   * Method returns if the agent was started and class transformers can be applied.
+   *
+   * @return boolean Method returns true if the instrumentation of the JVM is available.
+   */
+  public static boolean isAvailable( ) {
+    return instrumentation != null;
+  }
+
+  /**
+   * Method registers the passed transformer of a persistence unit with the instrumentation of the JVM. A persistence
+   * provider registers its transformers again each time the entity manager factory of a persistence unit is created.
+   * Thus a transformer of the same class that was registered for the same persistence unit before is removed from the
+   * JVM. This way transformers of closed factories do not accumulate.
+   *
+   * @param pPersistenceUnitName Name of the persistence unit to which the transformer belongs. The parameter must not
+   * be null.
+   * @param pTransformer Transformer that should be registered. The parameter must not be null.
+   * @return boolean Method returns true if the transformer was registered and false if the agent was not started.
+   */
+  public static boolean addTransformer( String pPersistenceUnitName, ClassTransformer pTransformer ) {
+    // Check parameters
+    Check.checkInvalidParameterNull(pPersistenceUnitName, "pPersistenceUnitName");
+    Check.checkInvalidParameterNull(pTransformer, "pTransformer");
+
+    Instrumentation lInstrumentation = instrumentation;
+    boolean lRegistered;
+    if (lInstrumentation != null) {
+      ClassTransformerAdapter lAdapter = new ClassTransformerAdapter(pTransformer);
+      synchronized (TRANSFORMERS) {
+        List<ClassTransformerAdapter> lAdapters =
+            TRANSFORMERS.computeIfAbsent(pPersistenceUnitName, pKey -> new ArrayList<>(1));
+        Iterator<ClassTransformerAdapter> lIterator = lAdapters.iterator();
+        while (lIterator.hasNext()) {
+          ClassTransformerAdapter lNext = lIterator.next();
+          if (lNext.getTransformer().getClass() == pTransformer.getClass()) {
+            lInstrumentation.removeTransformer(lNext);
+            lIterator.remove();
+          }
+        }
+        lAdapters.add(lAdapter);
+        lInstrumentation.addTransformer(lAdapter);
+      }
+      lRegistered = true;
+    }
+    else {
+      lRegistered = false;
+    }
+    return lRegistered;
+  }
+
+  /**
+   * Method removes all transformers of the passed persistence unit from the instrumentation of the JVM. It should be
+   * called when the entity manager factory of the persistence unit is closed.
+   *
+   * @param pPersistenceUnitName Name of the persistence unit whose transformers should be removed. The parameter must
+   * not be null.
+   */
+  public static void removeTransformers( String pPersistenceUnitName ) {
+    // Check parameter
+    Check.checkInvalidParameterNull(pPersistenceUnitName, "pPersistenceUnitName");
+
+    synchronized (TRANSFORMERS) {
+      List<ClassTransformerAdapter> lAdapters = TRANSFORMERS.remove(pPersistenceUnitName);
+      Instrumentation lInstrumentation = instrumentation;
+      if (lAdapters != null && lInstrumentation != null) {
+        for (ClassTransformerAdapter lNext : lAdapters) {
+          lInstrumentation.removeTransformer(lNext);
+        }
+      }
+    }
+  }
+
+  /**
+   * Method returns the transformers that are currently registered for the passed persistence unit.
+   *
+   * @param pPersistenceUnitName Name of the persistence unit. The parameter must not be null.
+   * @return {@link List} Registered transformers of the persistence unit. The method never returns null.
+   */
+  public static List<ClassTransformer> getTransformers( String pPersistenceUnitName ) {
+    // Check parameter
+    Check.checkInvalidParameterNull(pPersistenceUnitName, "pPersistenceUnitName");
+
+    List<ClassTransformer> lTransformers = new ArrayList<>();
+    synchronized (TRANSFORMERS) {
+      List<ClassTransformerAdapter> lAdapters = TRANSFORMERS.get(pPersistenceUnitName);
+      if (lAdapters != null) {
+        for (ClassTransformerAdapter lNext : lAdapters) {
+          lTransformers.add(lNext.getTransformer());
+        }
+      }
+    }
+    return lTransformers;
+  }
+}
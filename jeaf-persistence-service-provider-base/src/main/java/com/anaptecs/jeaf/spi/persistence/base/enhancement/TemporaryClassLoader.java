@@ -0,0 +1,119 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.enhancement;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.anaptecs.jeaf.xfun.api.checks.Check;
+
+/**
+ * Class implements the temporary class loader that is returned by
+ * {@link javax.persistence.spi.PersistenceUnitInfo#getNewTempClassLoader()}. Persistence providers use it to inspect
+ * classes before they are enhanced. Therefore all application classes are defined again by this class loader from the
+ * class files of its parent. This way they are not loaded by the parent, which would make load-time enhancement
+ * impossible. Classes of the Java platform are always loaded by the parent.
+ *
+ * @author JEAF Development Team
+ */
+public final class TemporaryClassLoader extends ClassLoader {
+  /**
+   * Packages whose classes are always loaded by the parent class loader.
+   */
+  private static final String[] SHARED_PACKAGES = new String[] { "java.", "javax.", "jdk.", "sun.", "com.sun." };
+
+  static {
+    ClassLoader.registerAsParallelCapable();
+  }
+
+  /**
+   * Initialize object.
+   *
+   * @param pParent Class loader from which the class files are read. The parameter must not be null.
+   */
+  public TemporaryClassLoader( ClassLoader pParent ) {
+    super(pParent);
+    // Check parameter
+    Check.checkInvalidParameterNull(pParent, "pParent");
+  }
+
+  /**
+   * @see ClassLoader#loadClass(String, boolean)
+   */
+  @Override
+  protected Class<?> loadClass( String pName, boolean pResolve ) throws ClassNotFoundException {
+    Class<?> lClass;
+    if (this.isShared(pName) == true) {
+      lClass = super.loadClass(pName, pResolve);
+    }
+    else {
+      synchronized (this.getClassLoadingLock(pName)) {
+        lClass = this.findLoadedClass(pName);
+        if (lClass == null) {
+          byte[] lBytes = this.readClassFile(pName);
+          if (lBytes != null) {
+            lClass = this.defineClass(pName, lBytes, 0, lBytes.length);
+          }
+          else {
+            lClass = super.loadClass(pName, false);
+          }
+        }
+        if (pResolve == true) {
+          this.resolveClass(lClass);
+        }
+      }
+    }
+    return lClass;
+  }
+
+  /**
+   * Method checks if the passed class has to be loaded by the parent class loader.
+   *
+   * @param pName Name of the class. The parameter must not be null.
+   * @return boolean Method returns true if the class belongs to the Java platform.
+   */
+  private boolean isShared( String pName ) {
+    boolean lShared = false;
+    for (String lNext : SHARED_PACKAGES) {
+      if (pName.startsWith(lNext)) {
+        lShared = true;
+        break;
+      }
+    }
+    return lShared;
+  }
+
+  /**
+   * Method reads the class file of the passed class from the parent class loader.
+   *
+   * @param pName Name of the class. The parameter must not be null.
+   * @return byte[] Content of the class file or null if the parent class loader does not provide it.
+   * @throws ClassNotFoundException if the class file can not be read.
+   */
+  private byte[] readClassFile( String pName ) throws ClassNotFoundException {
+    InputStream lStream = this.getParent().getResourceAsStream(pName.replace('.', '/') + ".class");
+    byte[] lBytes;
+    if (lStream != null) {
+      try (InputStream lInputStream = lStream) {
+        ByteArrayOutputStream lOutputStream = new ByteArrayOutputStream();
+        byte[] lBuffer = new byte[4096];
+        int lRead;
+        while ((lRead = lInputStream.read(lBuffer)) != -1) {
+          lOutputStream.write(lBuffer, 0, lRead);
+        }
+        lBytes = lOutputStream.toByteArray();
+      }
+      catch (IOException e) {
+        throw new ClassNotFoundException("Unable to read class file of " + pName, e);
+      }
+    }
+    else {
+      lBytes = null;
+    }
+    return lBytes;
+  }
+}
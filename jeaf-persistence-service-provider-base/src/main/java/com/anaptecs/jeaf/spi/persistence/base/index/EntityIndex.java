@@ -0,0 +1,124 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.index;
+
+import java.io.BufferedReader;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.anaptecs.jeaf.xfun.api.XFun;
+import com.anaptecs.jeaf.xfun.api.checks.Check;
+
+/**
+ * Class provides access to the entity index of a jar file. The index is generated at build time by
+ * {@link EntityIndexGenerator} and lists all entities, embeddables, mapped superclasses and converters of the jar. If
+ * all jar files of a persistence unit provide an index then their classes are passed to the persistence provider as
+ * managed classes and scanning of the jar files for annotated classes is skipped.
+ *
+ * The index is a UTF-8 encoded text file with one fully qualified class name per line. Empty lines and lines starting
+ * with <code>#</code> are ignored.
+ *
+ * @author JEAF Development Team
+ */
+public final class EntityIndex {
+  /**
+   * Location of the index within a jar file.
+   */
+  public static final String INDEX_FILE = "META-INF/JEAF/Persistence/EntityIndex";
+
+  /**
+   * Character that starts a comment line within the index.
+   */
+  static final String COMMENT = "#";
+
+  /**
+   * Constructor is private to ensure that no instances of this class will be created.
+   */
+  private EntityIndex( ) {
+    // Nothing to do.
+  }
+
+  /**
+   * Method reads the entity index of the passed jar file or directory.
+   *
+   * @param pArchiveURL URL of the jar file or directory as it is returned by
+   * {@link javax.persistence.spi.PersistenceUnitInfo#getJarFileUrls()}. The parameter must not be null.
+   * @return {@link List} Names of all indexed classes or null if the archive does not contain an index.
+   */
+  public static List<String> readIndex( URL pArchiveURL ) {
+    // Check parameter
+    Check.checkInvalidParameterNull(pArchiveURL, "pArchiveURL");
+
+    List<String> lClassNames;
+    try {
+      URL lIndexURL = getIndexURL(pArchiveURL);
+      URLConnection lConnection = lIndexURL.openConnection();
+      // Caching would keep the jar file open.
+      lConnection.setUseCaches(false);
+      try (InputStream lStream = lConnection.getInputStream()) {
+        lClassNames = parseIndex(lStream);
+      }
+    }
+    catch (FileNotFoundException e) {
+      lClassNames = null;
+    }
+    catch (IOException e) {
+      XFun.getTrace().warn("Unable to read entity index of " + pArchiveURL, e);
+      lClassNames = null;
+    }
+    return lClassNames;
+  }
+
+  /**
+   * Method returns the URL of the index within the passed jar file or directory.
+   *
+   * @param pArchiveURL URL of the jar file or directory. The parameter must not be null.
+   * @return {@link URL} URL of the index. The method never returns null.
+   * @throws MalformedURLException if the URL of the index can not be created.
+   */
+  static URL getIndexURL( URL pArchiveURL ) throws MalformedURLException {
+    String lArchive = pArchiveURL.toExternalForm();
+    URL lIndexURL;
+    if (lArchive.endsWith("/")) {
+      lIndexURL = new URL(lArchive + INDEX_FILE);
+    }
+    else if (lArchive.startsWith("jar:")) {
+      lIndexURL = new URL(lArchive + "!/" + INDEX_FILE);
+    }
+    else {
+      lIndexURL = new URL("jar:" + lArchive + "!/" + INDEX_FILE);
+    }
+    return lIndexURL;
+  }
+
+  /**
+   * Method parses the content of an index.
+   *
+   * @param pStream Stream with the content of the index. The parameter must not be null.
+   * @return {@link List} Names of all indexed classes. The method never returns null.
+   * @throws IOException if the stream can not be read.
+   */
+  static List<String> parseIndex( InputStream pStream ) throws IOException {
+    BufferedReader lReader = new BufferedReader(new InputStreamReader(pStream, StandardCharsets.UTF_8));
+    List<String> lClassNames = new ArrayList<>();
+    String lLine;
+    while ((lLine = lReader.readLine()) != null) {
+      String lClassName = lLine.trim();
+      if (lClassName.isEmpty() == false && lClassName.startsWith(COMMENT) == false) {
+        lClassNames.add(lClassName);
+      }
+    }
+    return lClassNames;
+  }
+}
@@ -0,0 +1,266 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.index;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.annotation.Annotation;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import javax.persistence.Converter;
+import javax.persistence.Embeddable;
+import javax.persistence.Entity;
+import javax.persistence.MappedSuperclass;
+
+import com.anaptecs.jeaf.xfun.api.checks.Check;
+
+/**
+ * Class generates the entity index of a jar file (see {@link EntityIndex}) at build time. It is intended to be called
+ * after compilation, e.g. through the <code>exec-maven-plugin</code> in phase <code>process-classes</code>:
+ *
+ * <pre>
+ * java com.anaptecs.jeaf.spi.persistence.base.index.EntityIndexGenerator ${project.build.outputDirectory}
+ * </pre>
+ *
+ * The classpath has to contain all dependencies of the compiled classes as they are loaded (but not initialized) to
+ * check their annotations. If a class can not be loaded then no index is written and the build fails.
+ *
+ * @author JEAF Development Team
+ */
+public final class EntityIndexGenerator {
+  /**
+   * Annotations that mark classes that have to be known by the persistence provider.
+   */
+  private static final List<Class<? extends Annotation>> INDEXED_ANNOTATIONS =
+      Arrays.asList(Entity.class, Embeddable.class, MappedSuperclass.class, Converter.class);
+
+  /**
+   * Suffix of class files.
+   */
+  private static final String CLASS_FILE_SUFFIX = ".class";
+
+  /**
+   * Constructor is private to ensure that no instances of this class will be created.
+   */
+  private EntityIndexGenerator( ) {
+    // Nothing to do.
+  }
+
+  /**
+   * Method generates the entity index for the passed classes directory.
+   *
+   * @param pArguments The first argument is the directory that contains the compiled classes. The index is written to
+   * this directory.
+   * @throws IOException if the index can not be written.
+   */
+  public static void main( String[] pArguments ) throws IOException {
+    if (pArguments.length != 1) {
+      throw new IllegalArgumentException("Usage: " + EntityIndexGenerator.class.getName() + " <classes directory>");
+    }
+    File lClassesDirectory = new File(pArguments[0]);
+    List<String> lClassNames = generateIndex(lClassesDirectory, Thread.currentThread().getContextClassLoader());
+    writeIndex(lClassNames, lClassesDirectory);
+  }
+
+  /**
+   * Method determines all classes within the passed directory that have one of the indexed annotations.
+   *
+   * @param pClassesDirectory Directory with compiled classes. The parameter must not be null.
+   * @param pParentClassLoader Class loader that provides the dependencies of the compiled classes. The parameter must
+   * not be null.
+   * @return {@link List} Sorted list with the names of all indexed classes. The method never returns null.
+   * @throws IOException if the directory can not be read or if one of its classes can not be loaded.
+   */
+  public static List<String> generateIndex( File pClassesDirectory, ClassLoader pParentClassLoader )
+    throws IOException {
+    // Check parameters
+    Check.checkInvalidParameterNull(pClassesDirectory, "pClassesDirectory");
+    Check.checkInvalidParameterNull(pParentClassLoader, "pParentClassLoader");
+
+    List<String> lCandidates = new ArrayList<>();
+    collectClassNames(pClassesDirectory, "", lCandidates);
+
+    return selectIndexedClasses(lCandidates, pClassesDirectory, pParentClassLoader);
+  }
+
+  /**
+   * Method determines all classes within the passed archive that have one of the indexed annotations. This is the same
+   * scan that is done at build time but for archives that were built without an entity index.
+   *
+   * @param pArchive URL of a jar file or a directory with compiled classes. The parameter must not be null.
+   * @param pParentClassLoader Class loader that provides the dependencies of the archive's classes. The parameter must
+   * not be null.
+   * @return {@link List} Sorted list with the names of all indexed classes. The method never returns null.
+   * @throws IOException if the archive can not be read or if one of its classes can not be loaded.
+   */
+  public static List<String> generateIndex( URL pArchive, ClassLoader pParentClassLoader ) throws IOException {
+    // Check parameters
+    Check.checkInvalidParameterNull(pArchive, "pArchive");
+    Check.checkInvalidParameterNull(pParentClassLoader, "pParentClassLoader");
+
+    // Jar files of persistence units may also be defined relative to the working directory (e.g. file:lib/my.jar).
+    if ("file".equals(pArchive.getProtocol()) == false) {
+      throw new IOException("Archive " + pArchive + " is not a local file.");
+    }
+    File lFile;
+    try {
+      lFile = new File(URLDecoder.decode(pArchive.getPath(), StandardCharsets.UTF_8.name()));
+    }
+    catch (IllegalArgumentException e) {
+      throw new IOException("Archive " + pArchive + " is not a valid file URL.", e);
+    }
+
+    List<String> lClassNames;
+    if (lFile.isDirectory() == true) {
+      lClassNames = generateIndex(lFile, pParentClassLoader);
+    }
+    else {
+      List<String> lCandidates = new ArrayList<>();
+      try (JarFile lJarFile = new JarFile(lFile)) {
+        Enumeration<JarEntry> lEntries = lJarFile.entries();
+        while (lEntries.hasMoreElements()) {
+          String lName = lEntries.nextElement().getName();
+          if (lName.endsWith(CLASS_FILE_SUFFIX) && lName.endsWith("module-info.class") == false
+              && lName.endsWith("package-info.class") == false) {
+            lCandidates.add(lName.substring(0, lName.length() - CLASS_FILE_SUFFIX.length()).replace('/', '.'));
+          }
+        }
+      }
+      lClassNames = selectIndexedClasses(lCandidates, lFile, pParentClassLoader);
+    }
+    return lClassNames;
+  }
+
+  /**
+   * Method loads the passed candidates from the passed directory or jar file and returns those that have one of the
+   * indexed annotations. If a class can not be loaded then it is unknown whether it has to be indexed. As an incomplete
+   * index would silently hide entities from the persistence provider, no index is created in this case.
+   *
+   * @param pCandidates Names of all classes of the archive. The parameter must not be null.
+   * @param pArchive Directory or jar file that contains the classes. The parameter must not be null.
+   * @param pParentClassLoader Class loader that provides the dependencies of the archive's classes. The parameter must
+   * not be null.
+   * @return {@link List} Sorted list with the names of all indexed classes. The method never returns null.
+   * @throws IOException if the archive can not be read or if one of the candidates can not be loaded.
+   */
+  private static List<String> selectIndexedClasses( List<String> pCandidates, File pArchive,
+      ClassLoader pParentClassLoader ) throws IOException {
+
+    List<String> lClassNames = new ArrayList<>();
+    List<String> lFailures = new ArrayList<>();
+    try (URLClassLoader lClassLoader = new URLClassLoader(toURLs(pArchive), pParentClassLoader)) {
+      for (String lNext : pCandidates) {
+        try {
+          if (isIndexed(lNext, lClassLoader) == true) {
+            lClassNames.add(lNext);
+          }
+        }
+        catch (ClassNotFoundException | LinkageError e) {
+          lFailures.add(lNext + " (" + e + ")");
+        }
+      }
+    }
+    if (lFailures.isEmpty() == false) {
+      throw new IOException("Unable to create entity index for " + pArchive + " as the following classes can not be "
+          + "loaded. Please check that all their dependencies are on the classpath: " + String.join(", ", lFailures));
+    }
+    Collections.sort(lClassNames);
+    return lClassNames;
+  }
+
+  /**
+   * Method writes the passed class names as entity index into the passed directory.
+   *
+   * @param pClassNames Names of all indexed classes. The parameter must not be null.
+   * @param pOutputDirectory Root directory of the jar file's content. The parameter must not be null.
+   * @return {@link File} Written index file. The method never returns null.
+   * @throws IOException if the index can not be written.
+   */
+  public static File writeIndex( List<String> pClassNames, File pOutputDirectory ) throws IOException {
+    // Check parameters
+    Check.checkInvalidParameterNull(pClassNames, "pClassNames");
+    Check.checkInvalidParameterNull(pOutputDirectory, "pOutputDirectory");
+
+    File lIndexFile = new File(pOutputDirectory, EntityIndex.INDEX_FILE);
+    Files.createDirectories(lIndexFile.getParentFile().toPath());
+    try (Writer lWriter = new OutputStreamWriter(Files.newOutputStream(lIndexFile.toPath()), StandardCharsets.UTF_8)) {
+      lWriter.write(EntityIndex.COMMENT + " Generated by " + EntityIndexGenerator.class.getName() + "\n");
+      for (String lNext : pClassNames) {
+        lWriter.write(lNext);
+        lWriter.write("\n");
+      }
+    }
+    return lIndexFile;
+  }
+
+  /**
+   * Method collects the names of all classes within the passed directory recursively.
+   *
+   * @param pDirectory Directory that should be searched. The parameter must not be null.
+   * @param pPackagePrefix Package prefix of the classes within the directory. The parameter must not be null.
+   * @param pClassNames List to which the found class names are added. The parameter must not be null.
+   */
+  private static void collectClassNames( File pDirectory, String pPackagePrefix, List<String> pClassNames ) {
+    File[] lFiles = pDirectory.listFiles();
+    if (lFiles != null) {
+      for (File lNext : lFiles) {
+        String lName = lNext.getName();
+        if (lNext.isDirectory() == true) {
+          collectClassNames(lNext, pPackagePrefix + lName + ".", pClassNames);
+        }
+        else if (lName.endsWith(CLASS_FILE_SUFFIX) && lName.equals("module-info.class") == false
+            && lName.equals("package-info.class") == false) {
+          pClassNames.add(pPackagePrefix + lName.substring(0, lName.length() - CLASS_FILE_SUFFIX.length()));
+        }
+      }
+    }
+  }
+
+  /**
+   * Method checks if the passed class has one of the indexed annotations.
+   *
+   * @param pClassName Name of the class. The parameter must not be null.
+   * @param pClassLoader Class loader that is used to load the class. The parameter must not be null.
+   * @return boolean Method returns true if the class has to be indexed.
+   * @throws ClassNotFoundException if the class can not be found.
+   */
+  private static boolean isIndexed( String pClassName, ClassLoader pClassLoader ) throws ClassNotFoundException {
+    boolean lIndexed = false;
+    Class<?> lClass = Class.forName(pClassName, false, pClassLoader);
+    for (Class<? extends Annotation> lNext : INDEXED_ANNOTATIONS) {
+      if (lClass.isAnnotationPresent(lNext) == true) {
+        lIndexed = true;
+        break;
+      }
+    }
+    return lIndexed;
+  }
+
+  /**
+   * Method converts the passed directory or jar file into an URL array as required by {@link URLClassLoader}.
+   *
+   * @param pDirectory Directory or jar file. The parameter must not be null.
+   * @return {@link URL} Array with one URL. The method never returns null.
+   * @throws MalformedURLException if the directory can not be converted.
+   */
+  private static URL[] toURLs( File pDirectory ) throws MalformedURLException {
+    return new URL[] { pDirectory.toURI().toURL() };
+  }
+}
@@ -0,0 +1,326 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.jdbc;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import com.anaptecs.jeaf.xfun.api.XFun;
+import com.anaptecs.jeaf.xfun.api.checks.Check;
+
+/**
+ * Class collects statement level statistics of the JDBC connections of a persistence unit. Executions are grouped by
+ * their SQL shape (see {@link #toShape(String)}) and executions that take longer than a threshold are kept in a bounded
+ * slow query log.
+ *
+ * Statistics are only recorded if property {@link #ENABLED_PROPERTY} of the persistence unit is set to
+ * <code>true</code>. In this case the connections of the persistence unit are wrapped by {@link MonitoredDataSource} or
+ * {@link MonitoredDriver}. Otherwise connections are not wrapped at all.
+ *
+ * @author JEAF Development Team
+ */
+public final class JdbcStatistics {
+  /**
+   * Name of the property that enables the statistics for a persistence unit.
+   */
+  public static final String ENABLED_PROPERTY = "jeaf.persistence.jdbc_statistics";
+
+  /**
+   * Name of the property that defines the duration in milliseconds from which on an execution is logged as slow query.
+   */
+  public static final String SLOW_QUERY_THRESHOLD_PROPERTY = "jeaf.persistence.jdbc_statistics.slow_query_threshold";
+
+  /**
+   * Name of the property that defines how many slow queries are kept. If the log is full the oldest entry is dropped.
+   */
+  public static final String SLOW_QUERY_LOG_SIZE_PROPERTY = "jeaf.persistence.jdbc_statistics.slow_query_log_size";
+
+  /**
+   * Name of the property that defines the maximum number of distinct SQL shapes. Executions of further shapes are
+   * recorded as {@link #OTHER_SHAPE}.
+   */
+  public static final String MAX_SQL_SHAPES_PROPERTY = "jeaf.persistence.jdbc_statistics.max_sql_shapes";
+
+  /**
+   * Default values of the properties above.
+   */
+  public static final int DEFAULT_SLOW_QUERY_THRESHOLD = 1000;
+
+  public static final int DEFAULT_SLOW_QUERY_LOG_SIZE = 100;
+
+  public static final int DEFAULT_MAX_SQL_SHAPES = 1000;
+
+  /**
+   * Shape under which executions are recorded once the maximum number of SQL shapes is reached.
+   */
+  public static final String OTHER_SHAPE = "<other>";
+
+  /**
+   * Statistics of all persistence units for which they are enabled. The name of the persistence unit is used as key.
+   */
+  private static final Map<String, JdbcStatistics> STATISTICS = new ConcurrentHashMap<>();
+
+  /**
+   * Patterns to find string literals, numeric literals, lists of parameters and whitespaces within SQL statements.
+   */
+  private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+
+  private static final Pattern NUMERIC_LITERAL = Pattern.compile("(?<![\\w$.])-?\\d+(?:\\.\\d+)?(?:[eE][+-]?\\d+)?");
+
+  private static final Pattern PARAMETER_LIST = Pattern.compile("\\(\\s*\\?(?:\\s*,\\s*\\?)+\\s*\\)");
+
+  private static final Pattern WHITESPACES = Pattern.compile("\\s+");
+
+  /**
+   * Name of the persistence unit. The reference is never null.
+   */
+  private final String persistenceUnitName;
+
+  /**
+   * Statistics per SQL shape.
+   */
+  private final Map<String, SqlStatistics> sqlStatistics = new ConcurrentHashMap<>();
+
+  /**
+   * Statistics by the SQL of prepared statements. As prepared statements are created over and over again with the same
+   * SQL this avoids to calculate their shape each time.
+   */
+  private final Map<String, SqlStatistics> preparedSQLStatistics = new ConcurrentHashMap<>();
+
+  /**
+   * Slow query log with the oldest entry first. Access has to be synchronized on the log.
+   */
+  private final ArrayDeque<SlowQuery> slowQueries;
+
+  /**
+   * Threshold for slow queries in nanoseconds.
+   */
+  private final long slowQueryThreshold;
+
+  private final int slowQueryLogSize;
+
+  private final int maxSQLShapes;
+
+  /**
+   * Initialize object.
+   *
+   * @param pPersistenceUnitName Name of the persistence unit. The parameter must not be null.
+   * @param pSlowQueryThreshold Duration in milliseconds from which on an execution is logged as slow query.
+   * @param pSlowQueryLogSize Maximum number of slow queries that are kept. The value must not be negative.
+   * @param pMaxSQLShapes Maximum number of distinct SQL shapes. The value must be greater than 0.
+   */
+  public JdbcStatistics( String pPersistenceUnitName, long pSlowQueryThreshold, int pSlowQueryLogSize,
+      int pMaxSQLShapes ) {
+    // Check parameters
+    Check.checkInvalidParameterNull(pPersistenceUnitName, "pPersistenceUnitName");
+    if (pSlowQueryLogSize < 0 || pMaxSQLShapes <= 0) {
+      throw new IllegalArgumentException("Invalid sizes for JDBC statistics of persistence unit "
+          + pPersistenceUnitName + ": slow query log size=" + pSlowQueryLogSize + ", max SQL shapes=" + pMaxSQLShapes);
+    }
+
+    persistenceUnitName = pPersistenceUnitName;
+    slowQueryThreshold = TimeUnit.MILLISECONDS.toNanos(pSlowQueryThreshold);
+    slowQueryLogSize = pSlowQueryLogSize;
+    maxSQLShapes = pMaxSQLShapes;
+    slowQueries = new ArrayDeque<>(Math.min(pSlowQueryLogSize, 16));
+  }
+
+  /**
+   * Method checks whether statistics are enabled through the passed properties.
+   *
+   * @param pProperties Properties of a persistence unit. The parameter must not be null.
+   * @return boolean Method returns true if property {@link #ENABLED_PROPERTY} is set to <code>true</code>.
+   */
+  public static boolean isEnabled( Map<?, ?> pProperties ) {
+    // Check parameter
+    Check.checkInvalidParameterNull(pProperties, "pProperties");
+
+    Object lEnabled = pProperties.get(ENABLED_PROPERTY);
+    return lEnabled != null && Boolean.parseBoolean(lEnabled.toString().trim());
+  }
+
+  /**
+   * Method returns the statistics of the passed persistence unit. If they do not exist yet they are created based on
+   * the passed properties.
+   *
+   * @param pPersistenceUnitName Name of the persistence unit. The parameter must not be null.
+   * @param pProperties Properties of the persistence unit. The parameter must not be null.
+   * @return {@link JdbcStatistics} Statistics of the persistence unit or null if they are not enabled.
+   */
+  public static JdbcStatistics forPersistenceUnit( String pPersistenceUnitName, Map<?, ?> pProperties ) {
+    // Check parameters
+    Check.checkInvalidParameterNull(pPersistenceUnitName, "pPersistenceUnitName");
+    Check.checkInvalidParameterNull(pProperties, "pProperties");
+
+    JdbcStatistics lStatistics;
+    if (isEnabled(pProperties) == true) {
+      lStatistics = STATISTICS.computeIfAbsent(pPersistenceUnitName, pName -> new JdbcStatistics(pName,
+          getIntProperty(pProperties, SLOW_QUERY_THRESHOLD_PROPERTY, DEFAULT_SLOW_QUERY_THRESHOLD),
+          getIntProperty(pProperties, SLOW_QUERY_LOG_SIZE_PROPERTY, DEFAULT_SLOW_QUERY_LOG_SIZE),
+          getIntProperty(pProperties, MAX_SQL_SHAPES_PROPERTY, DEFAULT_MAX_SQL_SHAPES)));
+    }
+    else {
+      lStatistics = null;
+    }
+    return lStatistics;
+  }
+
+  /**
+   * Method returns the statistics of the passed persistence unit.
+   *
+   * @param pPersistenceUnitName Name of the persistence unit. The parameter must not be null.
+   * @return {@link JdbcStatistics} Statistics of the persistence unit or null if they are not enabled.
+   */
+  public static JdbcStatistics getStatistics( String pPersistenceUnitName ) {
+    // Check parameter
+    Check.checkInvalidParameterNull(pPersistenceUnitName, "pPersistenceUnitName");
+
+    return STATISTICS.get(pPersistenceUnitName);
+  }
+
+  private static int getIntProperty( Map<?, ?> pProperties, String pName, int pDefault ) {
+    Object lValue = pProperties.get(pName);
+    return lValue != null ? Integer.parseInt(lValue.toString().trim()) : pDefault;
+  }
+
+  /**
+   * Method returns the shape of the passed SQL statement. String and numeric literals are replaced by '?', lists of
+   * parameters like <code>IN (?, ?, ?)</code> are collapsed to <code>(?)</code> and whitespaces are normalized. This
+   * way statements that only differ in their values are recorded together.
+   *
+   * @param pSQL SQL statement. The parameter must not be null.
+   * @return {@link String} Shape of the statement. The method never returns null.
+   */
+  public static String toShape( String pSQL ) {
+    // Check parameter
+    Check.checkInvalidParameterNull(pSQL, "pSQL");
+
+    String lShape = STRING_LITERAL.matcher(pSQL).replaceAll("?");
+    lShape = NUMERIC_LITERAL.matcher(lShape).replaceAll("?");
+    lShape = PARAMETER_LIST.matcher(lShape).replaceAll("(?)");
+    return WHITESPACES.matcher(lShape).replaceAll(" ").trim();
+  }
+
+  /**
+   * Method returns the name of the persistence unit.
+   *
+   * @return {@link String} Name of the persistence unit. The method never returns null.
+   */
+  public String getPersistenceUnitName( ) {
+    return persistenceUnitName;
+  }
+
+  /**
+   * Method returns the statistics for the passed SQL statement. If no statistics exist for the shape of the statement
+   * yet they are created unless the maximum number of shapes is reached.
+   *
+   * @param pSQL SQL statement. The parameter must not be null.
+   * @return {@link SqlStatistics} Statistics of the shape of the statement. The method never returns null.
+   */
+  SqlStatistics getOrCreateSQLStatistics( String pSQL ) {
+    String lShape = toShape(pSQL);
+    SqlStatistics lStatistics = sqlStatistics.get(lShape);
+    if (lStatistics == null) {
+      if (sqlStatistics.size() >= maxSQLShapes) {
+        lShape = OTHER_SHAPE;
+      }
+      lStatistics = sqlStatistics.computeIfAbsent(lShape, SqlStatistics::new);
+    }
+    return lStatistics;
+  }
+
+  /**
+   * Method returns the statistics for the SQL of a prepared statement.
+   *
+   * @param pSQL SQL of a prepared statement. The parameter must not be null.
+   * @return {@link SqlStatistics} Statistics of the shape of the statement. The method never returns null.
+   */
+  SqlStatistics getOrCreatePreparedSQLStatistics( String pSQL ) {
+    SqlStatistics lStatistics = preparedSQLStatistics.get(pSQL);
+    if (lStatistics == null) {
+      lStatistics = this.getOrCreateSQLStatistics(pSQL);
+      if (preparedSQLStatistics.size() < maxSQLShapes) {
+        preparedSQLStatistics.put(pSQL, lStatistics);
+      }
+    }
+    return lStatistics;
+  }
+
+  /**
+   * Method records an execution of a statement.
+   *
+   * @param pStatistics Statistics of the shape of the statement. The parameter must not be null.
+   * @param pSQL SQL statement as it was executed. The parameter must not be null.
+   * @param pNanos Duration of the execution in nanoseconds.
+   * @param pFailed Flag indicates whether the execution failed.
+   */
+  void recordExecution( SqlStatistics pStatistics, String pSQL, long pNanos, boolean pFailed ) {
+    pStatistics.recordExecution(pNanos, pFailed);
+    if (pNanos >= slowQueryThreshold && slowQueryLogSize > 0) {
+      SlowQuery lSlowQuery = new SlowQuery(pSQL, pNanos);
+      synchronized (slowQueries) {
+        if (slowQueries.size() >= slowQueryLogSize) {
+          slowQueries.removeFirst();
+        }
+        slowQueries.addLast(lSlowQuery);
+      }
+      XFun.getTrace().warn("Slow query in persistence unit " + persistenceUnitName + ": " + lSlowQuery);
+    }
+  }
+
+  /**
+   * Method returns the statistics of the passed SQL statement.
+   *
+   * @param pSQL SQL statement or its shape. The parameter must not be null.
+   * @return {@link SqlStatistics} Statistics of the shape of the statement or null if it was not executed yet.
+   */
+  public SqlStatistics getSQLStatistics( String pSQL ) {
+    // Check parameter
+    Check.checkInvalidParameterNull(pSQL, "pSQL");
+
+    return sqlStatistics.get(toShape(pSQL));
+  }
+
+  /**
+   * Method returns the statistics of all SQL shapes.
+   *
+   * @return {@link List} Statistics ordered by the total execution time with the most expensive shape first. The
+   * method never returns null.
+   */
+  public List<SqlStatistics> getSQLStatistics( ) {
+    List<SqlStatistics> lStatistics = new ArrayList<>(sqlStatistics.values());
+    lStatistics.sort(Comparator.comparingLong((SqlStatistics pNext) -> pNext.getLatency().getTotalTime()).reversed());
+    return lStatistics;
+  }
+
+  /**
+   * Method returns the slow query log.
+   *
+   * @return {@link List} Slow queries with the oldest one first. The method never returns null.
+   */
+  public List<SlowQuery> getSlowQueries( ) {
+    synchronized (slowQueries) {
+      return new ArrayList<>(slowQueries);
+    }
+  }
+
+  /**
+   * Method discards all recorded statistics and the slow query log.
+   */
+  public void reset( ) {
+    preparedSQLStatistics.clear();
+    sqlStatistics.clear();
+    synchronized (slowQueries) {
+      slowQueries.clear();
+    }
+  }
+}
@@ -0,0 +1,118 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.jdbc;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+
+/**
+ * Class wraps a JDBC connection so that the executions of all its statements are recorded in {@link JdbcStatistics}.
+ *
+ * @author JEAF Development Team
+ */
+final class MonitoredConnectionHandler implements InvocationHandler {
+  /**
+   * Statistics to which executions are recorded. The reference is never null.
+   */
+  private final JdbcStatistics statistics;
+
+  /**
+   * Wrapped connection. The reference is never null.
+   */
+  private final Connection connection;
+
+  /**
+   * Proxy that represents the wrapped connection.
+   */
+  private Connection proxy;
+
+  /**
+   * Initialize object.
+   *
+   * @param pStatistics Statistics to which executions are recorded. The parameter must not be null.
+   * @param pConnection Wrapped connection. The parameter must not be null.
+   */
+  private MonitoredConnectionHandler( JdbcStatistics pStatistics, Connection pConnection ) {
+    statistics = pStatistics;
+    connection = pConnection;
+  }
+
+  /**
+   * Method wraps the passed connection.
+   *
+   * @param pStatistics Statistics to which executions are recorded. The parameter must not be null.
+   * @param pConnection Connection that should be wrapped. The parameter must not be null.
+   * @return {@link Connection} Monitored connection. The method never returns null.
+   */
+  static Connection newConnection( JdbcStatistics pStatistics, Connection pConnection ) {
+    MonitoredConnectionHandler lHandler = new MonitoredConnectionHandler(pStatistics, pConnection);
+    lHandler.proxy = (Connection) Proxy.newProxyInstance(MonitoredConnectionHandler.class.getClassLoader(),
+        new Class<?>[] { Connection.class }, lHandler);
+    return lHandler.proxy;
+  }
+
+  /**
+   * @see InvocationHandler#invoke(Object, Method, Object[])
+   */
+  @Override
+  public Object invoke( Object pProxy, Method pMethod, Object[] pArgs ) throws Throwable {
+    Object lResult;
+    switch (pMethod.getName()) {
+      case "equals":
+        lResult = pProxy == pArgs[0];
+        break;
+
+      case "hashCode":
+        lResult = System.identityHashCode(pProxy);
+        break;
+
+      case "toString":
+        lResult = "MonitoredConnection[" + connection + "]";
+        break;
+
+      default:
+        try {
+          lResult = pMethod.invoke(connection, pArgs);
+        }
+        catch (InvocationTargetException e) {
+          throw e.getCause();
+        }
+
+        // Statements are returned as proxies so that their executions can be recorded. The SQL of prepared statements
+        // is already known when they are created.
+        if (lResult instanceof CallableStatement) {
+          lResult = this.monitorStatement((Statement) lResult, CallableStatement.class, (String) pArgs[0]);
+        }
+        else if (lResult instanceof PreparedStatement) {
+          lResult = this.monitorStatement((Statement) lResult, PreparedStatement.class, (String) pArgs[0]);
+        }
+        else if (lResult instanceof Statement) {
+          lResult = this.monitorStatement((Statement) lResult, Statement.class, null);
+        }
+    }
+    return lResult;
+  }
+
+  /**
+   * Method wraps the passed statement.
+   *
+   * @param pStatement Statement that should be wrapped. The parameter must not be null.
+   * @param pInterface Interface of the statement. The parameter must not be null.
+   * @param pSQL SQL of prepared statements or null for plain statements.
+   * @return {@link Statement} Monitored statement. The method never returns null.
+   */
+  private Statement monitorStatement( Statement pStatement, Class<? extends Statement> pInterface, String pSQL ) {
+    MonitoredStatementHandler lHandler = new MonitoredStatementHandler(statistics, proxy, pStatement, pSQL);
+    return (Statement) Proxy.newProxyInstance(MonitoredConnectionHandler.class.getClassLoader(),
+        new Class<?>[] { pInterface }, lHandler);
+  }
+}
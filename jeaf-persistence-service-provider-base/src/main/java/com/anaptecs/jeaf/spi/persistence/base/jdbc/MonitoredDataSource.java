@@ -0,0 +1,161 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.jdbc;
+
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.logging.Logger;
+
+import javax.sql.DataSource;
+
+import com.anaptecs.jeaf.xfun.api.checks.Check;
+
+/**
+ * Class wraps a data source so that the executions of all statements of its connections are recorded in
+ * {@link JdbcStatistics}. It is used for data sources that are looked up via JNDI or that are created by a connection
+ * pool provider.
+ *
+ * @author JEAF Development Team
+ */
+public final class MonitoredDataSource implements DataSource {
+  /**
+   * Wrapped data source. The reference is never null.
+   */
+  private final DataSource dataSource;
+
+  /**
+   * Statistics to which executions are recorded. The reference is never null.
+   */
+  private final JdbcStatistics statistics;
+
+  /**
+   * Initialize object.
+   *
+   * @param pDataSource Data source that should be wrapped. The parameter must not be null.
+   * @param pStatistics Statistics to which executions are recorded. The parameter must not be null.
+   */
+  public MonitoredDataSource( DataSource pDataSource, JdbcStatistics pStatistics ) {
+    // Check parameters
+    Check.checkInvalidParameterNull(pDataSource, "pDataSource");
+    Check.checkInvalidParameterNull(pStatistics, "pStatistics");
+
+    dataSource = pDataSource;
+    statistics = pStatistics;
+  }
+
+  /**
+   * Method wraps the passed data source if statistics are enabled.
+   *
+   * @param pDataSource Data source that should be wrapped. The parameter may be null.
+   * @param pStatistics Statistics to which executions are recorded. The parameter may be null.
+   * @return {@link DataSource} Monitored data source or the passed one if it or the statistics are null.
+   */
+  public static DataSource wrap( DataSource pDataSource, JdbcStatistics pStatistics ) {
+    DataSource lDataSource;
+    if (pDataSource != null && pStatistics != null) {
+      lDataSource = new MonitoredDataSource(pDataSource, pStatistics);
+    }
+    else {
+      lDataSource = pDataSource;
+    }
+    return lDataSource;
+  }
+
+  /**
+   * Method returns the statistics to which executions are recorded.
+   *
+   * @return {@link JdbcStatistics} Statistics of the data source. The method never returns null.
+   */
+  public JdbcStatistics getStatistics( ) {
+    return statistics;
+  }
+
+  /**
+   * @see DataSource#getConnection()
+   */
+  @Override
+  public Connection getConnection( ) throws SQLException {
+    return MonitoredConnectionHandler.newConnection(statistics, dataSource.getConnection());
+  }
+
+  /**
+   * @see DataSource#getConnection(String, String)
+   */
+  @Override
+  public Connection getConnection( String pUsername, String pPassword ) throws SQLException {
+    return MonitoredConnectionHandler.newConnection(statistics, dataSource.getConnection(pUsername, pPassword));
+  }
+
+  /**
+   * @see DataSource#getLogWriter()
+   */
+  @Override
+  public PrintWriter getLogWriter( ) throws SQLException {
+    return dataSource.getLogWriter();
+  }
+
+  /**
+   * @see DataSource#setLogWriter(PrintWriter)
+   */
+  @Override
+  public void setLogWriter( PrintWriter pOut ) throws SQLException {
+    dataSource.setLogWriter(pOut);
+  }
+
+  /**
+   * @see DataSource#setLoginTimeout(int)
+   */
+  @Override
+  public void setLoginTimeout( int pSeconds ) throws SQLException {
+    dataSource.setLoginTimeout(pSeconds);
+  }
+
+  /**
+   * @see DataSource#getLoginTimeout()
+   */
+  @Override
+  public int getLoginTimeout( ) throws SQLException {
+    return dataSource.getLoginTimeout();
+  }
+
+  /**
+   * @see DataSource#getParentLogger()
+   */
+  @Override
+  public Logger getParentLogger( ) throws SQLFeatureNotSupportedException {
+    return dataSource.getParentLogger();
+  }
+
+  /**
+   * @see java.sql.Wrapper#unwrap(Class)
+   */
+  @Override
+  public <T> T unwrap( Class<T> pInterface ) throws SQLException {
+    T lResult;
+    if (pInterface.isInstance(this)) {
+      lResult = pInterface.cast(this);
+    }
+    else {
+      lResult = dataSource.unwrap(pInterface);
+    }
+    return lResult;
+  }
+
+  /**
+   * @see java.sql.Wrapper#isWrapperFor(Class)
+   */
+  @Override
+  public boolean isWrapperFor( Class<?> pInterface ) throws SQLException {
+    return pInterface.isInstance(this) || dataSource.isWrapperFor(pInterface);
+  }
+
+  @Override
+  public String toString( ) {
+    return "MonitoredDataSource[" + dataSource + "]";
+  }
+}
@@ -0,0 +1,190 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.jdbc;
+
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+import com.anaptecs.jeaf.tools.api.Tools;
+import com.anaptecs.jeaf.xfun.api.checks.Check;
+
+/**
+ * Class implements a JDBC driver that wraps the connections of the real JDBC driver of a persistence unit so that the
+ * executions of their statements are recorded in {@link JdbcStatistics}. It is used if the persistence provider or its
+ * connection pool creates the connections itself based on a driver class and a connection URL.
+ *
+ * The connection URL of the persistence unit is replaced by a monitored URL (see
+ * {@link #toMonitoredURL(String, String)}) that contains the name of the persistence unit and the original URL. The
+ * real driver of the persistence unit has to be registered through {@link #register(String, Class)}.
+ *
+ * @author JEAF Development Team
+ */
+public final class MonitoredDriver implements Driver {
+  /**
+   * Prefix of all monitored connection URLs.
+   */
+  public static final String URL_PREFIX = "jdbc:jeaf-monitored:";
+
+  /**
+   * Separator between the name of the persistence unit and the original connection URL.
+   */
+  private static final String URL_SEPARATOR = ":jdbc:";
+
+  /**
+   * Real JDBC drivers of all persistence units that use monitored URLs. The name of the persistence unit is the key.
+   */
+  private static final Map<String, Driver> DRIVERS = new ConcurrentHashMap<>();
+
+  /**
+   * Drivers are expected to register themselves with the driver manager as some connection pools look them up there.
+   */
+  static {
+    try {
+      DriverManager.registerDriver(new MonitoredDriver());
+    }
+    catch (SQLException e) {
+      throw new ExceptionInInitializerError(e);
+    }
+  }
+
+  /**
+   * Method registers the real JDBC driver of the passed persistence unit.
+   *
+   * @param pPersistenceUnitName Name of the persistence unit. The parameter must not be null.
+   * @param pDriverClass Class of the real JDBC driver. The parameter must not be null.
+   */
+  public static void register( String pPersistenceUnitName, Class<? extends Driver> pDriverClass ) {
+    // Check parameters
+    Check.checkInvalidParameterNull(pPersistenceUnitName, "pPersistenceUnitName");
+    Check.checkInvalidParameterNull(pDriverClass, "pDriverClass");
+
+    Driver lDriver = DRIVERS.get(pPersistenceUnitName);
+    if (lDriver == null || lDriver.getClass() != pDriverClass) {
+      DRIVERS.put(pPersistenceUnitName, Tools.getReflectionTools().newInstance(pDriverClass));
+    }
+  }
+
+  /**
+   * Method returns the monitored connection URL for the passed persistence unit.
+   *
+   * @param pPersistenceUnitName Name of the persistence unit. The parameter must not be null.
+   * @param pConnectionURL Original connection URL. The parameter must not be null.
+   * @return {@link String} Monitored connection URL. The method never returns null.
+   */
+  public static String toMonitoredURL( String pPersistenceUnitName, String pConnectionURL ) {
+    // Check parameters
+    Check.checkInvalidParameterNull(pPersistenceUnitName, "pPersistenceUnitName");
+    Check.checkInvalidParameterNull(pConnectionURL, "pConnectionURL");
+
+    return URL_PREFIX + pPersistenceUnitName + ":" + pConnectionURL;
+  }
+
+  /**
+   * @see Driver#connect(String, Properties)
+   */
+  @Override
+  public Connection connect( String pURL, Properties pInfo ) throws SQLException {
+    Connection lConnection;
+    if (this.acceptsURL(pURL) == true) {
+      int lSeparator = pURL.indexOf(URL_SEPARATOR, URL_PREFIX.length());
+      String lPersistenceUnitName = pURL.substring(URL_PREFIX.length(), lSeparator);
+      String lConnectionURL = pURL.substring(lSeparator + 1);
+      lConnection = this.getDriver(lPersistenceUnitName, lConnectionURL).connect(lConnectionURL, pInfo);
+
+      JdbcStatistics lStatistics = JdbcStatistics.getStatistics(lPersistenceUnitName);
+      if (lConnection != null && lStatistics != null) {
+        lConnection = MonitoredConnectionHandler.newConnection(lStatistics, lConnection);
+      }
+    }
+    else {
+      lConnection = null;
+    }
+    return lConnection;
+  }
+
+  /**
+   * Method returns the real driver for the passed persistence unit.
+   *
+   * @param pPersistenceUnitName Name of the persistence unit. The parameter must not be null.
+   * @param pConnectionURL Original connection URL. The parameter must not be null.
+   * @return {@link Driver} Registered driver of the persistence unit or the one from the driver manager that accepts
+   * the URL. The method never returns null.
+   * @throws SQLException if no driver accepts the URL.
+   */
+  private Driver getDriver( String pPersistenceUnitName, String pConnectionURL ) throws SQLException {
+    Driver lDriver = DRIVERS.get(pPersistenceUnitName);
+    if (lDriver == null) {
+      lDriver = DriverManager.getDriver(pConnectionURL);
+    }
+    return lDriver;
+  }
+
+  /**
+   * @see Driver#acceptsURL(String)
+   */
+  @Override
+  public boolean acceptsURL( String pURL ) {
+    return pURL != null && pURL.startsWith(URL_PREFIX) && pURL.indexOf(URL_SEPARATOR, URL_PREFIX.length()) > 0;
+  }
+
+  /**
+   * @see Driver#getPropertyInfo(String, Properties)
+   */
+  @Override
+  public DriverPropertyInfo[] getPropertyInfo( String pURL, Properties pInfo ) throws SQLException {
+    DriverPropertyInfo[] lPropertyInfo;
+    if (this.acceptsURL(pURL) == true) {
+      int lSeparator = pURL.indexOf(URL_SEPARATOR, URL_PREFIX.length());
+      String lConnectionURL = pURL.substring(lSeparator + 1);
+      Driver lDriver = this.getDriver(pURL.substring(URL_PREFIX.length(), lSeparator), lConnectionURL);
+      lPropertyInfo = lDriver.getPropertyInfo(lConnectionURL, pInfo);
+    }
+    else {
+      lPropertyInfo = new DriverPropertyInfo[0];
+    }
+    return lPropertyInfo;
+  }
+
+  /**
+   * @see Driver#getMajorVersion()
+   */
+  @Override
+  public int getMajorVersion( ) {
+    return 1;
+  }
+
+  /**
+   * @see Driver#getMinorVersion()
+   */
+  @Override
+  public int getMinorVersion( ) {
+    return 0;
+  }
+
+  /**
+   * @see Driver#jdbcCompliant()
+   */
+  @Override
+  public boolean jdbcCompliant( ) {
+    return false;
+  }
+
+  /**
+   * @see Driver#getParentLogger()
+   */
+  @Override
+  public Logger getParentLogger( ) throws SQLFeatureNotSupportedException {
+    throw new SQLFeatureNotSupportedException("MonitoredDriver does not use java.util.logging.");
+  }
+}
@@ -0,0 +1,272 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.jdbc;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+/**
+ * Class wraps a JDBC statement so that its executions, the rows that are read from its result sets and the sizes of
+ * its batches are recorded in {@link JdbcStatistics}.
+ *
+ * @author JEAF Development Team
+ */
+final class MonitoredStatementHandler implements InvocationHandler {
+  /**
+   * SQL under which batches of plain statements are recorded if no SQL was added to them.
+   */
+  private static final String UNKNOWN_BATCH = "<batch>";
+
+  /**
+   * Statistics to which executions are recorded. The reference is never null.
+   */
+  private final JdbcStatistics statistics;
+
+  /**
+   * Monitored connection that created the statement. The reference is never null.
+   */
+  private final Connection connection;
+
+  /**
+   * Wrapped statement. The reference is never null.
+   */
+  private final Statement statement;
+
+  /**
+   * SQL of prepared statements. The reference is null for plain statements.
+   */
+  private final String preparedSQL;
+
+  /**
+   * Statistics of the last execution. Result sets that are requested later on belong to it.
+   */
+  private SqlStatistics current;
+
+  /**
+   * Number of statements that were added to the current batch and the first SQL that was added to the batch of a plain
+   * statement.
+   */
+  private int batchSize;
+
+  private String batchSQL;
+
+  /**
+   * Initialize object.
+   *
+   * @param pStatistics Statistics to which executions are recorded. The parameter must not be null.
+   * @param pConnection Monitored connection that created the statement. The parameter must not be null.
+   * @param pStatement Wrapped statement. The parameter must not be null.
+   * @param pPreparedSQL SQL of prepared statements or null for plain statements.
+   */
+  MonitoredStatementHandler( JdbcStatistics pStatistics, Connection pConnection, Statement pStatement,
+      String pPreparedSQL ) {
+    statistics = pStatistics;
+    connection = pConnection;
+    statement = pStatement;
+    preparedSQL = pPreparedSQL;
+  }
+
+  /**
+   * @see InvocationHandler#invoke(Object, Method, Object[])
+   */
+  @Override
+  public Object invoke( Object pProxy, Method pMethod, Object[] pArgs ) throws Throwable {
+    String lMethodName = pMethod.getName();
+    Object lResult;
+    switch (lMethodName) {
+      case "getConnection":
+        lResult = connection;
+        break;
+
+      case "equals":
+        lResult = pProxy == pArgs[0];
+        break;
+
+      case "hashCode":
+        lResult = System.identityHashCode(pProxy);
+        break;
+
+      case "toString":
+        lResult = "MonitoredStatement[" + statement + "]";
+        break;
+
+      case "addBatch":
+        lResult = this.delegate(pMethod, pArgs);
+        batchSize++;
+        if (batchSQL == null && pArgs != null) {
+          batchSQL = (String) pArgs[0];
+        }
+        break;
+
+      case "clearBatch":
+        lResult = this.delegate(pMethod, pArgs);
+        batchSize = 0;
+        batchSQL = null;
+        break;
+
+      case "executeBatch":
+      case "executeLargeBatch":
+        lResult = this.executeBatch(pMethod, pArgs);
+        break;
+
+      case "execute":
+      case "executeQuery":
+      case "executeUpdate":
+      case "executeLargeUpdate":
+        lResult = this.execute(pMethod, pArgs);
+        break;
+
+      case "getResultSet":
+        lResult = this.monitorResultSet(this.delegate(pMethod, pArgs));
+        break;
+
+      default:
+        lResult = this.delegate(pMethod, pArgs);
+    }
+    return lResult;
+  }
+
+  /**
+   * Method executes the statement and records the execution.
+   *
+   * @param pMethod Method that executes the statement. The parameter must not be null.
+   * @param pArgs Arguments of the call. The parameter may be null.
+   * @return {@link Object} Result of the execution.
+   * @throws Throwable if the execution fails.
+   */
+  private Object execute( Method pMethod, Object[] pArgs ) throws Throwable {
+    String lSQL;
+    if (pArgs != null && pArgs.length > 0 && pArgs[0] instanceof String) {
+      lSQL = (String) pArgs[0];
+      current = statistics.getOrCreateSQLStatistics(lSQL);
+    }
+    else {
+      lSQL = preparedSQL;
+      current = statistics.getOrCreatePreparedSQLStatistics(lSQL);
+    }
+
+    boolean lFailed = true;
+    long lStart = System.nanoTime();
+    Object lResult;
+    try {
+      lResult = this.delegate(pMethod, pArgs);
+      lFailed = false;
+    }
+    finally {
+      statistics.recordExecution(current, lSQL, System.nanoTime() - lStart, lFailed);
+    }
+
+    if (lResult instanceof ResultSet) {
+      lResult = this.monitorResultSet(lResult);
+    }
+    else if (lResult instanceof Number) {
+      current.recordRowsAffected(((Number) lResult).longValue());
+    }
+    return lResult;
+  }
+
+  /**
+   * Method executes the current batch and records the execution.
+   *
+   * @param pMethod Method that executes the batch. The parameter must not be null.
+   * @param pArgs Arguments of the call. The parameter may be null.
+   * @return {@link Object} Update counts of the batch.
+   * @throws Throwable if the execution fails.
+   */
+  private Object executeBatch( Method pMethod, Object[] pArgs ) throws Throwable {
+    String lSQL;
+    if (preparedSQL != null) {
+      lSQL = preparedSQL;
+      current = statistics.getOrCreatePreparedSQLStatistics(lSQL);
+    }
+    else {
+      lSQL = batchSQL != null ? batchSQL : UNKNOWN_BATCH;
+      current = statistics.getOrCreateSQLStatistics(lSQL);
+    }
+    current.recordBatch(batchSize);
+    batchSize = 0;
+    batchSQL = null;
+
+    boolean lFailed = true;
+    long lStart = System.nanoTime();
+    Object lResult;
+    try {
+      lResult = this.delegate(pMethod, pArgs);
+      lFailed = false;
+    }
+    finally {
+      statistics.recordExecution(current, lSQL, System.nanoTime() - lStart, lFailed);
+    }
+
+    // Update counts are either returned as int[] or as long[].
+    if (lResult instanceof int[]) {
+      for (int lNext : (int[]) lResult) {
+        current.recordRowsAffected(lNext);
+      }
+    }
+    else if (lResult instanceof long[]) {
+      for (long lNext : (long[]) lResult) {
+        current.recordRowsAffected(lNext);
+      }
+    }
+    return lResult;
+  }
+
+  /**
+   * Method wraps the passed result set so that the rows that are read from it are counted.
+   *
+   * @param pResultSet Result set that should be wrapped. The parameter may be null.
+   * @return {@link Object} Monitored result set. If null was passed or no statement was executed yet the passed object
+   * is returned.
+   */
+  private Object monitorResultSet( Object pResultSet ) {
+    Object lResult;
+    if (pResultSet != null && current != null) {
+      ResultSet lResultSet = (ResultSet) pResultSet;
+      SqlStatistics lStatistics = current;
+      lResult = Proxy.newProxyInstance(MonitoredStatementHandler.class.getClassLoader(),
+          new Class<?>[] { ResultSet.class }, (pProxy, pMethod, pArgs) -> {
+            Object lValue;
+            try {
+              lValue = pMethod.invoke(lResultSet, pArgs);
+            }
+            catch (InvocationTargetException e) {
+              throw e.getCause();
+            }
+            if ("next".equals(pMethod.getName()) && Boolean.TRUE.equals(lValue)) {
+              lStatistics.recordRowFetched();
+            }
+            return lValue;
+          });
+    }
+    else {
+      lResult = pResultSet;
+    }
+    return lResult;
+  }
+
+  /**
+   * Method delegates the passed call to the wrapped statement.
+   *
+   * @param pMethod Method that should be called. The parameter must not be null.
+   * @param pArgs Arguments of the call. The parameter may be null.
+   * @return {@link Object} Result of the call.
+   * @throws Throwable if the call fails.
+   */
+  private Object delegate( Method pMethod, Object[] pArgs ) throws Throwable {
+    try {
+      return pMethod.invoke(statement, pArgs);
+    }
+    catch (InvocationTargetException e) {
+      throw e.getCause();
+    }
+  }
+}
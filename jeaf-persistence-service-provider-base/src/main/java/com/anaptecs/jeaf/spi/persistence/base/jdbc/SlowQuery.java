@@ -0,0 +1,90 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.jdbc;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class describes an execution of an SQL statement that took longer than the slow query threshold of its persistence
+ * unit (see {@link JdbcStatistics#SLOW_QUERY_THRESHOLD_PROPERTY}). Objects of this class are immutable.
+ *
+ * @author JEAF Development Team
+ */
+public final class SlowQuery {
+  /**
+   * SQL statement as it was executed. The reference is never null.
+   */
+  private final String sql;
+
+  /**
+   * Duration of the execution in nanoseconds.
+   */
+  private final long duration;
+
+  /**
+   * Point in time when the execution ended in milliseconds since 1970-01-01.
+   */
+  private final long timestamp;
+
+  /**
+   * Name of the thread that executed the statement. The reference is never null.
+   */
+  private final String threadName;
+
+  /**
+   * Initialize object.
+   *
+   * @param pSQL SQL statement as it was executed. The parameter must not be null.
+   * @param pDuration Duration of the execution in nanoseconds.
+   */
+  SlowQuery( String pSQL, long pDuration ) {
+    sql = pSQL;
+    duration = pDuration;
+    timestamp = System.currentTimeMillis();
+    threadName = Thread.currentThread().getName();
+  }
+
+  /**
+   * Method returns the executed SQL statement.
+   *
+   * @return {@link String} SQL statement. The method never returns null.
+   */
+  public String getSQL( ) {
+    return sql;
+  }
+
+  /**
+   * Method returns the duration of the execution.
+   *
+   * @return long Duration in nanoseconds.
+   */
+  public long getDuration( ) {
+    return duration;
+  }
+
+  /**
+   * Method returns the point in time when the execution ended.
+   *
+   * @return long Milliseconds since 1970-01-01.
+   */
+  public long getTimestamp( ) {
+    return timestamp;
+  }
+
+  /**
+   * Method returns the name of the thread that executed the statement.
+   *
+   * @return {@link String} Name of the thread. The method never returns null.
+   */
+  public String getThreadName( ) {
+    return threadName;
+  }
+
+  @Override
+  public String toString( ) {
+    return TimeUnit.NANOSECONDS.toMillis(duration) + "ms [" + threadName + "]: " + sql;
+  }
+}
@@ -0,0 +1,206 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.jdbc;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.anaptecs.jeaf.spi.persistence.base.pool.TimeHistogram;
+
+/**
+ * Class collects the statistics of all executions of one SQL shape. The shape of an SQL statement is its text with
+ * literals replaced by parameters (see {@link JdbcStatistics#toShape(String)}). Recording is lock-free so that
+ * concurrent threads do not contend with each other.
+ *
+ * @author JEAF Development Team
+ */
+public final class SqlStatistics {
+  /**
+   * Shape of the SQL statements. The reference is never null.
+   */
+  private final String sql;
+
+  /**
+   * Durations of all executions.
+   */
+  private final TimeHistogram latency = new TimeHistogram();
+
+  /**
+   * Number of executions that failed with an exception.
+   */
+  private final LongAdder errors = new LongAdder();
+
+  /**
+   * Number of rows that were read from the result sets of the statements.
+   */
+  private final LongAdder rowsFetched = new LongAdder();
+
+  /**
+   * Number of rows that were inserted, updated or deleted by the statements.
+   */
+  private final LongAdder rowsAffected = new LongAdder();
+
+  /**
+   * Number of executed batches and number of statements within all batches.
+   */
+  private final LongAdder batches = new LongAdder();
+
+  private final LongAdder batchedStatements = new LongAdder();
+
+  /**
+   * Largest executed batch.
+   */
+  private final LongAccumulator maxBatchSize = new LongAccumulator(Math::max, 0);
+
+  /**
+   * Initialize object.
+   *
+   * @param pSQL Shape of the SQL statements. The parameter must not be null.
+   */
+  SqlStatistics( String pSQL ) {
+    sql = pSQL;
+  }
+
+  /**
+   * Method records an execution of a statement.
+   *
+   * @param pNanos Duration of the execution in nanoseconds.
+   * @param pFailed Flag indicates whether the execution failed.
+   */
+  void recordExecution( long pNanos, boolean pFailed ) {
+    latency.record(pNanos);
+    if (pFailed == true) {
+      errors.increment();
+    }
+  }
+
+  /**
+   * Method records the execution of a batch.
+   *
+   * @param pBatchSize Number of statements within the batch.
+   */
+  void recordBatch( int pBatchSize ) {
+    batches.increment();
+    batchedStatements.add(pBatchSize);
+    maxBatchSize.accumulate(pBatchSize);
+  }
+
+  /**
+   * Method records that a row was read from a result set.
+   */
+  void recordRowFetched( ) {
+    rowsFetched.increment();
+  }
+
+  /**
+   * Method records the number of rows that were changed by an execution.
+   *
+   * @param pRows Number of changed rows. Negative values as they are returned by drivers that do not know the number
+   * are ignored.
+   */
+  void recordRowsAffected( long pRows ) {
+    if (pRows > 0) {
+      rowsAffected.add(pRows);
+    }
+  }
+
+  /**
+   * Method returns the shape of the SQL statements.
+   *
+   * @return {@link String} SQL shape. The method never returns null.
+   */
+  public String getSQL( ) {
+    return sql;
+  }
+
+  /**
+   * Method returns the number of executions.
+   *
+   * @return long Number of executions including the failed ones.
+   */
+  public long getExecutionCount( ) {
+    return latency.getCount();
+  }
+
+  /**
+   * Method returns the number of failed executions.
+   *
+   * @return long Number of executions that failed with an exception.
+   */
+  public long getErrorCount( ) {
+    return errors.sum();
+  }
+
+  /**
+   * Method returns the histogram of the execution times.
+   *
+   * @return {@link TimeHistogram} Execution times. Time to read result sets is not included. The method never returns
+   * null.
+   */
+  public TimeHistogram getLatency( ) {
+    return latency;
+  }
+
+  /**
+   * Method returns the number of rows that were read from result sets.
+   *
+   * @return long Number of fetched rows.
+   */
+  public long getRowsFetched( ) {
+    return rowsFetched.sum();
+  }
+
+  /**
+   * Method returns the number of rows that were inserted, updated or deleted.
+   *
+   * @return long Number of affected rows as far as they were reported by the JDBC driver.
+   */
+  public long getRowsAffected( ) {
+    return rowsAffected.sum();
+  }
+
+  /**
+   * Method returns the number of executed batches.
+   *
+   * @return long Number of batches.
+   */
+  public long getBatchCount( ) {
+    return batches.sum();
+  }
+
+  /**
+   * Method returns the mean number of statements per batch.
+   *
+   * @return double Mean batch size or 0 if no batch was executed.
+   */
+  public double getMeanBatchSize( ) {
+    long lBatches = batches.sum();
+    double lMean;
+    if (lBatches > 0) {
+      lMean = (double) batchedStatements.sum() / lBatches;
+    }
+    else {
+      lMean = 0;
+    }
+    return lMean;
+  }
+
+  /**
+   * Method returns the size of the largest executed batch.
+   *
+   * @return long Largest batch size or 0 if no batch was executed.
+   */
+  public long getMaxBatchSize( ) {
+    return maxBatchSize.get();
+  }
+
+  @Override
+  public String toString( ) {
+    return sql + " [" + latency + ", errors=" + this.getErrorCount() + ", rowsFetched=" + this.getRowsFetched()
+        + ", rowsAffected=" + this.getRowsAffected() + ", batches=" + this.getBatchCount() + ", maxBatchSize="
+        + this.getMaxBatchSize() + "]";
+  }
+}
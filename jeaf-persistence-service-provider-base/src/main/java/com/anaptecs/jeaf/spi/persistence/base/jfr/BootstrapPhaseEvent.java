@@ -0,0 +1,66 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event for one bootstrap phase of a persistence unit (see
+ * {@link com.anaptecs.jeaf.spi.persistence.base.bootstrap.BootstrapPhase}). The event must only be used if
+ * {@link JFRSupport#isAvailable()} returns true.
+ *
+ * @author JEAF Development Team
+ */
+@Name("com.anaptecs.jeaf.persistence.BootstrapPhase")
+@Label("Persistence Unit Bootstrap Phase")
+@Category({ "JEAF", "Persistence" })
+@Description("Bootstrap phase of a JEAF persistence unit")
+public final class BootstrapPhaseEvent extends Event {
+  @Label("Persistence Unit")
+  String persistenceUnit;
+
+  @Label("Phase")
+  String phase;
+
+  @Label("Allocated")
+  @DataAmount
+  long allocatedBytes;
+
+  /**
+   * Method creates and begins a new event.
+   *
+   * @param pPhase Name of the bootstrap phase. The parameter must not be null.
+   * @return {@link Object} Begun event. The type is not exposed so that callers do not depend on JFR.
+   */
+  public static Object begin( String pPhase ) {
+    BootstrapPhaseEvent lEvent = new BootstrapPhaseEvent();
+    lEvent.phase = pPhase;
+    lEvent.begin();
+    return lEvent;
+  }
+
+  /**
+   * Method ends and commits the passed event.
+   *
+   * @param pEvent Event that was returned by {@link #begin(String)}. The parameter must not be null.
+   * @param pPersistenceUnit Name of the persistence unit. The parameter must not be null.
+   * @param pAllocatedBytes Number of allocated bytes or -1 if unknown.
+   */
+  public static void commit( Object pEvent, String pPersistenceUnit, long pAllocatedBytes ) {
+    BootstrapPhaseEvent lEvent = (BootstrapPhaseEvent) pEvent;
+    lEvent.end();
+    if (lEvent.shouldCommit() == true) {
+      lEvent.persistenceUnit = pPersistenceUnit;
+      lEvent.allocatedBytes = pAllocatedBytes;
+      lEvent.commit();
+    }
+  }
+}
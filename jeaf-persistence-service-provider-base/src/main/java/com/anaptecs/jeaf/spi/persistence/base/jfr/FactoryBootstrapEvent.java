@@ -0,0 +1,75 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event for the whole bootstrap of the entity manager factory of a persistence unit. Its single phases are
+ * recorded as {@link BootstrapPhaseEvent}. The event must only be used if {@link JFRSupport#isAvailable()} returns
+ * true.
+ *
+ * @author JEAF Development Team
+ */
+@Name("com.anaptecs.jeaf.persistence.FactoryBootstrap")
+@Label("Entity Manager Factory Bootstrap")
+@Category({ "JEAF", "Persistence" })
+@Description("Bootstrap of the entity manager factory of a JEAF persistence unit")
+public final class FactoryBootstrapEvent extends Event {
+  /**
+   * Type of the event. It is used to check cheaply whether the event is recorded.
+   */
+  private static final EventType TYPE = EventType.getEventType(FactoryBootstrapEvent.class);
+
+  @Label("Persistence Unit")
+  String persistenceUnit;
+
+  @Label("Successful")
+  @Description("True if the entity manager factory was created and false if its bootstrap failed")
+  boolean successful;
+
+  /**
+   * Method checks whether the event is recorded by any running recording.
+   *
+   * @return boolean Method returns true if the event is recorded.
+   */
+  public static boolean isRecording( ) {
+    return TYPE.isEnabled();
+  }
+
+  /**
+   * Method creates and begins a new event.
+   *
+   * @param pPersistenceUnit Name of the persistence unit. The parameter must not be null.
+   * @return {@link Object} Begun event. The type is not exposed so that callers do not depend on JFR.
+   */
+  public static Object begin( String pPersistenceUnit ) {
+    FactoryBootstrapEvent lEvent = new FactoryBootstrapEvent();
+    lEvent.persistenceUnit = pPersistenceUnit;
+    lEvent.begin();
+    return lEvent;
+  }
+
+  /**
+   * Method ends and commits the passed event. It has to be called independent of whether the bootstrap succeeded.
+   *
+   * @param pEvent Event that was returned by {@link #begin(String)}. The parameter must not be null.
+   * @param pSuccessful Flag indicates whether the entity manager factory was created.
+   */
+  public static void commit( Object pEvent, boolean pSuccessful ) {
+    FactoryBootstrapEvent lEvent = (FactoryBootstrapEvent) pEvent;
+    lEvent.end();
+    lEvent.successful = pSuccessful;
+    if (lEvent.shouldCommit() == true) {
+      lEvent.commit();
+    }
+  }
+}
@@ -0,0 +1,75 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event for the reservation of a block of object ids (see
+ * {@link com.anaptecs.jeaf.spi.persistence.base.ObjectIDGenerator#getNextObjectIDs}). The duration of the event
+ * includes the time waiting for other threads that generate object ids. The event must only be used if
+ * {@link JFRSupport#isAvailable()} returns true.
+ *
+ * @author JEAF Development Team
+ */
+@Name("com.anaptecs.jeaf.persistence.IDBlockReservation")
+@Label("Object ID Block Reservation")
+@Category({ "JEAF", "Persistence" })
+@Description("Reservation of a block of object ids")
+public final class IDBlockReservationEvent extends Event {
+  /**
+   * Type of the event. It is used to check cheaply whether the event is recorded.
+   */
+  private static final EventType TYPE = EventType.getEventType(IDBlockReservationEvent.class);
+
+  @Label("Class ID")
+  String classID;
+
+  @Label("Block Size")
+  int blockSize;
+
+  /**
+   * Method checks whether the event is recorded by any running recording.
+   *
+   * @return boolean Method returns true if the event is recorded.
+   */
+  public static boolean isRecording( ) {
+    return TYPE.isEnabled();
+  }
+
+  /**
+   * Method creates and begins a new event.
+   *
+   * @return {@link Object} Begun event. The type is not exposed so that callers do not depend on JFR.
+   */
+  public static Object start( ) {
+    IDBlockReservationEvent lEvent = new IDBlockReservationEvent();
+    lEvent.begin();
+    return lEvent;
+  }
+
+  /**
+   * Method ends and commits the passed event.
+   *
+   * @param pEvent Event that was returned by {@link #start()}. The parameter must not be null.
+   * @param pClassID Class id for which the object ids were reserved. The parameter must not be null.
+   * @param pBlockSize Number of reserved object ids.
+   */
+  public static void commit( Object pEvent, String pClassID, int pBlockSize ) {
+    IDBlockReservationEvent lEvent = (IDBlockReservationEvent) pEvent;
+    lEvent.end();
+    if (lEvent.shouldCommit() == true) {
+      lEvent.classID = pClassID;
+      lEvent.blockSize = pBlockSize;
+      lEvent.commit();
+    }
+  }
+}
@@ -0,0 +1,52 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.jfr;
+
+/**
+ * Class checks if Java Flight Recorder is available. JFR events of this package must only be used if
+ * {@link #isAvailable()} returns true. Otherwise loading them would fail on JVMs without JFR.
+ *
+ * @author JEAF Development Team
+ */
+public final class JFRSupport {
+  /**
+   * Flag indicates whether JFR is available in the current JVM.
+   */
+  private static final boolean AVAILABLE = checkAvailability();
+
+  /**
+   * Constructor is private to ensure that no instances of this class will be created.
+   */
+  private JFRSupport( ) {
+    // Nothing to do.
+  }
+
+  /**
+   * Method returns if Java Flight Recorder is available.
+   *
+   * @return boolean Method returns true if JFR events can be used.
+   */
+  public static boolean isAvailable( ) {
+    return AVAILABLE;
+  }
+
+  /**
+   * Method checks if the JFR API can be loaded.
+   *
+   * @return boolean Method returns true if the JFR API is available.
+   */
+  private static boolean checkAvailability( ) {
+    boolean lAvailable;
+    try {
+      Class.forName("jdk.jfr.Event", false, JFRSupport.class.getClassLoader());
+      lAvailable = true;
+    }
+    catch (ClassNotFoundException | LinkageError e) {
+      lAvailable = false;
+    }
+    return lAvailable;
+  }
+}
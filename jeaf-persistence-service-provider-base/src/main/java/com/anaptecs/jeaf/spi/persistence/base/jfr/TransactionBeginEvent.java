@@ -0,0 +1,81 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event for the begin of the transaction of an entity manager. As the connection is acquired when the transaction
+ * begins, the duration of the event includes the time waiting for a connection. The event must only be used if
+ * {@link JFRSupport#isAvailable()} returns true.
+ *
+ * @author JEAF Development Team
+ */
+@Name("com.anaptecs.jeaf.persistence.TransactionBegin")
+@Label("Transaction Begin")
+@Category({ "JEAF", "Persistence" })
+@Description("Begin of the transaction of an entity manager including the acquisition of its connection")
+public final class TransactionBeginEvent extends Event {
+  /**
+   * Type of the event. It is used to check cheaply whether the event is recorded.
+   */
+  private static final EventType TYPE = EventType.getEventType(TransactionBeginEvent.class);
+
+  @Label("Persistence Unit")
+  String persistenceUnit;
+
+  @Label("Component")
+  String component;
+
+  @Label("Priority Class")
+  @Description("Priority class of the component if the persistence unit uses the JEAF connection pool")
+  String priorityClass;
+
+  /**
+   * Method checks whether the event is recorded by any running recording.
+   *
+   * @return boolean Method returns true if the event is recorded.
+   */
+  public static boolean isRecording( ) {
+    return TYPE.isEnabled();
+  }
+
+  /**
+   * Method creates and begins a new event.
+   *
+   * @return {@link Object} Begun event. The type is not exposed so that callers do not depend on JFR.
+   */
+  public static Object start( ) {
+    TransactionBeginEvent lEvent = new TransactionBeginEvent();
+    lEvent.begin();
+    return lEvent;
+  }
+
+  /**
+   * Method ends and commits the passed event.
+   *
+   * @param pEvent Event that was returned by {@link #start()}. The parameter must not be null.
+   * @param pPersistenceUnit Name of the persistence unit. The parameter must not be null.
+   * @param pComponent Name of the component that owns the entity manager. The parameter must not be null.
+   * @param pPriorityClass Name of the priority class of the component. The parameter is null if the persistence unit
+   * does not use the JEAF connection pool.
+   */
+  public static void commit( Object pEvent, String pPersistenceUnit, String pComponent, String pPriorityClass ) {
+    TransactionBeginEvent lEvent = (TransactionBeginEvent) pEvent;
+    lEvent.end();
+    if (lEvent.shouldCommit() == true) {
+      lEvent.persistenceUnit = pPersistenceUnit;
+      lEvent.component = pComponent;
+      lEvent.priorityClass = pPriorityClass;
+      lEvent.commit();
+    }
+  }
+}
@@ -0,0 +1,86 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event for the commit or rollback of the transaction of an entity manager. The duration of the event is the
+ * duration of the whole transaction. The event must only be used if {@link JFRSupport#isAvailable()} returns true.
+ *
+ * @author JEAF Development Team
+ */
+@Name("com.anaptecs.jeaf.persistence.TransactionCompletion")
+@Label("Transaction Completion")
+@Category({ "JEAF", "Persistence" })
+@Description("Commit or rollback of the transaction of an entity manager")
+public final class TransactionCompletionEvent extends Event {
+  /**
+   * Type of the event. It is used to check cheaply whether the event is recorded.
+   */
+  private static final EventType TYPE = EventType.getEventType(TransactionCompletionEvent.class);
+
+  @Label("Persistence Unit")
+  String persistenceUnit;
+
+  @Label("Component")
+  String component;
+
+  @Label("Committed")
+  @Description("True if the transaction was committed and false if it was rolled back")
+  boolean committed;
+
+  @Label("Entity Managers")
+  @Description("Number of entity managers of the transaction context")
+  int entityManagers;
+
+  /**
+   * Method checks whether the event is recorded by any running recording.
+   *
+   * @return boolean Method returns true if the event is recorded.
+   */
+  public static boolean isRecording( ) {
+    return TYPE.isEnabled();
+  }
+
+  /**
+   * Method creates and begins a new event.
+   *
+   * @return {@link Object} Begun event. The type is not exposed so that callers do not depend on JFR.
+   */
+  public static Object start( ) {
+    TransactionCompletionEvent lEvent = new TransactionCompletionEvent();
+    lEvent.begin();
+    return lEvent;
+  }
+
+  /**
+   * Method ends and commits the passed event.
+   *
+   * @param pEvent Event that was returned by {@link #start()}. The parameter must not be null.
+   * @param pPersistenceUnit Name of the persistence unit. The parameter must not be null.
+   * @param pComponent Name of the component that owns the entity manager. The parameter must not be null.
+   * @param pCommitted Flag indicates whether the transaction was committed or rolled back.
+   * @param pEntityManagers Number of entity managers of the transaction context.
+   */
+  public static void commit( Object pEvent, String pPersistenceUnit, String pComponent, boolean pCommitted,
+      int pEntityManagers ) {
+    TransactionCompletionEvent lEvent = (TransactionCompletionEvent) pEvent;
+    lEvent.end();
+    if (lEvent.shouldCommit() == true) {
+      lEvent.persistenceUnit = pPersistenceUnit;
+      lEvent.component = pComponent;
+      lEvent.committed = pCommitted;
+      lEvent.entityManagers = pEntityManagers;
+      lEvent.commit();
+    }
+  }
+}
@@ -0,0 +1,70 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.jfr;
+
+import java.util.function.IntSupplier;
+
+import org.hibernate.BaseSessionEventListener;
+
+/**
+ * Session event listener records a {@link TransactionCompletionEvent} when the transaction of its session is committed
+ * or rolled back. The listener must only be used if {@link JFRSupport#isAvailable()} returns true. Only the first
+ * transaction after the listener was created is recorded.
+ *
+ * @author JEAF Development Team
+ */
+public final class TransactionEventListener extends BaseSessionEventListener {
+  /**
+   * Default serial version UID.
+   */
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * Name of the persistence unit whose transaction is recorded. The reference is never null.
+   */
+  private final String persistenceUnit;
+
+  /**
+   * Name of the component that owns the session. The reference is never null.
+   */
+  private final String component;
+
+  /**
+   * Supplier for the number of entity managers of the transaction context.
+   */
+  private final transient IntSupplier entityManagers;
+
+  /**
+   * Begun {@link TransactionCompletionEvent}. The reference is null after the transaction was completed.
+   */
+  private transient Object event;
+
+  /**
+   * Initialize object and begin the event for the transaction that is about to begin.
+   *
+   * @param pPersistenceUnit Name of the persistence unit. The parameter must not be null.
+   * @param pComponent Name of the component that owns the session. The parameter must not be null.
+   * @param pEntityManagers Supplier for the number of entity managers of the transaction context. The parameter must
+   * not be null.
+   */
+  public TransactionEventListener( String pPersistenceUnit, String pComponent, IntSupplier pEntityManagers ) {
+    persistenceUnit = pPersistenceUnit;
+    component = pComponent;
+    entityManagers = pEntityManagers;
+    event = TransactionCompletionEvent.start();
+  }
+
+  /**
+   * @see BaseSessionEventListener#transactionCompletion(boolean)
+   */
+  @Override
+  public void transactionCompletion( boolean pSuccessful ) {
+    if (event != null) {
+      TransactionCompletionEvent.commit(event, persistenceUnit, component, pSuccessful, entityManagers.getAsInt());
+      event = null;
+    }
+  }
+}
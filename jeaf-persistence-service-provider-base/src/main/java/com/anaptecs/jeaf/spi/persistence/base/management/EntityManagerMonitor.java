@@ -0,0 +1,94 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.management;
+
+import org.hibernate.BaseSessionEventListener;
+import org.hibernate.engine.transaction.spi.TransactionObserver;
+
+/**
+ * Class observes the transactions and the lifecycle of one entity manager and reports them to the
+ * {@link PersistenceUnitManagement} of its persistence unit.
+ *
+ * @author JEAF Development Team
+ */
+final class EntityManagerMonitor extends BaseSessionEventListener implements TransactionObserver {
+  /**
+   * Default serial version UID.
+   */
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * Management of the persistence unit to which the entity manager belongs.
+   */
+  private final transient PersistenceUnitManagement management;
+
+  /**
+   * Point in time (see {@link System#nanoTime()}) when the commit of the current transaction started or 0 if no
+   * commit is in progress.
+   */
+  private long commitStart;
+
+  /**
+   * Flag indicates whether the end of the entity manager was already reported. Hibernate may call {@link #end()} more
+   * than once.
+   */
+  private boolean closed;
+
+  /**
+   * Initialize object.
+   *
+   * @param pManagement Management of the persistence unit to which the entity manager belongs. The parameter must not
+   * be null.
+   */
+  EntityManagerMonitor( PersistenceUnitManagement pManagement ) {
+    management = pManagement;
+  }
+
+  /**
+   * @see TransactionObserver#afterBegin()
+   */
+  @Override
+  public void afterBegin( ) {
+    management.transactionBegun();
+  }
+
+  /**
+   * Method is called after changes were flushed and before the transaction is committed on the database.
+   *
+   * @see TransactionObserver#beforeCompletion()
+   */
+  @Override
+  public void beforeCompletion( ) {
+    commitStart = System.nanoTime();
+  }
+
+  /**
+   * @see TransactionObserver#afterCompletion(boolean, boolean)
+   */
+  @Override
+  public void afterCompletion( boolean pSuccessful, boolean pDelayed ) {
+    if (pSuccessful == true) {
+      management.transactionCommitted(commitStart != 0 ? System.nanoTime() - commitStart : 0);
+    }
+    else {
+      management.transactionRolledBack();
+    }
+    commitStart = 0;
+  }
+
+  /**
+   * Method is called when the entity manager is closed.
+   *
+   * @see BaseSessionEventListener#end()
+   */
+  @Override
+  public void end( ) {
+    if (closed == false) {
+      closed = true;
+      management.entityManagerClosed();
+    }
+  }
+}
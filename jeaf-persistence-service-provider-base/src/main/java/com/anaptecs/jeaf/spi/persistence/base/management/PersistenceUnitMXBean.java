@@ -0,0 +1,83 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.management;
+
+import java.util.Map;
+
+/**
+ * Interface defines the JMX view on a persistence unit. Persistence units are registered with the platform MBean server
+ * using object name <code>com.anaptecs.jeaf.persistence:type=PersistenceUnit,name=&lt;persistence unit&gt;</code> as
+ * soon as their entity manager factory was created. All durations are returned in milliseconds and all rates as events
+ * per second within the last minute.
+ *
+ * @author JEAF Development Team
+ */
+public interface PersistenceUnitMXBean {
+  String getPersistenceUnitName( );
+
+  /**
+   * Method returns the effective properties of the entity manager factory. Values of properties that contain passwords
+   * are masked.
+   *
+   * @return {@link Map} Effective properties sorted by their name. The method never returns null.
+   */
+  Map<String, String> getProperties( );
+
+  boolean isFactoryOpen( );
+
+  /**
+   * Method returns when the current entity manager factory was created.
+   *
+   * @return long Creation time in milliseconds since the epoch.
+   */
+  long getFactoryCreationTime( );
+
+  int getOpenEntityManagers( );
+
+  long getTransactionsBegun( );
+
+  long getTransactionsCommitted( );
+
+  long getTransactionsRolledBack( );
+
+  double getCommitRate( );
+
+  double getRollbackRate( );
+
+  /**
+   * Method returns the mean time of commits on the database. The time of flushing changes before the commit is not
+   * included.
+   *
+   * @return double Mean commit latency in milliseconds.
+   */
+  double getCommitLatencyMean( );
+
+  double getCommitLatency50thPercentile( );
+
+  double getCommitLatency99thPercentile( );
+
+  double getCommitLatencyMax( );
+
+  /**
+   * Method returns the share of connections of the connection pool that are currently in use.
+   *
+   * @return double Pool utilization between 0 and 1 or -1 if the persistence unit does not use a JEAF connection pool.
+   */
+  double getPoolUtilization( );
+
+  /**
+   * Method clears the second level cache including all query regions and the query result cache of the persistence
+   * unit. The query plan cache is kept as its plans do not depend on any data and were warmed up during bootstrap.
+   */
+  void clearCaches( );
+
+  /**
+   * Method closes the entity manager factory of the persistence unit and removes its query result cache. A new factory
+   * is created when the persistence unit is used the next time. Statistics of the persistence unit are kept. As the
+   * connections of the factory are closed, transactions that are still running will fail.
+   */
+  void evictFactory( );
+}
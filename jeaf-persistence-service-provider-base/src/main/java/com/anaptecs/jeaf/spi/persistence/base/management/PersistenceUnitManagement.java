@@ -0,0 +1,369 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.management;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+
+import com.anaptecs.jeaf.spi.persistence.base.enhancement.InstrumentationAgent;
+import com.anaptecs.jeaf.spi.persistence.base.pool.ConnectionPoolRegistry;
+import com.anaptecs.jeaf.spi.persistence.base.pool.PooledDataSource;
+import com.anaptecs.jeaf.spi.persistence.base.pool.TimeHistogram;
+import com.anaptecs.jeaf.spi.persistence.base.query.QueryResultCache;
+import com.anaptecs.jeaf.xfun.api.XFun;
+
+/**
+ * Class provides the runtime state and metrics of one persistence unit and the operations to manage it. Statistics are
+ * kept when the entity manager factory of the persistence unit is replaced. The same object is registered as MXBean
+ * (see {@link PersistenceUnitMXBean}).
+ *
+ * @author JEAF Development Team
+ */
+public final class PersistenceUnitManagement implements PersistenceUnitMXBean {
+  /**
+   * Value that is returned instead of passwords.
+   */
+  private static final String MASKED_VALUE = "******";
+
+  /**
+   * Name of the persistence unit. The reference is never null.
+   */
+  private final String persistenceUnitName;
+
+  /**
+   * Current entity manager factory of the persistence unit. The reference is never null after the object was
+   * registered.
+   */
+  private volatile EntityManagerFactory factory;
+
+  /**
+   * Point in time (see {@link System#currentTimeMillis()}) when the current entity manager factory was registered or
+   * 0 if no factory was registered yet.
+   */
+  private volatile long factoryCreationTime;
+
+  /**
+   * Number of entity managers of the persistence unit that are currently open.
+   */
+  private final AtomicInteger openEntityManagers = new AtomicInteger();
+
+  /**
+   * Number of transactions that were begun since the persistence unit was registered.
+   */
+  private final LongAdder transactionsBegun = new LongAdder();
+
+  /**
+   * Number of transactions that were committed since the persistence unit was registered.
+   */
+  private final LongAdder transactionsCommitted = new LongAdder();
+
+  /**
+   * Number of transactions that were rolled back since the persistence unit was registered.
+   */
+  private final LongAdder transactionsRolledBack = new LongAdder();
+
+  /**
+   * Number of commits within the last minute.
+   */
+  private final RateMeter commitRate = new RateMeter();
+
+  /**
+   * Number of rollbacks within the last minute.
+   */
+  private final RateMeter rollbackRate = new RateMeter();
+
+  /**
+   * Time that commits took on the database.
+   */
+  private final TimeHistogram commitLatency = new TimeHistogram();
+
+  /**
+   * Initialize object.
+   *
+   * @param pPersistenceUnitName Name of the persistence unit. The parameter must not be null.
+   */
+  PersistenceUnitManagement( String pPersistenceUnitName ) {
+    persistenceUnitName = pPersistenceUnitName;
+  }
+
+  /**
+   * Method sets the entity manager factory that was created for the persistence unit.
+   *
+   * @param pFactory Entity manager factory of the persistence unit. The parameter must not be null.
+   */
+  void setFactory( EntityManagerFactory pFactory ) {
+    factory = pFactory;
+    factoryCreationTime = System.currentTimeMillis();
+  }
+
+  /**
+   * Method is called when an entity manager of the persistence unit was opened.
+   */
+  void entityManagerOpened( ) {
+    openEntityManagers.incrementAndGet();
+  }
+
+  /**
+   * Method is called when an entity manager of the persistence unit was closed.
+   */
+  void entityManagerClosed( ) {
+    openEntityManagers.decrementAndGet();
+  }
+
+  /**
+   * Method is called when a transaction of the persistence unit was begun.
+   */
+  void transactionBegun( ) {
+    transactionsBegun.increment();
+  }
+
+  /**
+   * Method is called when a transaction of the persistence unit was committed.
+   *
+   * @param pCommitLatency Time in nanoseconds that the commit took on the database.
+   */
+  void transactionCommitted( long pCommitLatency ) {
+    transactionsCommitted.increment();
+    commitRate.record();
+    commitLatency.record(pCommitLatency);
+  }
+
+  /**
+   * Method is called when a transaction of the persistence unit was rolled back.
+   */
+  void transactionRolledBack( ) {
+    transactionsRolledBack.increment();
+    rollbackRate.record();
+  }
+
+  /**
+   * Method returns the current entity manager factory of the persistence unit.
+   *
+   * @return {@link EntityManagerFactory} Entity manager factory. The factory may already be closed if it was evicted.
+   */
+  public EntityManagerFactory getEntityManagerFactory( ) {
+    return factory;
+  }
+
+  /**
+   * Method returns the histogram of the time that commits took on the database.
+   *
+   * @return {@link TimeHistogram} Histogram of commit latencies. The method never returns null.
+   */
+  public TimeHistogram getCommitLatency( ) {
+    return commitLatency;
+  }
+
+  /**
+   * @see PersistenceUnitMXBean#getPersistenceUnitName()
+   */
+  @Override
+  public String getPersistenceUnitName( ) {
+    return persistenceUnitName;
+  }
+
+  /**
+   * @see PersistenceUnitMXBean#getProperties()
+   */
+  @Override
+  public Map<String, String> getProperties( ) {
+    Map<String, String> lProperties = new TreeMap<>();
+    EntityManagerFactory lFactory = factory;
+    if (lFactory != null && lFactory.isOpen() == true) {
+      for (Map.Entry<String, Object> lNext : lFactory.getProperties().entrySet()) {
+        String lKey = lNext.getKey();
+        if (lKey.toLowerCase(Locale.ROOT).contains("password") == true) {
+          lProperties.put(lKey, MASKED_VALUE);
+        }
+        else {
+          lProperties.put(lKey, String.valueOf(lNext.getValue()));
+        }
+      }
+    }
+    return lProperties;
+  }
+
+  /**
+   * @see PersistenceUnitMXBean#isFactoryOpen()
+   */
+  @Override
+  public boolean isFactoryOpen( ) {
+    EntityManagerFactory lFactory = factory;
+    return lFactory != null && lFactory.isOpen();
+  }
+
+  /**
+   * @see PersistenceUnitMXBean#getFactoryCreationTime()
+   */
+  @Override
+  public long getFactoryCreationTime( ) {
+    return factoryCreationTime;
+  }
+
+  /**
+   * @see PersistenceUnitMXBean#getOpenEntityManagers()
+   */
+  @Override
+  public int getOpenEntityManagers( ) {
+    return openEntityManagers.get();
+  }
+
+  /**
+   * @see PersistenceUnitMXBean#getTransactionsBegun()
+   */
+  @Override
+  public long getTransactionsBegun( ) {
+    return transactionsBegun.sum();
+  }
+
+  /**
+   * @see PersistenceUnitMXBean#getTransactionsCommitted()
+   */
+  @Override
+  public long getTransactionsCommitted( ) {
+    return transactionsCommitted.sum();
+  }
+
+  /**
+   * @see PersistenceUnitMXBean#getTransactionsRolledBack()
+   */
+  @Override
+  public long getTransactionsRolledBack( ) {
+    return transactionsRolledBack.sum();
+  }
+
+  /**
+   * @see PersistenceUnitMXBean#getCommitRate()
+   */
+  @Override
+  public double getCommitRate( ) {
+    return commitRate.getRate();
+  }
+
+  /**
+   * @see PersistenceUnitMXBean#getRollbackRate()
+   */
+  @Override
+  public double getRollbackRate( ) {
+    return rollbackRate.getRate();
+  }
+
+  /**
+   * @see PersistenceUnitMXBean#getCommitLatencyMean()
+   */
+  @Override
+  public double getCommitLatencyMean( ) {
+    return toMillis(commitLatency.getMean());
+  }
+
+  /**
+   * @see PersistenceUnitMXBean#getCommitLatency50thPercentile()
+   */
+  @Override
+  public double getCommitLatency50thPercentile( ) {
+    return toMillis(commitLatency.getPercentile(50));
+  }
+
+  /**
+   * @see PersistenceUnitMXBean#getCommitLatency99thPercentile()
+   */
+  @Override
+  public double getCommitLatency99thPercentile( ) {
+    return toMillis(commitLatency.getPercentile(99));
+  }
+
+  /**
+   * @see PersistenceUnitMXBean#getCommitLatencyMax()
+   */
+  @Override
+  public double getCommitLatencyMax( ) {
+    return toMillis(commitLatency.getMax());
+  }
+
+  /**
+   * @see PersistenceUnitMXBean#getPoolUtilization()
+   */
+  @Override
+  public double getPoolUtilization( ) {
+    PooledDataSource lPool = ConnectionPoolRegistry.getConnectionPool(persistenceUnitName);
+    double lUtilization;
+    if (lPool != null) {
+      lUtilization = (double) lPool.getActiveConnections() / Math.max(lPool.getMaxSize(), 1);
+    }
+    else {
+      lUtilization = -1;
+    }
+    return lUtilization;
+  }
+
+  /**
+   * @see PersistenceUnitMXBean#clearCaches()
+   */
+  @Override
+  public void clearCaches( ) {
+    SessionFactoryImplementor lFactory = this.getOpenFactory().unwrap(SessionFactoryImplementor.class);
+    lFactory.getCache().evictAllRegions();
+    QueryResultCache lQueryResultCache = QueryResultCache.getCache(persistenceUnitName);
+    if (lQueryResultCache != null) {
+      lQueryResultCache.clear();
+    }
+    XFun.getTrace().info("Cleared caches of persistence unit " + persistenceUnitName);
+  }
+
+  /**
+   * @see PersistenceUnitMXBean#evictFactory()
+   */
+  @Override
+  public void evictFactory( ) {
+    this.getOpenFactory().close();
+    QueryResultCache.removeCache(persistenceUnitName);
+    InstrumentationAgent.removeTransformers(persistenceUnitName);
+    XFun.getTrace().info("Evicted entity manager factory of persistence unit " + persistenceUnitName);
+  }
+
+  /**
+   * Method returns the entity manager factory of the persistence unit if it is open.
+   *
+   * @return {@link EntityManagerFactory} Open entity manager factory. The method never returns null.
+   * @throws IllegalStateException if the factory was already closed.
+   */
+  private EntityManagerFactory getOpenFactory( ) {
+    EntityManagerFactory lFactory = factory;
+    if (lFactory == null || lFactory.isOpen() == false) {
+      throw new IllegalStateException("Entity manager factory of persistence unit " + persistenceUnitName
+          + " is closed.");
+    }
+    return lFactory;
+  }
+
+  /**
+   * Method converts the passed duration into milliseconds.
+   *
+   * @param pNanos Duration in nanoseconds.
+   * @return double Duration in milliseconds.
+   */
+  private static double toMillis( long pNanos ) {
+    return (double) pNanos / TimeUnit.MILLISECONDS.toNanos(1);
+  }
+
+  /**
+   * @see Object#toString()
+   */
+  @Override
+  public String toString( ) {
+    return "PersistenceUnitManagement[" + persistenceUnitName + ", factoryOpen=" + this.isFactoryOpen()
+        + ", openEntityManagers=" + this.getOpenEntityManagers() + ", committed=" + this.getTransactionsCommitted()
+        + ", rolledBack=" + this.getTransactionsRolledBack() + ", commitLatency=[" + commitLatency + "]]";
+  }
+}
@@ -0,0 +1,180 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.management;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.engine.spi.SessionImplementor;
+
+import com.anaptecs.jeaf.spi.persistence.base.pool.ConnectionPoolRegistry;
+import com.anaptecs.jeaf.xfun.api.XFun;
+import com.anaptecs.jeaf.xfun.api.checks.Check;
+
+/**
+ * Class keeps track of the management of all persistence units whose entity manager factory was created. The
+ * management of all registered persistence units is also published via JMX (see {@link PersistenceUnitMXBean}).
+ *
+ * @author JEAF Development Team
+ */
+public final class PersistenceUnitRegistry {
+  /**
+   * Map contains the management of all persistence units. The name of the persistence unit is used as key.
+   */
+  private static final ConcurrentHashMap<String, PersistenceUnitManagement> UNITS = new ConcurrentHashMap<>();
+
+  /**
+   * Constructor is private to ensure that no instances of this class will be created.
+   */
+  private PersistenceUnitRegistry( ) {
+    // Nothing to do.
+  }
+
+  /**
+   * Method registers the passed entity manager factory of a persistence unit. If the persistence unit was registered
+   * before, its factory is replaced and its statistics are kept.
+   *
+   * @param pPersistenceUnitName Name of the persistence unit. The parameter must not be null.
+   * @param pFactory Entity manager factory that was created for the persistence unit. The parameter must not be null.
+   * @return {@link PersistenceUnitManagement} Management of the persistence unit. The method never returns null.
+   */
+  public static PersistenceUnitManagement register( String pPersistenceUnitName, EntityManagerFactory pFactory ) {
+    // Check parameters
+    Check.checkInvalidParameterNull(pPersistenceUnitName, "pPersistenceUnitName");
+    Check.checkInvalidParameterNull(pFactory, "pFactory");
+
+    PersistenceUnitManagement lManagement =
+        UNITS.computeIfAbsent(pPersistenceUnitName, PersistenceUnitManagement::new);
+    lManagement.setFactory(pFactory);
+    registerMBean(lManagement);
+    return lManagement;
+  }
+
+  /**
+   * Method unregisters the passed persistence unit.
+   *
+   * @param pPersistenceUnitName Name of the persistence unit. The parameter must not be null.
+   */
+  public static void unregister( String pPersistenceUnitName ) {
+    // Check parameter
+    Check.checkInvalidParameterNull(pPersistenceUnitName, "pPersistenceUnitName");
+
+    if (UNITS.remove(pPersistenceUnitName) != null) {
+      unregisterMBean(pPersistenceUnitName);
+    }
+  }
+
+  /**
+   * Method starts monitoring the transactions and the lifecycle of the passed entity manager. Nothing is done if the
+   * persistence unit is not registered.
+   *
+   * @param pPersistenceUnitName Name of the persistence unit of the entity manager. The parameter must not be null.
+   * @param pEntityManager Entity manager that was just created. Its transaction must not have been begun yet. The
+   * parameter must not be null.
+   */
+  public static void monitor( String pPersistenceUnitName, EntityManager pEntityManager ) {
+    // Check parameters
+    Check.checkInvalidParameterNull(pPersistenceUnitName, "pPersistenceUnitName");
+    Check.checkInvalidParameterNull(pEntityManager, "pEntityManager");
+
+    PersistenceUnitManagement lManagement = UNITS.get(pPersistenceUnitName);
+    if (lManagement != null) {
+      SessionImplementor lSession = pEntityManager.unwrap(SessionImplementor.class);
+      EntityManagerMonitor lMonitor = new EntityManagerMonitor(lManagement);
+      lSession.getTransactionCoordinator().addObserver(lMonitor);
+      lSession.addEventListeners(lMonitor);
+      lManagement.entityManagerOpened();
+    }
+  }
+
+  /**
+   * Method returns the object name under which the management of the passed persistence unit is registered with the
+   * platform MBean server.
+   *
+   * @param pPersistenceUnitName Name of the persistence unit. The parameter must not be null.
+   * @return {@link ObjectName} Object name of the persistence unit. The method never returns null.
+   */
+  public static ObjectName getObjectName( String pPersistenceUnitName ) {
+    // Check parameter
+    Check.checkInvalidParameterNull(pPersistenceUnitName, "pPersistenceUnitName");
+
+    try {
+      return new ObjectName(ConnectionPoolRegistry.JMX_DOMAIN + ":type=PersistenceUnit,name="
+          + ObjectName.quote(pPersistenceUnitName));
+    }
+    catch (JMException e) {
+      throw new IllegalArgumentException("Invalid persistence unit name " + pPersistenceUnitName, e);
+    }
+  }
+
+  /**
+   * Method registers the passed management with the platform MBean server unless it is already registered. As
+   * management is not essential errors are only traced.
+   *
+   * @param pManagement Management that should be registered. The parameter must not be null.
+   */
+  private static void registerMBean( PersistenceUnitManagement pManagement ) {
+    try {
+      MBeanServer lServer = ManagementFactory.getPlatformMBeanServer();
+      ObjectName lName = getObjectName(pManagement.getPersistenceUnitName());
+      if (lServer.isRegistered(lName) == false) {
+        lServer.registerMBean(pManagement, lName);
+      }
+    }
+    catch (JMException | RuntimeException e) {
+      XFun.getTrace().warn("Unable to register MBean for persistence unit " + pManagement.getPersistenceUnitName(), e);
+    }
+  }
+
+  /**
+   * Method unregisters the management of the passed persistence unit from the platform MBean server.
+   *
+   * @param pPersistenceUnitName Name of the persistence unit. The parameter must not be null.
+   */
+  private static void unregisterMBean( String pPersistenceUnitName ) {
+    try {
+      MBeanServer lServer = ManagementFactory.getPlatformMBeanServer();
+      ObjectName lName = getObjectName(pPersistenceUnitName);
+      if (lServer.isRegistered(lName)) {
+        lServer.unregisterMBean(lName);
+      }
+    }
+    catch (JMException | RuntimeException e) {
+      XFun.getTrace().warn("Unable to unregister MBean for persistence unit " + pPersistenceUnitName, e);
+    }
+  }
+
+  /**
+   * Method returns the management of the passed persistence unit.
+   *
+   * @param pPersistenceUnitName Name of the persistence unit. The parameter must not be null.
+   * @return {@link PersistenceUnitManagement} Management of the persistence unit or null if its entity manager factory
+   * was not created yet.
+   */
+  public static PersistenceUnitManagement getManagement( String pPersistenceUnitName ) {
+    // Check parameter
+    Check.checkInvalidParameterNull(pPersistenceUnitName, "pPersistenceUnitName");
+
+    return UNITS.get(pPersistenceUnitName);
+  }
+
+  /**
+   * Method returns the management of all registered persistence units.
+   *
+   * @return {@link Collection} Management of all persistence units. The method never returns null.
+   */
+  public static Collection<PersistenceUnitManagement> getManagements( ) {
+    return new ArrayList<>(UNITS.values());
+  }
+}
@@ -0,0 +1,82 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.management;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class measures the rate of events within the last minute. Events are counted in one bucket per second that is reused
+ * after one minute.
+ *
+ * @author JEAF Development Team
+ */
+final class RateMeter {
+  /**
+   * Number of seconds over which the rate is calculated.
+   */
+  static final int WINDOW = 60;
+
+  /**
+   * Number of events per bucket.
+   */
+  private final long[] counts = new long[WINDOW];
+
+  /**
+   * Second (see {@link System#nanoTime()}) to which the bucket with the same index belongs.
+   */
+  private final long[] seconds = new long[WINDOW];
+
+  /**
+   * Method records one event.
+   */
+  void record( ) {
+    this.record(currentSecond());
+  }
+
+  /**
+   * Method records one event in the passed second.
+   *
+   * @param pSecond Second in which the event happened.
+   */
+  synchronized void record( long pSecond ) {
+    int lIndex = (int) (pSecond % WINDOW);
+    if (seconds[lIndex] != pSecond) {
+      seconds[lIndex] = pSecond;
+      counts[lIndex] = 0;
+    }
+    counts[lIndex]++;
+  }
+
+  /**
+   * Method returns the rate of events within the last minute.
+   *
+   * @return double Events per second.
+   */
+  double getRate( ) {
+    return this.getRate(currentSecond());
+  }
+
+  /**
+   * Method returns the rate of events within the minute before the passed second.
+   *
+   * @param pSecond Current second.
+   * @return double Events per second.
+   */
+  synchronized double getRate( long pSecond ) {
+    long lCount = 0;
+    for (int i = 0; i < WINDOW; i++) {
+      if (pSecond - seconds[i] < WINDOW) {
+        lCount += counts[i];
+      }
+    }
+    return (double) lCount / WINDOW;
+  }
+
+  private static long currentSecond( ) {
+    // Offset ensures that no second matches the initial value of the buckets.
+    return TimeUnit.NANOSECONDS.toSeconds(System.nanoTime()) + WINDOW;
+  }
+}
@@ -0,0 +1,163 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.pool;
+
+/**
+ * Class calculates the target size of a connection pool from its observed demand. The target size always stays within
+ * the configured minimum and maximum size of the pool.
+ *
+ * The demand (active connections plus waiting threads) is sampled regularly. For every decision the peak demand since
+ * the last decision is smoothed using an exponentially weighted moving average and some headroom is added. In order to
+ * avoid oscillation the pool grows immediately but only shrinks after the smoothed as well as the peak demand were
+ * lower for several decisions in a row and then only by <code>incrementSize</code> connections at a time. If threads
+ * had to wait too long for a connection or even ran into timeouts then the pool grows by at least
+ * <code>incrementSize</code> connections.
+ *
+ * @author JEAF Development Team
+ */
+public final class AdaptivePoolSizer {
+  /**
+   * Weight of the latest peak demand within the moving average.
+   */
+  private static final double SMOOTHING_FACTOR = 0.3;
+
+  /**
+   * Factor by which the smoothed demand is increased to get the target size.
+   */
+  private static final double HEADROOM = 1.25;
+
+  /**
+   * Number of decisions in a row that must indicate a lower demand before the pool shrinks.
+   */
+  private static final int SHRINK_DELAY = 3;
+
+  /**
+   * Minimum size of the pool. The target size never falls below it.
+   */
+  private final int minSize;
+
+  /**
+   * Maximum size of the pool. The target size never exceeds it.
+   */
+  private final int maxSize;
+
+  /**
+   * Number of connections by which the pool grows or shrinks at least. The value is at least 1.
+   */
+  private final int incrementSize;
+
+  /**
+   * Mean acquire wait time in nanoseconds above which the pool is considered to be too small.
+   */
+  private final long waitThreshold;
+
+  /**
+   * Current target size of the pool.
+   */
+  private volatile int targetSize;
+
+  /**
+   * Peak demand since the last decision.
+   */
+  private int peakDemand;
+
+  /**
+   * Smoothed peak demand. A negative value indicates that no decision was made yet.
+   */
+  private double smoothedDemand = -1;
+
+  /**
+   * Number of decisions in a row that indicated a lower demand.
+   */
+  private int shrinkVotes;
+
+  /**
+   * Initialize object.
+   *
+   * @param pMinSize Minimum size of the pool.
+   * @param pMaxSize Maximum size of the pool. The value must not be less than the minimum size.
+   * @param pIncrementSize Number of connections by which the pool grows or shrinks at least.
+   * @param pWaitThreshold Mean acquire wait time in nanoseconds above which the pool is considered to be too small.
+   */
+  public AdaptivePoolSizer( int pMinSize, int pMaxSize, int pIncrementSize, long pWaitThreshold ) {
+    minSize = pMinSize;
+    maxSize = Math.max(pMaxSize, pMinSize);
+    incrementSize = Math.max(pIncrementSize, 1);
+    waitThreshold = pWaitThreshold;
+    targetSize = minSize;
+  }
+
+  /**
+   * Method returns the current target size of the pool.
+   *
+   * @return int Target size between minimum and maximum size of the pool.
+   */
+  public int getTargetSize( ) {
+    return targetSize;
+  }
+
+  /**
+   * Method records the current demand of the pool.
+   *
+   * @param pDemand Number of active connections plus number of threads that are waiting for a connection.
+   */
+  public synchronized void sample( int pDemand ) {
+    peakDemand = Math.max(peakDemand, pDemand);
+  }
+
+  /**
+   * Method calculates the new target size of the pool based on the demand that was sampled since the last call and on
+   * the passed wait statistics.
+   *
+   * @param pAcquisitions Number of connections that were acquired since the last call.
+   * @param pTotalWaitTime Total time in nanoseconds that threads waited for these connections.
+   * @param pTimeouts Number of checkout timeouts since the last call.
+   * @return int New target size of the pool.
+   */
+  public synchronized int adjust( long pAcquisitions, long pTotalWaitTime, long pTimeouts ) {
+    // Smooth peak demand.
+    if (smoothedDemand < 0) {
+      smoothedDemand = peakDemand;
+    }
+    else {
+      smoothedDemand = SMOOTHING_FACTOR * peakDemand + (1 - SMOOTHING_FACTOR) * smoothedDemand;
+    }
+    int lDesired = (int) Math.ceil(smoothedDemand * HEADROOM);
+    int lPeakDesired = (int) Math.ceil(peakDemand * HEADROOM);
+    peakDemand = 0;
+
+    // Threads had to wait too long so the pool is too small for sure.
+    long lMeanWaitTime;
+    if (pAcquisitions > 0) {
+      lMeanWaitTime = pTotalWaitTime / pAcquisitions;
+    }
+    else {
+      lMeanWaitTime = 0;
+    }
+    if (pTimeouts > 0 || lMeanWaitTime > waitThreshold) {
+      lDesired = Math.max(lDesired, targetSize + incrementSize);
+    }
+    lDesired = Math.min(Math.max(lDesired, minSize), maxSize);
+
+    // Grow immediately but shrink with delay.
+    if (lDesired > targetSize) {
+      targetSize = lDesired;
+      shrinkVotes = 0;
+    }
+    // Pool is only shrunk if also the latest peak demand does not require the current size.
+    else if (lDesired < targetSize && lPeakDesired < targetSize) {
+      shrinkVotes++;
+      if (shrinkVotes >= SHRINK_DELAY) {
+        targetSize = Math.max(lDesired, targetSize - incrementSize);
+        shrinkVotes = 0;
+      }
+    }
+    else {
+      shrinkVotes = 0;
+    }
+    return targetSize;
+  }
+}
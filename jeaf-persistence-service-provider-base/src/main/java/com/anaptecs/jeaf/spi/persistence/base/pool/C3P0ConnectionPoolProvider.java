@@ -0,0 +1,65 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.pool;
+
+import java.util.Properties;
+
+import com.anaptecs.jeaf.xfun.api.checks.Check;
+
+/**
+ * Class implements a connection pool provider that maps the connection pool settings to the properties of c3p0. This
+ * is the default connection pool provider.
+ *
+ * @author JEAF Development Team
+ */
+public class C3P0ConnectionPoolProvider implements ConnectionPoolProvider {
+  /**
+   * Name of the provider.
+   */
+  public static final String NAME = "c3p0";
+
+  /**
+   * @see ConnectionPoolProvider#getName()
+   */
+  @Override
+  public String getName( ) {
+    return NAME;
+  }
+
+  /**
+   * @see ConnectionPoolProvider#addConnectionPoolProperties(ConnectionPoolSettings, Properties)
+   */
+  @Override
+  public void addConnectionPoolProperties( ConnectionPoolSettings pSettings, Properties pProperties ) {
+    // Check parameters
+    Check.checkInvalidParameterNull(pSettings, "pSettings");
+    Check.checkInvalidParameterNull(pProperties, "pProperties");
+
+    // Map connection pool settings to their matching c3p0 properties
+    if (pSettings.getMinSize() != null) {
+      pProperties.put("hibernate.c3p0.min_size", pSettings.getMinSize());
+    }
+    if (pSettings.getMaxSize() != null) {
+      pProperties.put("hibernate.c3p0.max_size", pSettings.getMaxSize());
+    }
+    if (pSettings.getIncrementSize() != null) {
+      pProperties.put("hibernate.c3p0.acquire_increment", pSettings.getIncrementSize());
+    }
+    if (pSettings.getPreparedStatementCacheSize() != null) {
+      pProperties.put("hibernate.c3p0.max_statements", pSettings.getPreparedStatementCacheSize());
+    }
+    if (pSettings.getTimeout() != null) {
+      pProperties.put("hibernate.c3p0.timeout", pSettings.getTimeout());
+    }
+    if (pSettings.getIdleTestPeriod() != null) {
+      pProperties.put("hibernate.c3p0.idle_test_period", pSettings.getIdleTestPeriod());
+    }
+    // Hibernate's c3p0 connection provider applies this setting to every connection that it takes from the pool.
+    if (pSettings.isAutoCommitDisabled() == true) {
+      pProperties.put("hibernate.connection.autocommit", "false");
+    }
+  }
+}
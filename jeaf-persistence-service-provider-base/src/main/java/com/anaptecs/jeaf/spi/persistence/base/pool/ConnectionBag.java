@@ -0,0 +1,276 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.pool;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Class holds all pooled connections of a {@link PooledDataSource}. Borrowing and returning connections does not
+ * require any locks:
+ * <ul>
+ * <li>Every thread remembers the connections it returned. As threads tend to reuse the same connection this is the fast
+ * path when borrowing a connection.</li>
+ * <li>If none of these connections is available all connections of the pool are scanned.</li>
+ * <li>If there still is no idle connection the thread waits on a fair handoff queue. Returned or newly created
+ * connections are passed directly to waiting threads.</li>
+ * </ul>
+ * The state of a connection is only changed via compare-and-set (see {@link PoolEntry}). Thus a connection that is
+ * referenced from several places can still only be borrowed once.
+ *
+ * @author JEAF Development Team
+ */
+final class ConnectionBag {
+  /**
+   * Interface is implemented by the pool to get informed that new connections are required.
+   */
+  interface Listener {
+    /**
+     * Method is called when a thread has to wait as no idle connection is available.
+     *
+     * @param pWaiting Number of threads that are currently waiting for a connection.
+     */
+    void connectionsRequired( int pWaiting );
+  }
+
+  /**
+   * Maximum number of connections that are remembered per thread.
+   */
+  private static final int MAX_THREAD_LOCAL_ENTRIES = 16;
+
+  /**
+   * All connections of the pool independent of their state.
+   */
+  private final CopyOnWriteArrayList<PoolEntry> sharedList = new CopyOnWriteArrayList<>();
+
+  /**
+   * Connections that were returned by the current thread. Weak references are used so that connections that were
+   * removed from the pool are not kept alive by threads.
+   */
+  private final ThreadLocal<List<WeakReference<PoolEntry>>> threadList =
+      ThreadLocal.withInitial(( ) -> new ArrayList<>(MAX_THREAD_LOCAL_ENTRIES));
+
+  /**
+   * Queue is used to pass connections directly to waiting threads. The queue is fair so that threads are served in
+   * the order in which they started to wait.
+   */
+  private final SynchronousQueue<PoolEntry> handoffQueue = new SynchronousQueue<>(true);
+
+  /**
+   * Number of threads that are currently waiting for a connection.
+   */
+  private final AtomicInteger waiters = new AtomicInteger();
+
+  /**
+   * Listener that gets informed when connections are required. The reference is never null.
+   */
+  private final Listener listener;
+
+  /**
+   * Flag indicates that the bag was closed.
+   */
+  private volatile boolean closed;
+
+  /**
+   * Initialize object.
+   *
+   * @param pListener Listener that gets informed when connections are required. The parameter must not be null.
+   */
+  ConnectionBag( Listener pListener ) {
+    listener = pListener;
+  }
+
+  /**
+   * Method borrows a connection from the bag.
+   *
+   * @param pTimeout Maximum time in nanoseconds to wait for a connection.
+   * @return {@link PoolEntry} Borrowed connection or null if no connection became available within the passed time.
+   * @throws InterruptedException if the current thread was interrupted while waiting for a connection.
+   */
+  PoolEntry borrow( long pTimeout ) throws InterruptedException {
+    // Try connections that were used by the current thread before. Most recently returned connection comes first.
+    List<WeakReference<PoolEntry>> lThreadList = threadList.get();
+    for (int i = lThreadList.size() - 1; i >= 0; i--) {
+      PoolEntry lEntry = lThreadList.remove(i).get();
+      if (lEntry != null && lEntry.compareAndSetState(PoolEntry.NOT_IN_USE, PoolEntry.IN_USE)) {
+        return lEntry;
+      }
+    }
+
+    // Register as waiter before scanning so that no returned connection can be missed.
+    int lWaiting = waiters.incrementAndGet();
+    try {
+      for (PoolEntry lEntry : sharedList) {
+        if (lEntry.compareAndSetState(PoolEntry.NOT_IN_USE, PoolEntry.IN_USE)) {
+          // We might have stolen a connection that was meant for another waiting thread.
+          if (lWaiting > 1) {
+            listener.connectionsRequired(lWaiting - 1);
+          }
+          return lEntry;
+        }
+      }
+
+      // No idle connection available.
+      listener.connectionsRequired(lWaiting);
+
+      long lDeadline = System.nanoTime() + pTimeout;
+      long lRemaining = pTimeout;
+      while (lRemaining > 0 && closed == false) {
+        PoolEntry lEntry = handoffQueue.poll(lRemaining, TimeUnit.NANOSECONDS);
+        if (lEntry == null || lEntry.compareAndSetState(PoolEntry.NOT_IN_USE, PoolEntry.IN_USE)) {
+          return lEntry;
+        }
+        lRemaining = lDeadline - System.nanoTime();
+      }
+      return null;
+    }
+    finally {
+      waiters.decrementAndGet();
+    }
+  }
+
+  /**
+   * Method returns the passed connection to the bag. If threads are waiting then the connection is passed to them
+   * directly.
+   *
+   * @param pEntry Connection that should be returned. The parameter must not be null.
+   */
+  void requite( PoolEntry pEntry ) {
+    pEntry.touch();
+    pEntry.setState(PoolEntry.NOT_IN_USE);
+
+    for (int i = 0; waiters.get() > 0; i++) {
+      if (pEntry.getState() != PoolEntry.NOT_IN_USE || handoffQueue.offer(pEntry)) {
+        return;
+      }
+      else if ((i & 0xff) == 0xff) {
+        LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(10));
+      }
+      else {
+        Thread.yield();
+      }
+    }
+
+    // Remember connection for the current thread.
+    List<WeakReference<PoolEntry>> lThreadList = threadList.get();
+    if (lThreadList.size() < MAX_THREAD_LOCAL_ENTRIES) {
+      lThreadList.add(new WeakReference<>(pEntry));
+    }
+  }
+
+  /**
+   * Method adds the passed connection to the bag. If its state is {@link PoolEntry#NOT_IN_USE} and threads are waiting
+   * then it is passed to them directly.
+   *
+   * @param pEntry Connection that should be added. The parameter must not be null.
+   */
+  void add( PoolEntry pEntry ) {
+    sharedList.add(pEntry);
+
+    // Pass connection to waiting threads.
+    while (waiters.get() > 0 && pEntry.getState() == PoolEntry.NOT_IN_USE && handoffQueue.offer(pEntry) == false) {
+      Thread.yield();
+    }
+  }
+
+  /**
+   * Method removes the passed connection from the bag. Only borrowed or reserved connections can be removed.
+   *
+   * @param pEntry Connection that should be removed. The parameter must not be null.
+   * @return boolean Method returns true if the connection was removed and false if it was already removed before.
+   */
+  boolean remove( PoolEntry pEntry ) {
+    boolean lRemoved;
+    if (pEntry.compareAndSetState(PoolEntry.IN_USE, PoolEntry.REMOVED)
+        || pEntry.compareAndSetState(PoolEntry.RESERVED, PoolEntry.REMOVED) || closed == true) {
+      lRemoved = sharedList.remove(pEntry);
+    }
+    else {
+      lRemoved = false;
+    }
+    return lRemoved;
+  }
+
+  /**
+   * Method reserves the passed connection so that it can not be borrowed, e.g. during validation.
+   *
+   * @param pEntry Connection that should be reserved. The parameter must not be null.
+   * @return boolean Method returns true if the connection was idle and is now reserved.
+   */
+  boolean reserve( PoolEntry pEntry ) {
+    return pEntry.compareAndSetState(PoolEntry.NOT_IN_USE, PoolEntry.RESERVED);
+  }
+
+  /**
+   * Method releases the reservation of the passed connection.
+   *
+   * @param pEntry Connection that was reserved before. The parameter must not be null.
+   */
+  void unreserve( PoolEntry pEntry ) {
+    if (pEntry.compareAndSetState(PoolEntry.RESERVED, PoolEntry.NOT_IN_USE)) {
+      while (waiters.get() > 0 && pEntry.getState() == PoolEntry.NOT_IN_USE
+          && handoffQueue.offer(pEntry) == false) {
+        Thread.yield();
+      }
+    }
+  }
+
+  /**
+   * Method returns all connections of the bag.
+   *
+   * @return {@link List} Snapshot of all connections independent of their state. The method never returns null.
+   */
+  List<PoolEntry> values( ) {
+    return new ArrayList<>(sharedList);
+  }
+
+  /**
+   * Method returns the number of connections in the passed state.
+   *
+   * @param pState State of the connections that should be counted.
+   * @return int Number of connections in the passed state.
+   */
+  int getCount( int pState ) {
+    int lCount = 0;
+    for (PoolEntry lEntry : sharedList) {
+      if (lEntry.getState() == pState) {
+        lCount++;
+      }
+    }
+    return lCount;
+  }
+
+  /**
+   * Method returns the number of connections within the bag.
+   *
+   * @return int Number of connections.
+   */
+  int size( ) {
+    return sharedList.size();
+  }
+
+  /**
+   * Method returns the number of threads that are currently waiting for a connection.
+   *
+   * @return int Number of waiting threads.
+   */
+  int getWaiters( ) {
+    return waiters.get();
+  }
+
+  /**
+   * Method closes the bag. Afterwards no further connections will be handed out.
+   */
+  void close( ) {
+    closed = true;
+  }
+}
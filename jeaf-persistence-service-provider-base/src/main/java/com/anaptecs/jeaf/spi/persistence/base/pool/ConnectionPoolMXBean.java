@@ -0,0 +1,170 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.pool;
+
+/**
+ * Interface defines the JMX view on the metrics of a connection pool. Pools are registered with the platform MBean
+ * server using object name
+ * <code>com.anaptecs.jeaf.persistence:type=ConnectionPool,name=&lt;persistence unit&gt;</code>. All durations are
+ * returned in milliseconds.
+ *
+ * @author JEAF Development Team
+ */
+public interface ConnectionPoolMXBean {
+  /**
+   * Method returns the name of the persistence unit to which the pool belongs.
+   *
+   * @return {@link String} Name of the persistence unit. The method never returns null.
+   */
+  String getPersistenceUnitName( );
+
+  /**
+   * Method returns the minimum number of connections within the pool.
+   *
+   * @return int Minimum pool size.
+   */
+  int getMinSize( );
+
+  /**
+   * Method returns the maximum number of connections within the pool.
+   *
+   * @return int Maximum pool size.
+   */
+  int getMaxSize( );
+
+  /**
+   * Method returns the number of connections that the pool currently tries to keep.
+   *
+   * @return int Target size of the pool.
+   */
+  int getTargetSize( );
+
+  /**
+   * Method returns the number of physical connections within the pool.
+   *
+   * @return int Number of physical connections.
+   */
+  int getTotalConnections( );
+
+  /**
+   * Method returns the number of connections that are currently borrowed from the pool.
+   *
+   * @return int Number of active connections.
+   */
+  int getActiveConnections( );
+
+  /**
+   * Method returns the number of idle connections within the pool.
+   *
+   * @return int Number of idle connections.
+   */
+  int getIdleConnections( );
+
+  /**
+   * Method returns the number of physical connections that are currently created.
+   *
+   * @return int Number of pending connections.
+   */
+  int getPendingConnections( );
+
+  /**
+   * Method returns the number of threads that are currently waiting for a connection.
+   *
+   * @return int Number of waiting threads.
+   */
+  int getThreadsAwaitingConnection( );
+
+  /**
+   * Method returns how often a connection was successfully borrowed from the pool.
+   *
+   * @return long Number of acquired connections since the pool was created.
+   */
+  long getConnectionsAcquired( );
+
+  /**
+   * Method returns how many physical connections were opened.
+   *
+   * @return long Number of created connections since the pool was created.
+   */
+  long getConnectionsCreated( );
+
+  /**
+   * Method returns how many physical connections were removed from the pool and closed.
+   *
+   * @return long Number of closed connections since the pool was created.
+   */
+  long getConnectionsClosed( );
+
+  /**
+   * Method returns how often a thread did not get a connection within the checkout timeout.
+   *
+   * @return long Number of checkout timeouts since the pool was created.
+   */
+  long getConnectionTimeouts( );
+
+  /**
+   * Method returns how often the validation of a connection failed.
+   *
+   * @return long Number of failed validations since the pool was created.
+   */
+  long getValidationFailures( );
+
+  /**
+   * Method returns the number of connections that were opened and validated during pre-warming.
+   *
+   * @return int Number of pre-warmed connections or 0 if the pool was not pre-warmed.
+   */
+  int getPrewarmedConnections( );
+
+  /**
+   * Method returns how long pre-warming of the pool took.
+   *
+   * @return long Duration of pre-warming in milliseconds or -1 if the pool was not pre-warmed.
+   */
+  long getPrewarmTime( );
+
+  /**
+   * Method returns the mean time that threads waited for a connection.
+   *
+   * @return double Mean acquire wait time in milliseconds.
+   */
+  double getAcquireWaitTimeMean( );
+
+  /**
+   * Method returns the 99th percentile of the time that threads waited for a connection.
+   *
+   * @return double 99th percentile of the acquire wait time in milliseconds.
+   */
+  double getAcquireWaitTime99thPercentile( );
+
+  /**
+   * Method returns the maximum time that a thread waited for a connection.
+   *
+   * @return double Maximum acquire wait time in milliseconds.
+   */
+  double getAcquireWaitTimeMax( );
+
+  /**
+   * Method returns the mean time that connections were used before they were returned to the pool.
+   *
+   * @return double Mean connection hold time in milliseconds.
+   */
+  double getConnectionHoldTimeMean( );
+
+  /**
+   * Method returns the 99th percentile of the time that connections were used before they were returned.
+   *
+   * @return double 99th percentile of the connection hold time in milliseconds.
+   */
+  double getConnectionHoldTime99thPercentile( );
+
+  /**
+   * Method returns the maximum time that a connection was used before it was returned to the pool.
+   *
+   * @return double Maximum connection hold time in milliseconds.
+   */
+  double getConnectionHoldTimeMax( );
+}
@@ -0,0 +1,351 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.pool;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Class provides the metrics of a {@link PooledDataSource}. Counters are based on {@link LongAdder} so that recording
+ * them does not add contention when connections are acquired. Gauges like the number of active connections are
+ * calculated when they are read. The same object is registered as MXBean (see {@link ConnectionPoolMXBean}).
+ *
+ * @author JEAF Development Team
+ */
+public final class ConnectionPoolMetrics implements ConnectionPoolMXBean {
+  /**
+   * Pool whose metrics are provided. The reference is never null.
+   */
+  private final PooledDataSource pool;
+
+  /**
+   * Number of connections that were successfully borrowed from the pool.
+   */
+  private final LongAdder connectionsAcquired = new LongAdder();
+
+  /**
+   * Number of physical connections that were opened.
+   */
+  private final LongAdder connectionsCreated = new LongAdder();
+
+  /**
+   * Number of physical connections that were removed from the pool and closed.
+   */
+  private final LongAdder connectionsClosed = new LongAdder();
+
+  /**
+   * Number of attempts to borrow a connection that failed due to the checkout timeout.
+   */
+  private final LongAdder connectionTimeouts = new LongAdder();
+
+  /**
+   * Number of connections that were discarded as their validation failed.
+   */
+  private final LongAdder validationFailures = new LongAdder();
+
+  /**
+   * Number of connections that were opened and validated during pre-warming.
+   */
+  private volatile int prewarmedConnections;
+
+  /**
+   * Time in milliseconds that pre-warming took. -1 means that the pool was not pre-warmed.
+   */
+  private volatile long prewarmTime = -1;
+
+  /**
+   * Time that threads waited until they got a connection.
+   */
+  private final TimeHistogram acquireWaitTime = new TimeHistogram();
+
+  /**
+   * Time that connections were used before they were returned to the pool.
+   */
+  private final TimeHistogram connectionHoldTime = new TimeHistogram();
+
+  /**
+   * Initialize object.
+   *
+   * @param pPool Pool whose metrics are provided. The parameter must not be null.
+   */
+  ConnectionPoolMetrics( PooledDataSource pPool ) {
+    pool = pPool;
+  }
+
+  /**
+   * Method records that a connection was borrowed.
+   *
+   * @param pWaitTime Time in nanoseconds that the thread waited for the connection.
+   */
+  void connectionAcquired( long pWaitTime ) {
+    connectionsAcquired.increment();
+    acquireWaitTime.record(pWaitTime);
+  }
+
+  /**
+   * Method records that a connection was returned to the pool.
+   *
+   * @param pHoldTime Time in nanoseconds that the connection was used.
+   */
+  void connectionReleased( long pHoldTime ) {
+    connectionHoldTime.record(pHoldTime);
+  }
+
+  /**
+   * Method records that a physical connection was opened.
+   */
+  void connectionCreated( ) {
+    connectionsCreated.increment();
+  }
+
+  /**
+   * Method records that a physical connection was removed from the pool and closed.
+   */
+  void connectionClosed( ) {
+    connectionsClosed.increment();
+  }
+
+  /**
+   * Method records that a thread did not get a connection within the checkout timeout.
+   *
+   * @param pWaitTime Time in nanoseconds that the thread waited.
+   */
+  void connectionTimeout( long pWaitTime ) {
+    connectionTimeouts.increment();
+    acquireWaitTime.record(pWaitTime);
+  }
+
+  /**
+   * Method records that the validation of a connection failed.
+   */
+  void validationFailed( ) {
+    validationFailures.increment();
+  }
+
+  /**
+   * Method records the result of pre-warming.
+   *
+   * @param pConnections Number of connections that were opened and validated.
+   * @param pTime Time in milliseconds that pre-warming took.
+   */
+  void prewarmed( int pConnections, long pTime ) {
+    prewarmedConnections = pConnections;
+    prewarmTime = pTime;
+  }
+
+  /**
+   * Method returns the histogram of the time that threads waited for a connection. Also failed attempts are recorded.
+   *
+   * @return {@link TimeHistogram} Histogram of acquire wait times. The method never returns null.
+   */
+  public TimeHistogram getAcquireWaitTime( ) {
+    return acquireWaitTime;
+  }
+
+  /**
+   * Method returns the histogram of the time that connections were used before they were returned to the pool.
+   *
+   * @return {@link TimeHistogram} Histogram of connection hold times. The method never returns null.
+   */
+  public TimeHistogram getConnectionHoldTime( ) {
+    return connectionHoldTime;
+  }
+
+  /**
+   * @see ConnectionPoolMXBean#getPersistenceUnitName()
+   */
+  @Override
+  public String getPersistenceUnitName( ) {
+    return pool.getPersistenceUnitName();
+  }
+
+  /**
+   * @see ConnectionPoolMXBean#getMinSize()
+   */
+  @Override
+  public int getMinSize( ) {
+    return pool.getMinSize();
+  }
+
+  /**
+   * @see ConnectionPoolMXBean#getMaxSize()
+   */
+  @Override
+  public int getMaxSize( ) {
+    return pool.getMaxSize();
+  }
+
+  /**
+   * @see ConnectionPoolMXBean#getTargetSize()
+   */
+  @Override
+  public int getTargetSize( ) {
+    return pool.getTargetSize();
+  }
+
+  /**
+   * @see ConnectionPoolMXBean#getTotalConnections()
+   */
+  @Override
+  public int getTotalConnections( ) {
+    return pool.getTotalConnections();
+  }
+
+  /**
+   * @see ConnectionPoolMXBean#getActiveConnections()
+   */
+  @Override
+  public int getActiveConnections( ) {
+    return pool.getActiveConnections();
+  }
+
+  /**
+   * @see ConnectionPoolMXBean#getIdleConnections()
+   */
+  @Override
+  public int getIdleConnections( ) {
+    return pool.getIdleConnections();
+  }
+
+  /**
+   * @see ConnectionPoolMXBean#getPendingConnections()
+   */
+  @Override
+  public int getPendingConnections( ) {
+    return pool.getPendingConnections();
+  }
+
+  /**
+   * @see ConnectionPoolMXBean#getThreadsAwaitingConnection()
+   */
+  @Override
+  public int getThreadsAwaitingConnection( ) {
+    return pool.getThreadsAwaitingConnection();
+  }
+
+  /**
+   * @see ConnectionPoolMXBean#getConnectionsAcquired()
+   */
+  @Override
+  public long getConnectionsAcquired( ) {
+    return connectionsAcquired.sum();
+  }
+
+  /**
+   * @see ConnectionPoolMXBean#getConnectionsCreated()
+   */
+  @Override
+  public long getConnectionsCreated( ) {
+    return connectionsCreated.sum();
+  }
+
+  /**
+   * @see ConnectionPoolMXBean#getConnectionsClosed()
+   */
+  @Override
+  public long getConnectionsClosed( ) {
+    return connectionsClosed.sum();
+  }
+
+  /**
+   * @see ConnectionPoolMXBean#getConnectionTimeouts()
+   */
+  @Override
+  public long getConnectionTimeouts( ) {
+    return connectionTimeouts.sum();
+  }
+
+  /**
+   * @see ConnectionPoolMXBean#getValidationFailures()
+   */
+  @Override
+  public long getValidationFailures( ) {
+    return validationFailures.sum();
+  }
+
+  /**
+   * @see ConnectionPoolMXBean#getPrewarmedConnections()
+   */
+  @Override
+  public int getPrewarmedConnections( ) {
+    return prewarmedConnections;
+  }
+
+  /**
+   * @see ConnectionPoolMXBean#getPrewarmTime()
+   */
+  @Override
+  public long getPrewarmTime( ) {
+    return prewarmTime;
+  }
+
+  /**
+   * @see ConnectionPoolMXBean#getAcquireWaitTimeMean()
+   */
+  @Override
+  public double getAcquireWaitTimeMean( ) {
+    return toMillis(acquireWaitTime.getMean());
+  }
+
+  /**
+   * @see ConnectionPoolMXBean#getAcquireWaitTime99thPercentile()
+   */
+  @Override
+  public double getAcquireWaitTime99thPercentile( ) {
+    return toMillis(acquireWaitTime.getPercentile(99));
+  }
+
+  /**
+   * @see ConnectionPoolMXBean#getAcquireWaitTimeMax()
+   */
+  @Override
+  public double getAcquireWaitTimeMax( ) {
+    return toMillis(acquireWaitTime.getMax());
+  }
+
+  /**
+   * @see ConnectionPoolMXBean#getConnectionHoldTimeMean()
+   */
+  @Override
+  public double getConnectionHoldTimeMean( ) {
+    return toMillis(connectionHoldTime.getMean());
+  }
+
+  /**
+   * @see ConnectionPoolMXBean#getConnectionHoldTime99thPercentile()
+   */
+  @Override
+  public double getConnectionHoldTime99thPercentile( ) {
+    return toMillis(connectionHoldTime.getPercentile(99));
+  }
+
+  /**
+   * @see ConnectionPoolMXBean#getConnectionHoldTimeMax()
+   */
+  @Override
+  public double getConnectionHoldTimeMax( ) {
+    return toMillis(connectionHoldTime.getMax());
+  }
+
+  /**
+   * Method converts the passed duration into milliseconds.
+   *
+   * @param pNanos Duration in nanoseconds.
+   * @return double Duration in milliseconds.
+   */
+  private static double toMillis( long pNanos ) {
+    return (double) pNanos / TimeUnit.MILLISECONDS.toNanos(1);
+  }
+
+  @Override
+  public String toString( ) {
+    return "ConnectionPoolMetrics[" + this.getPersistenceUnitName() + ", total=" + this.getTotalConnections()
+        + ", active=" + this.getActiveConnections() + ", idle=" + this.getIdleConnections() + ", pending="
+        + this.getPendingConnections() + ", waiting=" + this.getThreadsAwaitingConnection() + ", timeouts="
+        + this.getConnectionTimeouts() + ", acquireWaitTime=[" + acquireWaitTime + "], holdTime=["
+        + connectionHoldTime + "]]";
+  }
+}
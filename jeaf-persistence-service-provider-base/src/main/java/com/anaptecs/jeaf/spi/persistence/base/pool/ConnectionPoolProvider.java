@@ -0,0 +1,65 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.pool;
+
+import java.util.Properties;
+
+import javax.sql.DataSource;
+
+import com.anaptecs.jeaf.spi.persistence.annotations.ConnectionPool;
+
+/**
+ * Interface defines the SPI that is used to translate the connection pool configuration of a persistence unit
+ * ({@link ConnectionPool}) into the properties of a concrete connection pool implementation.
+ *
+ * The connection pool provider of a persistence unit is selected through property
+ * {@link #CONNECTION_POOL_PROVIDER_PROPERTY}. It can either be defined as property of the persistence unit or of its
+ * application managed connections. The value of the property is either the name of one of the built-in providers (see
+ * {@link ConnectionPoolProviderFactory}) or the fully qualified class name of an implementation of this interface. If
+ * no provider is configured then c3p0 will be used.
+ *
+ * Providers either let the persistence provider create the connection pool based on the added properties or create the
+ * connection pool themselves (see {@link #createDataSource(ConnectionPoolSettings)}). In the latter case the pool is
+ * passed to the persistence provider as non-JTA data source.
+ *
+ * @author JEAF Development Team
+ */
+public interface ConnectionPoolProvider {
+  /**
+   * Name of the property that is used to select the connection pool provider of a persistence unit.
+   */
+  String CONNECTION_POOL_PROVIDER_PROPERTY = "jeaf.persistence.connection_pool.provider";
+
+  /**
+   * Method returns the name of the connection pool provider.
+   *
+   * @return {@link String} Name of the provider. The method never returns null.
+   */
+  String getName( );
+
+  /**
+   * Method adds the properties that are required to configure the connection pool according to the passed settings.
+   * If {@link ConnectionPoolSettings#isAutoCommitDisabled()} returns true the pool has to be configured to provide
+   * connections with auto-commit disabled.
+   *
+   * @param pSettings Connection pool settings of the persistence unit. The parameter must not be null.
+   * @param pProperties Properties of the persistence unit to which the connection pool properties should be added. The
+   * parameter must not be null.
+   */
+  void addConnectionPoolProperties( ConnectionPoolSettings pSettings, Properties pProperties );
+
+  /**
+   * Method creates the data source that pools the connections of a persistence unit. By default connection pooling is
+   * delegated to the persistence provider and no data source is created.
+   *
+   * @param pSettings Connection pool settings of the persistence unit. The parameter must not be null.
+   * @return {@link DataSource} Data source that should be used by the persistence provider or null if the persistence
+   * provider should create the connection pool based on the properties of the persistence unit.
+   */
+  default DataSource createDataSource( ConnectionPoolSettings pSettings ) {
+    return null;
+  }
+}
@@ -0,0 +1,79 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.pool;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import com.anaptecs.jeaf.tools.api.Tools;
+
+/**
+ * Class is used to resolve the connection pool provider of a persistence unit. Besides the built-in providers
+ * <code>c3p0</code>, <code>hikaricp</code> and <code>jeaf</code> also custom implementations of
+ * {@link ConnectionPoolProvider} can be used by configuring their fully qualified class name.
+ *
+ * @author JEAF Development Team
+ */
+public final class ConnectionPoolProviderFactory {
+  /**
+   * Name of the provider that is used if no provider is configured explicitly.
+   */
+  public static final String DEFAULT_PROVIDER = C3P0ConnectionPoolProvider.NAME;
+
+  /**
+   * Map contains all built-in connection pool providers. As providers are stateless they can be shared.
+   */
+  private static final Map<String, ConnectionPoolProvider> BUILT_IN_PROVIDERS = new HashMap<>();
+
+  static {
+    registerBuiltInProvider(new C3P0ConnectionPoolProvider());
+    registerBuiltInProvider(new HikariCPConnectionPoolProvider());
+    registerBuiltInProvider(new JEAFConnectionPoolProvider());
+  }
+
+  /**
+   * Constructor is private to ensure that no instances of this class will be created.
+   */
+  private ConnectionPoolProviderFactory( ) {
+    // Nothing to do.
+  }
+
+  /**
+   * Method registers the passed provider as built-in provider.
+   *
+   * @param pProvider Provider that should be registered. The parameter must not be null.
+   */
+  private static void registerBuiltInProvider( ConnectionPoolProvider pProvider ) {
+    BUILT_IN_PROVIDERS.put(pProvider.getName(), pProvider);
+  }
+
+  /**
+   * Method returns the connection pool provider with the passed name.
+   *
+   * @param pProviderName Name of one of the built-in providers or fully qualified class name of an implementation of
+   * {@link ConnectionPoolProvider}. If the parameter is null or not a real string then the default provider will be
+   * returned.
+   * @return {@link ConnectionPoolProvider} Connection pool provider. The method never returns null.
+   */
+  public static ConnectionPoolProvider getConnectionPoolProvider( String pProviderName ) {
+    // No specific provider configured.
+    ConnectionPoolProvider lProvider;
+    if (Tools.getStringTools().isRealString(pProviderName) == false) {
+      lProvider = BUILT_IN_PROVIDERS.get(DEFAULT_PROVIDER);
+    }
+    else {
+      String lProviderName = pProviderName.trim();
+      lProvider = BUILT_IN_PROVIDERS.get(lProviderName.toLowerCase(Locale.ROOT));
+
+      // Provider is not a built-in one so we expect it to be a class name.
+      if (lProvider == null) {
+        lProvider = Tools.getReflectionTools().newInstance(lProviderName, ConnectionPoolProvider.class);
+      }
+    }
+    return lProvider;
+  }
+}
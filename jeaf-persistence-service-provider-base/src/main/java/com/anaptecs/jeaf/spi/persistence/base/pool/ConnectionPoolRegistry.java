@@ -0,0 +1,160 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.pool;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.anaptecs.jeaf.xfun.api.XFun;
+import com.anaptecs.jeaf.xfun.api.checks.Check;
+
+/**
+ * Class keeps track of all connection pools that were created by {@link JEAFConnectionPoolProvider}. This way pools can
+ * be looked up by the name of their persistence unit, e.g. for monitoring. The metrics of all registered pools are also
+ * published via JMX (see {@link ConnectionPoolMXBean}).
+ *
+ * @author JEAF Development Team
+ */
+public final class ConnectionPoolRegistry {
+  /**
+   * Domain of the object names under which the connection pools are registered with the platform MBean server.
+   */
+  public static final String JMX_DOMAIN = "com.anaptecs.jeaf.persistence";
+
+  /**
+   * Map contains all active connection pools. The name of the persistence unit is used as key.
+   */
+  private static final ConcurrentHashMap<String, PooledDataSource> POOLS = new ConcurrentHashMap<>();
+
+  /**
+   * Constructor is private to ensure that no instances of this class will be created.
+   */
+  private ConnectionPoolRegistry( ) {
+    // Nothing to do.
+  }
+
+  /**
+   * Method returns the connection pool of the persistence unit that is described by the passed settings. As long as the
+   * pool of the persistence unit is open it is reused, e.g. if the persistence unit info is created again. Otherwise a
+   * new pool is created, registered and started.
+   *
+   * @param pSettings Settings of the connection pool. The parameter must not be null.
+   * @return {@link PooledDataSource} Open and started connection pool of the persistence unit. The method never returns
+   * null.
+   */
+  static PooledDataSource getOrCreate( ConnectionPoolSettings pSettings ) {
+    PooledDataSource lDataSource;
+    synchronized (POOLS) {
+      lDataSource = POOLS.get(pSettings.getPersistenceUnitName());
+      if (lDataSource == null || lDataSource.isClosed() == true) {
+        lDataSource = new PooledDataSource(pSettings);
+        POOLS.put(pSettings.getPersistenceUnitName(), lDataSource);
+        registerMBean(lDataSource);
+      }
+    }
+    // Pool is started outside the lock as pre-warming may take some time. Threads that get the same pool wait until it
+    // is started.
+    lDataSource.start();
+    return lDataSource;
+  }
+
+  /**
+   * Method unregisters the passed connection pool.
+   *
+   * @param pDataSource Connection pool that should be unregistered. The parameter must not be null.
+   */
+  static void unregister( PooledDataSource pDataSource ) {
+    if (POOLS.remove(pDataSource.getPersistenceUnitName(), pDataSource) == true) {
+      unregisterMBean(pDataSource);
+    }
+  }
+
+  /**
+   * Method returns the object name under which the metrics of the passed persistence unit's connection pool are
+   * registered with the platform MBean server.
+   *
+   * @param pPersistenceUnitName Name of the persistence unit. The parameter must not be null.
+   * @return {@link ObjectName} Object name of the connection pool. The method never returns null.
+   */
+  public static ObjectName getObjectName( String pPersistenceUnitName ) {
+    // Check parameter
+    Check.checkInvalidParameterNull(pPersistenceUnitName, "pPersistenceUnitName");
+
+    try {
+      return new ObjectName(JMX_DOMAIN + ":type=ConnectionPool,name=" + ObjectName.quote(pPersistenceUnitName));
+    }
+    catch (JMException e) {
+      throw new IllegalArgumentException("Invalid persistence unit name " + pPersistenceUnitName, e);
+    }
+  }
+
+  /**
+   * Method registers the metrics of the passed pool with the platform MBean server. As monitoring is not essential
+   * errors are only traced.
+   *
+   * @param pDataSource Connection pool whose metrics should be registered. The parameter must not be null.
+   */
+  private static void registerMBean( PooledDataSource pDataSource ) {
+    try {
+      MBeanServer lServer = ManagementFactory.getPlatformMBeanServer();
+      ObjectName lName = getObjectName(pDataSource.getPersistenceUnitName());
+      if (lServer.isRegistered(lName)) {
+        lServer.unregisterMBean(lName);
+      }
+      lServer.registerMBean(pDataSource.getMetrics(), lName);
+    }
+    catch (JMException | RuntimeException e) {
+      XFun.getTrace().warn("Unable to register MBean for connection pool " + pDataSource.getPersistenceUnitName(), e);
+    }
+  }
+
+  /**
+   * Method unregisters the metrics of the passed pool from the platform MBean server.
+   *
+   * @param pDataSource Connection pool whose metrics should be unregistered. The parameter must not be null.
+   */
+  private static void unregisterMBean( PooledDataSource pDataSource ) {
+    try {
+      MBeanServer lServer = ManagementFactory.getPlatformMBeanServer();
+      ObjectName lName = getObjectName(pDataSource.getPersistenceUnitName());
+      if (lServer.isRegistered(lName)) {
+        lServer.unregisterMBean(lName);
+      }
+    }
+    catch (JMException | RuntimeException e) {
+      XFun.getTrace().warn("Unable to unregister MBean for connection pool " + pDataSource.getPersistenceUnitName(), e);
+    }
+  }
+
+  /**
+   * Method returns the connection pool of the passed persistence unit.
+   *
+   * @param pPersistenceUnitName Name of the persistence unit. The parameter must not be null.
+   * @return {@link PooledDataSource} Connection pool of the persistence unit or null if the persistence unit does not
+   * use a connection pool of {@link JEAFConnectionPoolProvider}.
+   */
+  public static PooledDataSource getConnectionPool( String pPersistenceUnitName ) {
+    // Check parameter
+    Check.checkInvalidParameterNull(pPersistenceUnitName, "pPersistenceUnitName");
+
+    return POOLS.get(pPersistenceUnitName);
+  }
+
+  /**
+   * Method returns all active connection pools.
+   *
+   * @return {@link Collection} All active connection pools. The method never returns null.
+   */
+  public static Collection<PooledDataSource> getConnectionPools( ) {
+    return new ArrayList<>(POOLS.values());
+  }
+}
@@ -0,0 +1,367 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.pool;
+
+import java.sql.Driver;
+import java.util.Properties;
+
+import com.anaptecs.jeaf.spi.persistence.annotations.ApplicationManagedConnections;
+import com.anaptecs.jeaf.spi.persistence.annotations.ConnectionPool;
+import com.anaptecs.jeaf.tools.api.Tools;
+import com.anaptecs.jeaf.tools.api.string.StringTools;
+import com.anaptecs.jeaf.xfun.api.XFun;
+import com.anaptecs.jeaf.xfun.api.checks.Check;
+import com.anaptecs.jeaf.xfun.api.config.ConfigurationProvider;
+
+/**
+ * Class represents the resolved connection pool settings of a persistence unit. All values are taken from annotations
+ * {@link ApplicationManagedConnections} and {@link ConnectionPool} after system properties were replaced. Settings that
+ * are not defined as real strings are represented as null.
+ *
+ * @author JEAF Development Team
+ */
+public final class ConnectionPoolSettings {
+  /**
+   * Name of the Hibernate property that tells Hibernate that connections of the pool have auto-commit disabled. If it
+   * is set to <code>true</code> the connection pool has to provide connections without auto-commit (see
+   * {@link #isAutoCommitDisabled()}).
+   */
+  public static final String PROVIDER_DISABLES_AUTOCOMMIT_PROPERTY =
+      "hibernate.connection.provider_disables_autocommit";
+
+  /**
+   * Name of the persistence unit to which the connection pool belongs. The reference is never null.
+   */
+  private final String persistenceUnitName;
+
+  /**
+   * JDBC driver that is used to create connections. The reference is never null.
+   */
+  private final Class<? extends Driver> jdbcDriver;
+
+  /**
+   * JDBC URL of the database. The reference is never null.
+   */
+  private final String connectionURL;
+
+  /**
+   * User name that is used to connect to the database. The reference may be null.
+   */
+  private final String username;
+
+  /**
+   * Password that is used to connect to the database. The reference may be null.
+   */
+  private final String password;
+
+  /**
+   * Properties that are configured for the persistence unit. They are used for settings that are not part of annotation
+   * {@link ConnectionPool}. The reference is never null.
+   */
+  private final Properties properties;
+
+  /**
+   * Minimum number of connections within the pool. The reference may be null.
+   */
+  private final String minSize;
+
+  /**
+   * Maximum number of connections within the pool. The reference may be null.
+   */
+  private final String maxSize;
+
+  /**
+   * Number of connections that are acquired at once when the pool has to grow. The reference may be null.
+   */
+  private final String incrementSize;
+
+  /**
+   * Number of prepared statements that are cached. The reference may be null.
+   */
+  private final String preparedStatementCacheSize;
+
+  /**
+   * Time in seconds after which an idle connection is removed from the pool. The reference may be null.
+   */
+  private final String timeout;
+
+  /**
+   * Period in seconds after which idle connections are tested. The reference may be null.
+   */
+  private final String idleTestPeriod;
+
+  /**
+   * Initialize object.
+   *
+   * @param pPersistenceUnitName Name of the persistence unit to which the connection pool belongs. The parameter must
+   * not be null.
+   * @param pConnections Application managed connections whose settings should be resolved. The parameter must not be
+   * null.
+   * @param pProperties Properties that are configured for the persistence unit. System properties must already be
+   * replaced. The parameter must not be null.
+   */
+  public ConnectionPoolSettings( String pPersistenceUnitName, ApplicationManagedConnections pConnections,
+      Properties pProperties ) {
+    // Check parameters
+    Check.checkInvalidParameterNull(pPersistenceUnitName, "pPersistenceUnitName");
+    Check.checkInvalidParameterNull(pConnections, "pConnections");
+    Check.checkInvalidParameterNull(pProperties, "pProperties");
+
+    persistenceUnitName = pPersistenceUnitName;
+    properties = pProperties;
+    ConfigurationProvider lHelper = XFun.getConfigurationProvider();
+
+    // Resolve connection settings
+    jdbcDriver = pConnections.jdbcDriver();
+    connectionURL = lHelper.replaceSystemProperties(pConnections.connectionURL());
+    username = this.toSetting(lHelper.replaceSystemProperties(pConnections.username()));
+    password = this.toSetting(lHelper.replaceSystemProperties(pConnections.password()));
+
+    // Resolve connection pool settings
+    ConnectionPool lConnectionPool = pConnections.connectionPool();
+    minSize = this.toSetting(lHelper.replaceSystemProperties(lConnectionPool.minSize()));
+    maxSize = this.toSetting(lHelper.replaceSystemProperties(lConnectionPool.maxSize()));
+    incrementSize = this.toSetting(lHelper.replaceSystemProperties(lConnectionPool.incrementSize()));
+    preparedStatementCacheSize =
+        this.toSetting(lHelper.replaceSystemProperties(lConnectionPool.preparedStatementCacheSize()));
+    timeout = this.toSetting(lHelper.replaceSystemProperties(lConnectionPool.timeout()));
+    idleTestPeriod = this.toSetting(lHelper.replaceSystemProperties(lConnectionPool.idleTestPeriod()));
+  }
+
+  /**
+   * Method converts the passed value into a setting. Values that are not real strings are ignored.
+   *
+   * @param pValue Value that should be converted. The parameter may be null.
+   * @return {@link String} Trimmed value or null if the passed value is not a real string.
+   */
+  private String toSetting( String pValue ) {
+    StringTools lTools = Tools.getStringTools();
+    String lSetting;
+    if (lTools.isRealString(pValue)) {
+      lSetting = pValue.trim();
+    }
+    else {
+      lSetting = null;
+    }
+    return lSetting;
+  }
+
+  /**
+   * Method converts the passed setting into an int value.
+   *
+   * @param pSettingName Name of the setting. The parameter is only used for error messages.
+   * @param pValue Value of the setting. The parameter may be null.
+   * @param pDefault Default value that is returned if the setting is not defined.
+   * @return int Value of the setting or the passed default if the setting is not defined.
+   */
+  private int toInt( String pSettingName, String pValue, int pDefault ) {
+    int lValue;
+    if (pValue != null) {
+      try {
+        lValue = Integer.parseInt(pValue);
+      }
+      catch (NumberFormatException e) {
+        throw new IllegalArgumentException("Invalid value '" + pValue + "' for connection pool setting '"
+            + pSettingName + "' of persistence unit '" + persistenceUnitName + "'. Value must be an integer.", e);
+      }
+    }
+    else {
+      lValue = pDefault;
+    }
+    return lValue;
+  }
+
+  /**
+   * Method returns the name of the persistence unit to which the connection pool belongs.
+   *
+   * @return {@link String} Name of the persistence unit. The method never returns null.
+   */
+  public String getPersistenceUnitName( ) {
+    return persistenceUnitName;
+  }
+
+  /**
+   * Method checks whether the connections of the pool must have auto-commit disabled. This is the case if property
+   * {@link #PROVIDER_DISABLES_AUTOCOMMIT_PROPERTY} is set. Hibernate then does not check and disable auto-commit for
+   * every transaction, which relies on the pool to never provide connections with auto-commit enabled.
+   *
+   * @return boolean Method returns true if connections must have auto-commit disabled and false otherwise.
+   */
+  public boolean isAutoCommitDisabled( ) {
+    return Boolean.parseBoolean(this.getProperty(PROVIDER_DISABLES_AUTOCOMMIT_PROPERTY));
+  }
+
+  /**
+   * Method returns the JDBC driver that is used to create connections.
+   *
+   * @return {@link Class} JDBC driver class. The method never returns null.
+   */
+  public Class<? extends Driver> getJDBCDriver( ) {
+    return jdbcDriver;
+  }
+
+  /**
+   * Method returns the JDBC URL of the database.
+   *
+   * @return {@link String} JDBC URL. The method never returns null.
+   */
+  public String getConnectionURL( ) {
+    return connectionURL;
+  }
+
+  /**
+   * Method returns the user name that is used to connect to the database.
+   *
+   * @return {@link String} User name or null if none is defined.
+   */
+  public String getUsername( ) {
+    return username;
+  }
+
+  /**
+   * Method returns the password that is used to connect to the database.
+   *
+   * @return {@link String} Password or null if none is defined.
+   */
+  public String getPassword( ) {
+    return password;
+  }
+
+  /**
+   * Method returns the value of the passed property of the persistence unit.
+   *
+   * @param pPropertyName Name of the property. The parameter must not be null.
+   * @return {@link String} Value of the property or null if it is not defined.
+   */
+  public String getProperty( String pPropertyName ) {
+    return this.toSetting(properties.getProperty(pPropertyName));
+  }
+
+  /**
+   * Method returns the value of the passed property of the persistence unit as int value.
+   *
+   * @param pPropertyName Name of the property. The parameter must not be null.
+   * @param pDefault Value that is returned if the property is not defined.
+   * @return int Value of the property.
+   */
+  public int getProperty( String pPropertyName, int pDefault ) {
+    return this.toInt(pPropertyName, this.getProperty(pPropertyName), pDefault);
+  }
+
+  /**
+   * Method returns the minimum number of connections within the pool.
+   *
+   * @return {@link String} Minimum pool size or null if it is not defined.
+   */
+  public String getMinSize( ) {
+    return minSize;
+  }
+
+  /**
+   * Method returns the minimum number of connections within the pool as int value.
+   *
+   * @param pDefault Value that is returned if the setting is not defined.
+   * @return int Minimum pool size.
+   */
+  public int getMinSize( int pDefault ) {
+    return this.toInt("minSize", minSize, pDefault);
+  }
+
+  /**
+   * Method returns the maximum number of connections within the pool.
+   *
+   * @return {@link String} Maximum pool size or null if it is not defined.
+   */
+  public String getMaxSize( ) {
+    return maxSize;
+  }
+
+  /**
+   * Method returns the maximum number of connections within the pool as int value.
+   *
+   * @param pDefault Value that is returned if the setting is not defined.
+   * @return int Maximum pool size.
+   */
+  public int getMaxSize( int pDefault ) {
+    return this.toInt("maxSize", maxSize, pDefault);
+  }
+
+  /**
+   * Method returns the number of connections that are acquired at once when the pool has to grow.
+   *
+   * @return {@link String} Increment size or null if it is not defined.
+   */
+  public String getIncrementSize( ) {
+    return incrementSize;
+  }
+
+  /**
+   * Method returns the number of connections that are acquired at once when the pool has to grow as int value.
+   *
+   * @param pDefault Value that is returned if the setting is not defined.
+   * @return int Increment size.
+   */
+  public int getIncrementSize( int pDefault ) {
+    return this.toInt("incrementSize", incrementSize, pDefault);
+  }
+
+  /**
+   * Method returns the number of prepared statements that are cached.
+   *
+   * @return {@link String} Prepared statement cache size or null if it is not defined.
+   */
+  public String getPreparedStatementCacheSize( ) {
+    return preparedStatementCacheSize;
+  }
+
+  /**
+   * Method returns the number of prepared statements that are cached as int value.
+   *
+   * @param pDefault Value that is returned if the setting is not defined.
+   * @return int Prepared statement cache size.
+   */
+  public int getPreparedStatementCacheSize( int pDefault ) {
+    return this.toInt("preparedStatementCacheSize", preparedStatementCacheSize, pDefault);
+  }
+
+  /**
+   * Method returns the time in seconds after which an idle connection is removed from the pool.
+   *
+   * @return {@link String} Timeout in seconds or null if it is not defined.
+   */
+  public String getTimeout( ) {
+    return timeout;
+  }
+
+  /**
+   * Method returns the time in seconds after which an idle connection is removed from the pool as int value.
+   *
+   * @param pDefault Value that is returned if the setting is not defined.
+   * @return int Timeout in seconds.
+   */
+  public int getTimeout( int pDefault ) {
+    return this.toInt("timeout", timeout, pDefault);
+  }
+
+  /**
+   * Method returns the period in seconds after which idle connections are tested.
+   *
+   * @return {@link String} Idle test period in seconds or null if it is not defined.
+   */
+  public String getIdleTestPeriod( ) {
+    return idleTestPeriod;
+  }
+
+  /**
+   * Method returns the period in seconds after which idle connections are tested as int value.
+   *
+   * @param pDefault Value that is returned if the setting is not defined.
+   * @return int Idle test period in seconds.
+   */
+  public int getIdleTestPeriod( int pDefault ) {
+    return this.toInt("idleTestPeriod", idleTestPeriod, pDefault);
+  }
+}
@@ -0,0 +1,28 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.pool;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotation can be used on component implementations to define the priority class with which they use connections of
+ * their persistence unit. Components without this annotation use {@link PriorityClass#INTERACTIVE}.
+ *
+ * @author JEAF Development Team
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface ConnectionPriority {
+  /**
+   * Priority class of the annotated component.
+   */
+  PriorityClass value( );
+}
@@ -0,0 +1,81 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.pool;
+
+import com.anaptecs.jeaf.xfun.api.checks.Check;
+
+/**
+ * Class holds the priority class with which the current thread acquires connections. Connection pools use it to apply
+ * the bulkhead of the priority class (see {@link PriorityClass#getBulkheadProperty()}).
+ *
+ * @author JEAF Development Team
+ */
+public final class ConnectionPriorityContext {
+  /**
+   * Priority class of the current thread. If none is set then {@link PriorityClass#INTERACTIVE} is used.
+   */
+  private static final ThreadLocal<PriorityClass> PRIORITY_CLASS = new ThreadLocal<>();
+
+  /**
+   * Constructor is private to ensure that no instances of this class will be created.
+   */
+  private ConnectionPriorityContext( ) {
+    // Nothing to do.
+  }
+
+  /**
+   * Method returns the priority class of the current thread.
+   *
+   * @return {@link PriorityClass} Priority class of the current thread. The method never returns null.
+   */
+  public static PriorityClass getPriorityClass( ) {
+    PriorityClass lPriorityClass = PRIORITY_CLASS.get();
+    if (lPriorityClass == null) {
+      lPriorityClass = PriorityClass.INTERACTIVE;
+    }
+    return lPriorityClass;
+  }
+
+  /**
+   * Method sets the priority class of the current thread.
+   *
+   * @param pPriorityClass Priority class that should be used. The parameter may be null. In this case the default
+   * priority class is used.
+   * @return {@link PriorityClass} Priority class that was set before. The method returns null if none was set. The
+   * value should be used to restore the previous state.
+   */
+  public static PriorityClass setPriorityClass( PriorityClass pPriorityClass ) {
+    PriorityClass lPrevious = PRIORITY_CLASS.get();
+    if (pPriorityClass != null) {
+      PRIORITY_CLASS.set(pPriorityClass);
+    }
+    else {
+      PRIORITY_CLASS.remove();
+    }
+    return lPrevious;
+  }
+
+  /**
+   * Method resolves the priority class of the passed class using annotation {@link ConnectionPriority}.
+   *
+   * @param pClass Class whose priority class should be resolved. The parameter must not be null.
+   * @return {@link PriorityClass} Priority class of the passed class. The method never returns null.
+   */
+  public static PriorityClass resolvePriorityClass( Class<?> pClass ) {
+    // Check parameter
+    Check.checkInvalidParameterNull(pClass, "pClass");
+
+    ConnectionPriority lAnnotation = pClass.getAnnotation(ConnectionPriority.class);
+    PriorityClass lPriorityClass;
+    if (lAnnotation != null) {
+      lPriorityClass = lAnnotation.value();
+    }
+    else {
+      lPriorityClass = PriorityClass.INTERACTIVE;
+    }
+    return lPriorityClass;
+  }
+}
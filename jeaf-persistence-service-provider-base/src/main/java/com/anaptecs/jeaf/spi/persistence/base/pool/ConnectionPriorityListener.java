@@ -0,0 +1,76 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.pool;
+
+import org.hibernate.BaseSessionEventListener;
+
+import com.anaptecs.jeaf.xfun.api.checks.Check;
+
+/**
+ * Session event listener applies the priority class of a component whenever its session acquires a JDBC connection.
+ * As Hibernate acquires connections lazily, e.g. not before the first statement is executed, setting the priority class
+ * only while the transaction begins is not sufficient. The listener sets the priority class on the thread that
+ * acquires the connection and restores the previous one as soon as the connection was acquired. This way the bulkhead
+ * of the priority class (see {@link PooledDataSource}) applies to every connection of the session, independent of the
+ * point in time when it is acquired.
+ *
+ * @author JEAF Development Team
+ */
+public final class ConnectionPriorityListener extends BaseSessionEventListener {
+  /**
+   * Default serial version UID.
+   */
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * Priority class that is applied when a connection is acquired. The reference is never null.
+   */
+  private final PriorityClass priorityClass;
+
+  /**
+   * Priority class that was set on the acquiring thread before. It is restored after the connection was acquired.
+   */
+  private transient PriorityClass previous;
+
+  /**
+   * Initialize object.
+   *
+   * @param pPriorityClass Priority class that should be applied when a connection is acquired. The parameter must not
+   * be null.
+   */
+  public ConnectionPriorityListener( PriorityClass pPriorityClass ) {
+    // Check parameter
+    Check.checkInvalidParameterNull(pPriorityClass, "pPriorityClass");
+
+    priorityClass = pPriorityClass;
+  }
+
+  /**
+   * Method returns the priority class that is applied when a connection is acquired.
+   *
+   * @return {@link PriorityClass} Priority class of the session. The method never returns null.
+   */
+  public PriorityClass getPriorityClass( ) {
+    return priorityClass;
+  }
+
+  /**
+   * @see BaseSessionEventListener#jdbcConnectionAcquisitionStart()
+   */
+  @Override
+  public void jdbcConnectionAcquisitionStart( ) {
+    previous = ConnectionPriorityContext.setPriorityClass(priorityClass);
+  }
+
+  /**
+   * @see BaseSessionEventListener#jdbcConnectionAcquisitionEnd()
+   */
+  @Override
+  public void jdbcConnectionAcquisitionEnd( ) {
+    ConnectionPriorityContext.setPriorityClass(previous);
+    previous = null;
+  }
+}
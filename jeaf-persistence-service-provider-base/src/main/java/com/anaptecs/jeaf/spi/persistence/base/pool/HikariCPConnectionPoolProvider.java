@@ -0,0 +1,92 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.pool;
+
+import java.util.Properties;
+
+import com.anaptecs.jeaf.xfun.api.checks.Check;
+
+/**
+ * Class implements a connection pool provider that maps the connection pool settings to the properties of HikariCP.
+ * In order to use this provider <code>hibernate-hikaricp</code> has to be available in the classpath.
+ *
+ * HikariCP does not support all settings of annotation
+ * {@link com.anaptecs.jeaf.spi.persistence.annotations.ConnectionPool} directly:
+ * <ul>
+ * <li><code>incrementSize</code> is ignored as HikariCP always adds connections one by one in the background.</li>
+ * <li><code>preparedStatementCacheSize</code> is passed to the JDBC driver as <code>cachePrepStmts</code> and
+ * <code>prepStmtCacheSize</code> as HikariCP does not cache statements itself.</li>
+ * <li><code>timeout</code> is mapped to <code>idleTimeout</code> and <code>idleTestPeriod</code> to
+ * <code>keepaliveTime</code>. Both are converted from seconds to milliseconds.</li>
+ * </ul>
+ *
+ * @author JEAF Development Team
+ */
+public class HikariCPConnectionPoolProvider implements ConnectionPoolProvider {
+  /**
+   * Name of the provider.
+   */
+  public static final String NAME = "hikaricp";
+
+  /**
+   * Class name of Hibernate's connection provider for HikariCP.
+   */
+  public static final String HIKARI_CONNECTION_PROVIDER = "org.hibernate.hikaricp.internal.HikariCPConnectionProvider";
+
+  /**
+   * Prefix of all HikariCP properties.
+   */
+  private static final String PREFIX = "hibernate.hikari.";
+
+  /**
+   * Factor to convert seconds into milliseconds.
+   */
+  private static final long MILLIS = 1000L;
+
+  /**
+   * @see ConnectionPoolProvider#getName()
+   */
+  @Override
+  public String getName( ) {
+    return NAME;
+  }
+
+  /**
+   * @see ConnectionPoolProvider#addConnectionPoolProperties(ConnectionPoolSettings, Properties)
+   */
+  @Override
+  public void addConnectionPoolProperties( ConnectionPoolSettings pSettings, Properties pProperties ) {
+    // Check parameters
+    Check.checkInvalidParameterNull(pSettings, "pSettings");
+    Check.checkInvalidParameterNull(pProperties, "pProperties");
+
+    // Let Hibernate use HikariCP as connection provider.
+    pProperties.put("hibernate.connection.provider_class", HIKARI_CONNECTION_PROVIDER);
+    pProperties.put(PREFIX + "poolName", pSettings.getPersistenceUnitName());
+
+    // Map connection pool settings to their matching HikariCP properties
+    if (pSettings.getMinSize() != null) {
+      pProperties.put(PREFIX + "minimumIdle", pSettings.getMinSize());
+    }
+    if (pSettings.getMaxSize() != null) {
+      pProperties.put(PREFIX + "maximumPoolSize", pSettings.getMaxSize());
+    }
+    int lStatementCacheSize = pSettings.getPreparedStatementCacheSize(0);
+    if (lStatementCacheSize > 0) {
+      pProperties.put(PREFIX + "dataSource.cachePrepStmts", "true");
+      pProperties.put(PREFIX + "dataSource.prepStmtCacheSize", String.valueOf(lStatementCacheSize));
+    }
+    if (pSettings.getTimeout() != null) {
+      pProperties.put(PREFIX + "idleTimeout", String.valueOf(pSettings.getTimeout(0) * MILLIS));
+    }
+    if (pSettings.getIdleTestPeriod() != null) {
+      pProperties.put(PREFIX + "keepaliveTime", String.valueOf(pSettings.getIdleTestPeriod(0) * MILLIS));
+    }
+    if (pSettings.isAutoCommitDisabled() == true) {
+      pProperties.put(PREFIX + "autoCommit", "false");
+    }
+  }
+}
@@ -0,0 +1,60 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.pool;
+
+import java.util.Properties;
+
+import javax.sql.DataSource;
+
+import com.anaptecs.jeaf.xfun.api.checks.Check;
+
+/**
+ * Class implements a connection pool provider that uses the built-in connection pool of JEAF (see
+ * {@link PooledDataSource}). The pool is passed to the persistence provider as non-JTA data source so no additional
+ * pooling library is required.
+ *
+ * @author JEAF Development Team
+ */
+public class JEAFConnectionPoolProvider implements ConnectionPoolProvider {
+  /**
+   * Name of the provider.
+   */
+  public static final String NAME = "jeaf";
+
+  /**
+   * @see ConnectionPoolProvider#getName()
+   */
+  @Override
+  public String getName( ) {
+    return NAME;
+  }
+
+  /**
+   * As the connection pool is passed as data source no properties are required.
+   *
+   * @see ConnectionPoolProvider#addConnectionPoolProperties(ConnectionPoolSettings, Properties)
+   */
+  @Override
+  public void addConnectionPoolProperties( ConnectionPoolSettings pSettings, Properties pProperties ) {
+    // Check parameters
+    Check.checkInvalidParameterNull(pSettings, "pSettings");
+    Check.checkInvalidParameterNull(pProperties, "pProperties");
+  }
+
+  /**
+   * An open connection pool of the same persistence unit is reused (see
+   * {@link ConnectionPoolRegistry#getOrCreate(ConnectionPoolSettings)}).
+   *
+   * @see ConnectionPoolProvider#createDataSource(ConnectionPoolSettings)
+   */
+  @Override
+  public DataSource createDataSource( ConnectionPoolSettings pSettings ) {
+    // Check parameter
+    Check.checkInvalidParameterNull(pSettings, "pSettings");
+
+    return ConnectionPoolRegistry.getOrCreate(pSettings);
+  }
+}
@@ -0,0 +1,324 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.pool;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Class represents a physical JDBC connection that is managed by a {@link PooledDataSource}. The state of an entry is
+ * only changed through compare-and-set operations so that no locks are required to borrow or return it.
+ *
+ * @author JEAF Development Team
+ */
+final class PoolEntry {
+  /**
+   * Entry is idle and can be borrowed.
+   */
+  static final int NOT_IN_USE = 0;
+
+  /**
+   * Entry is currently borrowed.
+   */
+  static final int IN_USE = 1;
+
+  /**
+   * Entry is reserved for housekeeping, e.g. idle validation.
+   */
+  static final int RESERVED = -1;
+
+  /**
+   * Entry was removed from the pool.
+   */
+  static final int REMOVED = -2;
+
+  /**
+   * Physical connection to the database. The reference is never null.
+   */
+  private final Connection connection;
+
+  /**
+   * Cache for the prepared statements of the connection. The reference is never null.
+   */
+  private final StatementCache statementCache;
+
+  /**
+   * Auto-commit mode of the physical connection when it was created. It is restored when the connection is returned to
+   * the pool.
+   */
+  private final boolean defaultAutoCommit;
+
+  /**
+   * Read-only mode of the physical connection when it was created. It is restored when the connection is returned to
+   * the pool.
+   */
+  private final boolean defaultReadOnly;
+
+  /**
+   * Transaction isolation level of the physical connection when it was created. It is restored when the connection is
+   * returned to the pool.
+   */
+  private final int defaultTransactionIsolation;
+
+  /**
+   * Catalog of the physical connection when it was created. It is restored when the connection is returned to the
+   * pool. The reference may be null if the JDBC driver does not support catalogs.
+   */
+  private final String defaultCatalog;
+
+  /**
+   * Current state of the entry.
+   */
+  private final AtomicInteger state = new AtomicInteger(NOT_IN_USE);
+
+  /**
+   * Point in time (see {@link System#nanoTime()}) when the connection was last returned to the pool.
+   */
+  private volatile long lastAccessed;
+
+  /**
+   * Point in time (see {@link System#nanoTime()}) when the connection was last borrowed.
+   */
+  private volatile long lastBorrowed;
+
+  /**
+   * Point in time (see {@link System#nanoTime()}) when the connection was last validated.
+   */
+  private volatile long lastValidated;
+
+  /**
+   * Bulkhead whose permit is held while the connection is borrowed. The reference is null if the priority class of the
+   * borrowing thread is not limited.
+   */
+  private volatile Semaphore bulkhead;
+
+  /**
+   * Flag indicates that a fatal error occurred on the connection and that it must not be reused.
+   */
+  private volatile boolean broken;
+
+  /**
+   * Initialize object.
+   *
+   * @param pConnection Physical connection. The parameter must not be null.
+   * @param pStatementCacheSize Maximum number of prepared statements that are cached for the connection.
+   * @throws SQLException if the settings of the connection can not be read.
+   */
+  PoolEntry( Connection pConnection, int pStatementCacheSize ) throws SQLException {
+    connection = pConnection;
+    statementCache = new StatementCache(pStatementCacheSize);
+    defaultAutoCommit = pConnection.getAutoCommit();
+    defaultReadOnly = pConnection.isReadOnly();
+    defaultTransactionIsolation = pConnection.getTransactionIsolation();
+    defaultCatalog = pConnection.getCatalog();
+    long lNow = System.nanoTime();
+    lastAccessed = lNow;
+    lastValidated = lNow;
+  }
+
+  /**
+   * Method returns the physical connection of this entry.
+   *
+   * @return {@link Connection} Physical connection. The method never returns null.
+   */
+  Connection getConnection( ) {
+    return connection;
+  }
+
+  /**
+   * Method returns the cache for the prepared statements of the connection.
+   *
+   * @return {@link StatementCache} Statement cache. The method never returns null.
+   */
+  StatementCache getStatementCache( ) {
+    return statementCache;
+  }
+
+  /**
+   * Method returns the auto-commit mode of the connection when it was created.
+   *
+   * @return boolean Default auto-commit mode.
+   */
+  boolean getDefaultAutoCommit( ) {
+    return defaultAutoCommit;
+  }
+
+  /**
+   * Method returns the read-only mode of the connection when it was created.
+   *
+   * @return boolean Default read-only mode.
+   */
+  boolean getDefaultReadOnly( ) {
+    return defaultReadOnly;
+  }
+
+  /**
+   * Method returns the transaction isolation level of the connection when it was created.
+   *
+   * @return int Default transaction isolation level (see {@link Connection#getTransactionIsolation()}).
+   */
+  int getDefaultTransactionIsolation( ) {
+    return defaultTransactionIsolation;
+  }
+
+  /**
+   * Method returns the catalog of the connection when it was created.
+   *
+   * @return {@link String} Default catalog. The method may return null.
+   */
+  String getDefaultCatalog( ) {
+    return defaultCatalog;
+  }
+
+  /**
+   * Method returns the current state of the entry.
+   *
+   * @return int State of the entry, e.g. {@link #NOT_IN_USE}.
+   */
+  int getState( ) {
+    return state.get();
+  }
+
+  /**
+   * Method sets the state of the entry unconditionally.
+   *
+   * @param pState New state of the entry, e.g. {@link #REMOVED}.
+   */
+  void setState( int pState ) {
+    state.set(pState);
+  }
+
+  /**
+   * Method changes the state of the entry only if it currently has the expected state.
+   *
+   * @param pExpected State that the entry is expected to have.
+   * @param pNew New state of the entry.
+   * @return boolean Method returns true if the state was changed.
+   */
+  boolean compareAndSetState( int pExpected, int pNew ) {
+    return state.compareAndSet(pExpected, pNew);
+  }
+
+  /**
+   * Method returns the point in time when the connection was last returned to the pool.
+   *
+   * @return long Point in time as defined by {@link System#nanoTime()}.
+   */
+  long getLastAccessed( ) {
+    return lastAccessed;
+  }
+
+  /**
+   * Method records that the connection was returned to the pool right now.
+   */
+  void touch( ) {
+    lastAccessed = System.nanoTime();
+  }
+
+  /**
+   * Method returns the point in time when the connection was last borrowed.
+   *
+   * @return long Point in time as defined by {@link System#nanoTime()}.
+   */
+  long getLastBorrowed( ) {
+    return lastBorrowed;
+  }
+
+  /**
+   * Method sets the point in time when the connection was borrowed.
+   *
+   * @param pNanoTime Point in time as defined by {@link System#nanoTime()}.
+   */
+  void setLastBorrowed( long pNanoTime ) {
+    lastBorrowed = pNanoTime;
+  }
+
+  /**
+   * Method returns the bulkhead whose permit is held while the connection is borrowed.
+   *
+   * @return {@link Semaphore} Bulkhead of the borrowing thread. The method returns null if the priority class of the
+   * thread is not limited.
+   */
+  Semaphore getBulkhead( ) {
+    return bulkhead;
+  }
+
+  /**
+   * Method sets the bulkhead whose permit is held while the connection is borrowed.
+   *
+   * @param pBulkhead Bulkhead of the borrowing thread. The parameter may be null.
+   */
+  void setBulkhead( Semaphore pBulkhead ) {
+    bulkhead = pBulkhead;
+  }
+
+  /**
+   * Method returns the point in time when the connection was last validated successfully.
+   *
+   * @return long Point in time as defined by {@link System#nanoTime()}.
+   */
+  long getLastValidated( ) {
+    return lastValidated;
+  }
+
+  /**
+   * Method returns if a fatal error occurred on the connection.
+   *
+   * @return boolean Method returns true if the connection must not be reused.
+   */
+  boolean isBroken( ) {
+    return broken;
+  }
+
+  /**
+   * Method marks the connection as broken. It will be closed when it is returned to the pool.
+   */
+  void markBroken( ) {
+    broken = true;
+  }
+
+  /**
+   * Method validates the physical connection.
+   *
+   * @param pTimeout Timeout in seconds for the validation.
+   * @return boolean Method returns true if the connection is still valid.
+   */
+  boolean validate( int pTimeout ) {
+    boolean lValid;
+    try {
+      lValid = broken == false && connection.isValid(pTimeout);
+    }
+    catch (SQLException e) {
+      lValid = false;
+    }
+    if (lValid == true) {
+      lastValidated = System.nanoTime();
+    }
+    return lValid;
+  }
+
+  /**
+   * Method closes the physical connection including all its cached statements. Errors are ignored as the connection
+   * will not be used any longer.
+   */
+  void close( ) {
+    state.set(REMOVED);
+    statementCache.close();
+    try {
+      connection.close();
+    }
+    catch (SQLException e) {
+      // Nothing to do as connection is discarded anyway.
+    }
+  }
+
+  @Override
+  public String toString( ) {
+    return "PoolEntry[connection=" + connection + ", state=" + state.get() + "]";
+  }
+}
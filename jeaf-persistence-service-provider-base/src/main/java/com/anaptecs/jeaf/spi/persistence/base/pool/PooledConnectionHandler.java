@@ -0,0 +1,334 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.pool;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Class implements the logical connection that is handed out by a {@link PooledDataSource}. Closing the logical
+ * connection returns the physical connection to the pool. Before that all statements that are still open are closed,
+ * pending work is rolled back and changed connection settings are restored.
+ *
+ * @author JEAF Development Team
+ */
+final class PooledConnectionHandler implements InvocationHandler {
+  /**
+   * Prefix of SQL states that indicate that the connection to the database is broken.
+   */
+  private static final String CONNECTION_EXCEPTION_SQL_STATE = "08";
+
+  /**
+   * Pool to which the connection belongs. The reference is never null.
+   */
+  private final PooledDataSource pool;
+
+  /**
+   * Pooled physical connection. The reference is never null.
+   */
+  private final PoolEntry entry;
+
+  /**
+   * Statements that were created through this logical connection and that are still open.
+   */
+  private final List<PooledStatementHandler> openStatements = new ArrayList<>();
+
+  /**
+   * Proxy that represents this logical connection.
+   */
+  private Connection proxy;
+
+  /**
+   * Flag indicates that the logical connection was closed.
+   */
+  private volatile boolean closed;
+
+  /**
+   * Flag indicates that the auto-commit mode of the connection was changed and has to be reset when the connection is
+   * returned to the pool.
+   */
+  private boolean autoCommitChanged;
+
+  /**
+   * Flag indicates that the read-only mode of the connection was changed and has to be reset when the connection is
+   * returned to the pool.
+   */
+  private boolean readOnlyChanged;
+
+  /**
+   * Flag indicates that the transaction isolation of the connection was changed and has to be reset when the
+   * connection is returned to the pool.
+   */
+  private boolean isolationChanged;
+
+  /**
+   * Flag indicates that the catalog of the connection was changed and has to be reset when the connection is returned
+   * to the pool.
+   */
+  private boolean catalogChanged;
+
+  /**
+   * Initialize object.
+   *
+   * @param pPool Pool to which the connection belongs. The parameter must not be null.
+   * @param pEntry Pooled physical connection. The parameter must not be null.
+   */
+  private PooledConnectionHandler( PooledDataSource pPool, PoolEntry pEntry ) {
+    pool = pPool;
+    entry = pEntry;
+  }
+
+  /**
+   * Method creates a new logical connection for the passed pooled connection.
+   *
+   * @param pPool Pool to which the connection belongs. The parameter must not be null.
+   * @param pEntry Pooled physical connection. The parameter must not be null.
+   * @return {@link Connection} Logical connection. The method never returns null.
+   */
+  static Connection newConnection( PooledDataSource pPool, PoolEntry pEntry ) {
+    PooledConnectionHandler lHandler = new PooledConnectionHandler(pPool, pEntry);
+    lHandler.proxy = (Connection) Proxy.newProxyInstance(PooledConnectionHandler.class.getClassLoader(),
+        new Class<?>[] { Connection.class }, lHandler);
+    return lHandler.proxy;
+  }
+
+  /**
+   * @see InvocationHandler#invoke(Object, Method, Object[])
+   */
+  @Override
+  public Object invoke( Object pProxy, Method pMethod, Object[] pArgs ) throws Throwable {
+    String lMethodName = pMethod.getName();
+    Object lResult;
+    switch (lMethodName) {
+      case "close":
+        this.close();
+        lResult = null;
+        break;
+
+      case "isClosed":
+        lResult = closed;
+        break;
+
+      case "equals":
+        lResult = pProxy == pArgs[0];
+        break;
+
+      case "hashCode":
+        lResult = System.identityHashCode(pProxy);
+        break;
+
+      case "toString":
+        lResult = "PooledConnection[" + entry.getConnection() + "]";
+        break;
+
+      default:
+        if (closed == true) {
+          throw new SQLException("Connection is already closed.", CONNECTION_EXCEPTION_SQL_STATE + "003");
+        }
+        lResult = this.delegate(pMethod, pArgs);
+    }
+    return lResult;
+  }
+
+  /**
+   * Method delegates the passed call to the physical connection.
+   *
+   * @param pMethod Method that should be called. The parameter must not be null.
+   * @param pArgs Arguments of the call. The parameter may be null.
+   * @return {@link Object} Result of the call.
+   * @throws Throwable if the call to the physical connection fails.
+   */
+  private Object delegate( Method pMethod, Object[] pArgs ) throws Throwable {
+    String lMethodName = pMethod.getName();
+
+    // Prepared statements may be taken from the statement cache.
+    StatementCache lCache = entry.getStatementCache();
+    Object lKey;
+    if (lCache.isEnabled() && "prepareStatement".equals(lMethodName) && this.isCacheable(pMethod)) {
+      lKey = Arrays.asList(pArgs);
+      PreparedStatement lCached = lCache.take(lKey);
+      if (lCached != null) {
+        return this.trackStatement(lCached, PreparedStatement.class, lKey);
+      }
+    }
+    else {
+      lKey = null;
+    }
+
+    // Remember changed connection settings so that they can be restored.
+    switch (lMethodName) {
+      case "setAutoCommit":
+        autoCommitChanged = true;
+        break;
+      case "setReadOnly":
+        readOnlyChanged = true;
+        break;
+      case "setTransactionIsolation":
+        isolationChanged = true;
+        break;
+      case "setCatalog":
+        catalogChanged = true;
+        break;
+      default:
+        // Nothing to do.
+    }
+
+    Object lResult;
+    try {
+      lResult = pMethod.invoke(entry.getConnection(), pArgs);
+    }
+    catch (InvocationTargetException e) {
+      throw this.checkException(e.getCause());
+    }
+
+    // Statements are also returned as proxies so that they can be tracked.
+    if (lResult instanceof CallableStatement) {
+      lResult = this.trackStatement((Statement) lResult, CallableStatement.class, null);
+    }
+    else if (lResult instanceof PreparedStatement) {
+      lResult = this.trackStatement((Statement) lResult, PreparedStatement.class, lKey);
+    }
+    else if (lResult instanceof Statement) {
+      lResult = this.trackStatement((Statement) lResult, Statement.class, null);
+    }
+    return lResult;
+  }
+
+  /**
+   * Method checks if the statement that will be created by the passed method can be cached. Statements that return
+   * generated keys based on column indexes or names are not cached as arrays do not support value based equality.
+   *
+   * @param pMethod Method that is called to prepare a statement. The parameter must not be null.
+   * @return boolean Method returns true if the statement can be cached.
+   */
+  private boolean isCacheable( Method pMethod ) {
+    for (Class<?> lNext : pMethod.getParameterTypes()) {
+      if (lNext.isArray()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Method wraps the passed statement so that it can be tracked by this connection.
+   *
+   * @param pStatement Physical statement. The parameter must not be null.
+   * @param pInterface Interface of the statement. The parameter must not be null.
+   * @param pKey Key of the statement within the statement cache or null if the statement should not be cached.
+   * @return {@link Statement} Logical statement. The method never returns null.
+   */
+  private Statement trackStatement( Statement pStatement, Class<? extends Statement> pInterface, Object pKey ) {
+    PooledStatementHandler lHandler = new PooledStatementHandler(this, pStatement, pKey);
+    synchronized (openStatements) {
+      openStatements.add(lHandler);
+    }
+    return (Statement) Proxy.newProxyInstance(PooledConnectionHandler.class.getClassLoader(),
+        new Class<?>[] { pInterface }, lHandler);
+  }
+
+  /**
+   * Method is called by a statement when it gets closed.
+   *
+   * @param pHandler Statement that was closed. The parameter must not be null.
+   */
+  void statementClosed( PooledStatementHandler pHandler ) {
+    synchronized (openStatements) {
+      openStatements.remove(pHandler);
+    }
+  }
+
+  /**
+   * Method returns the logical connection.
+   *
+   * @return {@link Connection} Logical connection. The method never returns null.
+   */
+  Connection getProxy( ) {
+    return proxy;
+  }
+
+  /**
+   * Method returns the pooled physical connection.
+   *
+   * @return {@link PoolEntry} Pooled physical connection. The method never returns null.
+   */
+  PoolEntry getEntry( ) {
+    return entry;
+  }
+
+  /**
+   * Method checks the passed exception. If it indicates that the connection is broken then it will be removed from the
+   * pool when it is returned.
+   *
+   * @param pThrowable Exception that occurred on the physical connection or one of its statements.
+   * @return {@link Throwable} Passed exception.
+   */
+  Throwable checkException( Throwable pThrowable ) {
+    if (pThrowable instanceof SQLException) {
+      String lSQLState = ((SQLException) pThrowable).getSQLState();
+      if (lSQLState != null && lSQLState.startsWith(CONNECTION_EXCEPTION_SQL_STATE)) {
+        entry.markBroken();
+      }
+    }
+    return pThrowable;
+  }
+
+  /**
+   * Method closes the logical connection and returns the physical connection to the pool.
+   */
+  private void close( ) {
+    if (closed == false) {
+      closed = true;
+
+      // Close statements that were not closed by the application.
+      List<PooledStatementHandler> lStatements;
+      synchronized (openStatements) {
+        lStatements = new ArrayList<>(openStatements);
+        openStatements.clear();
+      }
+      for (PooledStatementHandler lNext : lStatements) {
+        lNext.closeQuietly();
+      }
+
+      // Reset connection so that the next user finds it in its initial state.
+      if (entry.isBroken() == false) {
+        try {
+          Connection lConnection = entry.getConnection();
+          if (lConnection.getAutoCommit() == false) {
+            lConnection.rollback();
+          }
+          if (autoCommitChanged == true) {
+            lConnection.setAutoCommit(entry.getDefaultAutoCommit());
+          }
+          if (readOnlyChanged == true) {
+            lConnection.setReadOnly(entry.getDefaultReadOnly());
+          }
+          if (isolationChanged == true) {
+            lConnection.setTransactionIsolation(entry.getDefaultTransactionIsolation());
+          }
+          if (catalogChanged == true) {
+            lConnection.setCatalog(entry.getDefaultCatalog());
+          }
+          lConnection.clearWarnings();
+        }
+        catch (SQLException e) {
+          entry.markBroken();
+        }
+      }
+      pool.requite(entry);
+    }
+  }
+}
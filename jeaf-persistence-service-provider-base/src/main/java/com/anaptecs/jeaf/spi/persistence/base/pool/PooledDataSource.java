@@ -0,0 +1,1079 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.pool;
+
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import javax.sql.DataSource;
+
+import com.anaptecs.jeaf.spi.persistence.base.bootstrap.BootstrapPhase;
+import com.anaptecs.jeaf.spi.persistence.base.bootstrap.BootstrapProfiler;
+import com.anaptecs.jeaf.spi.persistence.base.bootstrap.PhaseMeasurement;
+import com.anaptecs.jeaf.tools.api.Tools;
+import com.anaptecs.jeaf.xfun.api.XFun;
+import com.anaptecs.jeaf.xfun.api.checks.Check;
+
+/**
+ * Class implements a lightweight JDBC connection pool for application managed connections. The pool is configured
+ * through annotation {@link com.anaptecs.jeaf.spi.persistence.annotations.ConnectionPool}:
+ * <ul>
+ * <li><code>minSize</code> and <code>maxSize</code> define the bounds of the pool.</li>
+ * <li><code>incrementSize</code> defines how many connections are created at once when the pool has to grow.</li>
+ * <li><code>preparedStatementCacheSize</code> defines the number of prepared statements that are cached per physical
+ * connection.</li>
+ * <li><code>timeout</code> defines after how many seconds an idle connection is removed from the pool as long as the
+ * pool contains more than <code>minSize</code> connections.</li>
+ * <li><code>idleTestPeriod</code> defines after how many seconds of inactivity a connection is validated before it is
+ * handed out again.</li>
+ * </ul>
+ * The maximum time that a thread waits for a connection can be configured through property
+ * {@link #CHECKOUT_TIMEOUT_PROPERTY}.
+ *
+ * If property {@link #ADAPTIVE_SIZING_PROPERTY} is set to <code>true</code> then the number of connections that are
+ * kept in the pool is adjusted to the observed demand within <code>minSize</code> and <code>maxSize</code> (see
+ * {@link AdaptivePoolSizer}). Otherwise <code>minSize</code> connections are kept.
+ *
+ * By default the pool is filled up to <code>minSize</code> in the background. If property {@link #PREWARM_PROPERTY} is
+ * set to <code>true</code> then the connections are opened and validated in parallel when the pool is started. As the
+ * pool is started while the entity manager factory is built, the persistence unit is only used after pre-warming
+ * finished or {@link #PREWARM_TIMEOUT_PROPERTY} elapsed.
+ *
+ * Components that share the pool can be separated into priority classes (see {@link ConnectionPriority}). The property
+ * {@link PriorityClass#getBulkheadProperty()} of a priority class limits the number of connections that threads of this
+ * class may use concurrently. E.g. limiting {@link PriorityClass#BATCH} to <code>maxSize - 2</code> connections
+ * reserves 2 connections for interactive work no matter how many batch jobs are running.
+ *
+ * @author JEAF Development Team
+ */
+public final class PooledDataSource implements DataSource, AutoCloseable, ConnectionBag.Listener {
+  /**
+   * Name of the property that defines the maximum time in seconds that a thread waits for a connection.
+   */
+  public static final String CHECKOUT_TIMEOUT_PROPERTY = "jeaf.persistence.connection_pool.checkout_timeout";
+
+  /**
+   * Default checkout timeout in seconds.
+   */
+  public static final int DEFAULT_CHECKOUT_TIMEOUT = 30;
+
+  /**
+   * Name of the property that enables adaptive sizing of the pool.
+   */
+  public static final String ADAPTIVE_SIZING_PROPERTY = "jeaf.persistence.connection_pool.adaptive";
+
+  /**
+   * Name of the property that defines the period in seconds after which the pool size is adjusted in adaptive mode.
+   */
+  public static final String ADAPTIVE_PERIOD_PROPERTY = "jeaf.persistence.connection_pool.adaptive.period";
+
+  /**
+   * Name of the property that defines the mean acquire wait time in milliseconds above which the pool grows in
+   * adaptive mode.
+   */
+  public static final String ADAPTIVE_WAIT_THRESHOLD_PROPERTY =
+      "jeaf.persistence.connection_pool.adaptive.wait_threshold";
+
+  /**
+   * Name of the property that enables pre-warming of the pool.
+   */
+  public static final String PREWARM_PROPERTY = "jeaf.persistence.connection_pool.prewarm";
+
+  /**
+   * Name of the property that defines the maximum time in seconds that pre-warming may take.
+   */
+  public static final String PREWARM_TIMEOUT_PROPERTY = "jeaf.persistence.connection_pool.prewarm.timeout";
+
+  /**
+   * Default pre-warming timeout in seconds.
+   */
+  public static final int DEFAULT_PREWARM_TIMEOUT = 30;
+
+  /**
+   * Prefix of the properties that limit the number of connections of a priority class. The lower case name of the
+   * priority class has to be appended (see {@link PriorityClass#getBulkheadProperty()}).
+   */
+  public static final String BULKHEAD_PROPERTY_PREFIX = "jeaf.persistence.connection_pool.bulkhead.";
+
+  /**
+   * Maximum number of connections that are opened in parallel during pre-warming.
+   */
+  private static final int MAX_PREWARM_PARALLELISM = 16;
+
+  /**
+   * Default period in seconds after which the pool size is adjusted in adaptive mode.
+   */
+  public static final int DEFAULT_ADAPTIVE_PERIOD = 5;
+
+  /**
+   * Default acquire wait time threshold in milliseconds for adaptive mode.
+   */
+  public static final int DEFAULT_ADAPTIVE_WAIT_THRESHOLD = 10;
+
+  /**
+   * Period in milliseconds in which the demand is sampled in adaptive mode.
+   */
+  private static final long DEMAND_SAMPLING_PERIOD = 250;
+
+  /**
+   * Period in seconds in which the housekeeper runs if no idle test period is configured.
+   */
+  private static final int DEFAULT_HOUSEKEEPING_PERIOD = 30;
+
+  /**
+   * Timeout in seconds for the validation of a connection.
+   */
+  private static final int VALIDATION_TIMEOUT = 5;
+
+  /**
+   * Time in milliseconds to wait before the creation of a connection is retried.
+   */
+  private static final long CREATION_RETRY_DELAY = 250;
+
+  /**
+   * Settings of the pool. The reference is never null.
+   */
+  private final ConnectionPoolSettings settings;
+
+  /**
+   * JDBC driver that is used to create physical connections. The reference is never null.
+   */
+  private final Driver driver;
+
+  /**
+   * Properties that are passed to the JDBC driver when a connection is created. The reference is never null.
+   */
+  private final Properties connectionProperties = new Properties();
+
+  /**
+   * Minimum number of connections within the pool.
+   */
+  private final int minSize;
+
+  /**
+   * Maximum number of connections within the pool.
+   */
+  private final int maxSize;
+
+  /**
+   * Number of connections that are created at once when the pool has to grow.
+   */
+  private final int incrementSize;
+
+  /**
+   * Maximum number of prepared statements that are cached per physical connection. 0 disables caching.
+   */
+  private final int statementCacheSize;
+
+  /**
+   * Time in nanoseconds after which an idle connection is removed from the pool. 0 means that idle connections are
+   * never removed.
+   */
+  private final long idleTimeout;
+
+  /**
+   * Time of inactivity in nanoseconds after which a connection is validated before it is handed out again. 0 disables
+   * validation.
+   */
+  private final long idleTestPeriod;
+
+  /**
+   * Maximum time in nanoseconds that a thread waits for a connection.
+   */
+  private final long checkoutTimeout;
+
+  /**
+   * Sizer that calculates the target size of the pool in adaptive mode. The reference is null if adaptive sizing is not
+   * enabled.
+   */
+  private final AdaptivePoolSizer sizer;
+
+  /**
+   * Number of demand samples after which the pool size is adjusted in adaptive mode.
+   */
+  private final int samplesPerAdjustment;
+
+  /**
+   * Number of demand samples since the last adjustment of the pool size.
+   */
+  private int samples;
+
+  /**
+   * Number of connection acquisitions at the time of the last adjustment of the pool size. It is used to calculate the
+   * delta for the next adjustment.
+   */
+  private long lastAcquisitions;
+
+  /**
+   * Total acquire wait time in nanoseconds at the time of the last adjustment of the pool size. It is used to calculate
+   * the delta for the next adjustment.
+   */
+  private long lastTotalWaitTime;
+
+  /**
+   * Number of checkout timeouts at the time of the last adjustment of the pool size. It is used to calculate the delta
+   * for the next adjustment.
+   */
+  private long lastTimeouts;
+
+  /**
+   * Bulkheads of all priority classes whose connection usage is limited. Priority classes without entry may use all
+   * connections of the pool.
+   */
+  private final Map<PriorityClass, Semaphore> bulkheads = new EnumMap<>(PriorityClass.class);
+
+  /**
+   * Configured connection limits of all priority classes that have a bulkhead.
+   */
+  private final Map<PriorityClass, Integer> bulkheadLimits = new EnumMap<>(PriorityClass.class);
+
+  /**
+   * All pooled connections.
+   */
+  private final ConnectionBag bag;
+
+  /**
+   * Number of physical connections including the ones that are currently created.
+   */
+  private final AtomicInteger totalConnections = new AtomicInteger();
+
+  /**
+   * Number of physical connections that are currently created.
+   */
+  private final AtomicInteger pendingConnections = new AtomicInteger();
+
+  /**
+   * Metrics of the pool. The reference is never null.
+   */
+  private final ConnectionPoolMetrics metrics;
+
+  /**
+   * Executor that creates new physical connections in the background.
+   */
+  private final ThreadPoolExecutor connectionCreator;
+
+  /**
+   * Executor that removes idle connections, validates connections and ensures the minimum size of the pool.
+   */
+  private final ScheduledThreadPoolExecutor housekeeper;
+
+  /**
+   * Last exception that occurred when a physical connection was created.
+   */
+  private volatile SQLException lastCreationException;
+
+  /**
+   * Flag indicates that the pool was started (see {@link #start()}).
+   */
+  private boolean started;
+
+  /**
+   * Flag indicates that the pool was closed.
+   */
+  private volatile boolean closed;
+
+  /**
+   * Log writer as defined by {@link DataSource}. It is not used by the pool itself.
+   */
+  private volatile PrintWriter logWriter;
+
+  /**
+   * Initialize object. The constructor only resolves the configuration of the pool. Background tasks are started and
+   * connections are opened not before {@link #start()} is called.
+   *
+   * @param pSettings Settings of the pool. The parameter must not be null.
+   */
+  public PooledDataSource( ConnectionPoolSettings pSettings ) {
+    // Check parameter
+    Check.checkInvalidParameterNull(pSettings, "pSettings");
+
+    settings = pSettings;
+    driver = Tools.getReflectionTools().newInstance(pSettings.getJDBCDriver());
+    if (pSettings.getUsername() != null) {
+      connectionProperties.setProperty("user", pSettings.getUsername());
+    }
+    if (pSettings.getPassword() != null) {
+      connectionProperties.setProperty("password", pSettings.getPassword());
+    }
+
+    // Resolve pool settings. Values that do not make sense are corrected.
+    maxSize = Math.max(pSettings.getMaxSize(1), 1);
+    minSize = Math.min(Math.max(pSettings.getMinSize(0), 0), maxSize);
+    incrementSize = Math.max(pSettings.getIncrementSize(1), 1);
+    statementCacheSize = pSettings.getPreparedStatementCacheSize(0);
+    idleTimeout = TimeUnit.SECONDS.toNanos(pSettings.getTimeout(0));
+    idleTestPeriod = TimeUnit.SECONDS.toNanos(pSettings.getIdleTestPeriod(0));
+    checkoutTimeout =
+        TimeUnit.SECONDS.toNanos(pSettings.getProperty(CHECKOUT_TIMEOUT_PROPERTY, DEFAULT_CHECKOUT_TIMEOUT));
+
+    for (PriorityClass lNext : PriorityClass.values()) {
+      int lLimit = pSettings.getProperty(lNext.getBulkheadProperty(), 0);
+      if (lLimit > 0 && lLimit < maxSize) {
+        bulkheads.put(lNext, new Semaphore(lLimit, true));
+        bulkheadLimits.put(lNext, lLimit);
+      }
+    }
+
+    bag = new ConnectionBag(this);
+    metrics = new ConnectionPoolMetrics(this);
+
+    // Create executors for background tasks.
+    String lThreadName = "JEAF-ConnectionPool-" + pSettings.getPersistenceUnitName();
+    connectionCreator = new ThreadPoolExecutor(1, 1, 5, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+        new DaemonThreadFactory(lThreadName + "-Creator"));
+    connectionCreator.allowCoreThreadTimeOut(true);
+    housekeeper = new ScheduledThreadPoolExecutor(1, new DaemonThreadFactory(lThreadName + "-Housekeeper"));
+    housekeeper.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+
+    // Setup adaptive sizing if enabled.
+    if (Boolean.parseBoolean(pSettings.getProperty(ADAPTIVE_SIZING_PROPERTY))) {
+      long lWaitThreshold = TimeUnit.MILLISECONDS
+          .toNanos(pSettings.getProperty(ADAPTIVE_WAIT_THRESHOLD_PROPERTY, DEFAULT_ADAPTIVE_WAIT_THRESHOLD));
+      sizer = new AdaptivePoolSizer(minSize, maxSize, incrementSize, lWaitThreshold);
+      int lAdjustmentPeriod = Math.max(pSettings.getProperty(ADAPTIVE_PERIOD_PROPERTY, DEFAULT_ADAPTIVE_PERIOD), 1);
+      samplesPerAdjustment = (int) Math.max(TimeUnit.SECONDS.toMillis(lAdjustmentPeriod) / DEMAND_SAMPLING_PERIOD, 1);
+    }
+    else {
+      sizer = null;
+      samplesPerAdjustment = 0;
+    }
+  }
+
+  /**
+   * Method starts the background tasks of the pool and fills it up to its minimum size. If pre-warming is enabled then
+   * the method returns after pre-warming finished. Otherwise the connections are opened in the background. Calling the
+   * method again has no effect.
+   */
+  public synchronized void start( ) {
+    if (started == false && closed == false) {
+      started = true;
+      long lPeriod = idleTestPeriod > 0 ? idleTestPeriod : TimeUnit.SECONDS.toNanos(DEFAULT_HOUSEKEEPING_PERIOD);
+      housekeeper.scheduleWithFixedDelay(this::houseKeeping, lPeriod, lPeriod, TimeUnit.NANOSECONDS);
+      if (sizer != null) {
+        housekeeper.scheduleAtFixedRate(this::adaptPoolSize, DEMAND_SAMPLING_PERIOD, DEMAND_SAMPLING_PERIOD,
+            TimeUnit.MILLISECONDS);
+      }
+
+      // Fill pool up to its minimum size.
+      PhaseMeasurement lMeasurement = BootstrapProfiler.start(BootstrapPhase.POOL_FILL);
+      if (Boolean.parseBoolean(settings.getProperty(PREWARM_PROPERTY))) {
+        int lTimeout = settings.getProperty(PREWARM_TIMEOUT_PROPERTY, DEFAULT_PREWARM_TIMEOUT);
+        this.prewarm(TimeUnit.SECONDS.toMillis(lTimeout));
+      }
+      else {
+        this.fillPool();
+      }
+      lMeasurement.stop(this.getPersistenceUnitName());
+    }
+  }
+
+  /**
+   * Method opens and validates the missing connections up to the target size of the pool in parallel. The method
+   * returns as soon as all connections are available or the passed timeout elapsed. Connections that are still opened
+   * after the timeout are not cancelled. They are added to the pool as soon as they are available. If they can not be
+   * opened then the capacity that was reserved for them is released.
+   *
+   * @param pTimeout Maximum time in milliseconds to wait for the connections.
+   * @return int Number of connections that were opened and validated within the timeout.
+   */
+  public int prewarm( long pTimeout ) {
+    long lStart = System.nanoTime();
+    long lDeadline = lStart + TimeUnit.MILLISECONDS.toNanos(pTimeout);
+
+    // Reserve capacity for all missing connections.
+    int lMissing = 0;
+    while (totalConnections.get() < this.getTargetSize() && this.reserveConnection() == true) {
+      lMissing++;
+    }
+
+    int lCreated = 0;
+    if (lMissing > 0) {
+      ExecutorService lExecutor = Executors.newFixedThreadPool(Math.min(lMissing, MAX_PREWARM_PARALLELISM),
+          new DaemonThreadFactory("JEAF-ConnectionPool-" + this.getPersistenceUnitName() + "-Prewarm"));
+      try {
+        List<Future<Boolean>> lFutures = new ArrayList<>(lMissing);
+        for (int i = 0; i < lMissing; i++) {
+          lFutures.add(lExecutor.submit(this::prewarmConnection));
+        }
+        for (Future<Boolean> lNext : lFutures) {
+          try {
+            if (lNext.get(Math.max(lDeadline - System.nanoTime(), 0), TimeUnit.NANOSECONDS) == true) {
+              lCreated++;
+            }
+          }
+          catch (TimeoutException e) {
+            // Connection is added in the background.
+          }
+          catch (ExecutionException e) {
+            // Errors are already handled by the tasks themselves.
+          }
+        }
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      finally {
+        // Tasks that are still running or queued are completed in the background. Afterwards the threads terminate.
+        lExecutor.shutdown();
+      }
+    }
+
+    // Report result.
+    long lDuration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lStart);
+    metrics.prewarmed(lCreated, lDuration);
+    String lMessage = "Pre-warmed " + lCreated + " of " + lMissing + " connections of pool "
+        + this.getPersistenceUnitName() + " in " + lDuration + "ms.";
+    if (lCreated == lMissing) {
+      XFun.getTrace().info(lMessage);
+    }
+    else {
+      XFun.getTrace().warn(lMessage + " Missing connections will be created in the background.");
+    }
+    return lCreated;
+  }
+
+  /**
+   * Method opens and validates a connection during pre-warming. Capacity for the connection must already be reserved.
+   *
+   * @return {@link Boolean} Method returns true if a valid connection was added to the pool.
+   */
+  private Boolean prewarmConnection( ) {
+    PoolEntry lEntry = null;
+    try {
+      lEntry = new PoolEntry(this.createPhysicalConnection(), statementCacheSize);
+      metrics.connectionCreated();
+      if (lEntry.validate(VALIDATION_TIMEOUT) == true && closed == false) {
+        bag.add(lEntry);
+        return Boolean.TRUE;
+      }
+      else {
+        metrics.validationFailed();
+      }
+    }
+    catch (SQLException e) {
+      lastCreationException = e;
+      XFun.getTrace().warn("Unable to pre-warm connection for pool " + this.getPersistenceUnitName(), e);
+    }
+
+    // Connection could not be established.
+    totalConnections.decrementAndGet();
+    if (lEntry != null) {
+      lEntry.close();
+    }
+    return Boolean.FALSE;
+  }
+
+  /**
+   * Method returns the name of the persistence unit to which the pool belongs.
+   *
+   * @return {@link String} Name of the persistence unit. The method never returns null.
+   */
+  public String getPersistenceUnitName( ) {
+    return settings.getPersistenceUnitName();
+  }
+
+  /**
+   * Method returns the metrics of the pool.
+   *
+   * @return {@link ConnectionPoolMetrics} Metrics of the pool. The method never returns null.
+   */
+  public ConnectionPoolMetrics getMetrics( ) {
+    return metrics;
+  }
+
+  /**
+   * Method returns the minimum number of connections within the pool.
+   *
+   * @return int Minimum pool size.
+   */
+  public int getMinSize( ) {
+    return minSize;
+  }
+
+  /**
+   * Method returns the number of connections that the pool currently tries to keep. Without adaptive sizing this is
+   * the minimum size of the pool.
+   *
+   * @return int Target size of the pool.
+   */
+  public int getTargetSize( ) {
+    int lTargetSize;
+    if (sizer != null) {
+      lTargetSize = sizer.getTargetSize();
+    }
+    else {
+      lTargetSize = minSize;
+    }
+    return lTargetSize;
+  }
+
+  /**
+   * Method returns if adaptive sizing is enabled for the pool.
+   *
+   * @return boolean Method returns true if the pool size is adjusted to the observed demand.
+   */
+  public boolean isAdaptive( ) {
+    return sizer != null;
+  }
+
+  /**
+   * Method returns the maximum number of connections within the pool.
+   *
+   * @return int Maximum pool size.
+   */
+  public int getMaxSize( ) {
+    return maxSize;
+  }
+
+  /**
+   * Method returns the number of physical connections within the pool.
+   *
+   * @return int Number of physical connections.
+   */
+  public int getTotalConnections( ) {
+    return bag.size();
+  }
+
+  /**
+   * Method returns the number of connections that are currently borrowed from the pool.
+   *
+   * @return int Number of active connections.
+   */
+  public int getActiveConnections( ) {
+    return bag.getCount(PoolEntry.IN_USE);
+  }
+
+  /**
+   * Method returns the number of idle connections within the pool.
+   *
+   * @return int Number of idle connections.
+   */
+  public int getIdleConnections( ) {
+    return bag.getCount(PoolEntry.NOT_IN_USE);
+  }
+
+  /**
+   * Method returns the number of physical connections that are currently created.
+   *
+   * @return int Number of pending connections.
+   */
+  public int getPendingConnections( ) {
+    return pendingConnections.get();
+  }
+
+  /**
+   * Method returns the number of threads that are currently waiting for a connection.
+   *
+   * @return int Number of waiting threads.
+   */
+  public int getThreadsAwaitingConnection( ) {
+    return bag.getWaiters();
+  }
+
+  /**
+   * Method returns the maximum number of connections that threads of the passed priority class may use concurrently.
+   *
+   * @param pPriorityClass Priority class whose limit should be returned. The parameter must not be null.
+   * @return int Maximum number of connections of the priority class. If the priority class is not limited then the
+   * maximum size of the pool is returned.
+   */
+  public int getBulkheadLimit( PriorityClass pPriorityClass ) {
+    // Check parameter
+    Check.checkInvalidParameterNull(pPriorityClass, "pPriorityClass");
+
+    Integer lLimit = bulkheadLimits.get(pPriorityClass);
+    int lResult;
+    if (lLimit != null) {
+      lResult = lLimit;
+    }
+    else {
+      lResult = maxSize;
+    }
+    return lResult;
+  }
+
+  /**
+   * Method returns the number of connections that are currently used by threads of the passed priority class.
+   *
+   * @param pPriorityClass Priority class whose usage should be returned. The parameter must not be null.
+   * @return int Number of connections that are used by the priority class. As usage is only tracked for limited
+   * priority classes, -1 is returned for all other priority classes.
+   */
+  public int getBulkheadUsage( PriorityClass pPriorityClass ) {
+    // Check parameter
+    Check.checkInvalidParameterNull(pPriorityClass, "pPriorityClass");
+
+    Semaphore lBulkhead = bulkheads.get(pPriorityClass);
+    int lUsage;
+    if (lBulkhead != null) {
+      lUsage = bulkheadLimits.get(pPriorityClass) - lBulkhead.availablePermits();
+    }
+    else {
+      lUsage = -1;
+    }
+    return lUsage;
+  }
+
+  /**
+   * Method returns if the pool is closed.
+   *
+   * @return boolean Method returns true if the pool is closed.
+   */
+  public boolean isClosed( ) {
+    return closed;
+  }
+
+  /**
+   * @see DataSource#getConnection()
+   */
+  @Override
+  public Connection getConnection( ) throws SQLException {
+    long lStart = System.nanoTime();
+    long lDeadline = lStart + checkoutTimeout;
+    long lRemaining = checkoutTimeout;
+    PriorityClass lPriorityClass = ConnectionPriorityContext.getPriorityClass();
+    Semaphore lBulkhead = bulkheads.get(lPriorityClass);
+    boolean lPermitted = false;
+    try {
+      // Threads of limited priority classes first need a permit of their bulkhead.
+      if (lBulkhead != null) {
+        lPermitted = lBulkhead.tryAcquire(lRemaining, TimeUnit.NANOSECONDS);
+        lRemaining = lDeadline - System.nanoTime();
+      }
+      while (closed == false && (lBulkhead == null || lPermitted == true)) {
+        PoolEntry lEntry = bag.borrow(lRemaining);
+        if (lEntry == null) {
+          break;
+        }
+
+        // Connections that were idle for a longer time have to be validated before they are handed out.
+        long lNow = System.nanoTime();
+        if (this.requiresValidation(lEntry, lNow) && lEntry.validate(VALIDATION_TIMEOUT) == false) {
+          metrics.validationFailed();
+          this.closeConnection(lEntry);
+          this.fillPool();
+        }
+        else {
+          lEntry.setLastBorrowed(lNow);
+          lEntry.setBulkhead(lBulkhead);
+          lPermitted = false;
+          metrics.connectionAcquired(lNow - lStart);
+          return PooledConnectionHandler.newConnection(this, lEntry);
+        }
+        lRemaining = lDeadline - System.nanoTime();
+      }
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new SQLException("Interrupted while waiting for a connection of pool " + this.getPersistenceUnitName(), e);
+    }
+    finally {
+      if (lPermitted == true) {
+        lBulkhead.release();
+      }
+    }
+
+    // No connection available
+    if (closed == true) {
+      throw new SQLException("Connection pool " + this.getPersistenceUnitName() + " is already closed.");
+    }
+    else {
+      metrics.connectionTimeout(System.nanoTime() - lStart);
+      throw new SQLTransientConnectionException("No connection of pool " + this.getPersistenceUnitName()
+          + " available within " + TimeUnit.NANOSECONDS.toMillis(checkoutTimeout) + "ms (priorityClass="
+          + lPriorityClass + ", total=" + this.getTotalConnections() + ", active=" + this.getActiveConnections()
+          + ", waiting=" + this.getThreadsAwaitingConnection() + ").", lastCreationException);
+    }
+  }
+
+  /**
+   * As credentials are part of the pool configuration connections with other credentials are not supported.
+   *
+   * @see DataSource#getConnection(String, String)
+   */
+  @Override
+  public Connection getConnection( String pUsername, String pPassword ) throws SQLException {
+    throw new SQLFeatureNotSupportedException("Pooled connections always use the configured credentials.");
+  }
+
+  /**
+   * Method returns a connection to the pool. It is called when a logical connection is closed.
+   *
+   * @param pEntry Connection that is returned. The parameter must not be null.
+   */
+  void requite( PoolEntry pEntry ) {
+    metrics.connectionReleased(System.nanoTime() - pEntry.getLastBorrowed());
+    Semaphore lBulkhead = pEntry.getBulkhead();
+    pEntry.setBulkhead(null);
+    if (pEntry.isBroken() == true || closed == true) {
+      this.closeConnection(pEntry);
+      this.fillPool();
+    }
+    else {
+      bag.requite(pEntry);
+    }
+
+    // Permit is released after the connection is back in the pool so that the next thread of the same priority class
+    // finds it.
+    if (lBulkhead != null) {
+      lBulkhead.release();
+    }
+  }
+
+  /**
+   * @see ConnectionBag.Listener#connectionsRequired(int)
+   */
+  @Override
+  public void connectionsRequired( int pWaiting ) {
+    // Only create new connections if not enough of them are already on their way.
+    if (pendingConnections.get() < pWaiting) {
+      for (int i = 0; i < incrementSize; i++) {
+        if (this.reserveConnection() == false) {
+          break;
+        }
+        this.createConnectionAsync();
+      }
+    }
+  }
+
+  /**
+   * Method reserves capacity for an additional physical connection.
+   *
+   * @return boolean Method returns true if the maximum size of the pool is not yet reached.
+   */
+  private boolean reserveConnection( ) {
+    int lTotal;
+    do {
+      lTotal = totalConnections.get();
+      if (lTotal >= maxSize || closed == true) {
+        return false;
+      }
+    }
+    while (totalConnections.compareAndSet(lTotal, lTotal + 1) == false);
+    return true;
+  }
+
+  /**
+   * Method creates a new physical connection in the background. Capacity for the connection must already be reserved.
+   */
+  private void createConnectionAsync( ) {
+    pendingConnections.incrementAndGet();
+    connectionCreator.execute(( ) -> {
+      PoolEntry lEntry = null;
+      while (lEntry == null && closed == false) {
+        try {
+          lEntry = new PoolEntry(this.createPhysicalConnection(), statementCacheSize);
+          lastCreationException = null;
+          metrics.connectionCreated();
+        }
+        catch (SQLException e) {
+          lastCreationException = e;
+          XFun.getTrace().warn("Unable to create connection for pool " + this.getPersistenceUnitName(), e);
+
+          // Only retry as long as someone waits for a connection.
+          if (bag.getWaiters() == 0) {
+            break;
+          }
+          try {
+            Thread.sleep(CREATION_RETRY_DELAY);
+          }
+          catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            break;
+          }
+        }
+      }
+
+      // Connection is no longer pending before it is handed over. Otherwise threads that start to wait right now would
+      // not request a new connection.
+      pendingConnections.decrementAndGet();
+      if (lEntry != null && closed == false) {
+        bag.add(lEntry);
+      }
+      else {
+        totalConnections.decrementAndGet();
+        if (lEntry != null) {
+          lEntry.close();
+        }
+      }
+    });
+  }
+
+  /**
+   * Method creates a new physical connection using the configured JDBC driver. If the persistence provider relies on
+   * the pool to disable auto-commit (see {@link ConnectionPoolSettings#isAutoCommitDisabled()}) then it is disabled
+   * here. As this becomes the default of the connection it is also restored whenever the connection is returned.
+   *
+   * @return {@link Connection} Physical connection. The method never returns null.
+   * @throws SQLException if the connection can not be created.
+   */
+  private Connection createPhysicalConnection( ) throws SQLException {
+    Connection lConnection = driver.connect(settings.getConnectionURL(), connectionProperties);
+    if (lConnection == null) {
+      throw new SQLException("JDBC driver " + driver.getClass().getName() + " does not accept URL "
+          + settings.getConnectionURL());
+    }
+    if (settings.isAutoCommitDisabled() == true) {
+      try {
+        lConnection.setAutoCommit(false);
+      }
+      catch (SQLException e) {
+        lConnection.close();
+        throw e;
+      }
+    }
+    return lConnection;
+  }
+
+  /**
+   * Method removes the passed connection from the pool and closes it.
+   *
+   * @param pEntry Connection that should be closed. The parameter must not be null.
+   */
+  private void closeConnection( PoolEntry pEntry ) {
+    if (bag.remove(pEntry) == true) {
+      totalConnections.decrementAndGet();
+      metrics.connectionClosed();
+    }
+    pEntry.close();
+  }
+
+  /**
+   * Method ensures that the pool contains at least its target number of connections. Missing connections are created in
+   * the background.
+   */
+  private void fillPool( ) {
+    int lTargetSize = this.getTargetSize();
+    while (totalConnections.get() < lTargetSize && this.reserveConnection() == true) {
+      this.createConnectionAsync();
+    }
+  }
+
+  /**
+   * Method checks if the passed connection has to be validated. This is the case if it was neither used nor validated
+   * within the configured idle test period.
+   *
+   * @param pEntry Connection that should be checked. The parameter must not be null.
+   * @param pNow Current point in time (see {@link System#nanoTime()}).
+   * @return boolean Method returns true if the connection has to be validated.
+   */
+  private boolean requiresValidation( PoolEntry pEntry, long pNow ) {
+    return idleTestPeriod > 0 && pNow - Math.max(pEntry.getLastAccessed(), pEntry.getLastValidated()) > idleTestPeriod;
+  }
+
+  /**
+   * Method is called periodically to remove idle connections, to validate idle connections and to ensure the minimum
+   * size of the pool.
+   */
+  private void houseKeeping( ) {
+    try {
+      long lNow = System.nanoTime();
+      for (PoolEntry lEntry : bag.values()) {
+        if (bag.reserve(lEntry) == true) {
+          long lIdleTime = lNow - lEntry.getLastAccessed();
+          if (idleTimeout > 0 && lIdleTime > idleTimeout && totalConnections.get() > this.getTargetSize()) {
+            this.closeConnection(lEntry);
+          }
+          else if (this.requiresValidation(lEntry, lNow) && lEntry.validate(VALIDATION_TIMEOUT) == false) {
+            metrics.validationFailed();
+            this.closeConnection(lEntry);
+          }
+          else {
+            bag.unreserve(lEntry);
+          }
+        }
+      }
+      this.fillPool();
+    }
+    // Housekeeping must never stop due to an unexpected exception.
+    catch (RuntimeException e) {
+      XFun.getTrace().error("Housekeeping of connection pool " + this.getPersistenceUnitName() + " failed.", e);
+    }
+  }
+
+  /**
+   * Method is called periodically in adaptive mode. It samples the current demand and regularly adjusts the target size
+   * of the pool. If the pool is larger than its target then connections that were idle during the whole last period are
+   * closed.
+   */
+  private void adaptPoolSize( ) {
+    try {
+      sizer.sample(bag.getCount(PoolEntry.IN_USE) + bag.getWaiters());
+      samples++;
+      if (samples >= samplesPerAdjustment) {
+        samples = 0;
+
+        // Calculate wait statistics since last adjustment.
+        TimeHistogram lWaitTime = metrics.getAcquireWaitTime();
+        long lAcquisitions = lWaitTime.getCount();
+        long lTotalWaitTime = lWaitTime.getTotalTime();
+        long lTimeouts = metrics.getConnectionTimeouts();
+        int lTargetSize = sizer.adjust(lAcquisitions - lastAcquisitions, lTotalWaitTime - lastTotalWaitTime,
+            lTimeouts - lastTimeouts);
+        lastAcquisitions = lAcquisitions;
+        lastTotalWaitTime = lTotalWaitTime;
+        lastTimeouts = lTimeouts;
+
+        // Shrink pool by closing connections that were not used during the last period.
+        long lNow = System.nanoTime();
+        long lPeriod = TimeUnit.MILLISECONDS.toNanos(DEMAND_SAMPLING_PERIOD * samplesPerAdjustment);
+        for (PoolEntry lEntry : bag.values()) {
+          if (totalConnections.get() <= lTargetSize) {
+            break;
+          }
+          if (lNow - lEntry.getLastAccessed() > lPeriod && bag.reserve(lEntry) == true) {
+            this.closeConnection(lEntry);
+          }
+        }
+        this.fillPool();
+      }
+    }
+    // Adaptive sizing must never stop due to an unexpected exception.
+    catch (RuntimeException e) {
+      XFun.getTrace().error("Adaptive sizing of connection pool " + this.getPersistenceUnitName() + " failed.", e);
+    }
+  }
+
+  /**
+   * Method closes the pool and all its idle connections. Connections that are currently in use are closed as soon as
+   * they are returned.
+   */
+  @Override
+  public void close( ) {
+    if (closed == false) {
+      closed = true;
+      bag.close();
+      housekeeper.shutdownNow();
+      connectionCreator.shutdownNow();
+      for (PoolEntry lEntry : bag.values()) {
+        if (bag.reserve(lEntry) == true) {
+          this.closeConnection(lEntry);
+        }
+      }
+      ConnectionPoolRegistry.unregister(this);
+    }
+  }
+
+  /**
+   * @see DataSource#getLogWriter()
+   */
+  @Override
+  public PrintWriter getLogWriter( ) {
+    return logWriter;
+  }
+
+  /**
+   * @see DataSource#setLogWriter(PrintWriter)
+   */
+  @Override
+  public void setLogWriter( PrintWriter pWriter ) {
+    logWriter = pWriter;
+  }
+
+  /**
+   * @see DataSource#getLoginTimeout()
+   */
+  @Override
+  public int getLoginTimeout( ) {
+    return (int) TimeUnit.NANOSECONDS.toSeconds(checkoutTimeout);
+  }
+
+  /**
+   * Checkout timeout can only be configured through property {@link #CHECKOUT_TIMEOUT_PROPERTY}.
+   *
+   * @see DataSource#setLoginTimeout(int)
+   */
+  @Override
+  public void setLoginTimeout( int pSeconds ) throws SQLException {
+    throw new SQLFeatureNotSupportedException("Use property " + CHECKOUT_TIMEOUT_PROPERTY + " to set the timeout.");
+  }
+
+  /**
+   * @see DataSource#getParentLogger()
+   */
+  @Override
+  public Logger getParentLogger( ) throws SQLFeatureNotSupportedException {
+    throw new SQLFeatureNotSupportedException();
+  }
+
+  /**
+   * @see java.sql.Wrapper#unwrap(Class)
+   */
+  @Override
+  public <T> T unwrap( Class<T> pInterface ) throws SQLException {
+    if (pInterface.isInstance(this)) {
+      return pInterface.cast(this);
+    }
+    else {
+      throw new SQLException(this.getClass().getName() + " is not a wrapper for " + pInterface.getName());
+    }
+  }
+
+  /**
+   * @see java.sql.Wrapper#isWrapperFor(Class)
+   */
+  @Override
+  public boolean isWrapperFor( Class<?> pInterface ) {
+    return pInterface.isInstance(this);
+  }
+
+  @Override
+  public String toString( ) {
+    return "PooledDataSource[" + this.getPersistenceUnitName() + ", total=" + this.getTotalConnections() + ", active="
+        + this.getActiveConnections() + "]";
+  }
+
+  /**
+   * Thread factory creates the daemon threads that are used for background tasks of the pool.
+   */
+  private static final class DaemonThreadFactory implements ThreadFactory {
+    /**
+     * Name of the created threads. The reference is never null.
+     */
+    private final String name;
+
+    /**
+     * Initialize object.
+     *
+     * @param pName Name of the created threads. The parameter must not be null.
+     */
+    DaemonThreadFactory( String pName ) {
+      name = pName;
+    }
+
+    /**
+     * @see ThreadFactory#newThread(Runnable)
+     */
+    @Override
+    public Thread newThread( Runnable pRunnable ) {
+      Thread lThread = new Thread(pRunnable, name);
+      lThread.setDaemon(true);
+      return lThread;
+    }
+  }
+}
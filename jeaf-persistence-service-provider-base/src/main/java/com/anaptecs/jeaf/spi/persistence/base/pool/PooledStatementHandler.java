@@ -0,0 +1,144 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.pool;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Class implements the logical statement that is handed out by a logical connection of a {@link PooledDataSource}.
+ * Closing a cacheable statement returns it to the statement cache of its physical connection instead of closing it.
+ *
+ * @author JEAF Development Team
+ */
+final class PooledStatementHandler implements InvocationHandler {
+  /**
+   * Logical connection that created the statement. The reference is never null.
+   */
+  private final PooledConnectionHandler connection;
+
+  /**
+   * Physical statement. The reference is never null.
+   */
+  private final Statement statement;
+
+  /**
+   * Key of the statement within the statement cache. The reference is null if the statement is not cached.
+   */
+  private final Object cacheKey;
+
+  /**
+   * Flag indicates that the logical statement was closed.
+   */
+  private volatile boolean closed;
+
+  /**
+   * Initialize object.
+   *
+   * @param pConnection Logical connection that created the statement. The parameter must not be null.
+   * @param pStatement Physical statement. The parameter must not be null.
+   * @param pCacheKey Key of the statement within the statement cache. The parameter may be null.
+   */
+  PooledStatementHandler( PooledConnectionHandler pConnection, Statement pStatement, Object pCacheKey ) {
+    connection = pConnection;
+    statement = pStatement;
+    cacheKey = pCacheKey;
+  }
+
+  /**
+   * @see InvocationHandler#invoke(Object, Method, Object[])
+   */
+  @Override
+  public Object invoke( Object pProxy, Method pMethod, Object[] pArgs ) throws Throwable {
+    Object lResult;
+    switch (pMethod.getName()) {
+      case "close":
+        if (closed == false) {
+          this.close();
+          connection.statementClosed(this);
+        }
+        lResult = null;
+        break;
+
+      case "isClosed":
+        lResult = closed;
+        break;
+
+      case "getConnection":
+        lResult = connection.getProxy();
+        break;
+
+      case "equals":
+        lResult = pProxy == pArgs[0];
+        break;
+
+      case "hashCode":
+        lResult = System.identityHashCode(pProxy);
+        break;
+
+      case "toString":
+        lResult = "PooledStatement[" + statement + "]";
+        break;
+
+      default:
+        if (closed == true) {
+          throw new SQLException("Statement is already closed.");
+        }
+        try {
+          lResult = pMethod.invoke(statement, pArgs);
+        }
+        catch (InvocationTargetException e) {
+          throw connection.checkException(e.getCause());
+        }
+    }
+    return lResult;
+  }
+
+  /**
+   * Method closes the logical statement. Cached statements are returned to the statement cache.
+   *
+   * @throws SQLException if closing the physical statement fails.
+   */
+  private void close( ) throws SQLException {
+    closed = true;
+    if (cacheKey != null && connection.getEntry().isBroken() == false) {
+      // Close open result set as the statement stays open.
+      try {
+        ResultSet lResultSet = statement.getResultSet();
+        if (lResultSet != null) {
+          lResultSet.close();
+        }
+      }
+      catch (SQLException e) {
+        statement.close();
+        throw e;
+      }
+      connection.getEntry().getStatementCache().release(cacheKey, (PreparedStatement) statement);
+    }
+    else {
+      statement.close();
+    }
+  }
+
+  /**
+   * Method closes the statement when its connection gets closed. Errors are ignored.
+   */
+  void closeQuietly( ) {
+    if (closed == false) {
+      try {
+        this.close();
+      }
+      catch (SQLException e) {
+        // Nothing to do as statement is discarded anyway.
+      }
+    }
+  }
+}
@@ -0,0 +1,36 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.pool;
+
+import java.util.Locale;
+
+/**
+ * Enumeration defines the priority classes that can be used to separate the connection usage of components that share
+ * the same persistence unit (see {@link ConnectionPriority}).
+ *
+ * @author JEAF Development Team
+ */
+public enum PriorityClass {
+  /**
+   * Latency sensitive work like requests of interactive users. This is the default priority class.
+   */
+  INTERACTIVE,
+
+  /**
+   * Throughput oriented work like batch jobs that must not starve interactive work.
+   */
+  BATCH;
+
+  /**
+   * Method returns the name of the property that defines the maximum number of connections that may be used
+   * concurrently by this priority class.
+   *
+   * @return {@link String} Name of the property. The method never returns null.
+   */
+  public String getBulkheadProperty( ) {
+    return PooledDataSource.BULKHEAD_PROPERTY_PREFIX + this.name().toLowerCase(Locale.ROOT);
+  }
+}
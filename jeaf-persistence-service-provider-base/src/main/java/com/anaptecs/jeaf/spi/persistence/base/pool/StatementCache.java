@@ -0,0 +1,186 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.pool;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class implements a LRU cache for the prepared statements of a single physical connection. Statements are removed from
+ * the cache while they are in use. This way a statement can never be handed out twice and evicted statements can
+ * always be closed immediately.
+ *
+ * @author JEAF Development Team
+ */
+final class StatementCache {
+  /**
+   * Maximum number of statements within the cache. If the value is 0 or less then caching is disabled.
+   */
+  private final int maxSize;
+
+  /**
+   * Map contains all currently idle statements in access order. The key is built from the parameters that were used to
+   * prepare the statement.
+   */
+  private final Map<Object, PreparedStatement> statements;
+
+  /**
+   * Initialize object.
+   *
+   * @param pMaxSize Maximum number of statements within the cache. If the value is 0 or less then caching is disabled.
+   */
+  StatementCache( int pMaxSize ) {
+    maxSize = pMaxSize;
+    if (maxSize > 0) {
+      statements = new LinkedHashMap<>(maxSize * 2, 0.75f, true);
+    }
+    else {
+      statements = null;
+    }
+  }
+
+  /**
+   * Method returns if the cache is enabled.
+   *
+   * @return boolean Method returns true if prepared statements are cached.
+   */
+  boolean isEnabled( ) {
+    return statements != null;
+  }
+
+  /**
+   * Method takes the statement with the passed key from the cache. The statement will be removed from the cache until
+   * it is returned through {@link #release(Object, PreparedStatement)}.
+   *
+   * @param pKey Key of the statement. The parameter must not be null.
+   * @return {@link PreparedStatement} Cached statement or null if no idle statement with the passed key exists.
+   */
+  synchronized PreparedStatement take( Object pKey ) {
+    PreparedStatement lStatement;
+    if (statements != null) {
+      lStatement = statements.remove(pKey);
+    }
+    else {
+      lStatement = null;
+    }
+    return lStatement;
+  }
+
+  /**
+   * Method returns the passed statement to the cache. If the statement can not be cached then it will be closed.
+   *
+   * @param pKey Key of the statement. The parameter must not be null.
+   * @param pStatement Statement that should be returned. The parameter must not be null.
+   */
+  void release( Object pKey, PreparedStatement pStatement ) {
+    // Reset statement so that it can be reused. Limits and hints are reset to the defaults of the JDBC driver so that
+    // they do not leak into the next usage of the statement.
+    boolean lReusable;
+    try {
+      pStatement.clearParameters();
+      pStatement.clearBatch();
+      pStatement.clearWarnings();
+      pStatement.setMaxRows(0);
+      pStatement.setMaxFieldSize(0);
+      pStatement.setQueryTimeout(0);
+      pStatement.setFetchSize(0);
+      pStatement.setFetchDirection(ResultSet.FETCH_FORWARD);
+      lReusable = true;
+    }
+    catch (SQLException e) {
+      lReusable = false;
+    }
+
+    // Add statement to the cache. If an idle statement with the same key already exists then the passed one is not
+    // needed any longer.
+    PreparedStatement lObsolete;
+    List<PreparedStatement> lEvicted = null;
+    synchronized (this) {
+      if (statements != null && lReusable == true && statements.containsKey(pKey) == false) {
+        statements.put(pKey, pStatement);
+        lObsolete = null;
+
+        // Evict least recently used statements.
+        if (statements.size() > maxSize) {
+          lEvicted = new ArrayList<>(1);
+          Iterator<PreparedStatement> lIterator = statements.values().iterator();
+          while (statements.size() > maxSize) {
+            lEvicted.add(lIterator.next());
+            lIterator.remove();
+          }
+        }
+      }
+      else {
+        lObsolete = pStatement;
+      }
+    }
+
+    // Statements are closed outside the lock.
+    closeQuietly(lObsolete);
+    if (lEvicted != null) {
+      for (PreparedStatement lNext : lEvicted) {
+        closeQuietly(lNext);
+      }
+    }
+  }
+
+  /**
+   * Method returns the number of idle statements within the cache.
+   *
+   * @return int Number of cached statements.
+   */
+  synchronized int size( ) {
+    int lSize;
+    if (statements != null) {
+      lSize = statements.size();
+    }
+    else {
+      lSize = 0;
+    }
+    return lSize;
+  }
+
+  /**
+   * Method closes all cached statements.
+   */
+  void close( ) {
+    List<PreparedStatement> lStatements;
+    synchronized (this) {
+      if (statements != null) {
+        lStatements = new ArrayList<>(statements.values());
+        statements.clear();
+      }
+      else {
+        lStatements = new ArrayList<>(0);
+      }
+    }
+    for (PreparedStatement lNext : lStatements) {
+      closeQuietly(lNext);
+    }
+  }
+
+  /**
+   * Method closes the passed statement. Errors are ignored as the statement will not be used any longer.
+   *
+   * @param pStatement Statement that should be closed. The parameter may be null.
+   */
+  private static void closeQuietly( PreparedStatement pStatement ) {
+    if (pStatement != null) {
+      try {
+        pStatement.close();
+      }
+      catch (SQLException e) {
+        // Nothing to do as statement is discarded anyway.
+      }
+    }
+  }
+}
@@ -0,0 +1,163 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.pool;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Class implements a histogram for durations. Buckets have exponentially growing bounds starting at 1 microsecond so
+ * percentiles are approximated with a relative error of at most factor 2. Recording a value is lock-free and uses
+ * {@link LongAdder} so that concurrent threads do not contend with each other.
+ *
+ * @author JEAF Development Team
+ */
+public final class TimeHistogram {
+  /**
+   * Number of buckets. The last bucket covers all durations of more than 2^(BUCKETS-2) microseconds (about 67 seconds).
+   */
+  private static final int BUCKETS = 28;
+
+  /**
+   * Number of recorded values per bucket.
+   */
+  private final LongAdder[] buckets = new LongAdder[BUCKETS];
+
+  /**
+   * Sum of all recorded durations in nanoseconds.
+   */
+  private final LongAdder totalTime = new LongAdder();
+
+  /**
+   * Longest recorded duration in nanoseconds.
+   */
+  private final LongAccumulator maxTime = new LongAccumulator(Math::max, 0);
+
+  /**
+   * Initialize object.
+   */
+  public TimeHistogram( ) {
+    for (int i = 0; i < BUCKETS; i++) {
+      buckets[i] = new LongAdder();
+    }
+  }
+
+  /**
+   * Method records the passed duration.
+   *
+   * @param pNanos Duration in nanoseconds. Negative values are treated as 0.
+   */
+  public void record( long pNanos ) {
+    long lNanos = Math.max(pNanos, 0);
+    buckets[bucketIndex(lNanos)].increment();
+    totalTime.add(lNanos);
+    maxTime.accumulate(lNanos);
+  }
+
+  /**
+   * Method returns the bucket for the passed duration. Bucket i covers durations up to 2^i microseconds.
+   *
+   * @param pNanos Duration in nanoseconds.
+   * @return int Index of the bucket.
+   */
+  private static int bucketIndex( long pNanos ) {
+    long lMicros = TimeUnit.NANOSECONDS.toMicros(pNanos);
+    int lIndex;
+    if (lMicros <= 1) {
+      lIndex = 0;
+    }
+    else {
+      lIndex = 64 - Long.numberOfLeadingZeros(lMicros - 1);
+    }
+    return Math.min(lIndex, BUCKETS - 1);
+  }
+
+  /**
+   * Method returns the number of recorded durations.
+   *
+   * @return long Number of recorded durations.
+   */
+  public long getCount( ) {
+    long lCount = 0;
+    for (LongAdder lNext : buckets) {
+      lCount += lNext.sum();
+    }
+    return lCount;
+  }
+
+  /**
+   * Method returns the sum of all recorded durations.
+   *
+   * @return long Sum of all durations in nanoseconds.
+   */
+  public long getTotalTime( ) {
+    return totalTime.sum();
+  }
+
+  /**
+   * Method returns the mean of all recorded durations.
+   *
+   * @return long Mean duration in nanoseconds or 0 if no duration was recorded.
+   */
+  public long getMean( ) {
+    long lCount = this.getCount();
+    long lMean;
+    if (lCount > 0) {
+      lMean = totalTime.sum() / lCount;
+    }
+    else {
+      lMean = 0;
+    }
+    return lMean;
+  }
+
+  /**
+   * Method returns the longest recorded duration.
+   *
+   * @return long Longest duration in nanoseconds or 0 if no duration was recorded.
+   */
+  public long getMax( ) {
+    return maxTime.get();
+  }
+
+  /**
+   * Method returns the approximated duration below which the passed percentage of all durations lie.
+   *
+   * @param pPercentile Percentile between 0 and 100, e.g. 99 or 99.9.
+   * @return long Upper bound of the bucket that contains the percentile in nanoseconds, but never more than the longest
+   * recorded duration. If no duration was recorded then 0 is returned.
+   */
+  public long getPercentile( double pPercentile ) {
+    // Take a snapshot so that all following calculations are based on the same values.
+    long[] lCounts = new long[BUCKETS];
+    long lTotal = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      lCounts[i] = buckets[i].sum();
+      lTotal += lCounts[i];
+    }
+
+    long lResult = 0;
+    if (lTotal > 0) {
+      long lThreshold = (long) Math.ceil(lTotal * Math.min(Math.max(pPercentile, 0), 100) / 100);
+      long lSeen = 0;
+      for (int i = 0; i < BUCKETS; i++) {
+        lSeen += lCounts[i];
+        if (lSeen >= lThreshold && lCounts[i] > 0) {
+          lResult = Math.min(TimeUnit.MICROSECONDS.toNanos(1L << i), this.getMax());
+          break;
+        }
+      }
+    }
+    return lResult;
+  }
+
+  @Override
+  public String toString( ) {
+    return "count=" + this.getCount() + ", mean=" + this.getMean() + "ns, p99=" + this.getPercentile(99) + "ns, max="
+        + this.getMax() + "ns";
+  }
+}
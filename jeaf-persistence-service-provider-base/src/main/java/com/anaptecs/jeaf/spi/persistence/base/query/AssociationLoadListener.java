@@ -0,0 +1,138 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.query;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.InitializeCollectionEvent;
+import org.hibernate.event.spi.InitializeCollectionEventListener;
+import org.hibernate.event.spi.LoadEvent;
+import org.hibernate.event.spi.LoadEventListener;
+
+/**
+ * Class keeps track of the association that is currently loaded by the current thread so that {@link NPlusOneDetector}
+ * can report which association caused repeated selects. One instance of the listener is registered before and one
+ * after the default listeners of Hibernate. This way the association is known while the default listeners execute
+ * their SQL statements. As Hibernate rejects two listeners of the same class within one event the listener that is
+ * called afterwards is a subclass of its own.
+ *
+ * @author JEAF Development Team
+ */
+class AssociationLoadListener implements InitializeCollectionEventListener, LoadEventListener {
+  /**
+   * Default serial version UID.
+   */
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * Associations that are currently loaded by the current thread with the innermost one first.
+   */
+  private static final ThreadLocal<Deque<String>> ASSOCIATIONS = ThreadLocal.withInitial(ArrayDeque::new);
+
+  /**
+   * Flag indicates whether the listener is called before or after the default listeners.
+   */
+  private final boolean before;
+
+  /**
+   * Initialize object.
+   *
+   * @param pBefore Flag indicates whether the listener is called before or after the default listeners.
+   */
+  private AssociationLoadListener( boolean pBefore ) {
+    before = pBefore;
+  }
+
+  /**
+   * Method registers the listeners with the passed session factory.
+   *
+   * @param pFactory Session factory whose association loads should be tracked. The parameter must not be null.
+   */
+  static void install( SessionFactoryImplementor pFactory ) {
+    EventListenerRegistry lRegistry = pFactory.getServiceRegistry().getService(EventListenerRegistry.class);
+    AssociationLoadListener lBefore = new AssociationLoadListener(true);
+    AssociationLoadListener lAfter = new CompletionListener();
+    lRegistry.getEventListenerGroup(EventType.INIT_COLLECTION).prependListener(lBefore);
+    lRegistry.getEventListenerGroup(EventType.INIT_COLLECTION).appendListener(lAfter);
+    lRegistry.getEventListenerGroup(EventType.LOAD).prependListener(lBefore);
+    lRegistry.getEventListenerGroup(EventType.LOAD).appendListener(lAfter);
+  }
+
+  /**
+   * Method returns the association that is currently loaded by the current thread.
+   *
+   * @return {@link String} Role of the collection or name of the entity that is loaded. The method returns null if
+   * no association is loaded.
+   */
+  static String getCurrentAssociation( ) {
+    return ASSOCIATIONS.get().peekFirst();
+  }
+
+  /**
+   * Method forgets all associations of the current thread. It is called when a session ends so that associations whose
+   * loading failed do not remain.
+   */
+  static void reset( ) {
+    ASSOCIATIONS.remove();
+  }
+
+  /**
+   * @see InitializeCollectionEventListener#onInitializeCollection(InitializeCollectionEvent)
+   */
+  @Override
+  public void onInitializeCollection( InitializeCollectionEvent pEvent ) {
+    this.track(pEvent.getCollection().getRole());
+  }
+
+  /**
+   * @see LoadEventListener#onLoad(LoadEvent, LoadType)
+   */
+  @Override
+  public void onLoad( LoadEvent pEvent, LoadType pLoadType ) {
+    // Only loads of proxies and of eagerly fetched references are caused by associations.
+    if (pLoadType == IMMEDIATE_LOAD || pLoadType == INTERNAL_LOAD_EAGER || pLoadType == INTERNAL_LOAD_NULLABLE) {
+      this.track(pEvent.getEntityClassName());
+    }
+  }
+
+  /**
+   * Method tracks that loading of the passed association starts or ended.
+   *
+   * @param pAssociation Association that is loaded. The parameter may be null.
+   */
+  private void track( String pAssociation ) {
+    if (pAssociation != null) {
+      Deque<String> lAssociations = ASSOCIATIONS.get();
+      if (before == true) {
+        lAssociations.addFirst(pAssociation);
+      }
+      else {
+        lAssociations.pollFirst();
+      }
+    }
+  }
+
+  /**
+   * Listener that is called after the default listeners of Hibernate and tracks that loading of an association ended.
+   */
+  private static final class CompletionListener extends AssociationLoadListener {
+    /**
+     * Default serial version UID.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Initialize object.
+     */
+    CompletionListener( ) {
+      super(false);
+    }
+  }
+}
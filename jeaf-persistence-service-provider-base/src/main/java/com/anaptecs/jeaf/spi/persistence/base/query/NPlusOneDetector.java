@@ -0,0 +1,383 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.query;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Pattern;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.BaseSessionEventListener;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import com.anaptecs.jeaf.spi.persistence.base.jdbc.JdbcStatistics;
+import com.anaptecs.jeaf.xfun.api.XFun;
+import com.anaptecs.jeaf.xfun.api.checks.Check;
+
+/**
+ * Class counts the SQL statements of one entity manager and thus of one transaction of a component grouped by their
+ * shape (see {@link JdbcStatistics#toShape(String)}). Single-row selects that are executed more often than a threshold
+ * are reported as N+1 selects together with the association whose loading caused them.
+ *
+ * The detector is enabled for a persistence unit through property {@link #THRESHOLD_PROPERTY}. In mode
+ * {@link Mode#WARN} suspects are traced when the entity manager is closed. To keep the overhead in production low only
+ * a sample of all transactions can be checked (see {@link #SAMPLE_RATE_PROPERTY}). In mode {@link Mode#STRICT} an
+ * {@link NPlusOneException} is thrown as soon as the threshold is exceeded so that the detector can be used as an
+ * assertion in tests.
+ *
+ * @author JEAF Development Team
+ */
+public final class NPlusOneDetector extends BaseSessionEventListener implements StatementInspector {
+  /**
+   * Default serial version UID.
+   */
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * Name of the property that defines how often a single-row select may be executed within one transaction before it
+   * is reported. Detection is disabled if the property is not set or its value is 0.
+   */
+  public static final String THRESHOLD_PROPERTY = "jeaf.persistence.n_plus_one.threshold";
+
+  /**
+   * Name of the property that defines the {@link Mode} of the detector. Default is {@link Mode#WARN}.
+   */
+  public static final String MODE_PROPERTY = "jeaf.persistence.n_plus_one.mode";
+
+  /**
+   * Name of the property that defines the share of transactions that are checked as value between 0 and 1. Default is
+   * 1, which means that all transactions are checked.
+   */
+  public static final String SAMPLE_RATE_PROPERTY = "jeaf.persistence.n_plus_one.sample_rate";
+
+  /**
+   * Pattern that matches selects that restrict their result by a single parameter per column.
+   */
+  private static final Pattern SINGLE_ROW_SELECT = Pattern.compile("(?is)^select\\s.*\\swhere\\s.*=\\s*\\?.*");
+
+  /**
+   * Enumeration defines how N+1 selects are reported.
+   */
+  public enum Mode {
+    /**
+     * N+1 selects are traced as warning when the transaction ends.
+     */
+    WARN,
+
+    /**
+     * An {@link NPlusOneException} is thrown when the threshold is exceeded.
+     */
+    STRICT;
+  }
+
+  /**
+   * Name of the persistence unit. The reference is never null.
+   */
+  private final String persistenceUnitName;
+
+  /**
+   * Name of the component whose statements are counted. The reference is never null.
+   */
+  private final String componentName;
+
+  /**
+   * Number of executions of a single-row select within one transaction that is tolerated. The value is always greater
+   * than 0.
+   */
+  private final int threshold;
+
+  /**
+   * Defines how N+1 selects are reported. The reference is never null.
+   */
+  private final Mode mode;
+
+  /**
+   * Statement inspector that was configured for the persistence unit. The reference may be null.
+   */
+  private final StatementInspector delegate;
+
+  /**
+   * Executions per SQL shape in the order in which the shapes were executed first.
+   */
+  private final Map<String, Counter> counters = new LinkedHashMap<>();
+
+  /**
+   * Total number of statements.
+   */
+  private int statementCount;
+
+  /**
+   * Initialize object.
+   *
+   * @param pPersistenceUnitName Name of the persistence unit. The parameter must not be null.
+   * @param pComponentName Name of the component whose statements are counted. The parameter must not be null.
+   * @param pThreshold Number of executions of a single-row select from which on it is reported. The value must be
+   * greater than 0.
+   * @param pMode Mode of the detector. The parameter must not be null.
+   * @param pDelegate Statement inspector that was configured for the persistence unit. The parameter may be null.
+   */
+  public NPlusOneDetector( String pPersistenceUnitName, String pComponentName, int pThreshold, Mode pMode,
+      StatementInspector pDelegate ) {
+    // Check parameters
+    Check.checkInvalidParameterNull(pPersistenceUnitName, "pPersistenceUnitName");
+    Check.checkInvalidParameterNull(pComponentName, "pComponentName");
+    Check.checkInvalidParameterNull(pMode, "pMode");
+    if (pThreshold <= 0) {
+      throw new IllegalArgumentException("Threshold has to be greater than 0 but is " + pThreshold + ".");
+    }
+
+    persistenceUnitName = pPersistenceUnitName;
+    componentName = pComponentName;
+    threshold = pThreshold;
+    mode = pMode;
+    delegate = pDelegate;
+  }
+
+  /**
+   * Method registers the listeners that are required to determine the associations that cause N+1 selects with the
+   * passed entity manager factory. Nothing is done if detection is disabled for the factory.
+   *
+   * @param pFactory Entity manager factory that was just created. The parameter must not be null.
+   */
+  public static void install( EntityManagerFactory pFactory ) {
+    // Check parameter
+    Check.checkInvalidParameterNull(pFactory, "pFactory");
+
+    if (getThreshold(pFactory.getProperties()) > 0) {
+      AssociationLoadListener.install(pFactory.unwrap(SessionFactoryImplementor.class));
+    }
+  }
+
+  /**
+   * Method creates a detector for the next transaction of the passed component if detection is enabled and the
+   * transaction is part of the sample.
+   *
+   * @param pFactory Entity manager factory of the component. The parameter must not be null.
+   * @param pPersistenceUnitName Name of the persistence unit. The parameter must not be null.
+   * @param pComponentName Name of the component. The parameter must not be null.
+   * @return {@link NPlusOneDetector} Detector for the transaction or null if the transaction should not be checked.
+   */
+  public static NPlusOneDetector forComponent( EntityManagerFactory pFactory, String pPersistenceUnitName,
+      String pComponentName ) {
+    // Check parameters
+    Check.checkInvalidParameterNull(pFactory, "pFactory");
+    Check.checkInvalidParameterNull(pPersistenceUnitName, "pPersistenceUnitName");
+    Check.checkInvalidParameterNull(pComponentName, "pComponentName");
+
+    Map<String, Object> lProperties = pFactory.getProperties();
+    int lThreshold = getThreshold(lProperties);
+    NPlusOneDetector lDetector;
+    if (lThreshold > 0 && isSampled(lProperties) == true) {
+      Object lMode = lProperties.get(MODE_PROPERTY);
+      Mode lResolvedMode = lMode != null ? Mode.valueOf(lMode.toString().trim().toUpperCase(Locale.ROOT)) : Mode.WARN;
+      StatementInspector lDelegate =
+          pFactory.unwrap(SessionFactoryImplementor.class).getSessionFactoryOptions().getStatementInspector();
+      lDetector = new NPlusOneDetector(pPersistenceUnitName, pComponentName, lThreshold, lResolvedMode, lDelegate);
+    }
+    else {
+      lDetector = null;
+    }
+    return lDetector;
+  }
+
+  /**
+   * Method returns the threshold that is configured through property {@link #THRESHOLD_PROPERTY}.
+   *
+   * @param pProperties Properties of the entity manager factory. The parameter must not be null.
+   * @return int Configured threshold or 0 if detection is disabled.
+   */
+  private static int getThreshold( Map<String, Object> pProperties ) {
+    Object lThreshold = pProperties.get(THRESHOLD_PROPERTY);
+    return lThreshold != null ? Integer.parseInt(lThreshold.toString().trim()) : 0;
+  }
+
+  /**
+   * Method decides randomly whether the next transaction is checked based on property {@link #SAMPLE_RATE_PROPERTY}.
+   *
+   * @param pProperties Properties of the entity manager factory. The parameter must not be null.
+   * @return boolean Method returns true if the transaction should be checked and false otherwise.
+   */
+  private static boolean isSampled( Map<String, Object> pProperties ) {
+    Object lSampleRate = pProperties.get(SAMPLE_RATE_PROPERTY);
+    boolean lSampled;
+    if (lSampleRate != null) {
+      lSampled = ThreadLocalRandom.current().nextDouble() < Double.parseDouble(lSampleRate.toString().trim());
+    }
+    else {
+      lSampled = true;
+    }
+    return lSampled;
+  }
+
+  /**
+   * Method creates a new entity manager whose statements are counted by this detector.
+   *
+   * @param pFactory Entity manager factory of the component. The parameter must not be null.
+   * @return {@link EntityManager} New entity manager. The method never returns null.
+   */
+  public EntityManager createEntityManager( EntityManagerFactory pFactory ) {
+    // Check parameter
+    Check.checkInvalidParameterNull(pFactory, "pFactory");
+
+    // Entity managers are sessions that join transactions automatically.
+    return pFactory.unwrap(SessionFactoryImplementor.class).withOptions().autoJoinTransactions(true)
+        .statementInspector(this).eventListeners(this).openSession();
+  }
+
+  /**
+   * Method counts the passed SQL statement.
+   *
+   * @see StatementInspector#inspect(String)
+   */
+  @Override
+  public String inspect( String pSQL ) {
+    String lSQL = pSQL;
+    if (delegate != null) {
+      String lInspected = delegate.inspect(pSQL);
+      if (lInspected != null) {
+        lSQL = lInspected;
+      }
+    }
+
+    statementCount++;
+    String lShape = JdbcStatistics.toShape(lSQL);
+    Counter lCounter = counters.get(lShape);
+    if (lCounter == null) {
+      lCounter = new Counter(SINGLE_ROW_SELECT.matcher(lShape).matches() && lShape.contains("(?)") == false);
+      counters.put(lShape, lCounter);
+    }
+    lCounter.executions++;
+    if (lCounter.association == null) {
+      lCounter.association = AssociationLoadListener.getCurrentAssociation();
+    }
+
+    // In strict mode the statement is rejected so that the loop that causes it can be found in the stack trace.
+    if (mode == Mode.STRICT && lCounter.singleRowSelect == true && lCounter.executions > threshold) {
+      throw new NPlusOneException(Collections.singletonList(this.toSuspect(lShape, lCounter)));
+    }
+    return lSQL;
+  }
+
+  /**
+   * Method reports N+1 selects when the entity manager is closed.
+   *
+   * @see BaseSessionEventListener#end()
+   */
+  @Override
+  public void end( ) {
+    AssociationLoadListener.reset();
+    if (mode == Mode.WARN) {
+      for (NPlusOneSuspect lNext : this.getSuspects()) {
+        XFun.getTrace().warn(lNext.toString());
+      }
+    }
+  }
+
+  /**
+   * Method returns the number of statements that were executed.
+   *
+   * @return int Number of statements.
+   */
+  public int getStatementCount( ) {
+    return statementCount;
+  }
+
+  /**
+   * Method returns the number of executions per SQL shape.
+   *
+   * @return {@link Map} Executions by SQL shape in the order in which the shapes were executed first. The method never
+   * returns null.
+   */
+  public Map<String, Integer> getStatementCounts( ) {
+    Map<String, Integer> lCounts = new LinkedHashMap<>();
+    for (Map.Entry<String, Counter> lNext : counters.entrySet()) {
+      lCounts.put(lNext.getKey(), lNext.getValue().executions);
+    }
+    return lCounts;
+  }
+
+  /**
+   * Method returns all single-row selects that were executed more often than the threshold.
+   *
+   * @return {@link List} Detected N+1 selects. The method never returns null.
+   */
+  public List<NPlusOneSuspect> getSuspects( ) {
+    List<NPlusOneSuspect> lSuspects = new ArrayList<>();
+    for (Map.Entry<String, Counter> lNext : counters.entrySet()) {
+      Counter lCounter = lNext.getValue();
+      if (lCounter.singleRowSelect == true && lCounter.executions > threshold) {
+        lSuspects.add(this.toSuspect(lNext.getKey(), lCounter));
+      }
+    }
+    return lSuspects;
+  }
+
+  /**
+   * Method checks that no N+1 selects were detected.
+   *
+   * @throws NPlusOneException if N+1 selects were detected.
+   */
+  public void assertNoSuspects( ) {
+    List<NPlusOneSuspect> lSuspects = this.getSuspects();
+    if (lSuspects.isEmpty() == false) {
+      throw new NPlusOneException(lSuspects);
+    }
+  }
+
+  /**
+   * Method creates a suspect for the passed SQL shape.
+   *
+   * @param pShape Shape of the repeated select. The parameter must not be null.
+   * @param pCounter Executions of the shape. The parameter must not be null.
+   * @return {@link NPlusOneSuspect} Suspect for the shape. The method never returns null.
+   */
+  private NPlusOneSuspect toSuspect( String pShape, Counter pCounter ) {
+    return new NPlusOneSuspect(persistenceUnitName, componentName, pShape, pCounter.executions, pCounter.association);
+  }
+
+  /**
+   * Class holds the executions of one SQL shape.
+   */
+  private static final class Counter implements Serializable {
+    /**
+     * Default serial version UID.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Flag indicates whether the shape is a single-row select that may cause N+1 selects.
+     */
+    private final boolean singleRowSelect;
+
+    /**
+     * Number of executions of the shape within the transaction.
+     */
+    private int executions;
+
+    /**
+     * Association whose loading caused the first execution of the shape. The reference may be null.
+     */
+    private String association;
+
+    /**
+     * Initialize object.
+     *
+     * @param pSingleRowSelect Parameter defines whether the shape is a single-row select.
+     */
+    Counter( boolean pSingleRowSelect ) {
+      singleRowSelect = pSingleRowSelect;
+    }
+  }
+}
@@ -0,0 +1,49 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.query;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.persistence.PersistenceException;
+
+/**
+ * Exception is thrown by {@link NPlusOneDetector} if a transaction executes repeated single-row selects and the
+ * detector is used as assertion.
+ *
+ * @author JEAF Development Team
+ */
+public class NPlusOneException extends PersistenceException {
+  /**
+   * Default serial version UID.
+   */
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * Detected N+1 selects.
+   */
+  private final List<NPlusOneSuspect> suspects;
+
+  /**
+   * Initialize object.
+   *
+   * @param pSuspects Detected N+1 selects. The parameter must not be null and must not be empty.
+   */
+  public NPlusOneException( List<NPlusOneSuspect> pSuspects ) {
+    super("Detected N+1 selects: " + pSuspects);
+    suspects = Collections.unmodifiableList(new ArrayList<>(pSuspects));
+  }
+
+  /**
+   * Method returns the detected N+1 selects.
+   *
+   * @return {@link List} Detected N+1 selects. The method never returns null.
+   */
+  public List<NPlusOneSuspect> getSuspects( ) {
+    return suspects;
+  }
+}
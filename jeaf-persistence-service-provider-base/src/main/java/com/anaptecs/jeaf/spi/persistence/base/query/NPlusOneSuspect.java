@@ -0,0 +1,122 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.query;
+
+import java.io.Serializable;
+
+/**
+ * Class describes a single-row select that was executed repeatedly within one transaction and thus probably is the
+ * result of loading an association in a loop (N+1 selects). Objects of this class are immutable.
+ *
+ * @author JEAF Development Team
+ */
+public final class NPlusOneSuspect implements Serializable {
+  /**
+   * Default serial version UID.
+   */
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * Name of the persistence unit. The reference is never null.
+   */
+  private final String persistenceUnitName;
+
+  /**
+   * Name of the component that executed the statements. The reference is never null.
+   */
+  private final String componentName;
+
+  /**
+   * Shape of the repeated select. The reference is never null.
+   */
+  private final String sql;
+
+  /**
+   * Number of executions within the transaction.
+   */
+  private final int executions;
+
+  /**
+   * Association whose loading caused the selects, e.g. the role of a collection. The reference may be null.
+   */
+  private final String association;
+
+  /**
+   * Initialize object.
+   *
+   * @param pPersistenceUnitName Name of the persistence unit. The parameter must not be null.
+   * @param pComponentName Name of the component that executed the statements. The parameter must not be null.
+   * @param pSQL Shape of the repeated select. The parameter must not be null.
+   * @param pExecutions Number of executions within the transaction.
+   * @param pAssociation Association whose loading caused the selects. The parameter may be null.
+   */
+  NPlusOneSuspect( String pPersistenceUnitName, String pComponentName, String pSQL, int pExecutions,
+      String pAssociation ) {
+    persistenceUnitName = pPersistenceUnitName;
+    componentName = pComponentName;
+    sql = pSQL;
+    executions = pExecutions;
+    association = pAssociation;
+  }
+
+  /**
+   * Method returns the name of the persistence unit.
+   *
+   * @return {@link String} Name of the persistence unit. The method never returns null.
+   */
+  public String getPersistenceUnitName( ) {
+    return persistenceUnitName;
+  }
+
+  /**
+   * Method returns the name of the component that executed the statements.
+   *
+   * @return {@link String} Name of the component. The method never returns null.
+   */
+  public String getComponentName( ) {
+    return componentName;
+  }
+
+  /**
+   * Method returns the shape of the repeated select.
+   *
+   * @return {@link String} SQL shape. The method never returns null.
+   */
+  public String getSQL( ) {
+    return sql;
+  }
+
+  /**
+   * Method returns how often the select was executed within the transaction.
+   *
+   * @return int Number of executions.
+   */
+  public int getExecutions( ) {
+    return executions;
+  }
+
+  /**
+   * Method returns the association whose loading caused the selects. Collections are identified by their role (e.g.
+   * <code>com.acme.Order.items</code>) and lazy or eagerly loaded references by the referenced entity.
+   *
+   * @return {@link String} Association or null if the selects were not caused by loading an association.
+   */
+  public String getAssociation( ) {
+    return association;
+  }
+
+  @Override
+  public String toString( ) {
+    StringBuilder lBuilder = new StringBuilder();
+    lBuilder.append("Component ").append(componentName).append(" executed single-row select ").append(executions);
+    lBuilder.append(" times within one transaction of persistence unit ").append(persistenceUnitName);
+    if (association != null) {
+      lBuilder.append(" while loading association ").append(association);
+    }
+    lBuilder.append(": ").append(sql);
+    return lBuilder.toString();
+  }
+}
@@ -0,0 +1,213 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.query;
+
+import java.io.Serializable;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import org.hibernate.EmptyInterceptor;
+import org.hibernate.Hibernate;
+import org.hibernate.Transaction;
+import org.hibernate.collection.spi.PersistentCollection;
+import org.hibernate.resource.transaction.spi.TransactionStatus;
+import org.hibernate.type.Type;
+
+import com.anaptecs.jeaf.spi.persistence.base.PersistenceUnitInfoImpl;
+import com.anaptecs.jeaf.xfun.api.checks.Check;
+
+/**
+ * Class records the entity classes that are changed within a session and invalidates the depending results of the
+ * {@link QueryResultCache} of its persistence unit as soon as the transaction was committed. Changes of rolled back
+ * transactions do not affect the cache.
+ *
+ * Hibernate creates a new interceptor for every session if it is configured as session scoped interceptor. Persistence
+ * units enable it through property {@link PersistenceUnitInfoImpl#QUERY_CACHE_PROPERTY} (see
+ * {@link #configure(Map, String)}). If the interceptor is configured by its class name instead, the persistence unit is
+ * not known and changes invalidate the caches of all persistence units.
+ *
+ * @author JEAF Development Team
+ */
+public class QueryCacheInterceptor extends EmptyInterceptor {
+  /**
+   * Default serial version UID.
+   */
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * Hibernate property that defines the interceptor that is created for every session.
+   */
+  private static final String SESSION_INTERCEPTOR_PROPERTY = "hibernate.session_factory.session_scoped_interceptor";
+
+  /**
+   * Name of the persistence unit whose query result cache is invalidated. If it is null the caches of all persistence
+   * units are invalidated.
+   */
+  private final String persistenceUnitName;
+
+  /**
+   * Entity classes that were changed within the current transaction.
+   */
+  private final Set<Class<?>> changedClasses = new HashSet<>();
+
+  /**
+   * Initialize object. As the persistence unit is not known changes invalidate the caches of all persistence units.
+   */
+  public QueryCacheInterceptor( ) {
+    persistenceUnitName = null;
+  }
+
+  /**
+   * Initialize object.
+   *
+   * @param pPersistenceUnitName Name of the persistence unit whose query result cache is invalidated. The parameter
+   * must not be null.
+   */
+  public QueryCacheInterceptor( String pPersistenceUnitName ) {
+    // Check parameter
+    Check.checkInvalidParameterNull(pPersistenceUnitName, "pPersistenceUnitName");
+
+    persistenceUnitName = pPersistenceUnitName;
+  }
+
+  /**
+   * Method activates this interceptor within the passed configuration if the query result cache is enabled and no
+   * other session scoped interceptor is configured. Hibernate creates the interceptors through a supplier so that they
+   * know their persistence unit.
+   *
+   * @param pProperties Configuration of a persistence unit. The parameter must not be null.
+   * @param pPersistenceUnitName Name of the persistence unit. The parameter must not be null.
+   */
+  public static void configure( Map<Object, Object> pProperties, String pPersistenceUnitName ) {
+    // Check parameters
+    Check.checkInvalidParameterNull(pProperties, "pProperties");
+    Check.checkInvalidParameterNull(pPersistenceUnitName, "pPersistenceUnitName");
+
+    Object lEnabled = pProperties.get(PersistenceUnitInfoImpl.QUERY_CACHE_PROPERTY);
+    if (Boolean.parseBoolean(Objects.toString(lEnabled, null)) == true) {
+      Supplier<QueryCacheInterceptor> lSupplier = ( ) -> new QueryCacheInterceptor(pPersistenceUnitName);
+      pProperties.putIfAbsent(SESSION_INTERCEPTOR_PROPERTY, lSupplier);
+    }
+  }
+
+  /**
+   * Method returns the name of the persistence unit whose query result cache is invalidated.
+   *
+   * @return {@link String} Name of the persistence unit or null if the caches of all persistence units are
+   * invalidated.
+   */
+  public String getPersistenceUnitName( ) {
+    return persistenceUnitName;
+  }
+
+  /**
+   * Method returns the entity classes that were changed within the current transaction.
+   *
+   * @return {@link Set} Changed entity classes. The method never returns null.
+   */
+  public Set<Class<?>> getChangedClasses( ) {
+    return changedClasses;
+  }
+
+  /**
+   * @see EmptyInterceptor#onSave(Object, Serializable, Object[], String[], Type[])
+   */
+  @Override
+  public boolean onSave( Object pEntity, Serializable pID, Object[] pState, String[] pPropertyNames, Type[] pTypes ) {
+    this.recordChange(pEntity);
+    return false;
+  }
+
+  /**
+   * @see EmptyInterceptor#onFlushDirty(Object, Serializable, Object[], Object[], String[], Type[])
+   */
+  @Override
+  public boolean onFlushDirty( Object pEntity, Serializable pID, Object[] pCurrentState, Object[] pPreviousState,
+      String[] pPropertyNames, Type[] pTypes ) {
+    this.recordChange(pEntity);
+    return false;
+  }
+
+  /**
+   * @see EmptyInterceptor#onDelete(Object, Serializable, Object[], String[], Type[])
+   */
+  @Override
+  public void onDelete( Object pEntity, Serializable pID, Object[] pState, String[] pPropertyNames, Type[] pTypes ) {
+    this.recordChange(pEntity);
+  }
+
+  /**
+   * @see EmptyInterceptor#onCollectionRecreate(Object, Serializable)
+   */
+  @Override
+  public void onCollectionRecreate( Object pCollection, Serializable pKey ) {
+    this.recordCollectionChange(pCollection);
+  }
+
+  /**
+   * @see EmptyInterceptor#onCollectionRemove(Object, Serializable)
+   */
+  @Override
+  public void onCollectionRemove( Object pCollection, Serializable pKey ) {
+    this.recordCollectionChange(pCollection);
+  }
+
+  /**
+   * @see EmptyInterceptor#onCollectionUpdate(Object, Serializable)
+   */
+  @Override
+  public void onCollectionUpdate( Object pCollection, Serializable pKey ) {
+    this.recordCollectionChange(pCollection);
+  }
+
+  /**
+   * @see EmptyInterceptor#afterTransactionCompletion(Transaction)
+   */
+  @Override
+  public void afterTransactionCompletion( Transaction pTransaction ) {
+    try {
+      if (pTransaction.getStatus() == TransactionStatus.COMMITTED && changedClasses.isEmpty() == false) {
+        if (persistenceUnitName != null) {
+          QueryResultCache lCache = QueryResultCache.getCache(persistenceUnitName);
+          if (lCache != null) {
+            lCache.invalidate(changedClasses);
+          }
+        }
+        else {
+          QueryResultCache.invalidateAll(changedClasses);
+        }
+      }
+    }
+    finally {
+      changedClasses.clear();
+    }
+  }
+
+  /**
+   * Method records the class of the passed entity as changed.
+   *
+   * @param pEntity Changed entity. The parameter may be null.
+   */
+  private void recordChange( Object pEntity ) {
+    if (pEntity != null) {
+      changedClasses.add(Hibernate.getClass(pEntity));
+    }
+  }
+
+  /**
+   * Method records the class of the owner of the passed collection as changed.
+   *
+   * @param pCollection Changed collection. The parameter may be null.
+   */
+  private void recordCollectionChange( Object pCollection ) {
+    if (pCollection instanceof PersistentCollection) {
+      this.recordChange(((PersistentCollection) pCollection).getOwner());
+    }
+  }
+}
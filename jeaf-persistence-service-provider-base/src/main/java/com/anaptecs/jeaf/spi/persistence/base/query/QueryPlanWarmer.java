@@ -0,0 +1,376 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.query;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
+import javax.persistence.PersistenceException;
+import javax.persistence.metamodel.ManagedType;
+
+import org.hibernate.HibernateException;
+import org.hibernate.engine.query.spi.QueryPlanCache;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+
+import com.anaptecs.jeaf.xfun.api.XFun;
+import com.anaptecs.jeaf.xfun.api.checks.Check;
+
+/**
+ * Class compiles queries into the query plan cache of an entity manager factory so that their first execution does
+ * not have to pay for parsing and SQL translation. Queries are compiled in parallel.
+ *
+ * During the bootstrap of a persistence unit (see {@link #warmUp(EntityManagerFactory, String)}) the named queries of
+ * its managed classes are compiled in parallel if {@link #PRECOMPILATION_PROPERTY} is set to <code>true</code>. This
+ * replaces the sequential check of named queries by Hibernate, which therefore has to be switched off through
+ * {@link #configure(Map)} wherever the warm-up is done. If Hibernate already checked the named queries they are not
+ * compiled again. In addition a recorded list of frequently used dynamic JPQL queries can be replayed through
+ * {@link #QUERY_LIST_PROPERTY}. The list is a text file with one query per line. Empty lines and lines starting with
+ * '#' are ignored.
+ *
+ * Only named queries that are defined through annotations are compiled in parallel. Named queries from mapping files
+ * are checked sequentially afterwards.
+ *
+ * @author JEAF Development Team
+ */
+public final class QueryPlanWarmer {
+  /**
+   * Name of the property that enables the parallel compilation of named queries during bootstrap.
+   */
+  public static final String PRECOMPILATION_PROPERTY = "jeaf.persistence.query_precompilation";
+
+  /**
+   * Name of the property that defines the location of the recorded list of dynamic queries. The location is either a
+   * resource within the classpath or a file.
+   */
+  public static final String QUERY_LIST_PROPERTY = "jeaf.persistence.query_precompilation.query_list";
+
+  /**
+   * Hibernate property that defines whether named queries are checked during bootstrap.
+   */
+  private static final String STARTUP_CHECK_PROPERTY = "hibernate.query.startup_check";
+
+  /**
+   * Compiler that puts a query into the query plan cache. The reference is never null.
+   */
+  private final Consumer<String> compiler;
+
+  /**
+   * Maximum number of queries that are compiled in parallel. The value is always greater than 0.
+   */
+  private final int parallelism;
+
+  /**
+   * Initialize object.
+   *
+   * @param pCompiler Compiler that puts a query into the query plan cache. The parameter must not be null.
+   * @param pParallelism Maximum number of queries that are compiled in parallel. The value must be greater than 0.
+   */
+  public QueryPlanWarmer( Consumer<String> pCompiler, int pParallelism ) {
+    // Check parameter
+    Check.checkInvalidParameterNull(pCompiler, "pCompiler");
+    if (pParallelism <= 0) {
+      throw new IllegalArgumentException("Parallelism has to be greater than 0 but is " + pParallelism + ".");
+    }
+
+    compiler = pCompiler;
+    parallelism = pParallelism;
+  }
+
+  /**
+   * Method creates a warmer for the query plan cache of the passed entity manager factory. Queries are compiled by as
+   * many threads as processors are available.
+   *
+   * @param pFactory Entity manager factory. The parameter must not be null.
+   * @return {@link QueryPlanWarmer} Warmer for the factory. The method never returns null.
+   */
+  public static QueryPlanWarmer forFactory( EntityManagerFactory pFactory ) {
+    // Check parameter
+    Check.checkInvalidParameterNull(pFactory, "pFactory");
+
+    QueryPlanCache lQueryPlanCache = getQueryPlanCache(pFactory.unwrap(SessionFactoryImplementor.class));
+    Consumer<String> lCompiler = pQuery -> lQueryPlanCache.getHQLQueryPlan(pQuery, false, Collections.emptyMap());
+    return new QueryPlanWarmer(lCompiler, Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Method switches off the sequential check of named queries by Hibernate within the passed configuration if named
+   * queries are compiled through {@link #warmUp(EntityManagerFactory, String)} instead. The method must only be used
+   * where the warm-up is done after the entity manager factory was created. Otherwise named queries would not be
+   * checked at all.
+   *
+   * @param pProperties Configuration of a persistence unit. The parameter must not be null.
+   */
+  public static void configure( Map<Object, Object> pProperties ) {
+    // Check parameter
+    Check.checkInvalidParameterNull(pProperties, "pProperties");
+
+    if (isEnabled(pProperties.get(PRECOMPILATION_PROPERTY)) == true) {
+      pProperties.putIfAbsent(STARTUP_CHECK_PROPERTY, "false");
+    }
+  }
+
+  /**
+   * Method warms up the query plan cache of the passed entity manager factory as it is configured through its
+   * properties. Named queries that can not be compiled let the bootstrap fail. Recorded queries that can not be
+   * compiled are only traced as they may be outdated.
+   *
+   * @param pFactory Entity manager factory that was just created. The parameter must not be null.
+   * @param pPersistenceUnitName Name of the persistence unit of the factory. The parameter must not be null.
+   * @throws PersistenceException if a named query can not be compiled.
+   */
+  public static void warmUp( EntityManagerFactory pFactory, String pPersistenceUnitName ) {
+    // Check parameters
+    Check.checkInvalidParameterNull(pFactory, "pFactory");
+    Check.checkInvalidParameterNull(pPersistenceUnitName, "pPersistenceUnitName");
+
+    // Named queries that were already checked by Hibernate are not compiled again.
+    Map<String, Object> lProperties = pFactory.getProperties();
+    boolean lCompileNamedQueries = isEnabled(lProperties.get(PRECOMPILATION_PROPERTY)) == true
+        && isEnabled(lProperties.getOrDefault(STARTUP_CHECK_PROPERTY, Boolean.TRUE)) == false;
+    Object lQueryList = lProperties.get(QUERY_LIST_PROPERTY);
+    if (lCompileNamedQueries == true || lQueryList != null) {
+      long lStart = System.nanoTime();
+      QueryPlanWarmer lWarmer = QueryPlanWarmer.forFactory(pFactory);
+
+      // Compile named queries.
+      int lQueries = 0;
+      if (lCompileNamedQueries == true) {
+        List<Class<?>> lClasses = new ArrayList<>();
+        for (ManagedType<?> lNext : pFactory.getMetamodel().getManagedTypes()) {
+          lClasses.add(lNext.getJavaType());
+        }
+        Collection<String> lNamedQueries = getNamedQueries(lClasses).values();
+        Map<String, RuntimeException> lFailures = lWarmer.compile(lNamedQueries);
+
+        // All other named queries, e.g. the ones from mapping files, are checked by Hibernate. Queries that were just
+        // compiled are taken from the query plan cache.
+        lFailures.putAll(checkNamedQueries(pFactory.unwrap(SessionFactoryImplementor.class)));
+        if (lFailures.isEmpty() == false) {
+          throw new PersistenceException("Named queries of persistence unit " + pPersistenceUnitName
+              + " are invalid: " + lFailures, lFailures.values().iterator().next());
+        }
+        lQueries += lNamedQueries.size();
+      }
+
+      // Replay recorded dynamic queries.
+      if (lQueryList != null) {
+        List<String> lRecordedQueries = readQueryList(lQueryList.toString());
+        Map<String, RuntimeException> lFailures = lWarmer.compile(lRecordedQueries);
+        for (Map.Entry<String, RuntimeException> lNext : lFailures.entrySet()) {
+          XFun.getTrace().warn("Recorded query of persistence unit " + pPersistenceUnitName
+              + " can not be compiled: " + lNext.getKey(), lNext.getValue());
+        }
+        lQueries += lRecordedQueries.size() - lFailures.size();
+      }
+      long lDuration = (System.nanoTime() - lStart) / 1000000;
+      XFun.getTrace().info("Compiled " + lQueries + " queries of persistence unit " + pPersistenceUnitName + " in "
+          + lDuration + "ms.");
+    }
+  }
+
+  /**
+   * Method checks whether the passed property value is <code>true</code>.
+   *
+   * @param pValue Value of a property. The parameter may be null.
+   * @return boolean Method returns true if the value is <code>true</code> and false otherwise.
+   */
+  private static boolean isEnabled( Object pValue ) {
+    return pValue != null && Boolean.parseBoolean(pValue.toString().trim());
+  }
+
+  /**
+   * Method returns the query plan cache of the passed factory. Hibernate deprecated the access to the query plan cache
+   * in favor of the query engine of Hibernate 6. As Hibernate 5.3 does not offer any other access the deprecated method
+   * has to be used.
+   *
+   * @param pFactory Session factory. The parameter must not be null.
+   * @return {@link QueryPlanCache} Query plan cache of the factory. The method never returns null.
+   */
+  @SuppressWarnings("deprecation")
+  private static QueryPlanCache getQueryPlanCache( SessionFactoryImplementor pFactory ) {
+    return pFactory.getQueryPlanCache();
+  }
+
+  /**
+   * Method checks all named queries of the passed factory the same way as Hibernate does during bootstrap. Like the
+   * query plan cache (see {@link #getQueryPlanCache(SessionFactoryImplementor)}) the named query repository can only be
+   * accessed through a deprecated method in Hibernate 5.3.
+   *
+   * @param pFactory Session factory. The parameter must not be null.
+   * @return {@link Map} Names of invalid queries together with the reason. The method never returns null.
+   */
+  @SuppressWarnings("deprecation")
+  private static Map<String, HibernateException> checkNamedQueries( SessionFactoryImplementor pFactory ) {
+    return pFactory.getNamedQueryRepository().checkNamedQueries(getQueryPlanCache(pFactory));
+  }
+
+  /**
+   * Method compiles the passed queries in parallel.
+   *
+   * @param pQueries Queries that should be compiled. The parameter must not be null.
+   * @return {@link Map} Queries that could not be compiled together with the reason in the order of the passed
+   * queries. The method never returns null.
+   */
+  public Map<String, RuntimeException> compile( Collection<String> pQueries ) {
+    // Check parameter
+    Check.checkInvalidParameterNull(pQueries, "pQueries");
+
+    Set<String> lQueries = new LinkedHashSet<>(pQueries);
+    Map<String, RuntimeException> lFailures = new LinkedHashMap<>();
+    if (lQueries.isEmpty() == false) {
+      AtomicInteger lThreadNumber = new AtomicInteger();
+      ExecutorService lExecutor = Executors.newFixedThreadPool(Math.min(parallelism, lQueries.size()), pRunnable -> {
+        Thread lThread = new Thread(pRunnable, "JEAF-Query-Precompilation-" + lThreadNumber.incrementAndGet());
+        lThread.setDaemon(true);
+        return lThread;
+      });
+      try {
+        Map<String, Future<RuntimeException>> lResults = new LinkedHashMap<>();
+        for (String lNext : lQueries) {
+          lResults.put(lNext, lExecutor.submit(( ) -> this.compile(lNext)));
+        }
+        for (Map.Entry<String, Future<RuntimeException>> lNext : lResults.entrySet()) {
+          RuntimeException lFailure = lNext.getValue().get();
+          if (lFailure != null) {
+            lFailures.put(lNext.getKey(), lFailure);
+          }
+        }
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while compiling queries.", e);
+      }
+      catch (ExecutionException e) {
+        throw new IllegalStateException(e.getCause());
+      }
+      finally {
+        lExecutor.shutdownNow();
+      }
+    }
+    return lFailures;
+  }
+
+  /**
+   * Method compiles the passed query.
+   *
+   * @param pQuery Query that should be compiled. The parameter must not be null.
+   * @return {@link RuntimeException} Reason why the query could not be compiled or null if it was compiled.
+   */
+  private RuntimeException compile( String pQuery ) {
+    RuntimeException lFailure;
+    try {
+      compiler.accept(pQuery);
+      lFailure = null;
+    }
+    catch (RuntimeException e) {
+      lFailure = e;
+    }
+    return lFailure;
+  }
+
+  /**
+   * Method returns the named queries that are defined on the passed classes through annotations {@link NamedQuery}
+   * and {@link NamedQueries}.
+   *
+   * @param pClasses Classes whose named queries should be returned. The parameter must not be null.
+   * @return {@link Map} Queries by their name. The method never returns null.
+   */
+  public static Map<String, String> getNamedQueries( Collection<Class<?>> pClasses ) {
+    // Check parameter
+    Check.checkInvalidParameterNull(pClasses, "pClasses");
+
+    Map<String, String> lNamedQueries = new LinkedHashMap<>();
+    for (Class<?> lNext : pClasses) {
+      if (lNext != null) {
+        List<NamedQuery> lAnnotations = new ArrayList<>();
+        NamedQueries lNamedQueriesAnnotation = lNext.getAnnotation(NamedQueries.class);
+        if (lNamedQueriesAnnotation != null) {
+          Collections.addAll(lAnnotations, lNamedQueriesAnnotation.value());
+        }
+        NamedQuery lNamedQueryAnnotation = lNext.getAnnotation(NamedQuery.class);
+        if (lNamedQueryAnnotation != null) {
+          lAnnotations.add(lNamedQueryAnnotation);
+        }
+        for (NamedQuery lAnnotation : lAnnotations) {
+          lNamedQueries.put(lAnnotation.name(), lAnnotation.query());
+        }
+      }
+    }
+    return lNamedQueries;
+  }
+
+  /**
+   * Method reads a recorded list of queries. Resources are loaded through the context class loader of the current
+   * thread.
+   *
+   * @param pLocation Resource within the classpath or file that contains the queries. The parameter must not be null.
+   * @return {@link List} Queries from the list. If the list does not exist an empty list is returned. The method never
+   * returns null.
+   */
+  public static List<String> readQueryList( String pLocation ) {
+    // Check parameter
+    Check.checkInvalidParameterNull(pLocation, "pLocation");
+
+    List<String> lQueries = new ArrayList<>();
+    // Resources of the application are resolved through the context class loader like the classes of the persistence
+    // unit. Without context class loader the class loader of JEAF is used.
+    ClassLoader lClassLoader = Thread.currentThread().getContextClassLoader();
+    if (lClassLoader == null) {
+      lClassLoader = QueryPlanWarmer.class.getClassLoader();
+    }
+    InputStream lStream = lClassLoader.getResourceAsStream(pLocation);
+    try {
+      if (lStream == null) {
+        Path lPath = Paths.get(pLocation);
+        if (Files.isReadable(lPath) == true) {
+          lStream = Files.newInputStream(lPath);
+        }
+      }
+      if (lStream != null) {
+        try (BufferedReader lReader = new BufferedReader(new InputStreamReader(lStream, StandardCharsets.UTF_8))) {
+          String lLine;
+          while ((lLine = lReader.readLine()) != null) {
+            lLine = lLine.trim();
+            if (lLine.isEmpty() == false && lLine.startsWith("#") == false) {
+              lQueries.add(lLine);
+            }
+          }
+        }
+      }
+      else {
+        XFun.getTrace().warn("Recorded query list " + pLocation + " does not exist.");
+      }
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException("Unable to read recorded query list " + pLocation, e);
+    }
+    return lQueries;
+  }
+}
@@ -0,0 +1,714 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.query;
+
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Parameter;
+import javax.persistence.PersistenceException;
+import javax.persistence.PersistenceUnitUtil;
+import javax.persistence.TypedQuery;
+import javax.persistence.metamodel.EntityType;
+
+import org.hibernate.Hibernate;
+import org.hibernate.Interceptor;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.jpa.QueryHints;
+
+import com.anaptecs.jeaf.spi.persistence.base.cache.TinyLfuCache;
+import com.anaptecs.jeaf.xfun.api.checks.Check;
+
+/**
+ * Class implements a cache for the results of queries that are executed very often but whose results hardly ever
+ * change, e.g. queries for reference data. Every persistence unit has its own cache (see
+ * {@link #getCache(EntityManagerFactory)}). Queries are only cached if hint {@link #CACHEABLE_HINT} is set and they are
+ * executed through {@link #getResultList(EntityManager, TypedQuery, Class...)}. As Hibernate drops query hints that it
+ * does not know, the cacheable hint of Hibernate is used. Hibernate's own query cache is only active if it is enabled
+ * explicitly through <code>hibernate.cache.use_query_cache</code>, which should not be done together with this cache.
+ *
+ * Cached results are invalidated as soon as a transaction that changed one of the entity classes the query depends on
+ * was committed (see {@link QueryCacheInterceptor}). Dependencies are passed when the query is executed. Queries
+ * without explicit dependencies are invalidated by every committed change. As invalidation works with versions per
+ * entity class, results that were read while a change was committed are never cached.
+ *
+ * Entities are never shared between entity managers. Instead only their class and id are cached and they are loaded
+ * through the entity manager that executes the query, i.e. from its persistence context, the second-level cache or the
+ * database. Thus the cache works best for entities that are also cached within the second-level cache. Entity managers
+ * with pending or uncommitted changes always execute the query so that they see their own changes.
+ *
+ * The cache is bounded by {@link #MAX_ENTRIES_PROPERTY}. Results with more than {@link #MAX_RESULT_SIZE_PROPERTY} rows
+ * are not cached and results are only softly referenced so that the garbage collector can reclaim them if memory gets
+ * short. Both limits are read from the properties of the persistence unit.
+ *
+ * @author JEAF Development Team
+ */
+public final class QueryResultCache {
+  /**
+   * Query hint that enables caching of a query. The value has to be <code>true</code> either as boolean or string.
+   */
+  public static final String CACHEABLE_HINT = QueryHints.HINT_CACHEABLE;
+
+  /**
+   * Name of the persistence unit property that defines the maximum number of cached query results. Default is 1000.
+   */
+  public static final String MAX_ENTRIES_PROPERTY = "jeaf.persistence.query_cache.max_entries";
+
+  /**
+   * Name of the persistence unit property that defines the maximum number of rows of a cached query result. Default is
+   * 1000.
+   */
+  public static final String MAX_RESULT_SIZE_PROPERTY = "jeaf.persistence.query_cache.max_result_size";
+
+  /**
+   * Name of the setting in which Hibernate provides the name of the persistence unit.
+   */
+  private static final String PERSISTENCE_UNIT_NAME_SETTING = "hibernate.ejb.persistenceUnitName";
+
+  /**
+   * Name of the persistence unit that is used if Hibernate does not provide one.
+   */
+  private static final String DEFAULT_UNIT_NAME = "default";
+
+  /**
+   * Default value for maximum number of entries and maximum result size.
+   */
+  private static final int DEFAULT_LIMIT = 1000;
+
+  /**
+   * Caches of all persistence units. The name of the persistence unit is used as key.
+   */
+  private static final ConcurrentHashMap<String, QueryResultCache> CACHES = new ConcurrentHashMap<>();
+
+  /**
+   * Name of the persistence unit whose query results are cached. The reference is never null.
+   */
+  private final String persistenceUnitName;
+
+  /**
+   * Cached query results.
+   */
+  private final TinyLfuCache<QueryKey, CachedResult> cache;
+
+  /**
+   * Maximum number of rows of a cached query result.
+   */
+  private final int maxResultSize;
+
+  /**
+   * Entity classes of the persistence unit. They are resolved with the first query whose result is cached.
+   */
+  private volatile Set<Class<?>> entityClasses;
+
+  /**
+   * Version of every entity class that was changed. The version is incremented with every committed change.
+   */
+  private final ConcurrentHashMap<Class<?>, AtomicLong> versions = new ConcurrentHashMap<>();
+
+  /**
+   * Version that is incremented with every committed change of any entity class.
+   */
+  private final AtomicLong globalVersion = new AtomicLong();
+
+  /**
+   * Number of queries whose result was taken from the cache.
+   */
+  private final LongAdder hits = new LongAdder();
+
+  /**
+   * Number of cacheable queries that had to be executed.
+   */
+  private final LongAdder misses = new LongAdder();
+
+  /**
+   * Initialize object.
+   *
+   * @param pPersistenceUnitName Name of the persistence unit whose query results are cached. The parameter must not be
+   * null.
+   * @param pMaxEntries Maximum number of cached query results. The value must be greater than 0.
+   * @param pMaxResultSize Maximum number of rows of a cached query result.
+   */
+  public QueryResultCache( String pPersistenceUnitName, int pMaxEntries, int pMaxResultSize ) {
+    // Check parameter
+    Check.checkInvalidParameterNull(pPersistenceUnitName, "pPersistenceUnitName");
+
+    persistenceUnitName = pPersistenceUnitName;
+    cache = new TinyLfuCache<>(pMaxEntries, 0, TimeUnit.SECONDS);
+    maxResultSize = pMaxResultSize;
+  }
+
+  /**
+   * Method returns the query result cache of the persistence unit of the passed factory. If the cache does not exist
+   * yet it is created with the limits that are defined by the properties of the persistence unit.
+   *
+   * @param pFactory Entity manager factory of the persistence unit. The parameter must not be null.
+   * @return {@link QueryResultCache} Query result cache of the persistence unit. The method never returns null.
+   */
+  public static QueryResultCache getCache( EntityManagerFactory pFactory ) {
+    // Check parameter
+    Check.checkInvalidParameterNull(pFactory, "pFactory");
+
+    Map<String, Object> lProperties = pFactory.getProperties();
+    String lUnitName = Objects.toString(lProperties.get(PERSISTENCE_UNIT_NAME_SETTING), DEFAULT_UNIT_NAME);
+    return CACHES.computeIfAbsent(lUnitName, pName -> new QueryResultCache(pName,
+        getLimit(lProperties, MAX_ENTRIES_PROPERTY), getLimit(lProperties, MAX_RESULT_SIZE_PROPERTY)));
+  }
+
+  /**
+   * Method returns the query result cache of the passed persistence unit if it was already created.
+   *
+   * @param pPersistenceUnitName Name of the persistence unit. The parameter must not be null.
+   * @return {@link QueryResultCache} Query result cache of the persistence unit or null if no query of the persistence
+   * unit was cached yet.
+   */
+  public static QueryResultCache getCache( String pPersistenceUnitName ) {
+    // Check parameter
+    Check.checkInvalidParameterNull(pPersistenceUnitName, "pPersistenceUnitName");
+
+    return CACHES.get(pPersistenceUnitName);
+  }
+
+  /**
+   * Method removes the query result cache of the passed persistence unit, e.g. because its entity manager factory was
+   * closed.
+   *
+   * @param pPersistenceUnitName Name of the persistence unit. The parameter must not be null.
+   */
+  public static void removeCache( String pPersistenceUnitName ) {
+    // Check parameter
+    Check.checkInvalidParameterNull(pPersistenceUnitName, "pPersistenceUnitName");
+
+    CACHES.remove(pPersistenceUnitName);
+  }
+
+  /**
+   * Method invalidates the cached results of all persistence units that depend on one of the passed entity classes. It
+   * is used if the persistence unit in which the classes were changed is not known.
+   *
+   * @param pEntityClasses Changed entity classes. The parameter must not be null.
+   */
+  public static void invalidateAll( Collection<Class<?>> pEntityClasses ) {
+    for (QueryResultCache lNext : CACHES.values()) {
+      lNext.invalidate(pEntityClasses);
+    }
+  }
+
+  /**
+   * Method returns the name of the persistence unit whose query results are cached.
+   *
+   * @return {@link String} Name of the persistence unit. The method never returns null.
+   */
+  public String getPersistenceUnitName( ) {
+    return persistenceUnitName;
+  }
+
+  /**
+   * Method returns the result of the passed query. If the query is cacheable and its result is cached then the query
+   * is not executed. Instead the entities of the cached result are loaded through the passed entity manager.
+   *
+   * @param pEntityManager Entity manager that created the query. The parameter must not be null.
+   * @param pQuery Query whose result should be returned. The parameter must not be null.
+   * @param pDependencies Entity classes on which the result of the query depends. If no class is passed then the
+   * result depends on all entity classes. The parameter must not be null.
+   * @return {@link List} Result of the query. Cached results are unmodifiable. The method never returns null.
+   */
+  public <T> List<T> getResultList( EntityManager pEntityManager, TypedQuery<T> pQuery, Class<?>... pDependencies ) {
+    // Check parameters
+    Check.checkInvalidParameterNull(pEntityManager, "pEntityManager");
+    Check.checkInvalidParameterNull(pQuery, "pQuery");
+    Check.checkInvalidParameterNull(pDependencies, "pDependencies");
+
+    // Entity managers with pending or uncommitted changes have to see them, so their queries are never cached.
+    Map<String, Object> lHints = pQuery.getHints();
+    QueryKey lKey;
+    if (isCacheable(lHints) == true && hasChanges(pEntityManager) == false) {
+      lKey = this.createKey(pQuery);
+    }
+    else {
+      lKey = null;
+    }
+
+    List<T> lResult;
+    if (lKey != null) {
+      lResult = this.getCachedResult(pEntityManager, lKey);
+      if (lResult == null) {
+        // Versions have to be determined before the query is executed. Otherwise changes that are committed in the
+        // meantime would get lost.
+        Set<Class<?>> lDependencies = new HashSet<>(Arrays.asList(pDependencies));
+        long[] lVersions = this.getVersions(lDependencies);
+        lResult = pQuery.getResultList();
+        if (lResult.size() <= maxResultSize) {
+          List<Object> lReferences = this.toReferences(pEntityManager, lResult);
+          cache.put(lKey, new CachedResult(lReferences, lDependencies, lVersions));
+          lResult = Collections.unmodifiableList(new ArrayList<>(lResult));
+        }
+      }
+    }
+    else {
+      lResult = pQuery.getResultList();
+    }
+    return lResult;
+  }
+
+  /**
+   * Method invalidates all cached results that depend on one of the passed entity classes. It is called after a
+   * transaction that changed these classes was committed. Changes that are not done through entity managers, e.g.
+   * bulk updates, have to be invalidated explicitly.
+   *
+   * @param pEntityClasses Changed entity classes. The parameter must not be null.
+   */
+  public void invalidate( Collection<Class<?>> pEntityClasses ) {
+    // Check parameter
+    Check.checkInvalidParameterNull(pEntityClasses, "pEntityClasses");
+
+    if (pEntityClasses.isEmpty() == false) {
+      for (Class<?> lNext : pEntityClasses) {
+        // Queries on super classes are also affected by changes of their sub classes.
+        Class<?> lClass = lNext;
+        while (lClass != null && lClass != Object.class) {
+          versions.computeIfAbsent(lClass, pClass -> new AtomicLong()).incrementAndGet();
+          lClass = lClass.getSuperclass();
+        }
+      }
+      globalVersion.incrementAndGet();
+    }
+  }
+
+  /**
+   * Method removes all cached results.
+   */
+  public void clear( ) {
+    cache.clear();
+  }
+
+  /**
+   * Method returns the number of cached query results.
+   *
+   * @return int Number of cached query results.
+   */
+  public int size( ) {
+    return cache.size();
+  }
+
+  /**
+   * Method returns the number of queries whose result was taken from the cache.
+   *
+   * @return long Number of cache hits.
+   */
+  public long getHitCount( ) {
+    return hits.sum();
+  }
+
+  /**
+   * Method returns the number of cacheable queries that had to be executed as their result was not cached.
+   *
+   * @return long Number of cache misses.
+   */
+  public long getMissCount( ) {
+    return misses.sum();
+  }
+
+  /**
+   * Method checks whether the passed entity manager has pending changes or changes that were flushed within the current
+   * transaction.
+   *
+   * @param pEntityManager Entity manager that should be checked. The parameter must not be null.
+   * @return boolean Method returns true if the entity manager has changes that are not yet committed.
+   */
+  private static boolean hasChanges( EntityManager pEntityManager ) {
+    SessionImplementor lSession = pEntityManager.unwrap(SessionImplementor.class);
+    Interceptor lInterceptor = lSession.getInterceptor();
+    boolean lChanged;
+    if (lInterceptor instanceof QueryCacheInterceptor
+        && ((QueryCacheInterceptor) lInterceptor).getChangedClasses().isEmpty() == false) {
+      lChanged = true;
+    }
+    else {
+      lChanged = lSession.isDirty();
+    }
+    return lChanged;
+  }
+
+  /**
+   * Method returns the cached result of the passed query if it is still valid.
+   *
+   * @param pEntityManager Entity manager through which the entities of the result are loaded. The parameter must not be
+   * null.
+   * @param pKey Key of the query. The parameter must not be null.
+   * @return {@link List} Cached result or null if no valid result is cached.
+   */
+  private <T> List<T> getCachedResult( EntityManager pEntityManager, QueryKey pKey ) {
+    CachedResult lCachedResult = cache.get(pKey);
+    List<T> lResult = null;
+    if (lCachedResult != null) {
+      if (Arrays.equals(lCachedResult.versions, this.getVersions(lCachedResult.dependencies)) == true) {
+        List<?> lReferences = lCachedResult.result.get();
+        if (lReferences != null) {
+          lResult = this.resolveReferences(pEntityManager, lReferences);
+        }
+      }
+      if (lResult == null) {
+        cache.remove(pKey);
+      }
+    }
+    if (lResult != null) {
+      hits.increment();
+    }
+    else {
+      misses.increment();
+    }
+    return lResult;
+  }
+
+  /**
+   * Method converts the passed query result into its cached form. Entities are replaced by their class and id so that
+   * they are not shared between entity managers.
+   *
+   * @param pEntityManager Entity manager that executed the query. The parameter must not be null.
+   * @param pResult Result of the query. The parameter must not be null.
+   * @return {@link List} Cached form of the result. The method never returns null.
+   */
+  private List<Object> toReferences( EntityManager pEntityManager, List<?> pResult ) {
+    Set<Class<?>> lEntityClasses = this.getEntityClasses(pEntityManager);
+    PersistenceUnitUtil lUtil = pEntityManager.getEntityManagerFactory().getPersistenceUnitUtil();
+    List<Object> lReferences = new ArrayList<>(pResult.size());
+    for (Object lNext : pResult) {
+      if (lNext instanceof Object[]) {
+        Object[] lRow = (Object[]) lNext;
+        Object[] lReferenceRow = new Object[lRow.length];
+        for (int i = 0; i < lRow.length; i++) {
+          lReferenceRow[i] = toReference(lRow[i], lEntityClasses, lUtil);
+        }
+        lReferences.add(lReferenceRow);
+      }
+      else {
+        lReferences.add(toReference(lNext, lEntityClasses, lUtil));
+      }
+    }
+    return lReferences;
+  }
+
+  /**
+   * Method converts the passed value of a query result into its cached form.
+   *
+   * @param pValue Value of a query result. The parameter may be null.
+   * @param pEntityClasses Entity classes of the persistence unit. The parameter must not be null.
+   * @param pUtil Utility to resolve the id of entities. The parameter must not be null.
+   * @return {@link Object} Entity reference if the value is an entity and the value itself otherwise.
+   */
+  private static Object toReference( Object pValue, Set<Class<?>> pEntityClasses, PersistenceUnitUtil pUtil ) {
+    Object lReference;
+    if (pValue != null && pEntityClasses.contains(Hibernate.getClass(pValue)) == true) {
+      lReference = new EntityReference(Hibernate.getClass(pValue), pUtil.getIdentifier(pValue));
+    }
+    else {
+      lReference = pValue;
+    }
+    return lReference;
+  }
+
+  /**
+   * Method converts the passed cached result back into a query result. Entities are loaded through the passed entity
+   * manager.
+   *
+   * @param pEntityManager Entity manager through which the entities are loaded. The parameter must not be null.
+   * @param pReferences Cached form of the result. The parameter must not be null.
+   * @return {@link List} Unmodifiable query result or null if one of its entities does not exist any longer.
+   */
+  @SuppressWarnings("unchecked")
+  private <T> List<T> resolveReferences( EntityManager pEntityManager, List<?> pReferences ) {
+    List<Object> lResult = new ArrayList<>(pReferences.size());
+    Iterator<?> lIterator = pReferences.iterator();
+    boolean lComplete = true;
+    while (lComplete == true && lIterator.hasNext()) {
+      Object lNext = lIterator.next();
+      if (lNext instanceof Object[]) {
+        Object[] lReferenceRow = (Object[]) lNext;
+        Object[] lRow = new Object[lReferenceRow.length];
+        for (int i = 0; i < lReferenceRow.length; i++) {
+          lRow[i] = resolveReference(pEntityManager, lReferenceRow[i]);
+          lComplete = lComplete && (lRow[i] != null || lReferenceRow[i] == null);
+        }
+        lResult.add(lRow);
+      }
+      else {
+        Object lValue = resolveReference(pEntityManager, lNext);
+        lComplete = lValue != null || lNext == null;
+        lResult.add(lValue);
+      }
+    }
+    return lComplete == true ? (List<T>) Collections.unmodifiableList(lResult) : null;
+  }
+
+  /**
+   * Method converts the passed cached value back into a value of a query result.
+   *
+   * @param pEntityManager Entity manager through which entities are loaded. The parameter must not be null.
+   * @param pReference Cached value. The parameter may be null.
+   * @return {@link Object} Loaded entity if the value is an entity reference and the value itself otherwise. If the
+   * entity does not exist any longer null is returned.
+   */
+  private static Object resolveReference( EntityManager pEntityManager, Object pReference ) {
+    Object lValue;
+    if (pReference instanceof EntityReference) {
+      EntityReference lReference = (EntityReference) pReference;
+      lValue = pEntityManager.find(lReference.entityClass, lReference.id);
+    }
+    else {
+      lValue = pReference;
+    }
+    return lValue;
+  }
+
+  /**
+   * Method returns the entity classes of the persistence unit.
+   *
+   * @param pEntityManager Entity manager of the persistence unit. The parameter must not be null.
+   * @return {@link Set} Entity classes of the persistence unit. The method never returns null.
+   */
+  private Set<Class<?>> getEntityClasses( EntityManager pEntityManager ) {
+    Set<Class<?>> lEntityClasses = entityClasses;
+    if (lEntityClasses == null) {
+      lEntityClasses = new HashSet<>();
+      for (EntityType<?> lNext : pEntityManager.getMetamodel().getEntities()) {
+        lEntityClasses.add(lNext.getJavaType());
+      }
+      entityClasses = lEntityClasses;
+    }
+    return lEntityClasses;
+  }
+
+  /**
+   * Method returns the limit that is defined by the passed property.
+   *
+   * @param pProperties Properties of the persistence unit. The parameter must not be null.
+   * @param pPropertyName Name of the property. The parameter must not be null.
+   * @return int Configured limit or the default limit if the property is not set.
+   */
+  private static int getLimit( Map<String, Object> pProperties, String pPropertyName ) {
+    Object lLimit = pProperties.get(pPropertyName);
+    return lLimit != null ? Integer.parseInt(lLimit.toString().trim()) : DEFAULT_LIMIT;
+  }
+
+  /**
+   * Method returns the current versions of the passed entity classes.
+   *
+   * @param pDependencies Entity classes. If the set is empty the global version is returned.
+   * @return long[] Versions in iteration order of the set. The method never returns null.
+   */
+  private long[] getVersions( Set<Class<?>> pDependencies ) {
+    long[] lVersions;
+    if (pDependencies.isEmpty() == true) {
+      lVersions = new long[] { globalVersion.get() };
+    }
+    else {
+      lVersions = new long[pDependencies.size()];
+      int i = 0;
+      for (Class<?> lNext : pDependencies) {
+        AtomicLong lVersion = versions.get(lNext);
+        lVersions[i++] = lVersion != null ? lVersion.get() : 0;
+      }
+    }
+    return lVersions;
+  }
+
+  /**
+   * Method creates the cache key of the passed query.
+   *
+   * @param pQuery Query. The parameter must not be null.
+   * @return {@link QueryKey} Key of the query or null if the query string can not be resolved.
+   */
+  private QueryKey createKey( TypedQuery<?> pQuery ) {
+    String lQueryString;
+    try {
+      lQueryString = pQuery.unwrap(org.hibernate.query.Query.class).getQueryString();
+    }
+    catch (PersistenceException e) {
+      lQueryString = null;
+    }
+
+    QueryKey lKey;
+    if (lQueryString != null) {
+      Map<String, Object> lParameters = new TreeMap<>();
+      for (Parameter<?> lNext : pQuery.getParameters()) {
+        String lName = lNext.getName() != null ? lNext.getName() : "?" + lNext.getPosition();
+        lParameters.put(lName, pQuery.getParameterValue(lNext));
+      }
+      lKey = new QueryKey(persistenceUnitName, lQueryString, lParameters, pQuery.getFirstResult(),
+          pQuery.getMaxResults());
+    }
+    else {
+      lKey = null;
+    }
+    return lKey;
+  }
+
+  /**
+   * Method checks whether caching is enabled through the passed hints.
+   *
+   * @param pHints Query hints. The parameter must not be null.
+   * @return boolean Method returns true if the query is cacheable.
+   */
+  private static boolean isCacheable( Map<String, Object> pHints ) {
+    Object lHint = pHints.get(CACHEABLE_HINT);
+    return lHint != null && Boolean.parseBoolean(lHint.toString());
+  }
+
+  /**
+   * Class identifies a query of a persistence unit including its parameters and paging.
+   */
+  private static final class QueryKey {
+    /**
+     * Name of the persistence unit of the query.
+     */
+    private final String persistenceUnitName;
+
+    /**
+     * Query string or cache key of the query.
+     */
+    private final String queryString;
+
+    /**
+     * Values of the query parameters sorted by their name.
+     */
+    private final Map<String, Object> parameters;
+
+    /**
+     * Position of the first result.
+     */
+    private final int firstResult;
+
+    /**
+     * Maximum number of results.
+     */
+    private final int maxResults;
+
+    /**
+     * Hash code of the key. As keys are immutable it is calculated only once.
+     */
+    private final int hashCode;
+
+    /**
+     * Initialize object.
+     *
+     * @param pPersistenceUnitName Name of the persistence unit of the query. The parameter must not be null.
+     * @param pQueryString Query string or cache key of the query. The parameter must not be null.
+     * @param pParameters Values of the query parameters. The parameter must not be null.
+     * @param pFirstResult Position of the first result.
+     * @param pMaxResults Maximum number of results.
+     */
+    QueryKey( String pPersistenceUnitName, String pQueryString, Map<String, Object> pParameters, int pFirstResult,
+        int pMaxResults ) {
+      persistenceUnitName = pPersistenceUnitName;
+      queryString = pQueryString;
+      parameters = pParameters;
+      firstResult = pFirstResult;
+      maxResults = pMaxResults;
+      hashCode = Objects.hash(persistenceUnitName, queryString, parameters, firstResult, maxResults);
+    }
+
+    /**
+     * @see Object#hashCode()
+     */
+    @Override
+    public int hashCode( ) {
+      return hashCode;
+    }
+
+    /**
+     * @see Object#equals(Object)
+     */
+    @Override
+    public boolean equals( Object pObject ) {
+      boolean lEquals;
+      if (pObject instanceof QueryKey) {
+        QueryKey lOther = (QueryKey) pObject;
+        lEquals = persistenceUnitName.equals(lOther.persistenceUnitName) && queryString.equals(lOther.queryString)
+            && parameters.equals(lOther.parameters) && firstResult == lOther.firstResult
+            && maxResults == lOther.maxResults;
+      }
+      else {
+        lEquals = false;
+      }
+      return lEquals;
+    }
+  }
+
+  /**
+   * Class holds a cached query result together with the versions of its dependencies at the time it was read.
+   */
+  private static final class CachedResult {
+    /**
+     * Cached form of the query result (see {@link QueryResultCache#toReferences(EntityManager, List)}).
+     */
+    private final SoftReference<List<?>> result;
+
+    /**
+     * Entity classes on which the query result depends.
+     */
+    private final Set<Class<?>> dependencies;
+
+    /**
+     * Versions of the dependencies at the time the query was executed.
+     */
+    private final long[] versions;
+
+    /**
+     * Initialize object.
+     *
+     * @param pResult Cached form of the query result. The parameter must not be null.
+     * @param pDependencies Entity classes on which the query result depends. The parameter must not be null.
+     * @param pVersions Versions of the dependencies. The parameter must not be null.
+     */
+    CachedResult( List<?> pResult, Set<Class<?>> pDependencies, long[] pVersions ) {
+      result = new SoftReference<>(pResult);
+      dependencies = pDependencies;
+      versions = pVersions;
+    }
+  }
+
+  /**
+   * Class references an entity of a cached query result through its class and id.
+   */
+  private static final class EntityReference {
+    /**
+     * Class of the entity.
+     */
+    private final Class<?> entityClass;
+
+    /**
+     * Id of the entity.
+     */
+    private final Object id;
+
+    /**
+     * Initialize object.
+     *
+     * @param pEntityClass Class of the entity. The parameter must not be null.
+     * @param pID Id of the entity. The parameter must not be null.
+     */
+    EntityReference( Class<?> pEntityClass, Object pID ) {
+      entityClass = pEntityClass;
+      id = pID;
+    }
+  }
+}
@@ -0,0 +1,246 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.query;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.hibernate.query.Query;
+
+import com.anaptecs.jeaf.xfun.api.checks.Check;
+
+/**
+ * Class iterates over the result of a query with constant memory consumption. Instead of loading the whole result into
+ * the persistence context the rows are read through a forward-only JDBC cursor in blocks of the configured fetch size.
+ * Rows are loaded read-only and released from the persistence context after they were consumed (see
+ * {@link ReleaseMode}). A row is regarded as consumed as soon as the next row is requested.
+ *
+ * As the cursor holds a JDBC connection and an open result set streaming queries have to be closed once they are no
+ * longer needed, preferably with try-with-resources. They are closed automatically after the last row was read.
+ *
+ * @author JEAF Development Team
+ */
+public final class StreamingQuery<T> implements Iterator<T>, AutoCloseable {
+  /**
+   * Fetch size that is used if no other value is defined.
+   */
+  public static final int DEFAULT_FETCH_SIZE = 500;
+
+  /**
+   * Enumeration defines how consumed rows are released from the persistence context.
+   */
+  public enum ReleaseMode {
+    /**
+     * Every consumed entity is detached. Other entities within the persistence context are not affected. Entities
+     * that are loaded together with a row, e.g. through eager associations, are only detached if the association
+     * cascades detach operations.
+     */
+    DETACH,
+
+    /**
+     * The persistence context is cleared every time a block of the fetch size was consumed. This also releases
+     * entities that were loaded together with a row but detaches all other entities of the entity manager as well.
+     * Changes that were not flushed before the query was opened get lost.
+     */
+    CLEAR;
+  }
+
+  /**
+   * Session from which the rows are read. The reference is never null.
+   */
+  private final Session session;
+
+  /**
+   * Cursor on the result set of the query. The reference is never null.
+   */
+  private final ScrollableResults results;
+
+  /**
+   * Number of rows that are read from the database at once.
+   */
+  private final int fetchSize;
+
+  /**
+   * Defines how consumed rows are released. The reference is never null.
+   */
+  private final ReleaseMode releaseMode;
+
+  /**
+   * Row that was returned last and is released when the next row is requested.
+   */
+  private Object consumed;
+
+  /**
+   * Indicates whether the cursor was already moved to the row that will be returned next.
+   */
+  private boolean fetched;
+
+  /**
+   * Indicates whether the cursor is positioned on a row. Only valid if the cursor was already moved.
+   */
+  private boolean hasRow;
+
+  /**
+   * Flag indicates whether the stream was already closed.
+   */
+  private boolean closed;
+
+  /**
+   * Number of rows that were returned so far.
+   */
+  private long rowCount;
+
+  /**
+   * Initialize object and open the cursor of the passed query.
+   *
+   * @param pEntityManager Entity manager that created the query. The parameter must not be null.
+   * @param pQuery Query whose result should be streamed. The parameter must not be null.
+   * @param pFetchSize Number of rows that are read from the database at once. The value must be greater than 0.
+   * @param pReleaseMode Defines how consumed rows are released. The parameter must not be null.
+   */
+  public StreamingQuery( EntityManager pEntityManager, TypedQuery<T> pQuery, int pFetchSize,
+      ReleaseMode pReleaseMode ) {
+    // Check parameters
+    Check.checkInvalidParameterNull(pEntityManager, "pEntityManager");
+    Check.checkInvalidParameterNull(pQuery, "pQuery");
+    Check.checkInvalidParameterNull(pReleaseMode, "pReleaseMode");
+    if (pFetchSize <= 0) {
+      throw new IllegalArgumentException("Fetch size has to be greater than 0 but is " + pFetchSize + ".");
+    }
+
+    session = pEntityManager.unwrap(Session.class);
+    fetchSize = pFetchSize;
+    releaseMode = pReleaseMode;
+    Query<?> lQuery = pQuery.unwrap(Query.class);
+    lQuery.setFetchSize(pFetchSize);
+    lQuery.setReadOnly(true);
+    results = lQuery.scroll(ScrollMode.FORWARD_ONLY);
+  }
+
+  /**
+   * Method returns the result of the passed query as stream. The stream has to be closed after it was used.
+   *
+   * @param pEntityManager Entity manager that created the query. The parameter must not be null.
+   * @param pQuery Query whose result should be streamed. The parameter must not be null.
+   * @param pFetchSize Number of rows that are read from the database at once. The value must be greater than 0.
+   * @param pReleaseMode Defines how consumed rows are released. The parameter must not be null.
+   * @return {@link Stream} Sequential stream of the query's result. The method never returns null.
+   */
+  public static <T> Stream<T> stream( EntityManager pEntityManager, TypedQuery<T> pQuery, int pFetchSize,
+      ReleaseMode pReleaseMode ) {
+    StreamingQuery<T> lQuery = new StreamingQuery<>(pEntityManager, pQuery, pFetchSize, pReleaseMode);
+    Spliterator<T> lSpliterator = Spliterators.spliteratorUnknownSize(lQuery, Spliterator.ORDERED);
+    return StreamSupport.stream(lSpliterator, false).onClose(lQuery::close);
+  }
+
+  /**
+   * @see Iterator#hasNext()
+   */
+  @Override
+  public boolean hasNext( ) {
+    if (fetched == false) {
+      this.releaseConsumed();
+      hasRow = closed == false && results.next() == true;
+      fetched = true;
+      if (hasRow == false) {
+        this.close();
+      }
+    }
+    return hasRow;
+  }
+
+  /**
+   * @see Iterator#next()
+   */
+  @Override
+  @SuppressWarnings("unchecked")
+  public T next( ) {
+    if (this.hasNext() == false) {
+      throw new NoSuchElementException();
+    }
+    fetched = false;
+    Object[] lRow = results.get();
+    consumed = lRow.length == 1 ? lRow[0] : lRow;
+    rowCount++;
+    return (T) consumed;
+  }
+
+  /**
+   * Method returns the number of rows that were returned so far.
+   *
+   * @return long Number of returned rows.
+   */
+  public long getRowCount( ) {
+    return rowCount;
+  }
+
+  /**
+   * Method closes the cursor of the query. Calling it more than once has no effect.
+   */
+  @Override
+  public void close( ) {
+    if (closed == false) {
+      closed = true;
+      hasRow = false;
+      fetched = true;
+      try {
+        this.releaseConsumed();
+      }
+      finally {
+        results.close();
+      }
+    }
+  }
+
+  /**
+   * Method releases the row that was returned last from the persistence context.
+   */
+  private void releaseConsumed( ) {
+    if (consumed != null) {
+      if (releaseMode == ReleaseMode.DETACH) {
+        this.detach(consumed);
+      }
+      else if (rowCount % fetchSize == 0) {
+        session.clear();
+      }
+      consumed = null;
+    }
+  }
+
+  /**
+   * Method detaches the passed row or all entities that it contains.
+   *
+   * @param pRow Row of the query's result. The parameter may be null.
+   */
+  private void detach( Object pRow ) {
+    if (pRow instanceof Object[]) {
+      for (Object lNext : (Object[]) pRow) {
+        this.detach(lNext);
+      }
+    }
+    else if (pRow != null) {
+      try {
+        if (session.contains(pRow) == true) {
+          session.evict(pRow);
+        }
+      }
+      // Scalar values are no entities and thus are not part of the persistence context.
+      catch (IllegalArgumentException e) {
+        // Nothing to do.
+      }
+    }
+  }
+}
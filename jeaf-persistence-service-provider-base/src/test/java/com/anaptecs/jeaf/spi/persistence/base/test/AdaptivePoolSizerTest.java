@@ -0,0 +1,79 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.concurrent.TimeUnit;
+
+import com.anaptecs.jeaf.spi.persistence.base.pool.AdaptivePoolSizer;
+import org.junit.jupiter.api.Test;
+
+public class AdaptivePoolSizerTest {
+  private static final long WAIT_THRESHOLD = TimeUnit.MILLISECONDS.toNanos(10);
+
+  @Test
+  public void testGrowOnDemand( ) {
+    AdaptivePoolSizer lSizer = new AdaptivePoolSizer(2, 20, 2, WAIT_THRESHOLD);
+    assertEquals(2, lSizer.getTargetSize());
+
+    // Low demand keeps the pool at its minimum size.
+    lSizer.sample(1);
+    assertEquals(2, lSizer.adjust(100, 0, 0));
+
+    // Higher demand lets the pool grow immediately including some headroom.
+    lSizer.sample(8);
+    lSizer.sample(4);
+    int lTarget = lSizer.adjust(100, 0, 0);
+    assertEquals(4, lTarget);
+
+    // Long waits let the pool grow by at least the increment size.
+    lSizer.sample(4);
+    assertEquals(lTarget + 2, lSizer.adjust(100, 100 * TimeUnit.MILLISECONDS.toNanos(20), 0));
+
+    // Timeouts as well.
+    lSizer.sample(4);
+    assertEquals(lTarget + 4, lSizer.adjust(0, 0, 1));
+  }
+
+  @Test
+  public void testMaxSizeIsNeverExceeded( ) {
+    AdaptivePoolSizer lSizer = new AdaptivePoolSizer(1, 4, 1, WAIT_THRESHOLD);
+    for (int i = 0; i < 10; i++) {
+      lSizer.sample(100);
+      lSizer.adjust(1, 0, 1);
+    }
+    assertEquals(4, lSizer.getTargetSize());
+  }
+
+  @Test
+  public void testDampedShrinking( ) {
+    AdaptivePoolSizer lSizer = new AdaptivePoolSizer(2, 20, 2, WAIT_THRESHOLD);
+    lSizer.sample(12);
+    assertEquals(15, lSizer.adjust(100, 0, 0));
+
+    // Single dips in demand do not shrink the pool.
+    lSizer.sample(0);
+    assertEquals(15, lSizer.adjust(100, 0, 0));
+    lSizer.sample(0);
+    assertEquals(15, lSizer.adjust(100, 0, 0));
+    lSizer.sample(12);
+    assertEquals(15, lSizer.adjust(100, 0, 0));
+    lSizer.sample(0);
+    assertEquals(15, lSizer.adjust(100, 0, 0));
+    lSizer.sample(0);
+    assertEquals(15, lSizer.adjust(100, 0, 0));
+
+    // Constant low demand shrinks the pool step by step until the minimum size is reached.
+    int lPrevious = lSizer.getTargetSize();
+    for (int i = 0; i < 30; i++) {
+      int lTarget = lSizer.adjust(0, 0, 0);
+      assertEquals(true, lPrevious - lTarget <= 2);
+      lPrevious = lTarget;
+    }
+    assertEquals(2, lSizer.getTargetSize());
+  }
+}
@@ -0,0 +1,120 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Properties;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import com.anaptecs.jeaf.spi.persistence.base.PersistenceUnitInfoImpl;
+import com.anaptecs.jeaf.spi.persistence.base.bootstrap.BootstrapCache;
+import com.anaptecs.jeaf.spi.persistence.base.bootstrap.PersistenceUnitFingerprint;
+import com.anaptecs.jeaf.spi.persistence.base.test.persistenceunit.CachedJarPersistenceUnit;
+import com.anaptecs.jeaf.spi.persistence.base.test.persistenceunit.IndexedEntity;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class BootstrapCacheTest {
+  @Test
+  public void testFingerprint( ) {
+    ClassLoader lClassLoader = this.getClass().getClassLoader();
+    Properties lProperties = new Properties();
+    lProperties.setProperty("a", "1");
+    String lFingerprint = new PersistenceUnitFingerprint(lClassLoader)
+        .addClasses(Collections.singletonList(IndexedEntity.class.getName())).addProperties(lProperties).getValue();
+    assertEquals(lFingerprint, new PersistenceUnitFingerprint(lClassLoader)
+        .addClasses(Collections.singletonList(IndexedEntity.class.getName())).addProperties(lProperties).getValue());
+
+    // Changed properties result in a different fingerprint.
+    lProperties.setProperty("a", "2");
+    assertNotEquals(lFingerprint, new PersistenceUnitFingerprint(lClassLoader)
+        .addClasses(Collections.singletonList(IndexedEntity.class.getName())).addProperties(lProperties).getValue());
+  }
+
+  @Test
+  public void testBootstrapCache( @TempDir File pDirectory ) {
+    BootstrapCache lCache = new BootstrapCache(pDirectory);
+    assertNull(lCache.load("Unit", "1"));
+    Properties lArtifacts = new Properties();
+    lArtifacts.setProperty("key", "value");
+    lCache.store("Unit", "1", lArtifacts);
+    assertEquals(lArtifacts, lCache.load("Unit", "1"));
+    assertNull(lCache.load("Unit", "2"));
+  }
+
+  @Test
+  public void testCachedJarFileScan( @TempDir File pDirectory ) throws IOException {
+    String lPrevious = System.setProperty(BootstrapCache.CACHE_DIRECTORY_PROPERTY, pDirectory.getAbsolutePath());
+    try {
+      // Jar file without entity index has to be scanned once.
+      File lJarFile = new File(CachedJarPersistenceUnit.JAR_FILE);
+      this.writeJarFile(lJarFile, false);
+      PersistenceUnitInfoImpl lInfo = new PersistenceUnitInfoImpl(CachedJarPersistenceUnit.class);
+      assertEquals(Arrays.asList(IndexedEntity.class.getName()), lInfo.getIndexedClassNames());
+      assertEquals("hbm", lInfo.getProperties().getProperty("hibernate.archive.autodetection"));
+      File lCacheFile = BootstrapCache.getDefault().getCacheFile("CachedJarPersistenceUnit");
+      assertTrue(lCacheFile.isFile());
+
+      // Manipulate cache to ensure that cached artifacts are really reused.
+      Properties lCached = new Properties();
+      try (InputStream lStream = Files.newInputStream(lCacheFile.toPath())) {
+        lCached.load(lStream);
+      }
+      lCached.setProperty("scanned.classes", "com.anaptecs.Cached");
+      try (OutputStream lStream = Files.newOutputStream(lCacheFile.toPath())) {
+        lCached.store(lStream, null);
+      }
+      lInfo = new PersistenceUnitInfoImpl(CachedJarPersistenceUnit.class);
+      assertEquals(Arrays.asList("com.anaptecs.Cached"), lInfo.getIndexedClassNames());
+
+      // Changed jar file invalidates cache.
+      this.writeJarFile(lJarFile, true);
+      lInfo = new PersistenceUnitInfoImpl(CachedJarPersistenceUnit.class);
+      assertEquals(Arrays.asList(IndexedEntity.class.getName()), lInfo.getIndexedClassNames());
+    }
+    finally {
+      if (lPrevious != null) {
+        System.setProperty(BootstrapCache.CACHE_DIRECTORY_PROPERTY, lPrevious);
+      }
+      else {
+        System.clearProperty(BootstrapCache.CACHE_DIRECTORY_PROPERTY);
+      }
+    }
+  }
+
+  private void writeJarFile( File pJarFile, boolean pWithManifest ) throws IOException {
+    pJarFile.getParentFile().mkdirs();
+    String lClassFile = IndexedEntity.class.getName().replace('.', '/') + ".class";
+    try (JarOutputStream lJar = new JarOutputStream(Files.newOutputStream(pJarFile.toPath()))) {
+      if (pWithManifest == true) {
+        lJar.putNextEntry(new JarEntry("META-INF/MANIFEST.MF"));
+        lJar.write("Manifest-Version: 1.0\n".getBytes("UTF-8"));
+        lJar.closeEntry();
+      }
+      lJar.putNextEntry(new JarEntry(lClassFile));
+      try (InputStream lStream = this.getClass().getClassLoader().getResourceAsStream(lClassFile)) {
+        byte[] lBuffer = new byte[4096];
+        int lRead;
+        while ((lRead = lStream.read(lBuffer)) != -1) {
+          lJar.write(lBuffer, 0, lRead);
+        }
+      }
+      lJar.closeEntry();
+    }
+  }
+}
@@ -0,0 +1,72 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import com.anaptecs.jeaf.spi.persistence.base.PersistenceUnitInfoImpl;
+import com.anaptecs.jeaf.spi.persistence.base.bootstrap.BootstrapPhase;
+import com.anaptecs.jeaf.spi.persistence.base.bootstrap.BootstrapProfiler;
+import com.anaptecs.jeaf.spi.persistence.base.bootstrap.BootstrapReport;
+import com.anaptecs.jeaf.spi.persistence.base.bootstrap.PhaseMeasurement;
+import com.anaptecs.jeaf.spi.persistence.base.test.persistenceunit.MyJUnitPersistenceUnit;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+
+public class BootstrapProfilerTest {
+  @Test
+  public void testBootstrapReport( ) {
+    PersistenceUnitInfoImpl lPersistenceUnitInfo = new PersistenceUnitInfoImpl(MyJUnitPersistenceUnit.class);
+    String lName = lPersistenceUnitInfo.getPersistenceUnitName();
+
+    BootstrapReport lReport = BootstrapProfiler.getReport();
+    assertTrue(lReport.getPersistenceUnitNames().contains(lName));
+    PhaseMeasurement lMeasurement = lReport.getMeasurement(lName, BootstrapPhase.ANNOTATION_RESOLUTION);
+    assertNotNull(lMeasurement);
+    assertEquals(lName, lMeasurement.getPersistenceUnitName());
+    assertTrue(lMeasurement.getDuration() >= 0);
+    assertEquals(Thread.currentThread().getName(), lMeasurement.getThreadName());
+    assertNull(lReport.getMeasurement(lName, BootstrapPhase.ENTITY_MANAGER_FACTORY));
+    assertTrue(lReport.toString(lName).contains("ANNOTATION_RESOLUTION"));
+
+    // Bootstrapping the persistence unit again replaces its measurements.
+    new PersistenceUnitInfoImpl(MyJUnitPersistenceUnit.class);
+    List<PhaseMeasurement> lMeasurements = BootstrapProfiler.getReport().getMeasurements(lName);
+    assertEquals(1, lMeasurements.size());
+    assertNotSame(lMeasurement, lMeasurements.get(0));
+
+    BootstrapProfiler.clear(lName);
+    assertTrue(BootstrapProfiler.getReport().getMeasurements(lName).isEmpty());
+  }
+
+  @Test
+  public void testJFREvents( ) throws IOException {
+    File lFile = File.createTempFile("jeaf-bootstrap", ".jfr");
+    try (Recording lRecording = new Recording()) {
+      lRecording.enable("com.anaptecs.jeaf.persistence.BootstrapPhase");
+      lRecording.start();
+      BootstrapProfiler.start(BootstrapPhase.CONFIGURATION_LOOKUP).stop("JFRTestUnit");
+      lRecording.stop();
+      lRecording.dump(lFile.toPath());
+    }
+    List<RecordedEvent> lEvents = RecordingFile.readAllEvents(lFile.toPath());
+    assertEquals(1, lEvents.size());
+    assertEquals("JFRTestUnit", lEvents.get(0).getString("persistenceUnit"));
+    assertEquals("CONFIGURATION_LOOKUP", lEvents.get(0).getString("phase"));
+    lFile.delete();
+    BootstrapProfiler.clear("JFRTestUnit");
+  }
+}
@@ -0,0 +1,25 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.test;
+
+import com.anaptecs.jeaf.spi.persistence.ClassID;
+
+class BulkItem extends BulkObject {
+  static final ClassID CLASS_ID = ClassID.createClassID(434, BulkItem.class);
+
+  BulkItem( ) {
+    this(false);
+  }
+
+  BulkItem( boolean pFails ) {
+    super(pFails);
+  }
+
+  @Override
+  public ClassID getClassID( ) {
+    return CLASS_ID;
+  }
+}
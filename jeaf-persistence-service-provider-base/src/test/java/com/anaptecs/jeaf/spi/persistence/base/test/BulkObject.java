@@ -0,0 +1,24 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.test;
+
+import com.anaptecs.jeaf.spi.persistence.PersistentObject;
+
+abstract class BulkObject extends PersistentObject {
+  private final boolean fails;
+
+  BulkObject( boolean pFails ) {
+    fails = pFails;
+  }
+
+  static boolean fails( PersistentObject pObject ) {
+    return ((BulkObject) pObject).fails;
+  }
+
+  String getAssignedObjectID( ) {
+    return this.getObjectID();
+  }
+}
@@ -0,0 +1,21 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.test;
+
+import com.anaptecs.jeaf.spi.persistence.ClassID;
+
+class BulkOrder extends BulkObject {
+  static final ClassID CLASS_ID = ClassID.createClassID(433, BulkOrder.class);
+
+  BulkOrder( ) {
+    super(false);
+  }
+
+  @Override
+  public ClassID getClassID( ) {
+    return CLASS_ID;
+  }
+}
@@ -0,0 +1,232 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.test;
+
+import static com.anaptecs.jeaf.spi.persistence.base.test.TestProxies.createProxy;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import javax.persistence.PersistenceException;
+import javax.persistence.RollbackException;
+
+import org.hibernate.Session;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.jpa.HibernatePersistenceProvider;
+import org.hibernate.stat.Statistics;
+
+import com.anaptecs.jeaf.spi.persistence.PersistentObject;
+import com.anaptecs.jeaf.spi.persistence.base.ObjectIDGenerator;
+import com.anaptecs.jeaf.spi.persistence.base.PersistenceUnitInfoImpl;
+import com.anaptecs.jeaf.spi.persistence.base.bulk.BulkWriteException;
+import com.anaptecs.jeaf.spi.persistence.base.bulk.BulkWriter;
+import com.anaptecs.jeaf.spi.persistence.base.test.persistenceunit.BatchWritePersistenceUnit;
+import com.anaptecs.jeaf.spi.persistence.base.test.persistenceunit.BulkEntity;
+import org.junit.jupiter.api.Test;
+
+public class BulkWriterTest {
+  /**
+   * Objects that were committed through the mocked entity manager.
+   */
+  private final List<PersistentObject> committed = new ArrayList<>();
+
+  /**
+   * Objects that were persisted within the current transaction of the mocked entity manager.
+   */
+  private final List<PersistentObject> pending = new ArrayList<>();
+
+  private final List<String> calls = new ArrayList<>();
+
+  @Test
+  public void testObjectIDBlocks( ) {
+    ObjectIDGenerator lGenerator = new ObjectIDGenerator("1");
+    String lFirst = lGenerator.getNextObjectID(BulkOrder.CLASS_ID);
+    List<String> lBlock = lGenerator.getNextObjectIDs(BulkOrder.CLASS_ID, 3);
+    assertEquals(3, lBlock.size());
+    assertEquals(lGenerator.getNextObjectID(BulkOrder.CLASS_ID).length(), lBlock.get(2).length());
+    assertTrue(lBlock.get(0).compareTo(lFirst) > 0);
+    assertTrue(lBlock.get(2).compareTo(lBlock.get(1)) > 0);
+    assertTrue(lGenerator.getNextObjectIDs(BulkOrder.CLASS_ID, 0).isEmpty());
+  }
+
+  @Test
+  public void testBulkWrite( ) {
+    BulkWriter lWriter = new BulkWriter(this.createEntityManagerFactory(), new ObjectIDGenerator("1"), 20, 4);
+    List<PersistentObject> lObjects = Arrays.asList(new BulkOrder(), new BulkItem(), new BulkOrder(), new BulkItem(),
+        new BulkItem(), new BulkOrder());
+    List<String> lProgress = new ArrayList<>();
+    long lRows = lWriter.write(lObjects.stream(),
+        (pChunkRows, pCommittedRows) -> lProgress.add(pChunkRows + "/" + pCommittedRows));
+
+    assertEquals(6, lRows);
+    assertEquals(Arrays.asList("4/4", "2/6"), lProgress);
+    assertTrue(calls.contains("setJdbcBatchSize(20)"));
+
+    // Every chunk is written with its own entity manager.
+    assertEquals(2, calls.stream().filter(pCall -> pCall.equals("close")).count());
+
+    // Objects of a chunk are written grouped by their type.
+    assertEquals(Arrays.asList(lObjects.get(0), lObjects.get(2), lObjects.get(1), lObjects.get(3), lObjects.get(4),
+        lObjects.get(5)), committed);
+    List<String> lObjectIDs = committed.stream().map(pObject -> ((BulkObject) pObject).getAssignedObjectID())
+        .distinct().collect(Collectors.toList());
+    assertEquals(6, lObjectIDs.size());
+    assertTrue(lObjectIDs.get(0).endsWith(BulkOrder.CLASS_ID.toString()));
+    assertTrue(lObjectIDs.get(2).endsWith(BulkItem.CLASS_ID.toString()));
+  }
+
+  @Test
+  public void testFailingRow( ) {
+    BulkWriter lWriter = new BulkWriter(this.createEntityManagerFactory(), new ObjectIDGenerator("1"), 10, 3);
+    BulkItem lFailing = new BulkItem(true);
+    Stream<PersistentObject> lObjects = Stream.concat(IntStream.range(0, 4).mapToObj(i -> new BulkOrder()),
+        Stream.of(new BulkItem(), lFailing, new BulkOrder()));
+
+    BulkWriteException lException = assertThrows(BulkWriteException.class, ( ) -> lWriter.write(lObjects));
+    assertEquals(5, lException.getRowIndex());
+    assertSame(lFailing, lException.getFailedObject());
+    assertEquals(3, lException.getCommittedRows());
+    assertEquals(3, committed.size());
+    assertTrue(pending.isEmpty());
+
+    // Failing row is searched with a new entity manager.
+    assertEquals(3, calls.stream().filter(pCall -> pCall.equals("close")).count());
+    assertEquals(3, calls.stream().filter(pCall -> pCall.equals("merge")).count());
+  }
+
+  @Test
+  public void testUnknownFailingRow( ) {
+    BulkWriter lWriter = new BulkWriter(this.createEntityManagerFactory(), new ObjectIDGenerator("1"), 10, 3);
+    calls.add("failOnCommit");
+    BulkWriteException lException =
+        assertThrows(BulkWriteException.class, ( ) -> lWriter.write(Stream.of(new BulkOrder())));
+    assertEquals(-1, lException.getRowIndex());
+    assertNull(lException.getFailedObject());
+    assertEquals(0, lException.getCommittedRows());
+    assertTrue(lException.getCause() instanceof RollbackException);
+  }
+
+  @Test
+  public void testDatabaseBulkWrite( ) {
+    EntityManagerFactory lFactory = new HibernatePersistenceProvider().createContainerEntityManagerFactory(
+        new PersistenceUnitInfoImpl(BatchWritePersistenceUnit.class), Collections.emptyMap());
+    try {
+      Statistics lStatistics = lFactory.unwrap(SessionFactoryImplementor.class).getStatistics();
+      BulkWriter lWriter = new BulkWriter(lFactory, new ObjectIDGenerator("1"), 10, 20);
+
+      // Inserts of a chunk are sent as JDBC batches of one prepared statement. Without batching one statement would be
+      // prepared per insert.
+      lStatistics.clear();
+      assertEquals(45, lWriter.write(IntStream.range(0, 45).mapToObj(i -> new BulkEntity("Entity " + i))));
+      assertEquals(45, lStatistics.getEntityInsertCount());
+      assertEquals(3, lStatistics.getTransactionCount());
+      assertEquals(3, lStatistics.getPrepareStatementCount());
+      assertEquals(45L, this.countRows(lFactory));
+
+      // Failing row is reported and previous chunks remain committed.
+      List<BulkEntity> lObjects = new ArrayList<>();
+      for (int i = 0; i < 30; i++) {
+        lObjects.add(new BulkEntity(i == 25 ? String.join("", Collections.nCopies(300, "x")) : "Entity " + i));
+      }
+      BulkWriteException lException = assertThrows(BulkWriteException.class, ( ) -> lWriter.write(lObjects.stream()));
+      assertEquals(25, lException.getRowIndex());
+      assertSame(lObjects.get(25), lException.getFailedObject());
+      assertEquals(20, lException.getCommittedRows());
+      assertEquals(65L, this.countRows(lFactory));
+
+      // Objects of the failed chunk keep their object id.
+      assertNotNull(lObjects.get(29).getID());
+    }
+    finally {
+      lFactory.close();
+    }
+  }
+
+  private long countRows( EntityManagerFactory pFactory ) {
+    EntityManager lEntityManager = pFactory.createEntityManager();
+    try {
+      return lEntityManager.createQuery("select count(e) from BulkEntity e", Long.class).getSingleResult();
+    }
+    finally {
+      lEntityManager.close();
+    }
+  }
+
+  private EntityManagerFactory createEntityManagerFactory( ) {
+    return createProxy(EntityManagerFactory.class, (pMethod, pArgs) -> this.createEntityManager());
+  }
+
+  private EntityManager createEntityManager( ) {
+    Session lSession = createProxy(Session.class, (pMethod, pArgs) -> {
+      calls.add(pMethod + "(" + pArgs[0] + ")");
+      return null;
+    });
+    boolean[] lActive = { false };
+    EntityTransaction lTransaction = createProxy(EntityTransaction.class, (pMethod, pArgs) -> {
+      switch (pMethod) {
+        case "begin":
+          lActive[0] = true;
+          return null;
+        case "isActive":
+          return lActive[0];
+        case "commit":
+          lActive[0] = false;
+          if (calls.contains("failOnCommit") || pending.stream().anyMatch(BulkObject::fails)) {
+            pending.clear();
+            throw new RollbackException("Commit failed");
+          }
+          committed.addAll(pending);
+          pending.clear();
+          return null;
+        case "rollback":
+          lActive[0] = false;
+          pending.clear();
+          return null;
+        default:
+          throw new UnsupportedOperationException(pMethod);
+      }
+    });
+    return createProxy(EntityManager.class, (pMethod, pArgs) -> {
+      switch (pMethod) {
+        case "unwrap":
+          return lSession;
+        case "getTransaction":
+          return lTransaction;
+        case "merge":
+          calls.add(pMethod);
+          pending.add((PersistentObject) pArgs[0]);
+          return pArgs[0];
+        case "persist":
+          pending.add((PersistentObject) pArgs[0]);
+          return pArgs[0];
+        case "flush":
+          if (pending.stream().anyMatch(BulkObject::fails)) {
+            throw new PersistenceException("Constraint violation");
+          }
+          return null;
+        case "close":
+          calls.add(pMethod);
+          return null;
+        default:
+          return null;
+      }
+    });
+  }
+}
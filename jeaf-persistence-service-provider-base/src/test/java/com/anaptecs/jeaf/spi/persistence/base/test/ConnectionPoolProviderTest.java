@@ -0,0 +1,79 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.util.Properties;
+
+import com.anaptecs.jeaf.spi.persistence.base.PersistenceUnitInfoImpl;
+import com.anaptecs.jeaf.spi.persistence.base.pool.C3P0ConnectionPoolProvider;
+import com.anaptecs.jeaf.spi.persistence.base.pool.ConnectionPoolProviderFactory;
+import com.anaptecs.jeaf.spi.persistence.base.pool.HikariCPConnectionPoolProvider;
+import com.anaptecs.jeaf.spi.persistence.base.test.persistenceunit.HikariCPPersistenceUnit;
+import com.anaptecs.jeaf.spi.persistence.base.test.persistenceunit.MyJUnitPersistenceUnit;
+import com.anaptecs.jeaf.xfun.api.errorhandling.JEAFSystemException;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class ConnectionPoolProviderTest {
+  @Test
+  @Order(10)
+  public void testConnectionPoolProviderResolution( ) {
+    // Default provider
+    assertTrue(ConnectionPoolProviderFactory.getConnectionPoolProvider(null) instanceof C3P0ConnectionPoolProvider);
+    assertTrue(ConnectionPoolProviderFactory.getConnectionPoolProvider(" ") instanceof C3P0ConnectionPoolProvider);
+
+    // Built-in providers
+    assertTrue(ConnectionPoolProviderFactory.getConnectionPoolProvider("c3p0") instanceof C3P0ConnectionPoolProvider);
+    assertTrue(
+        ConnectionPoolProviderFactory.getConnectionPoolProvider("HikariCP") instanceof HikariCPConnectionPoolProvider);
+
+    // Provider defined by its class name
+    assertTrue(ConnectionPoolProviderFactory.getConnectionPoolProvider(
+        HikariCPConnectionPoolProvider.class.getName()) instanceof HikariCPConnectionPoolProvider);
+
+    try {
+      ConnectionPoolProviderFactory.getConnectionPoolProvider("com.anaptecs.UnknownPoolProvider");
+      fail("Exception expected.");
+    }
+    catch (JEAFSystemException e) {
+      // Nothing to do.
+    }
+
+    // Persistence units without explicit configuration use c3p0.
+    PersistenceUnitInfoImpl lPersistenceUnitInfo = new PersistenceUnitInfoImpl(MyJUnitPersistenceUnit.class);
+    assertTrue(lPersistenceUnitInfo.getConnectionPoolProvider() instanceof C3P0ConnectionPoolProvider);
+  }
+
+  @Test
+  @Order(20)
+  public void testHikariCPConnectionPoolProvider( ) {
+    PersistenceUnitInfoImpl lPersistenceUnitInfo = new PersistenceUnitInfoImpl(HikariCPPersistenceUnit.class);
+    assertTrue(lPersistenceUnitInfo.getConnectionPoolProvider() instanceof HikariCPConnectionPoolProvider);
+
+    Properties lProperties = lPersistenceUnitInfo.getProperties();
+    assertEquals(HikariCPConnectionPoolProvider.HIKARI_CONNECTION_PROVIDER,
+        lProperties.get("hibernate.connection.provider_class"));
+    assertEquals("HikariCPPersistenceUnit", lProperties.get("hibernate.hikari.poolName"));
+    assertEquals("5", lProperties.get("hibernate.hikari.minimumIdle"));
+    assertEquals("50", lProperties.get("hibernate.hikari.maximumPoolSize"));
+    assertEquals("true", lProperties.get("hibernate.hikari.dataSource.cachePrepStmts"));
+    assertEquals("250", lProperties.get("hibernate.hikari.dataSource.prepStmtCacheSize"));
+    assertEquals("600000", lProperties.get("hibernate.hikari.idleTimeout"));
+    assertEquals("100000", lProperties.get("hibernate.hikari.keepaliveTime"));
+
+    // No c3p0 settings must be present.
+    assertNull(lProperties.get("hibernate.c3p0.min_size"));
+    assertNull(lProperties.get("hibernate.c3p0.max_size"));
+  }
+}
@@ -0,0 +1,80 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import com.anaptecs.jeaf.spi.persistence.base.PersistenceUnitInfoImpl;
+import com.anaptecs.jeaf.spi.persistence.base.index.EntityIndex;
+import com.anaptecs.jeaf.spi.persistence.base.index.EntityIndexGenerator;
+import com.anaptecs.jeaf.spi.persistence.base.test.persistenceunit.EntityMappings;
+import com.anaptecs.jeaf.spi.persistence.base.test.persistenceunit.IndexedEntity;
+import com.anaptecs.jeaf.spi.persistence.base.test.persistenceunit.IndexedJarPersistenceUnit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class EntityIndexTest {
+  @Test
+  public void testEntityIndex( @TempDir File pOutputDirectory ) throws IOException, URISyntaxException {
+    // Generate index from compiled test classes.
+    File lClassesDirectory = new File(IndexedEntity.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+    List<String> lClassNames = EntityIndexGenerator.generateIndex(lClassesDirectory, this.getClass().getClassLoader());
+    assertTrue(lClassNames.contains(IndexedEntity.class.getName()));
+    assertFalse(lClassNames.contains(EntityMappings.class.getName()));
+
+    // Package index into jar file.
+    File lIndexFile = EntityIndexGenerator.writeIndex(lClassNames, pOutputDirectory);
+    File lJarFile = new File(IndexedJarPersistenceUnit.JAR_FILE);
+    lJarFile.getParentFile().mkdirs();
+    try (JarOutputStream lJar = new JarOutputStream(Files.newOutputStream(lJarFile.toPath()))) {
+      lJar.putNextEntry(new JarEntry(EntityIndex.INDEX_FILE));
+      lJar.write(Files.readAllBytes(lIndexFile.toPath()));
+      lJar.closeEntry();
+    }
+    assertEquals(lClassNames, EntityIndex.readIndex(lJarFile.toURI().toURL()));
+    assertEquals(lClassNames, EntityIndex.readIndex(pOutputDirectory.toURI().toURL()));
+
+    // Indexed classes are passed as managed classes and scanning for classes is disabled.
+    PersistenceUnitInfoImpl lPersistenceUnitInfo = new PersistenceUnitInfoImpl(IndexedJarPersistenceUnit.class);
+    assertEquals(lClassNames, lPersistenceUnitInfo.getIndexedClassNames());
+    assertTrue(lPersistenceUnitInfo.getManagedClassNames().contains(IndexedEntity.class.getName()));
+    assertEquals("hbm", lPersistenceUnitInfo.getProperties().getProperty("hibernate.archive.autodetection"));
+  }
+
+  @Test
+  public void testUnloadableClass( @TempDir Path pClassesDirectory ) throws IOException {
+    // Index must not be created if it is unknown whether a class is an entity.
+    Path lPackage = Files.createDirectories(pClassesDirectory.resolve("com/acme"));
+    Files.write(lPackage.resolve("Broken.class"), new byte[] { (byte) 0xCA, (byte) 0xFE, (byte) 0xBA, (byte) 0xBE });
+    IOException lException = assertThrows(IOException.class,
+        ( ) -> EntityIndexGenerator.generateIndex(pClassesDirectory.toFile(), this.getClass().getClassLoader()));
+    assertTrue(lException.getMessage().contains("com.acme.Broken"), lException.getMessage());
+  }
+
+  @Test
+  public void testMissingEntityIndex( ) throws IOException {
+    File lJarFile = File.createTempFile("jeaf-no-index", ".jar");
+    try (JarOutputStream lJar = new JarOutputStream(Files.newOutputStream(lJarFile.toPath()))) {
+      lJar.putNextEntry(new JarEntry("META-INF/MANIFEST.MF"));
+      lJar.closeEntry();
+    }
+    assertNull(EntityIndex.readIndex(lJarFile.toURI().toURL()));
+    lJarFile.delete();
+  }
+}
@@ -0,0 +1,150 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.test;
+
+import static com.anaptecs.jeaf.spi.persistence.base.test.TestProxies.createProxy;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+
+import org.hibernate.cache.cfg.spi.DomainDataRegionBuildingContext;
+import org.hibernate.cache.cfg.spi.DomainDataRegionConfig;
+import org.hibernate.cache.spi.support.DomainDataRegionTemplate;
+import org.hibernate.cache.spi.support.DomainDataStorageAccess;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.resource.transaction.spi.SynchronizationRegistry;
+import org.hibernate.resource.transaction.spi.TransactionCoordinator;
+
+import com.anaptecs.jeaf.spi.persistence.base.cache.InvalidationBatch;
+import com.anaptecs.jeaf.spi.persistence.base.cache.InvalidationBus;
+import com.anaptecs.jeaf.spi.persistence.base.cache.InvalidationBusFactory;
+import com.anaptecs.jeaf.spi.persistence.base.cache.LoopbackInvalidationBus;
+import com.anaptecs.jeaf.spi.persistence.base.cache.TinyLfuRegionFactory;
+import org.junit.jupiter.api.Test;
+
+public class InvalidationBusTest {
+  private static final String REGION = "com.anaptecs.Entity";
+
+  @Test
+  public void testInvalidationBusFactory( ) {
+    InvalidationBus lBus = InvalidationBusFactory.getInvalidationBus("Loopback");
+    assertTrue(lBus instanceof LoopbackInvalidationBus);
+    assertSame(lBus, InvalidationBusFactory.getInvalidationBus(LoopbackInvalidationBus.NAME));
+    assertTrue(InvalidationBusFactory.getInvalidationBus(
+        LoopbackInvalidationBus.class.getName()) instanceof LoopbackInvalidationBus);
+  }
+
+  @Test
+  public void testCrossNodeInvalidation( ) {
+    TinyLfuRegionFactory lNodeA = this.startNode("Unit");
+    TinyLfuRegionFactory lNodeB = this.startNode("Unit");
+    TinyLfuRegionFactory lOtherUnit = this.startNode("OtherUnit");
+    try {
+      DomainDataStorageAccess lStorageA = this.buildRegion(lNodeA);
+      DomainDataStorageAccess lStorageB = this.buildRegion(lNodeB);
+      DomainDataStorageAccess lStorageOther = this.buildRegion(lOtherUnit);
+
+      // Loading data does not affect other nodes.
+      lStorageA.putFromLoad("1", "A1", null);
+      lStorageB.putFromLoad("1", "B1", null);
+      lStorageOther.putFromLoad("1", "O1", null);
+      assertTrue(lStorageA.contains("1"));
+
+      // Changes outside of a transaction are published immediately.
+      lStorageA.putIntoCache("1", "A1'", null);
+      assertEquals("A1'", lStorageA.getFromCache("1", null));
+      assertFalse(lStorageB.contains("1"));
+      assertTrue(lStorageOther.contains("1"));
+
+      // Changes within a transaction are published after commit.
+      List<Synchronization> lSynchronizations = new ArrayList<>();
+      SharedSessionContractImplementor lSession = this.createSession(lSynchronizations);
+      lStorageB.putFromLoad("2", "B2", null);
+      lStorageB.putFromLoad("3", "B3", null);
+      lStorageA.removeFromCache("2", lSession);
+      lStorageA.putIntoCache("3", "A3", lSession);
+      assertEquals(1, lSynchronizations.size());
+      assertTrue(lStorageB.contains("2"));
+      lSynchronizations.get(0).afterCompletion(Status.STATUS_COMMITTED);
+      assertFalse(lStorageB.contains("2"));
+      assertFalse(lStorageB.contains("3"));
+      assertEquals("A3", lStorageA.getFromCache("3", null));
+
+      // Invalidations of rolled back transactions are discarded.
+      lSynchronizations.clear();
+      lStorageB.putFromLoad("4", "B4", null);
+      lStorageA.removeFromCache("4", lSession);
+      lSynchronizations.get(0).afterCompletion(Status.STATUS_ROLLEDBACK);
+      assertTrue(lStorageB.contains("4"));
+
+      // Whole region.
+      lStorageA.evictData();
+      assertFalse(lStorageB.contains("4"));
+      assertNotNull(lStorageOther.getFromCache("1", null));
+    }
+    finally {
+      lNodeA.stop();
+      lNodeB.stop();
+      lOtherUnit.stop();
+    }
+  }
+
+  @Test
+  public void testInvalidationBatch( ) {
+    InvalidationBatch lBatch = new InvalidationBatch("node", "unit",
+        Collections.singletonList(new InvalidationBatch.Invalidation(REGION, null)));
+    assertTrue(lBatch.getInvalidations().get(0).isRegionInvalidation());
+    assertEquals("node", lBatch.getOriginNodeID());
+  }
+
+  private TinyLfuRegionFactory startNode( String pUnitName ) {
+    Map<String, String> lConfigValues = new HashMap<>();
+    lConfigValues.put(TinyLfuRegionFactory.INVALIDATION_BUS_PROPERTY, LoopbackInvalidationBus.NAME);
+    lConfigValues.put("hibernate.ejb.persistenceUnitName", pUnitName);
+    TinyLfuRegionFactory lFactory = new TinyLfuRegionFactory();
+    lFactory.start(null, lConfigValues);
+    return lFactory;
+  }
+
+  private DomainDataStorageAccess buildRegion( TinyLfuRegionFactory pFactory ) {
+    DomainDataRegionConfig lConfig = createProxy(DomainDataRegionConfig.class,
+        (pMethod, pArgs) -> "getRegionName".equals(pMethod) ? REGION : Collections.emptyList());
+    DomainDataRegionBuildingContext lContext =
+        createProxy(DomainDataRegionBuildingContext.class, (pMethod, pArgs) -> null);
+    return ((DomainDataRegionTemplate) pFactory.buildDomainDataRegion(lConfig, lContext)).getCacheStorageAccess();
+  }
+
+  private SharedSessionContractImplementor createSession( List<Synchronization> pSynchronizations ) {
+    SynchronizationRegistry lRegistry = pSynchronizations::add;
+    TransactionCoordinator lCoordinator = createProxy(TransactionCoordinator.class,
+        (pMethod, pArgs) -> "getLocalSynchronizations".equals(pMethod) ? lRegistry : null);
+    return createProxy(SharedSessionContractImplementor.class, (pMethod, pArgs) -> {
+      Object lResult;
+      switch (pMethod) {
+        case "isTransactionInProgress":
+          lResult = true;
+          break;
+        case "getTransactionCoordinator":
+          lResult = lCoordinator;
+          break;
+        default:
+          lResult = null;
+      }
+      return lResult;
+    });
+  }
+}
@@ -0,0 +1,91 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import com.anaptecs.jeaf.spi.persistence.ClassID;
+import com.anaptecs.jeaf.spi.persistence.base.ObjectIDGenerator;
+import com.anaptecs.jeaf.spi.persistence.base.jfr.IDBlockReservationEvent;
+import com.anaptecs.jeaf.spi.persistence.base.jfr.JFRSupport;
+import com.anaptecs.jeaf.spi.persistence.base.jfr.TransactionCompletionEvent;
+import com.anaptecs.jeaf.spi.persistence.base.jfr.TransactionEventListener;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Class tests the JFR events of the persistence service provider by recording them into a file.
+ *
+ * @author JEAF Development Team
+ */
+public class JFREventsTest {
+  /**
+   * Test checks that the reservation of a new block of object IDs is recorded.
+   *
+   * @param pDirectory Temporary directory for the recording.
+   * @throws IOException if the recording can not be written or read.
+   */
+  @Test
+  public void testIDBlockReservation( @TempDir File pDirectory ) throws IOException {
+    assertTrue(JFRSupport.isAvailable());
+    assertFalse(IDBlockReservationEvent.isRecording());
+    ObjectIDGenerator lGenerator = new ObjectIDGenerator("123456");
+    ClassID lClassID = BulkOrder.CLASS_ID;
+    lGenerator.getNextObjectIDs(lClassID, 3);
+
+    File lFile = new File(pDirectory, "jeaf-ids.jfr");
+    try (Recording lRecording = new Recording()) {
+      lRecording.enable("com.anaptecs.jeaf.persistence.IDBlockReservation");
+      lRecording.start();
+      assertTrue(IDBlockReservationEvent.isRecording());
+      lGenerator.getNextObjectIDs(lClassID, 20);
+      lRecording.stop();
+      lRecording.dump(lFile.toPath());
+    }
+    List<RecordedEvent> lEvents = RecordingFile.readAllEvents(lFile.toPath());
+    assertEquals(1, lEvents.size());
+    assertEquals(lClassID.toString(), lEvents.get(0).getString("classID"));
+    assertEquals(20, lEvents.get(0).getInt("blockSize"));
+  }
+
+  /**
+   * Test checks that only the first completion of a transaction is recorded together with its context.
+   *
+   * @param pDirectory Temporary directory for the recording.
+   * @throws IOException if the recording can not be written or read.
+   */
+  @Test
+  public void testTransactionCompletion( @TempDir File pDirectory ) throws IOException {
+    assertFalse(TransactionCompletionEvent.isRecording());
+    File lFile = new File(pDirectory, "jeaf-tx.jfr");
+    try (Recording lRecording = new Recording()) {
+      lRecording.enable("com.anaptecs.jeaf.persistence.TransactionCompletion");
+      lRecording.start();
+      TransactionEventListener lListener = new TransactionEventListener("OrderUnit", "OrderComponent", ( ) -> 2);
+      lListener.transactionCompletion(false);
+      // Only the first transaction is recorded.
+      lListener.transactionCompletion(true);
+      lRecording.stop();
+      lRecording.dump(lFile.toPath());
+    }
+    List<RecordedEvent> lEvents = RecordingFile.readAllEvents(lFile.toPath());
+    assertEquals(1, lEvents.size());
+    RecordedEvent lEvent = lEvents.get(0);
+    assertEquals("OrderUnit", lEvent.getString("persistenceUnit"));
+    assertEquals("OrderComponent", lEvent.getString("component"));
+    assertFalse(lEvent.getBoolean("committed"));
+    assertEquals(2, lEvent.getInt("entityManagers"));
+  }
+}
@@ -0,0 +1,148 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Properties;
+
+import javax.sql.DataSource;
+
+import org.h2.jdbcx.JdbcDataSource;
+
+import com.anaptecs.jeaf.spi.persistence.base.PersistenceUnitInfoImpl;
+import com.anaptecs.jeaf.spi.persistence.base.jdbc.JdbcStatistics;
+import com.anaptecs.jeaf.spi.persistence.base.jdbc.MonitoredDataSource;
+import com.anaptecs.jeaf.spi.persistence.base.jdbc.MonitoredDriver;
+import com.anaptecs.jeaf.spi.persistence.base.jdbc.SlowQuery;
+import com.anaptecs.jeaf.spi.persistence.base.jdbc.SqlStatistics;
+import com.anaptecs.jeaf.spi.persistence.base.test.persistenceunit.BatchWritePersistenceUnit;
+import com.anaptecs.jeaf.spi.persistence.base.test.persistenceunit.JdbcStatisticsPersistenceUnit;
+import org.junit.jupiter.api.Test;
+
+public class JdbcStatisticsTest {
+  @Test
+  public void testSQLShapes( ) {
+    assertEquals("SELECT * FROM ORDERS o WHERE o.ID = ? AND o.NAME = ?",
+        JdbcStatistics.toShape("SELECT  *\n FROM ORDERS o WHERE o.ID = 42 AND o.NAME = 'O''Brien'"));
+    assertEquals("SELECT col_1 FROM T1 WHERE ID IN (?) AND VALUE > ?",
+        JdbcStatistics.toShape("SELECT col_1 FROM T1 WHERE ID IN (?, ?,?) AND VALUE > -1.5e3"));
+    assertEquals("UPDATE T SET A = ? WHERE B IN (?)", JdbcStatistics.toShape("UPDATE T SET A = ? WHERE B IN (1, 2)"));
+  }
+
+  @Test
+  public void testMonitoredDriver( ) throws SQLException {
+    Properties lProperties = new PersistenceUnitInfoImpl(JdbcStatisticsPersistenceUnit.class).getProperties();
+    String lURL = lProperties.getProperty("hibernate.connection.url");
+    assertEquals(MonitoredDriver.URL_PREFIX + "JdbcStatisticsPersistenceUnit:jdbc:h2:mem:jeaf_jdbc_statistics_test;"
+        + "DB_CLOSE_DELAY=-1", lURL);
+    assertEquals(MonitoredDriver.class.getName(), lProperties.getProperty("hibernate.connection.driver_class"));
+    JdbcStatistics lStatistics = JdbcStatistics.getStatistics("JdbcStatisticsPersistenceUnit");
+    assertNotNull(lStatistics);
+    lStatistics.reset();
+
+    try (Connection lConnection = DriverManager.getConnection(lURL, "sa", "")) {
+      this.executeStatements(lConnection);
+    }
+    this.checkStatistics(lStatistics);
+
+    // Slow query log only keeps the latest executions.
+    List<SlowQuery> lSlowQueries = lStatistics.getSlowQueries();
+    assertEquals(3, lSlowQueries.size());
+    assertEquals("SELECT ID, NAME FROM JDBC_STATISTICS WHERE ID >= ?", lSlowQueries.get(2).getSQL());
+    assertEquals(Thread.currentThread().getName(), lSlowQueries.get(2).getThreadName());
+  }
+
+  @Test
+  public void testMonitoredDataSource( ) throws SQLException {
+    JdbcDataSource lH2DataSource = new JdbcDataSource();
+    lH2DataSource.setURL("jdbc:h2:mem:jeaf_jdbc_statistics_ds_test;DB_CLOSE_DELAY=-1");
+    lH2DataSource.setUser("sa");
+    JdbcStatistics lStatistics = new JdbcStatistics("MonitoredDataSource", 60000, 10, 4);
+    DataSource lDataSource = MonitoredDataSource.wrap(lH2DataSource, lStatistics);
+    assertSame(lH2DataSource, lDataSource.unwrap(JdbcDataSource.class));
+    assertTrue(lDataSource.isWrapperFor(MonitoredDataSource.class));
+
+    try (Connection lConnection = lDataSource.getConnection()) {
+      this.executeStatements(lConnection);
+    }
+    assertTrue(lStatistics.getSlowQueries().isEmpty());
+
+    // Number of SQL shapes is bounded.
+    assertEquals(4, lStatistics.getSQLStatistics().size());
+    try (Connection lConnection = lDataSource.getConnection(); Statement lStatement = lConnection.createStatement()) {
+      lStatement.executeQuery("SELECT COUNT(*) FROM JDBC_STATISTICS").close();
+    }
+    assertEquals(5, lStatistics.getSQLStatistics().size());
+    assertEquals(1, lStatistics.getSQLStatistics(JdbcStatistics.OTHER_SHAPE).getExecutionCount());
+  }
+
+  @Test
+  public void testDisabledStatistics( ) {
+    PersistenceUnitInfoImpl lInfo = new PersistenceUnitInfoImpl(BatchWritePersistenceUnit.class);
+    Properties lProperties = lInfo.getProperties();
+    assertEquals("jdbc:h2:mem:jeaf_batch_write_test;DB_CLOSE_DELAY=-1",
+        lProperties.getProperty("hibernate.connection.url"));
+    assertNull(JdbcStatistics.getStatistics("BatchWritePersistenceUnit"));
+    assertNull(MonitoredDataSource.wrap(null, null));
+    assertThrows(IllegalArgumentException.class, ( ) -> new JdbcStatistics("Invalid", 0, -1, 10));
+  }
+
+  private void executeStatements( Connection pConnection ) throws SQLException {
+    try (Statement lStatement = pConnection.createStatement()) {
+      lStatement.execute("CREATE TABLE IF NOT EXISTS JDBC_STATISTICS (ID INT PRIMARY KEY, NAME VARCHAR(64))");
+      lStatement.executeUpdate("DELETE FROM JDBC_STATISTICS WHERE ID > 0");
+    }
+    try (PreparedStatement lStatement =
+        pConnection.prepareStatement("INSERT INTO JDBC_STATISTICS (ID, NAME) VALUES (?, ?)")) {
+      for (int i = 1; i <= 5; i++) {
+        lStatement.setInt(1, i);
+        lStatement.setString(2, "Name " + i);
+        lStatement.addBatch();
+      }
+      assertEquals(5, lStatement.executeBatch().length);
+    }
+    try (PreparedStatement lStatement =
+        pConnection.prepareStatement("SELECT ID, NAME FROM JDBC_STATISTICS WHERE ID >= ?")) {
+      lStatement.setInt(1, 3);
+      try (ResultSet lResultSet = lStatement.executeQuery()) {
+        while (lResultSet.next()) {
+          assertFalse(lResultSet.getString(2).isEmpty());
+        }
+      }
+    }
+  }
+
+  private void checkStatistics( JdbcStatistics pStatistics ) {
+    SqlStatistics lInsert = pStatistics.getSQLStatistics("INSERT INTO JDBC_STATISTICS (ID, NAME) VALUES (?, ?)");
+    assertEquals(1, lInsert.getExecutionCount());
+    assertEquals(1, lInsert.getBatchCount());
+    assertEquals(5, lInsert.getMaxBatchSize());
+    assertEquals(5.0, lInsert.getMeanBatchSize());
+    assertEquals(5, lInsert.getRowsAffected());
+
+    SqlStatistics lSelect = pStatistics.getSQLStatistics("SELECT ID, NAME FROM JDBC_STATISTICS WHERE ID >= 17");
+    assertEquals(1, lSelect.getExecutionCount());
+    assertEquals(3, lSelect.getRowsFetched());
+    assertEquals(0, lSelect.getErrorCount());
+    assertTrue(lSelect.getLatency().getTotalTime() > 0);
+
+    assertEquals(1, pStatistics.getSQLStatistics("DELETE FROM JDBC_STATISTICS WHERE ID > 0").getExecutionCount());
+  }
+}
@@ -0,0 +1,231 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.test;
+
+import static com.anaptecs.jeaf.spi.persistence.base.test.TestProxies.createProxy;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.Session;
+import org.hibernate.boot.spi.SessionFactoryOptions;
+import org.hibernate.collection.spi.PersistentCollection;
+import org.hibernate.engine.spi.PersistenceContext;
+import org.hibernate.engine.spi.SessionBuilderImplementor;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerGroup;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.event.spi.InitializeCollectionEvent;
+import org.hibernate.event.spi.InitializeCollectionEventListener;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.hibernate.jpa.HibernatePersistenceProvider;
+import org.hibernate.service.spi.ServiceRegistryImplementor;
+
+import com.anaptecs.jeaf.spi.persistence.base.PersistenceUnitInfoImpl;
+import com.anaptecs.jeaf.spi.persistence.base.query.NPlusOneDetector;
+import com.anaptecs.jeaf.spi.persistence.base.query.NPlusOneDetector.Mode;
+import com.anaptecs.jeaf.spi.persistence.base.query.NPlusOneException;
+import com.anaptecs.jeaf.spi.persistence.base.query.NPlusOneSuspect;
+import com.anaptecs.jeaf.spi.persistence.base.test.persistenceunit.ItemEntity;
+import com.anaptecs.jeaf.spi.persistence.base.test.persistenceunit.NPlusOnePersistenceUnit;
+import com.anaptecs.jeaf.spi.persistence.base.test.persistenceunit.OrderEntity;
+import org.junit.jupiter.api.Test;
+
+public class NPlusOneDetectorTest {
+  private static final String ITEM_SELECT = "select i.ID, i.NAME from ITEM i where i.ORDER_ID=?";
+
+  private final Map<String, Object> properties = new HashMap<>();
+
+  private final List<Object> listeners = new ArrayList<>();
+
+  private final List<String> calls = new ArrayList<>();
+
+  @Test
+  public void testStatementCounts( ) {
+    NPlusOneDetector lDetector = new NPlusOneDetector("OrderUnit", "OrderComponent", 3, Mode.WARN, null);
+    lDetector.inspect("select o.ID from ORDERS o where o.STATUS='OPEN'");
+    for (int i = 0; i < 5; i++) {
+      assertEquals(ITEM_SELECT, lDetector.inspect(ITEM_SELECT));
+      lDetector.inspect("select c.ID from CUSTOMER c where c.ID in (?, ?, ?)");
+      lDetector.inspect("insert into AUDIT (ID, TEXT) values (?, ?)");
+    }
+    lDetector.end();
+
+    assertEquals(16, lDetector.getStatementCount());
+    Map<String, Integer> lCounts = lDetector.getStatementCounts();
+    assertEquals(4, lCounts.size());
+    assertEquals(1, lCounts.get("select o.ID from ORDERS o where o.STATUS=?"));
+    assertEquals(5, lCounts.get(ITEM_SELECT));
+    assertEquals(5, lCounts.get("select c.ID from CUSTOMER c where c.ID in (?)"));
+
+    // Only the repeated single-row select is reported.
+    List<NPlusOneSuspect> lSuspects = lDetector.getSuspects();
+    assertEquals(1, lSuspects.size());
+    NPlusOneSuspect lSuspect = lSuspects.get(0);
+    assertEquals("OrderUnit", lSuspect.getPersistenceUnitName());
+    assertEquals("OrderComponent", lSuspect.getComponentName());
+    assertEquals(ITEM_SELECT, lSuspect.getSQL());
+    assertEquals(5, lSuspect.getExecutions());
+    assertNull(lSuspect.getAssociation());
+    NPlusOneException lException = assertThrows(NPlusOneException.class, lDetector::assertNoSuspects);
+    assertEquals(lSuspects.size(), lException.getSuspects().size());
+  }
+
+  @Test
+  public void testStrictMode( ) {
+    StatementInspector lDelegate = pSQL -> pSQL + " /* traced */";
+    NPlusOneDetector lDetector = new NPlusOneDetector("OrderUnit", "OrderComponent", 2, Mode.STRICT, lDelegate);
+    assertEquals(ITEM_SELECT + " /* traced */", lDetector.inspect(ITEM_SELECT));
+    lDetector.inspect(ITEM_SELECT);
+    NPlusOneException lException = assertThrows(NPlusOneException.class, ( ) -> lDetector.inspect(ITEM_SELECT));
+    assertEquals(3, lException.getSuspects().get(0).getExecutions());
+    assertTrue(lException.getMessage().contains("Component OrderComponent"), lException.getMessage());
+    assertThrows(IllegalArgumentException.class, ( ) -> new NPlusOneDetector("U", "C", 0, Mode.WARN, null));
+  }
+
+  @Test
+  public void testConfiguration( ) {
+    EntityManagerFactory lFactory = this.createFactory();
+    assertNull(NPlusOneDetector.forComponent(lFactory, "OrderUnit", "OrderComponent"));
+    NPlusOneDetector.install(lFactory);
+    assertTrue(listeners.isEmpty());
+
+    properties.put(NPlusOneDetector.THRESHOLD_PROPERTY, "10");
+    properties.put(NPlusOneDetector.SAMPLE_RATE_PROPERTY, "0");
+    assertNull(NPlusOneDetector.forComponent(lFactory, "OrderUnit", "OrderComponent"));
+
+    properties.put(NPlusOneDetector.SAMPLE_RATE_PROPERTY, "1");
+    properties.put(NPlusOneDetector.MODE_PROPERTY, "strict");
+    NPlusOneDetector lDetector = NPlusOneDetector.forComponent(lFactory, "OrderUnit", "OrderComponent");
+    assertNotNull(lDetector);
+    EntityManager lEntityManager = lDetector.createEntityManager(lFactory);
+    assertNotNull(lEntityManager);
+    assertEquals("[autoJoinTransactions, statementInspector, eventListeners, openSession]", calls.toString());
+  }
+
+  @Test
+  public void testAssociation( ) {
+    properties.put(NPlusOneDetector.THRESHOLD_PROPERTY, 1);
+    NPlusOneDetector.install(this.createFactory());
+    assertEquals(4, listeners.size());
+    InitializeCollectionEventListener lBefore = (InitializeCollectionEventListener) listeners.get(0);
+    InitializeCollectionEventListener lAfter = (InitializeCollectionEventListener) listeners.get(1);
+
+    PersistenceContext lPersistenceContext = createProxy(PersistenceContext.class, (pMethod, pArgs) -> null);
+    EventSource lSession = createProxy(EventSource.class, (pMethod, pArgs) -> lPersistenceContext);
+    PersistentCollection lCollection =
+        createProxy(PersistentCollection.class, (pMethod, pArgs) -> "com.acme.Order.items");
+    InitializeCollectionEvent lEvent = new InitializeCollectionEvent(lCollection, lSession);
+
+    NPlusOneDetector lDetector = new NPlusOneDetector("OrderUnit", "OrderComponent", 1, Mode.WARN, null);
+    for (int i = 0; i < 2; i++) {
+      lBefore.onInitializeCollection(lEvent);
+      lDetector.inspect(ITEM_SELECT);
+      lAfter.onInitializeCollection(lEvent);
+    }
+    lDetector.inspect("select o.ID from ORDERS o where o.ID=?");
+    lDetector.inspect("select o.ID from ORDERS o where o.ID=?");
+
+    List<NPlusOneSuspect> lSuspects = lDetector.getSuspects();
+    assertEquals(2, lSuspects.size());
+    assertEquals("com.acme.Order.items", lSuspects.get(0).getAssociation());
+    assertTrue(lSuspects.get(0).toString().contains("while loading association com.acme.Order.items"));
+    assertNull(lSuspects.get(1).getAssociation());
+    lDetector.end();
+  }
+
+  @Test
+  public void testDatabase( ) {
+    EntityManagerFactory lFactory = new HibernatePersistenceProvider().createContainerEntityManagerFactory(
+        new PersistenceUnitInfoImpl(NPlusOnePersistenceUnit.class), Collections.emptyMap());
+    try {
+      NPlusOneDetector.install(lFactory);
+      EntityManager lEntityManager = lFactory.createEntityManager();
+      lEntityManager.getTransaction().begin();
+      for (int i = 0; i < 5; i++) {
+        OrderEntity lOrder = new OrderEntity(i);
+        lEntityManager.persist(lOrder);
+        lEntityManager.persist(new ItemEntity(i * 2, lOrder));
+        lEntityManager.persist(new ItemEntity(i * 2 + 1, lOrder));
+      }
+      lEntityManager.getTransaction().commit();
+      lEntityManager.close();
+
+      // Lazy loading of the items of every order is reported together with the association.
+      NPlusOneDetector lDetector = NPlusOneDetector.forComponent(lFactory, "NPlusOnePersistenceUnit", "OrderComponent");
+      lEntityManager = lDetector.createEntityManager(lFactory);
+      for (OrderEntity lNext : lEntityManager.createQuery("select o from OrderEntity o", OrderEntity.class)
+          .getResultList()) {
+        assertEquals(2, lNext.getItems().size());
+      }
+      lEntityManager.close();
+      assertEquals(6, lDetector.getStatementCount());
+      List<NPlusOneSuspect> lSuspects = lDetector.getSuspects();
+      assertEquals(1, lSuspects.size());
+      assertEquals(5, lSuspects.get(0).getExecutions());
+      assertEquals(OrderEntity.class.getName() + ".items", lSuspects.get(0).getAssociation());
+
+      // Fetching the items together with their orders does not cause any N+1 selects.
+      lDetector = NPlusOneDetector.forComponent(lFactory, "NPlusOnePersistenceUnit", "OrderComponent");
+      lEntityManager = lDetector.createEntityManager(lFactory);
+      lEntityManager.createQuery("select distinct o from OrderEntity o join fetch o.items", OrderEntity.class)
+          .getResultList();
+      lEntityManager.close();
+      assertEquals(1, lDetector.getStatementCount());
+      lDetector.assertNoSuspects();
+    }
+    finally {
+      lFactory.close();
+    }
+  }
+
+  private EntityManagerFactory createFactory( ) {
+    Session lSession = createProxy(Session.class, (pMethod, pArgs) -> null);
+    EventListenerGroup<?> lGroup = createProxy(EventListenerGroup.class, (pMethod, pArgs) -> {
+      listeners.add(pArgs[0]);
+      return null;
+    });
+    EventListenerRegistry lRegistry = createProxy(EventListenerRegistry.class, (pMethod, pArgs) -> lGroup);
+    ServiceRegistryImplementor lServiceRegistry =
+        createProxy(ServiceRegistryImplementor.class, (pMethod, pArgs) -> lRegistry);
+    SessionFactoryOptions lOptions = createProxy(SessionFactoryOptions.class, (pMethod, pArgs) -> null);
+    Object[] lFactory = new Object[1];
+    lFactory[0] = createProxy(SessionFactoryImplementor.class, (pMethod, pArgs) -> {
+      switch (pMethod) {
+        case "getProperties":
+          return properties;
+        case "unwrap":
+          return lFactory[0];
+        case "withOptions":
+          Object[] lBuilder = new Object[1];
+          lBuilder[0] = createProxy(SessionBuilderImplementor.class, (pBuilderMethod, pBuilderArgs) -> {
+            calls.add(pBuilderMethod);
+            return "openSession".equals(pBuilderMethod) ? lSession : lBuilder[0];
+          });
+          return lBuilder[0];
+        case "getServiceRegistry":
+          return lServiceRegistry;
+        case "getSessionFactoryOptions":
+          return lOptions;
+        default:
+          return null;
+      }
+    });
+    return (EntityManagerFactory) lFactory[0];
+  }
+}
@@ -0,0 +1,108 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Properties;
+
+import com.anaptecs.jeaf.spi.persistence.annotations.ApplicationManagedConnections;
+import com.anaptecs.jeaf.spi.persistence.base.PerformanceProfile;
+import com.anaptecs.jeaf.spi.persistence.base.PersistenceUnitInfoImpl;
+import com.anaptecs.jeaf.spi.persistence.base.pool.ConnectionPoolSettings;
+import com.anaptecs.jeaf.spi.persistence.base.pool.HikariCPConnectionPoolProvider;
+import com.anaptecs.jeaf.spi.persistence.base.pool.PooledDataSource;
+import com.anaptecs.jeaf.spi.persistence.base.test.persistenceunit.BatchWritePersistenceUnit;
+import com.anaptecs.jeaf.spi.persistence.base.test.persistenceunit.JEAFConnectionPoolPersistenceUnit;
+import com.anaptecs.jeaf.spi.persistence.base.test.persistenceunit.SchemaFingerprintPersistenceUnit;
+import com.anaptecs.jeaf.xfun.api.XFunMessages;
+import com.anaptecs.jeaf.xfun.api.errorhandling.JEAFSystemException;
+import org.junit.jupiter.api.Test;
+
+public class PerformanceProfileTest {
+  @Test
+  public void testProfileNames( ) {
+    assertSame(PerformanceProfile.OLTP, PerformanceProfile.forName("oltp"));
+    assertSame(PerformanceProfile.BATCH_WRITE, PerformanceProfile.forName("batch-write"));
+    assertSame(PerformanceProfile.BATCH_WRITE, PerformanceProfile.forName(" BATCH_WRITE "));
+    assertSame(PerformanceProfile.REPORTING, PerformanceProfile.forName("Reporting"));
+    assertEquals("batch-write", PerformanceProfile.BATCH_WRITE.getProfileName());
+
+    JEAFSystemException lException =
+        assertThrows(JEAFSystemException.class, ( ) -> PerformanceProfile.forName("olap"));
+    assertEquals(XFunMessages.CONSTRAINT_VIOLATION, lException.getErrorCode());
+    assertTrue(lException.getMessage().contains("[oltp, batch-write, reporting]"), lException.getMessage());
+  }
+
+  @Test
+  public void testProfileExpansion( ) {
+    // Explicitly defined properties override the ones of the profile.
+    Properties lProperties = new PersistenceUnitInfoImpl(BatchWritePersistenceUnit.class).getProperties();
+    assertEquals("250", lProperties.getProperty("hibernate.jdbc.batch_size"));
+    assertEquals("true", lProperties.getProperty("hibernate.order_inserts"));
+    assertEquals("true", lProperties.getProperty("hibernate.order_updates"));
+    assertEquals("true", lProperties.getProperty("hibernate.jdbc.batch_versioned_data"));
+    assertEquals("100", lProperties.getProperty("hibernate.jdbc.fetch_size"));
+    for (String lNext : PerformanceProfile.BATCH_WRITE.getProperties().keySet()) {
+      assertTrue(lProperties.containsKey(lNext), lNext);
+    }
+
+    // Hibernate relies on the connection pool to disable auto-commit.
+    assertEquals("true", lProperties.getProperty(ConnectionPoolSettings.PROVIDER_DISABLES_AUTOCOMMIT_PROPERTY));
+    assertEquals("false", lProperties.getProperty("hibernate.connection.autocommit"));
+    assertFalse(PerformanceProfile.BATCH_WRITE.getProperties(false)
+        .containsKey(ConnectionPoolSettings.PROVIDER_DISABLES_AUTOCOMMIT_PROPERTY));
+
+    // Persistence units without profile are not affected.
+    lProperties = new PersistenceUnitInfoImpl(SchemaFingerprintPersistenceUnit.class).getProperties();
+    assertFalse(lProperties.containsKey("hibernate.jdbc.batch_size"));
+  }
+
+  @Test
+  public void testAutoCommitDisabledByPool( ) throws SQLException {
+    Properties lProperties = new Properties();
+    lProperties.setProperty(ConnectionPoolSettings.PROVIDER_DISABLES_AUTOCOMMIT_PROPERTY, "true");
+    ApplicationManagedConnections lConnections =
+        JEAFConnectionPoolPersistenceUnit.class.getAnnotation(ApplicationManagedConnections.class);
+    ConnectionPoolSettings lSettings =
+        new ConnectionPoolSettings("AutoCommitPersistenceUnit", lConnections, lProperties);
+    assertTrue(lSettings.isAutoCommitDisabled());
+
+    // HikariCP is configured through properties.
+    Properties lPoolProperties = new Properties();
+    new HikariCPConnectionPoolProvider().addConnectionPoolProperties(lSettings, lPoolProperties);
+    assertEquals("false", lPoolProperties.getProperty("hibernate.hikari.autoCommit"));
+
+    // Connections of JEAF's pool have auto-commit disabled, even after it was enabled by a previous user.
+    PooledDataSource lDataSource = new PooledDataSource(lSettings);
+    try {
+      lDataSource.start();
+      try (Connection lConnection = lDataSource.getConnection()) {
+        assertFalse(lConnection.getAutoCommit());
+        lConnection.setAutoCommit(true);
+      }
+      try (Connection lConnection = lDataSource.getConnection()) {
+        assertFalse(lConnection.getAutoCommit());
+      }
+    }
+    finally {
+      lDataSource.close();
+    }
+
+    // Without the property the pool does not change auto-commit.
+    Properties lNoPoolProperties = new Properties();
+    new HikariCPConnectionPoolProvider().addConnectionPoolProperties(
+        new ConnectionPoolSettings("AutoCommitPersistenceUnit", lConnections, new Properties()), lNoPoolProperties);
+    assertNull(lNoPoolProperties.getProperty("hibernate.hikari.autoCommit"));
+  }
+}
@@ -0,0 +1,152 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.test;
+
+import static com.anaptecs.jeaf.spi.persistence.base.test.TestProxies.createProxy;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityTransaction;
+import javax.persistence.PersistenceException;
+
+import org.hibernate.engine.spi.EntityEntry;
+import org.hibernate.engine.spi.PersistenceContext;
+import org.hibernate.engine.spi.SessionImplementor;
+
+import com.anaptecs.jeaf.spi.persistence.base.PersistenceContextGuard;
+import org.junit.jupiter.api.Test;
+
+public class PersistenceContextGuardTest {
+  /**
+   * Entity names of the entities within the mocked persistence context.
+   */
+  private final List<String> managedEntities = new ArrayList<>();
+
+  private final List<String> calls = new ArrayList<>();
+
+  @Test
+  public void testGuardConfiguration( ) {
+    EntityManager lEntityManager = this.createEntityManager();
+    assertSame(lEntityManager, PersistenceContextGuard.guard(lEntityManager, Collections.emptyMap()));
+    assertNull(PersistenceContextGuard.getGuard(lEntityManager));
+
+    Map<String, Object> lProperties = new HashMap<>();
+    lProperties.put(PersistenceContextGuard.MAX_ENTITIES_PROPERTY, "0");
+    assertSame(lEntityManager, PersistenceContextGuard.guard(lEntityManager, lProperties));
+    lProperties.put(PersistenceContextGuard.MAX_ENTITIES_PROPERTY, "10");
+    EntityManager lGuarded = PersistenceContextGuard.guard(lEntityManager, lProperties);
+    assertNotNull(PersistenceContextGuard.getGuard(lGuarded));
+    assertTrue(lGuarded.equals(lGuarded));
+    assertTrue(lGuarded.equals(lEntityManager) == false);
+    assertEquals(System.identityHashCode(lGuarded), lGuarded.hashCode());
+    lProperties.put(PersistenceContextGuard.MODE_PROPERTY, "unknown");
+    assertThrows(IllegalArgumentException.class, ( ) -> PersistenceContextGuard.guard(lEntityManager, lProperties));
+  }
+
+  @Test
+  public void testFlushAndClear( ) {
+    Map<String, Object> lProperties = new HashMap<>();
+    lProperties.put(PersistenceContextGuard.MAX_ENTITIES_PROPERTY, 3);
+    lProperties.put(PersistenceContextGuard.MODE_PROPERTY, "flush_clear");
+    EntityManager lEntityManager = PersistenceContextGuard.guard(this.createEntityManager(), lProperties);
+    PersistenceContextGuard lGuard = PersistenceContextGuard.getGuard(lEntityManager);
+
+    for (int i = 0; i < 4; i++) {
+      lEntityManager.persist("Order");
+    }
+    assertEquals(4, managedEntities.size());
+    assertEquals(0, lGuard.getClearCount());
+
+    // Persistence context is only cleared at checkpoints that are marked by the application.
+    assertTrue(lEntityManager.contains("Order"));
+    lEntityManager.find(String.class, "1");
+    assertEquals(5, managedEntities.size());
+    assertEquals(0, lGuard.getClearCount());
+    PersistenceContextGuard.checkpoint(lEntityManager);
+    assertEquals(0, managedEntities.size());
+    assertEquals(1, lGuard.getClearCount());
+    assertEquals("flush", calls.get(calls.size() - 2));
+    assertEquals("clear", calls.get(calls.size() - 1));
+
+    // Checkpoints of entity managers without guard and below the limit have no effect.
+    lEntityManager.persist("Order");
+    PersistenceContextGuard.checkpoint(lEntityManager);
+    assertEquals(1, managedEntities.size());
+    PersistenceContextGuard.checkpoint(this.createEntityManager());
+    assertEquals(1, lGuard.getClearCount());
+  }
+
+  @Test
+  public void testStrictMode( ) {
+    Map<String, Object> lProperties = new HashMap<>();
+    lProperties.put(PersistenceContextGuard.MAX_ENTITIES_PROPERTY, "2");
+    EntityManager lEntityManager = PersistenceContextGuard.guard(this.createEntityManager(), lProperties);
+    lEntityManager.persist("Order");
+    lEntityManager.persist("Item");
+    lEntityManager.persist("Item");
+
+    PersistenceException lException = assertThrows(PersistenceException.class, ( ) -> lEntityManager.persist("Item"));
+    assertTrue(lException.getMessage().contains("Largest entity types: Item=2, Order=1"), lException.getMessage());
+    assertEquals(3, managedEntities.size());
+    assertTrue(calls.contains("clear") == false);
+  }
+
+  private EntityManager createEntityManager( ) {
+    PersistenceContext lPersistenceContext = createProxy(PersistenceContext.class, (pMethod, pArgs) -> {
+      switch (pMethod) {
+        case "getNumberOfManagedEntities":
+          return managedEntities.size();
+        case "reentrantSafeEntityEntries":
+          Map.Entry<?, ?>[] lEntries = new Map.Entry<?, ?>[managedEntities.size()];
+          for (int i = 0; i < lEntries.length; i++) {
+            String lEntityName = managedEntities.get(i);
+            EntityEntry lEntry = createProxy(EntityEntry.class, (pEntryMethod, pEntryArgs) -> lEntityName);
+            lEntries[i] = new AbstractMap.SimpleEntry<>(lEntityName, lEntry);
+          }
+          return lEntries;
+        default:
+          throw new UnsupportedOperationException(pMethod);
+      }
+    });
+    SessionImplementor lSession =
+        createProxy(SessionImplementor.class, (pMethod, pArgs) -> lPersistenceContext);
+    EntityTransaction lTransaction = createProxy(EntityTransaction.class, (pMethod, pArgs) -> true);
+    return createProxy(EntityManager.class, (pMethod, pArgs) -> {
+      calls.add(pMethod);
+      switch (pMethod) {
+        case "unwrap":
+          return lSession;
+        case "getTransaction":
+          return lTransaction;
+        case "persist":
+          managedEntities.add((String) pArgs[0]);
+          return null;
+        case "find":
+          managedEntities.add((String) pArgs[1]);
+          return pArgs[1];
+        case "contains":
+          return managedEntities.contains(pArgs[0]);
+        case "clear":
+          managedEntities.clear();
+          return null;
+        default:
+          return null;
+      }
+    });
+  }
+}
@@ -0,0 +1,88 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import javax.persistence.spi.PersistenceUnitInfo;
+
+import com.anaptecs.jeaf.spi.persistence.base.PersistenceUnitConfiguration;
+import com.anaptecs.jeaf.xfun.api.errorhandling.JEAFSystemException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class PersistenceUnitConfigurationTest {
+  private static final String BASE_PACKAGE = "com/anaptecs/jeaf/spi/persistence/base/test/discovery";
+
+  private static final String INVALID_PACKAGE = "com/anaptecs/jeaf/spi/persistence/base/test/persistenceunit";
+
+  @Test
+  public void testResolveFromConfigurationFile( ) {
+    PersistenceUnitConfiguration lConfiguration = new PersistenceUnitConfiguration();
+    List<PersistenceUnitInfo> lUnits =
+        lConfiguration.resolvePersistenceUnitConfigurations("ValidPersistenceConfig", "META-INF/JEAF/Persistence");
+    assertEquals(3, lUnits.size());
+    Set<String> lNames = this.getNames(lUnits);
+    assertTrue(lNames.contains("JEAFConnectionPoolPersistenceUnit"));
+    assertTrue(lNames.contains("FullFletchedPersistenceUnit"));
+    assertTrue(lNames.contains("IndexedJarPersistenceUnit"));
+  }
+
+  @Test
+  public void testInvalidPersistenceUnits( ) {
+    // Invalid persistence units must not be skipped silently.
+    PersistenceUnitConfiguration lConfiguration = new PersistenceUnitConfiguration();
+    JEAFSystemException lException = assertThrows(JEAFSystemException.class,
+        ( ) -> lConfiguration.resolvePersistenceUnitConfigurations("PersistenceConfig", "META-INF/JEAF/Persistence"));
+    assertTrue(lException.getSuppressed().length > 0);
+  }
+
+  @Test
+  public void testResolveByClasspathScan( @TempDir File pCacheDirectory ) {
+    System.setProperty(PersistenceUnitConfiguration.DISCOVERY_CACHE_DIRECTORY_PROPERTY, pCacheDirectory.getPath());
+    try {
+      // No configuration file exists so the classpath is scanned.
+      PersistenceUnitConfiguration lConfiguration = new PersistenceUnitConfiguration();
+      List<PersistenceUnitInfo> lUnits = lConfiguration.resolvePersistenceUnitConfigurations("Unknown", BASE_PACKAGE);
+      Set<String> lNames = this.getNames(lUnits);
+      assertEquals(1, lUnits.size());
+      assertTrue(lNames.contains("JEAFConnectionPoolPersistenceUnit"));
+
+      // Result of the scan is cached and reused.
+      File[] lCacheFiles = pCacheDirectory.listFiles();
+      assertNotNull(lCacheFiles);
+      assertEquals(1, lCacheFiles.length);
+      assertTrue(lCacheFiles[0].getName().matches(".*_Unknown-[0-9a-f]{64}"), lCacheFiles[0].getName());
+      long lLastModified = lCacheFiles[0].lastModified();
+      List<PersistenceUnitInfo> lCachedUnits =
+          lConfiguration.resolvePersistenceUnitConfigurations("Unknown", BASE_PACKAGE);
+      assertEquals(lNames, this.getNames(lCachedUnits));
+      assertEquals(lLastModified, lCacheFiles[0].lastModified());
+
+      // Invalid persistence units that are found by the scan are reported.
+      assertThrows(JEAFSystemException.class,
+          ( ) -> lConfiguration.resolvePersistenceUnitConfigurations("Unknown", INVALID_PACKAGE));
+
+      // Without base package the classpath is not scanned.
+      assertEquals(0, lConfiguration.resolvePersistenceUnitConfigurations("Unknown", null).size());
+    }
+    finally {
+      System.clearProperty(PersistenceUnitConfiguration.DISCOVERY_CACHE_DIRECTORY_PROPERTY);
+    }
+  }
+
+  private Set<String> getNames( List<PersistenceUnitInfo> pUnits ) {
+    return pUnits.stream().map(PersistenceUnitInfo::getPersistenceUnitName).collect(Collectors.toSet());
+  }
+}
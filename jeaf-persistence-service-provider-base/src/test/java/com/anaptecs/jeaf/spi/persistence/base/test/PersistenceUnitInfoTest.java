@@ -8,30 +8,38 @@ package com.anaptecs.jeaf.spi.persistence.base.test;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
 import java.io.PrintWriter;
+import java.lang.instrument.Instrumentation;
+import java.lang.reflect.Proxy;
 import java.net.URL;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
 import java.util.logging.Logger;
 
 import javax.naming.InitialContext;
 import javax.naming.NamingException;
+import javax.persistence.spi.ClassTransformer;
 import javax.persistence.spi.PersistenceUnitTransactionType;
 import javax.sql.DataSource;
 
 import com.anaptecs.jeaf.spi.persistence.PersistenceServiceProviderMessages;
 import com.anaptecs.jeaf.spi.persistence.annotations.PersistenceUnit;
 import com.anaptecs.jeaf.spi.persistence.base.PersistenceUnitInfoImpl;
+import com.anaptecs.jeaf.spi.persistence.base.enhancement.InstrumentationAgent;
 import com.anaptecs.jeaf.spi.persistence.base.test.persistenceunit.CompletePersistenceUnit;
 import com.anaptecs.jeaf.spi.persistence.base.test.persistenceunit.ConnectionLessPersistenceConfiguration;
 import com.anaptecs.jeaf.spi.persistence.base.test.persistenceunit.EmptyPersistenceUnit;
+import com.anaptecs.jeaf.spi.persistence.base.test.persistenceunit.EntityMappings;
 import com.anaptecs.jeaf.spi.persistence.base.test.persistenceunit.InvalidApplicationManagedConnectionRef;
 import com.anaptecs.jeaf.spi.persistence.base.test.persistenceunit.InvalidConnectionPoolSettings;
 import com.anaptecs.jeaf.spi.persistence.base.test.persistenceunit.InvalidContainerManagedConnectionsRef;
@@ -45,7 +53,7 @@ import com.anaptecs.jeaf.spi.persistence.base.test.persistenceunit.NoDataSourceD
 import com.anaptecs.jeaf.spi.persistence.base.test.persistenceunit.NonJTAPersistenceUnit;
 import com.anaptecs.jeaf.spi.persistence.base.test.persistenceunit.PersistenceUnitMissing;
 import com.anaptecs.jeaf.spi.persistence.base.test.persistenceunit.TooManyDataSourceDefinitions;
-import com.anaptecs.jeaf.xfun.api.checks.AssertionFailedError;
+import com.anaptecs.jeaf.xfun.api.checks.InvalidParameterException;
 import com.anaptecs.jeaf.xfun.api.errorhandling.JEAFSystemException;
 import com.mysql.cj.jdbc.Driver;
 import org.hibernate.jpa.HibernatePersistenceProvider;
@@ -102,21 +110,58 @@ public class PersistenceUnitInfoTest {
 
     assertNull(lPersistenceUnitInfo.getPersistenceUnitRootUrl());
 
-    // Check unsupported handling of transformers
+    // Check handling of transformers
     try {
       lPersistenceUnitInfo.addTransformer(null);
       fail("Exception expected.");
     }
-    catch (AssertionFailedError e) {
-      assertEquals(
-          "Assertion failed. Internal error. Transformers are not supported by this persistence unit implementation.",
-          e.getMessage());
+    catch (InvalidParameterException e) {
+      assertEquals("Check failed. pTransformer must not be NULL.", e.getMessage());
+    }
+    assertEquals(0, lPersistenceUnitInfo.getTransformers().size());
+    ClassTransformer lTransformer = (pLoader, pClassName, pClass, pProtectionDomain, pBuffer) -> null;
+    lPersistenceUnitInfo.addTransformer(lTransformer);
+    assertEquals(1, lPersistenceUnitInfo.getTransformers().size());
+    assertSame(lTransformer, lPersistenceUnitInfo.getTransformers().get(0));
+
+    // With instrumentation transformers are registered once per persistence unit and removed when no longer needed.
+    List<String> lCalls = new ArrayList<>();
+    Instrumentation lInstrumentation = (Instrumentation) Proxy.newProxyInstance(this.getClass().getClassLoader(),
+        new Class<?>[] { Instrumentation.class }, (pProxy, pMethod, pArgs) -> lCalls.add(pMethod.getName()));
+    InstrumentationAgent.agentmain(null, lInstrumentation);
+    try {
+      String lUnitName = lPersistenceUnitInfo.getPersistenceUnitName();
+      lPersistenceUnitInfo.addTransformer(lTransformer);
+      lPersistenceUnitInfo.addTransformer(lTransformer);
+      assertEquals("[addTransformer, removeTransformer, addTransformer]", lCalls.toString());
+      assertEquals(1, InstrumentationAgent.getTransformers(lUnitName).size());
+      lPersistenceUnitInfo.removeTransformers();
+      assertEquals(0, lPersistenceUnitInfo.getTransformers().size());
+      assertEquals(0, InstrumentationAgent.getTransformers(lUnitName).size());
+      assertEquals("[addTransformer, removeTransformer, addTransformer, removeTransformer]", lCalls.toString());
+    }
+    finally {
+      InstrumentationAgent.agentmain(null, null);
     }
 
     // Check additional operations
     assertEquals("2.1", lPersistenceUnitInfo.getPersistenceXMLSchemaVersion());
     assertNotNull(lPersistenceUnitInfo.getClassLoader());
-    assertNull(lPersistenceUnitInfo.getNewTempClassLoader());
+
+    // Temporary class loader defines application classes again but shares classes of the Java platform.
+    ClassLoader lTempClassLoader = lPersistenceUnitInfo.getNewTempClassLoader();
+    assertNotNull(lTempClassLoader);
+    assertNotSame(lTempClassLoader, lPersistenceUnitInfo.getNewTempClassLoader());
+    try {
+      Class<?> lTempClass = lTempClassLoader.loadClass(EntityMappings.class.getName());
+      assertEquals(EntityMappings.class.getName(), lTempClass.getName());
+      assertNotSame(EntityMappings.class, lTempClass);
+      assertSame(lTempClassLoader, lTempClass.getClassLoader());
+      assertSame(String.class, lTempClassLoader.loadClass(String.class.getName()));
+    }
+    catch (ClassNotFoundException e) {
+      fail(e.getMessage());
+    }
 
     // Test cases with advanced core configurations
     lAnnotation = CompletePersistenceUnit.class.getAnnotation(PersistenceUnit.class);
@@ -0,0 +1,211 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.test;
+
+import static com.anaptecs.jeaf.spi.persistence.base.test.TestProxies.createProxy;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.TypedQuery;
+
+import org.hibernate.SessionEventListener;
+import org.hibernate.cache.spi.CacheImplementor;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.engine.transaction.spi.TransactionObserver;
+import org.hibernate.jpa.HibernatePersistenceProvider;
+import org.hibernate.resource.transaction.spi.TransactionCoordinator;
+import org.hibernate.service.spi.ServiceRegistryImplementor;
+
+import com.anaptecs.jeaf.spi.persistence.base.PersistenceUnitInfoImpl;
+import com.anaptecs.jeaf.spi.persistence.base.management.PersistenceUnitManagement;
+import com.anaptecs.jeaf.spi.persistence.base.management.PersistenceUnitRegistry;
+import com.anaptecs.jeaf.spi.persistence.base.query.QueryResultCache;
+import com.anaptecs.jeaf.spi.persistence.base.test.persistenceunit.CachedEntity;
+import com.anaptecs.jeaf.spi.persistence.base.test.persistenceunit.MonitoredPersistenceUnit;
+import org.junit.jupiter.api.Test;
+
+public class PersistenceUnitManagementTest {
+  private static final String UNIT = "ManagedPersistenceUnit";
+
+  private static final String MONITORED_UNIT = "MonitoredPersistenceUnit";
+
+  private final List<String> calls = new ArrayList<>();
+
+  private final List<Object> listeners = new ArrayList<>();
+
+  private boolean open = true;
+
+  @Test
+  public void testManagement( ) throws Exception {
+    EntityManagerFactory lFactory = this.createFactory();
+    PersistenceUnitRegistry.monitor(UNIT, this.createEntityManager());
+    assertTrue(listeners.isEmpty());
+    PersistenceUnitManagement lManagement = PersistenceUnitRegistry.register(UNIT, lFactory);
+    assertSame(lManagement, PersistenceUnitRegistry.getManagement(UNIT));
+    assertSame(lFactory, lManagement.getEntityManagerFactory());
+    assertTrue(lManagement.isFactoryOpen());
+    assertEquals("******", lManagement.getProperties().get("hibernate.connection.password"));
+    assertEquals("true", lManagement.getProperties().get("hibernate.show_sql"));
+    assertEquals(-1, lManagement.getPoolUtilization());
+
+    // Two transactions of one entity manager.
+    PersistenceUnitRegistry.monitor(UNIT, this.createEntityManager());
+    assertEquals(2, listeners.size());
+    assertEquals(1, lManagement.getOpenEntityManagers());
+    TransactionObserver lObserver = (TransactionObserver) listeners.get(0);
+    lObserver.afterBegin();
+    lObserver.beforeCompletion();
+    lObserver.afterCompletion(true, false);
+    lObserver.afterBegin();
+    lObserver.afterCompletion(false, false);
+    SessionEventListener lListener = (SessionEventListener) listeners.get(1);
+    lListener.end();
+    lListener.end();
+    assertEquals(0, lManagement.getOpenEntityManagers());
+    assertEquals(2, lManagement.getTransactionsBegun());
+    assertEquals(1, lManagement.getCommitLatency().getCount());
+    assertTrue(lManagement.getCommitRate() > 0);
+    assertTrue(lManagement.getRollbackRate() > 0);
+    assertTrue(lManagement.getCommitLatencyMax() >= lManagement.getCommitLatency50thPercentile());
+
+    // Access via JMX
+    MBeanServer lServer = ManagementFactory.getPlatformMBeanServer();
+    ObjectName lName = PersistenceUnitRegistry.getObjectName(UNIT);
+    assertEquals("com.anaptecs.jeaf.persistence:type=PersistenceUnit,name=\"" + UNIT + "\"", lName.toString());
+    assertEquals(1L, lServer.getAttribute(lName, "TransactionsCommitted"));
+    assertEquals(1L, lServer.getAttribute(lName, "TransactionsRolledBack"));
+    lServer.invoke(lName, "clearCaches", null, null);
+    assertEquals("[evictAllRegions]", calls.toString());
+    lServer.invoke(lName, "evictFactory", null, null);
+    assertFalse(lManagement.isFactoryOpen());
+    assertTrue(lManagement.getProperties().isEmpty());
+    assertThrows(IllegalStateException.class, lManagement::clearCaches);
+
+    // Statistics are kept if the factory is created again.
+    open = true;
+    assertSame(lManagement, PersistenceUnitRegistry.register(UNIT, lFactory));
+    assertEquals(1, lManagement.getTransactionsCommitted());
+
+    PersistenceUnitRegistry.unregister(UNIT);
+    assertNull(PersistenceUnitRegistry.getManagement(UNIT));
+    assertFalse(lServer.isRegistered(lName));
+  }
+
+  @Test
+  public void testManagementWithDatabase( ) throws Exception {
+    EntityManagerFactory lFactory = new HibernatePersistenceProvider().createContainerEntityManagerFactory(
+        new PersistenceUnitInfoImpl(MonitoredPersistenceUnit.class), Collections.emptyMap());
+    try {
+      PersistenceUnitManagement lManagement = PersistenceUnitRegistry.register(MONITORED_UNIT, lFactory);
+      MBeanServer lServer = ManagementFactory.getPlatformMBeanServer();
+      ObjectName lName = PersistenceUnitRegistry.getObjectName(MONITORED_UNIT);
+
+      // Commit and rollback of a monitored entity manager are counted.
+      EntityManager lEntityManager = lFactory.createEntityManager();
+      PersistenceUnitRegistry.monitor(MONITORED_UNIT, lEntityManager);
+      assertEquals(1, lServer.getAttribute(lName, "OpenEntityManagers"));
+      lEntityManager.getTransaction().begin();
+      lEntityManager.persist(new CachedEntity(1, "A"));
+      lEntityManager.getTransaction().commit();
+      lEntityManager.getTransaction().begin();
+      lEntityManager.persist(new CachedEntity(2, "B"));
+      lEntityManager.getTransaction().rollback();
+      lEntityManager.close();
+      assertEquals(0, lServer.getAttribute(lName, "OpenEntityManagers"));
+      assertEquals(2L, lServer.getAttribute(lName, "TransactionsBegun"));
+      assertEquals(1L, lServer.getAttribute(lName, "TransactionsCommitted"));
+      assertEquals(1L, lServer.getAttribute(lName, "TransactionsRolledBack"));
+      assertEquals(1, lManagement.getCommitLatency().getCount());
+      assertTrue((Double) lServer.getAttribute(lName, "CommitRate") > 0);
+
+      // Clearing the caches also clears the query result cache of the persistence unit.
+      QueryResultCache lCache = QueryResultCache.getCache(lFactory);
+      lEntityManager = lFactory.createEntityManager();
+      TypedQuery<CachedEntity> lQuery = lEntityManager.createQuery("select e from CachedEntity e", CachedEntity.class);
+      lQuery.setHint(QueryResultCache.CACHEABLE_HINT, Boolean.TRUE);
+      assertEquals(1, lCache.getResultList(lEntityManager, lQuery).size());
+      lEntityManager.close();
+      assertEquals(1, lCache.size());
+      lServer.invoke(lName, "clearCaches", null, null);
+      assertEquals(0, lCache.size());
+
+      // Evicting the factory removes the query result cache.
+      lServer.invoke(lName, "evictFactory", null, null);
+      assertFalse(lFactory.isOpen());
+      assertNull(QueryResultCache.getCache(MONITORED_UNIT));
+    }
+    finally {
+      PersistenceUnitRegistry.unregister(MONITORED_UNIT);
+      QueryResultCache.removeCache(MONITORED_UNIT);
+      if (lFactory.isOpen() == true) {
+        lFactory.close();
+      }
+    }
+  }
+
+  private EntityManagerFactory createFactory( ) {
+    Map<String, Object> lProperties = new HashMap<>();
+    lProperties.put("hibernate.connection.password", "secret");
+    lProperties.put("hibernate.show_sql", true);
+    CacheImplementor lCache = createProxy(CacheImplementor.class, (pMethod, pArgs) -> {
+      calls.add(pMethod);
+      return null;
+    });
+    ServiceRegistryImplementor lServiceRegistry =
+        createProxy(ServiceRegistryImplementor.class, (pMethod, pArgs) -> null);
+    Object[] lFactory = new Object[1];
+    lFactory[0] = createProxy(SessionFactoryImplementor.class, (pMethod, pArgs) -> {
+      switch (pMethod) {
+        case "getProperties":
+          return lProperties;
+        case "isOpen":
+          return open;
+        case "close":
+          open = false;
+          return null;
+        case "unwrap":
+          return lFactory[0];
+        case "getCache":
+          return lCache;
+        case "getServiceRegistry":
+          return lServiceRegistry;
+        default:
+          return null;
+      }
+    });
+    return (EntityManagerFactory) lFactory[0];
+  }
+
+  private EntityManager createEntityManager( ) {
+    TransactionCoordinator lCoordinator = createProxy(TransactionCoordinator.class, (pMethod, pArgs) -> {
+      listeners.add(pArgs[0]);
+      return null;
+    });
+    SessionImplementor lSession = createProxy(SessionImplementor.class, (pMethod, pArgs) -> {
+      if ("addEventListeners".equals(pMethod)) {
+        listeners.add(((Object[]) pArgs[0])[0]);
+      }
+      return "getTransactionCoordinator".equals(pMethod) ? lCoordinator : null;
+    });
+    return createProxy(EntityManager.class, (pMethod, pArgs) -> lSession);
+  }
+}
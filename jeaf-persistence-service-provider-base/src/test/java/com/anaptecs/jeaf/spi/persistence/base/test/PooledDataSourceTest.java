@@ -0,0 +1,369 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.sql.DataSource;
+
+import com.anaptecs.jeaf.spi.persistence.base.PersistenceUnitInfoImpl;
+import com.anaptecs.jeaf.spi.persistence.base.pool.ConnectionPoolMetrics;
+import com.anaptecs.jeaf.spi.persistence.base.pool.ConnectionPoolRegistry;
+import com.anaptecs.jeaf.spi.persistence.base.pool.ConnectionPriority;
+import com.anaptecs.jeaf.spi.persistence.base.pool.ConnectionPriorityContext;
+import com.anaptecs.jeaf.spi.persistence.base.pool.ConnectionPriorityListener;
+import com.anaptecs.jeaf.spi.persistence.base.pool.JEAFConnectionPoolProvider;
+import com.anaptecs.jeaf.spi.persistence.base.pool.PooledDataSource;
+import com.anaptecs.jeaf.spi.persistence.base.pool.PriorityClass;
+import com.anaptecs.jeaf.spi.persistence.base.pool.TimeHistogram;
+import com.anaptecs.jeaf.spi.persistence.base.test.persistenceunit.JEAFConnectionPoolPersistenceUnit;
+import com.anaptecs.jeaf.spi.persistence.base.test.persistenceunit.MyJUnitPersistenceUnit;
+import com.anaptecs.jeaf.spi.persistence.base.test.persistenceunit.PrewarmedConnectionPoolPersistenceUnit;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class PooledDataSourceTest {
+  private static PooledDataSource dataSource;
+
+  @BeforeAll
+  public static void createPool( ) throws SQLException {
+    PersistenceUnitInfoImpl lPersistenceUnitInfo = new PersistenceUnitInfoImpl(JEAFConnectionPoolPersistenceUnit.class);
+    dataSource = (PooledDataSource) lPersistenceUnitInfo.getNonJtaDataSource();
+
+    try (Connection lConnection = dataSource.getConnection(); Statement lStatement = lConnection.createStatement()) {
+      lStatement.execute("CREATE TABLE IF NOT EXISTS POOL_TEST (ID INT PRIMARY KEY, NAME VARCHAR(64))");
+    }
+  }
+
+  @AfterAll
+  public static void closePool( ) {
+    dataSource.close();
+  }
+
+  @Test
+  @Order(10)
+  public void testPersistenceUnitDataSource( ) {
+    PersistenceUnitInfoImpl lPersistenceUnitInfo = new PersistenceUnitInfoImpl(JEAFConnectionPoolPersistenceUnit.class);
+    assertTrue(lPersistenceUnitInfo.getConnectionPoolProvider() instanceof JEAFConnectionPoolProvider);
+    assertSame(dataSource, ConnectionPoolRegistry.getConnectionPool("JEAFConnectionPoolPersistenceUnit"));
+
+    // JEAF pool does not require any pool properties.
+    Properties lProperties = lPersistenceUnitInfo.getProperties();
+    assertNull(lProperties.get("hibernate.c3p0.min_size"));
+    assertNull(lProperties.get("hibernate.connection.provider_class"));
+
+    // Data source is only created once per persistence unit info.
+    DataSource lDataSource = lPersistenceUnitInfo.getNonJtaDataSource();
+    assertTrue(lDataSource instanceof PooledDataSource);
+    assertSame(lDataSource, lPersistenceUnitInfo.getNonJtaDataSource());
+    assertSame(lDataSource, ConnectionPoolRegistry.getConnectionPool("JEAFConnectionPoolPersistenceUnit"));
+
+    // Open pool of the same persistence unit is reused.
+    assertSame(dataSource, lDataSource);
+    assertFalse(dataSource.isClosed());
+
+    // Persistence units that use other providers do not get a data source.
+    assertNull(new PersistenceUnitInfoImpl(MyJUnitPersistenceUnit.class).getNonJtaDataSource());
+  }
+
+  @Test
+  @Order(20)
+  public void testConnectionReuse( ) throws SQLException {
+    // Connection that was returned by a thread is handed out to it again.
+    Connection lPhysical;
+    try (Connection lConnection = dataSource.getConnection()) {
+      lPhysical = lConnection.unwrap(Connection.class);
+      assertNotSame(lPhysical, lConnection);
+    }
+    try (Connection lConnection = dataSource.getConnection()) {
+      assertSame(lPhysical, lConnection.unwrap(Connection.class));
+      assertEquals(1, dataSource.getActiveConnections());
+    }
+    assertEquals(0, dataSource.getActiveConnections());
+
+    // Closed logical connections can not be used any longer.
+    Connection lConnection = dataSource.getConnection();
+    lConnection.close();
+    lConnection.close();
+    assertTrue(lConnection.isClosed());
+    try {
+      lConnection.createStatement();
+      fail("Exception expected.");
+    }
+    catch (SQLException e) {
+      // Nothing to do.
+    }
+  }
+
+  @Test
+  @Order(30)
+  public void testStatementCache( ) throws SQLException {
+    String lSQL = "SELECT COUNT(*) FROM POOL_TEST WHERE ID > ?";
+    PreparedStatement lPhysical;
+    try (Connection lConnection = dataSource.getConnection()) {
+      PreparedStatement lStatement = lConnection.prepareStatement(lSQL);
+      lPhysical = lStatement.unwrap(PreparedStatement.class);
+      assertSame(lConnection, lStatement.getConnection());
+      lStatement.setInt(1, 0);
+      lStatement.setMaxRows(1);
+      lStatement.setQueryTimeout(7);
+      try (ResultSet lResultSet = lStatement.executeQuery()) {
+        assertTrue(lResultSet.next());
+      }
+      lStatement.close();
+      assertTrue(lStatement.isClosed());
+      assertFalse(lPhysical.isClosed());
+    }
+
+    // Cached statement is reused by the next user of the physical connection.
+    try (Connection lConnection = dataSource.getConnection()) {
+      try (PreparedStatement lStatement = lConnection.prepareStatement(lSQL)) {
+        assertSame(lPhysical, lStatement.unwrap(PreparedStatement.class));
+
+        // Limits of the previous user are reset.
+        assertEquals(0, lStatement.getMaxRows());
+        assertEquals(0, lStatement.getQueryTimeout());
+
+        // Statements that are in use are never shared.
+        try (PreparedStatement lSecond = lConnection.prepareStatement(lSQL)) {
+          assertNotSame(lPhysical, lSecond.unwrap(PreparedStatement.class));
+        }
+      }
+    }
+  }
+
+  @Test
+  @Order(40)
+  public void testConnectionReset( ) throws SQLException {
+    // Pending work is rolled back and auto commit is restored when the connection is returned.
+    try (Connection lConnection = dataSource.getConnection()) {
+      lConnection.setAutoCommit(false);
+      Statement lStatement = lConnection.createStatement();
+      lStatement.executeUpdate("INSERT INTO POOL_TEST VALUES (1, 'Rollback')");
+    }
+    try (Connection lConnection = dataSource.getConnection()) {
+      assertTrue(lConnection.getAutoCommit());
+      try (Statement lStatement = lConnection.createStatement();
+          ResultSet lResultSet = lStatement.executeQuery("SELECT COUNT(*) FROM POOL_TEST")) {
+        assertTrue(lResultSet.next());
+        assertEquals(0, lResultSet.getInt(1));
+      }
+    }
+  }
+
+  @Test
+  @Order(50)
+  public void testPoolExhaustion( ) throws Exception {
+    Connection lFirst = dataSource.getConnection();
+    Connection lSecond = dataSource.getConnection();
+    Connection lThird = dataSource.getConnection();
+    assertEquals(3, dataSource.getTotalConnections());
+    assertEquals(3, dataSource.getActiveConnections());
+
+    // Pool is exhausted so we run into the checkout timeout.
+    long lStart = System.nanoTime();
+    try {
+      dataSource.getConnection();
+      fail("Exception expected.");
+    }
+    catch (SQLTransientConnectionException e) {
+      assertTrue(System.nanoTime() - lStart >= TimeUnit.MILLISECONDS.toNanos(900));
+    }
+
+    // Returned connection is handed over to a waiting thread.
+    ExecutorService lExecutor = Executors.newSingleThreadExecutor();
+    try {
+      CountDownLatch lStarted = new CountDownLatch(1);
+      Future<Connection> lFuture = lExecutor.submit(( ) -> {
+        lStarted.countDown();
+        try (Connection lConnection = dataSource.getConnection()) {
+          return lConnection.unwrap(Connection.class);
+        }
+      });
+      lStarted.await();
+      Connection lPhysical = lFirst.unwrap(Connection.class);
+      lFirst.close();
+      assertSame(lPhysical, lFuture.get(5, TimeUnit.SECONDS));
+    }
+    finally {
+      lExecutor.shutdown();
+    }
+    lSecond.close();
+    lThird.close();
+    assertEquals(0, dataSource.getActiveConnections());
+    assertEquals(3, dataSource.getIdleConnections());
+  }
+
+  @Test
+  @Order(55)
+  public void testPoolMetrics( ) throws Exception {
+    ConnectionPoolMetrics lMetrics = dataSource.getMetrics();
+    long lAcquired = lMetrics.getConnectionsAcquired();
+    long lHoldCount = lMetrics.getConnectionHoldTime().getCount();
+    assertEquals(1, lMetrics.getConnectionTimeouts());
+    assertTrue(lMetrics.getConnectionsCreated() >= 3);
+    assertEquals(lAcquired + 1, lMetrics.getAcquireWaitTime().getCount());
+
+    try (Connection lConnection = dataSource.getConnection()) {
+      Thread.sleep(20);
+      assertFalse(lConnection.isClosed());
+      assertEquals(1, lMetrics.getActiveConnections());
+    }
+    assertEquals(lAcquired + 1, lMetrics.getConnectionsAcquired());
+    TimeHistogram lHoldTime = lMetrics.getConnectionHoldTime();
+    assertEquals(lHoldCount + 1, lHoldTime.getCount());
+    assertTrue(lHoldTime.getMax() >= TimeUnit.MILLISECONDS.toNanos(20));
+    assertTrue(lHoldTime.getPercentile(100) <= lHoldTime.getMax());
+    assertTrue(lHoldTime.getPercentile(100) > 0);
+
+    // Metrics are also available via JMX.
+    MBeanServer lServer = ManagementFactory.getPlatformMBeanServer();
+    ObjectName lName = ConnectionPoolRegistry.getObjectName("JEAFConnectionPoolPersistenceUnit");
+    assertEquals("com.anaptecs.jeaf.persistence:type=ConnectionPool,name=\"JEAFConnectionPoolPersistenceUnit\"",
+        lName.toString());
+    assertEquals(3, lServer.getAttribute(lName, "MaxSize"));
+    assertEquals(3, lServer.getAttribute(lName, "TotalConnections"));
+    assertEquals(0, lServer.getAttribute(lName, "ActiveConnections"));
+    assertEquals(1L, lServer.getAttribute(lName, "ConnectionTimeouts"));
+    assertTrue((Double) lServer.getAttribute(lName, "ConnectionHoldTimeMax") >= 20);
+  }
+
+  @Test
+  @Order(58)
+  public void testPriorityClassBulkhead( ) throws Exception {
+    assertEquals(2, dataSource.getBulkheadLimit(PriorityClass.BATCH));
+    assertEquals(3, dataSource.getBulkheadLimit(PriorityClass.INTERACTIVE));
+    assertEquals(PriorityClass.BATCH, ConnectionPriorityContext.resolvePriorityClass(BatchComponent.class));
+    assertEquals(PriorityClass.INTERACTIVE, ConnectionPriorityContext.resolvePriorityClass(Object.class));
+
+    // Batch work may only use 2 of the 3 connections.
+    PriorityClass lPrevious = ConnectionPriorityContext.setPriorityClass(PriorityClass.BATCH);
+    Connection lFirstBatch;
+    Connection lSecondBatch;
+    try {
+      lFirstBatch = dataSource.getConnection();
+      lSecondBatch = dataSource.getConnection();
+      assertEquals(2, dataSource.getBulkheadUsage(PriorityClass.BATCH));
+      try {
+        dataSource.getConnection();
+        fail("Exception expected.");
+      }
+      catch (SQLTransientConnectionException e) {
+        assertTrue(e.getMessage().contains("priorityClass=BATCH"), e.getMessage());
+      }
+    }
+    finally {
+      ConnectionPriorityContext.setPriorityClass(lPrevious);
+    }
+    assertEquals(PriorityClass.INTERACTIVE, ConnectionPriorityContext.getPriorityClass());
+
+    // Reserved connection is still available for interactive work.
+    try (Connection lInteractive = dataSource.getConnection()) {
+      assertFalse(lInteractive.isClosed());
+      assertEquals(3, dataSource.getActiveConnections());
+      assertEquals(-1, dataSource.getBulkheadUsage(PriorityClass.INTERACTIVE));
+    }
+
+    // Permits are released when batch connections are closed.
+    lFirstBatch.close();
+    assertEquals(1, dataSource.getBulkheadUsage(PriorityClass.BATCH));
+    lSecondBatch.close();
+    assertEquals(0, dataSource.getBulkheadUsage(PriorityClass.BATCH));
+    assertEquals(0, dataSource.getActiveConnections());
+
+    // Sessions apply their priority class whenever they acquire a connection.
+    ConnectionPriorityListener lListener = new ConnectionPriorityListener(PriorityClass.BATCH);
+    lListener.jdbcConnectionAcquisitionStart();
+    Connection lLazy = dataSource.getConnection();
+    lListener.jdbcConnectionAcquisitionEnd();
+    assertEquals(PriorityClass.INTERACTIVE, ConnectionPriorityContext.getPriorityClass());
+    assertEquals(1, dataSource.getBulkheadUsage(PriorityClass.BATCH));
+    lLazy.close();
+    assertEquals(0, dataSource.getBulkheadUsage(PriorityClass.BATCH));
+  }
+
+  @ConnectionPriority(PriorityClass.BATCH)
+  static class BatchComponent {
+  }
+
+  @Test
+  @Order(60)
+  public void testClosePool( ) throws SQLException {
+    Connection lConnection = dataSource.getConnection();
+    dataSource.close();
+    assertTrue(dataSource.isClosed());
+    assertNull(ConnectionPoolRegistry.getConnectionPool("JEAFConnectionPoolPersistenceUnit"));
+    assertFalse(ManagementFactory.getPlatformMBeanServer()
+        .isRegistered(ConnectionPoolRegistry.getObjectName("JEAFConnectionPoolPersistenceUnit")));
+
+    // Connections that are still in use are closed when they are returned.
+    Connection lPhysical = lConnection.unwrap(Connection.class);
+    lConnection.close();
+    assertTrue(lPhysical.isClosed());
+    assertEquals(0, dataSource.getTotalConnections());
+    try {
+      dataSource.getConnection();
+      fail("Exception expected.");
+    }
+    catch (SQLException e) {
+      // Nothing to do.
+    }
+  }
+
+  @Test
+  @Order(70)
+  public void testPrewarming( ) throws SQLException {
+    // Pool without pre-warming is filled in the background.
+    assertEquals(-1, dataSource.getMetrics().getPrewarmTime());
+
+    // Minimum number of connections is available as soon as the pool is created.
+    PersistenceUnitInfoImpl lPersistenceUnitInfo =
+        new PersistenceUnitInfoImpl(PrewarmedConnectionPoolPersistenceUnit.class);
+    PooledDataSource lDataSource = (PooledDataSource) lPersistenceUnitInfo.getNonJtaDataSource();
+    try {
+      assertEquals(4, lDataSource.getTotalConnections());
+      assertEquals(4, lDataSource.getIdleConnections());
+      assertEquals(4, lDataSource.getMetrics().getPrewarmedConnections());
+      assertTrue(lDataSource.getMetrics().getPrewarmTime() >= 0);
+
+      // Pool is already complete so nothing is left to pre-warm.
+      assertEquals(0, lDataSource.prewarm(1000));
+      try (Connection lConnection = lDataSource.getConnection()) {
+        assertTrue(lConnection.isValid(1));
+      }
+    }
+    finally {
+      lDataSource.close();
+    }
+  }
+}
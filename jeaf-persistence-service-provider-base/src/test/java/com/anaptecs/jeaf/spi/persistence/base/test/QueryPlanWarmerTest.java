@@ -0,0 +1,137 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.persistence.Entity;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Id;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
+import javax.persistence.PersistenceException;
+
+import com.anaptecs.jeaf.spi.persistence.base.PersistenceUnitInfoImpl;
+import com.anaptecs.jeaf.spi.persistence.base.query.QueryPlanWarmer;
+import com.anaptecs.jeaf.spi.persistence.base.test.persistenceunit.BatchWritePersistenceUnit;
+import com.anaptecs.jeaf.spi.persistence.base.test.persistenceunit.CachedEntity;
+import com.anaptecs.jeaf.spi.persistence.base.test.persistenceunit.QueryPlanWarmerPersistenceUnit;
+import com.anaptecs.jeaf.spi.persistence.base.test.persistenceunit.SecondLevelCachePersistenceUnit;
+import org.hibernate.jpa.HibernatePersistenceProvider;
+import org.junit.jupiter.api.Test;
+
+public class QueryPlanWarmerTest {
+  @Test
+  public void testNamedQueries( ) {
+    Map<String, String> lQueries =
+        QueryPlanWarmer.getNamedQueries(Arrays.asList(QueriedEntity.class, CachedEntity.class, String.class));
+    assertEquals(3, lQueries.size());
+    assertEquals("SELECT e FROM QueriedEntity e WHERE e.name = :name", lQueries.get("QueriedEntity.byName"));
+    assertEquals("SELECT e FROM QueriedEntity e", lQueries.get("QueriedEntity.all"));
+    assertEquals("SELECT COUNT(e) FROM QueriedEntity e", lQueries.get("QueriedEntity.count"));
+  }
+
+  @Test
+  public void testParallelCompilation( ) {
+    Set<String> lCompiled = ConcurrentHashMap.newKeySet();
+    Set<String> lThreads = ConcurrentHashMap.newKeySet();
+    QueryPlanWarmer lWarmer = new QueryPlanWarmer(pQuery -> {
+      lThreads.add(Thread.currentThread().getName());
+      if (pQuery.contains("invalid")) {
+        throw new IllegalArgumentException("Unable to parse " + pQuery);
+      }
+      lCompiled.add(pQuery);
+    }, 4);
+
+    Map<String, RuntimeException> lFailures =
+        lWarmer.compile(Arrays.asList("SELECT a FROM A a", "invalid 1", "SELECT b FROM B b", "invalid 2",
+            "SELECT a FROM A a"));
+    assertEquals(2, lCompiled.size());
+    assertEquals(Arrays.asList("invalid 1", "invalid 2"), new ArrayList<>(lFailures.keySet()));
+    assertTrue(lFailures.get("invalid 1") instanceof IllegalArgumentException);
+    assertTrue(lThreads.stream().allMatch(pName -> pName.startsWith("JEAF-Query-Precompilation-")));
+    assertTrue(lWarmer.compile(Collections.emptyList()).isEmpty());
+  }
+
+  @Test
+  public void testQueryList( ) throws IOException {
+    Path lFile = Files.createTempFile("jeaf-queries", ".jpql");
+    try {
+      Files.write(lFile, Arrays.asList("# Recorded queries", "", "  SELECT a FROM A a  ", "SELECT b FROM B b"),
+          StandardCharsets.UTF_8);
+      assertEquals(Arrays.asList("SELECT a FROM A a", "SELECT b FROM B b"),
+          QueryPlanWarmer.readQueryList(lFile.toString()));
+    }
+    finally {
+      Files.delete(lFile);
+    }
+    assertTrue(QueryPlanWarmer.readQueryList("does/not/exist.jpql").isEmpty());
+  }
+
+  @Test
+  public void testStartupCheck( ) {
+    // Hibernate's check of named queries is only switched off where the query plan cache is warmed up.
+    Properties lProperties = new PersistenceUnitInfoImpl(SecondLevelCachePersistenceUnit.class).getProperties();
+    assertNull(lProperties.getProperty("hibernate.query.startup_check"));
+    QueryPlanWarmer.configure(lProperties);
+    assertEquals("false", lProperties.getProperty("hibernate.query.startup_check"));
+    lProperties = new PersistenceUnitInfoImpl(BatchWritePersistenceUnit.class).getProperties();
+    QueryPlanWarmer.configure(lProperties);
+    assertNull(lProperties.getProperty("hibernate.query.startup_check"));
+  }
+
+  @Test
+  public void testWarmUpChecksMappingFiles( ) {
+    // Invalid named query from the mapping file is detected by Hibernate if the startup check is active.
+    HibernatePersistenceProvider lProvider = new HibernatePersistenceProvider();
+    PersistenceUnitInfoImpl lInfo = new PersistenceUnitInfoImpl(QueryPlanWarmerPersistenceUnit.class);
+    assertThrows(PersistenceException.class,
+        ( ) -> lProvider.createContainerEntityManagerFactory(lInfo, Collections.emptyMap()));
+
+    // Otherwise the warm-up has to detect it.
+    Map<Object, Object> lProperties = new HashMap<>();
+    lProperties.put(QueryPlanWarmer.PRECOMPILATION_PROPERTY, "true");
+    QueryPlanWarmer.configure(lProperties);
+    EntityManagerFactory lFactory = lProvider.createContainerEntityManagerFactory(lInfo, lProperties);
+    try {
+      PersistenceException lException = assertThrows(PersistenceException.class,
+          ( ) -> QueryPlanWarmer.warmUp(lFactory, "QueryPlanWarmerPersistenceUnit"));
+      assertTrue(lException.getMessage().contains("CachedEntity.invalid"), lException.getMessage());
+      assertTrue(lException.getMessage().contains("CachedEntity.byName") == false, lException.getMessage());
+    }
+    finally {
+      lFactory.close();
+    }
+  }
+}
+
+@Entity
+@NamedQueries({
+    @NamedQuery(name = "QueriedEntity.byName", query = "SELECT e FROM QueriedEntity e WHERE e.name = :name"),
+    @NamedQuery(name = "QueriedEntity.all", query = "SELECT e FROM QueriedEntity e") })
+@NamedQuery(name = "QueriedEntity.count", query = "SELECT COUNT(e) FROM QueriedEntity e")
+class QueriedEntity {
+  @Id
+  private long id;
+
+  private String name;
+}
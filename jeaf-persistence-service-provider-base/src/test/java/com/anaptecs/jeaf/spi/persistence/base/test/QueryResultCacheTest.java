@@ -0,0 +1,248 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.TypedQuery;
+
+import org.hibernate.Transaction;
+import org.hibernate.jpa.HibernatePersistenceProvider;
+import org.hibernate.resource.transaction.spi.TransactionStatus;
+
+import com.anaptecs.jeaf.spi.persistence.base.PersistenceUnitInfoImpl;
+import com.anaptecs.jeaf.spi.persistence.base.query.QueryCacheInterceptor;
+import com.anaptecs.jeaf.spi.persistence.base.query.QueryResultCache;
+import com.anaptecs.jeaf.spi.persistence.base.test.persistenceunit.CachedEntity;
+import com.anaptecs.jeaf.spi.persistence.base.test.persistenceunit.QueryCachePersistenceUnit;
+import org.junit.jupiter.api.Test;
+
+public class QueryResultCacheTest {
+  private static final String UNIT_NAME = "QueryCachePersistenceUnit";
+
+  private static final String ENTITY_QUERY = "select e from CachedEntity e where e.id <= :max order by e.id";
+
+  @Test
+  public void testCachedQueries( ) {
+    EntityManagerFactory lFactory = this.bootstrap();
+    try {
+      QueryResultCache lCache = QueryResultCache.getCache(lFactory);
+      assertEquals(UNIT_NAME, lCache.getPersistenceUnitName());
+      assertSame(lCache, QueryResultCache.getCache(UNIT_NAME));
+
+      // Queries without hint are never cached.
+      EntityManager lEntityManager = lFactory.createEntityManager();
+      TypedQuery<CachedEntity> lQuery = lEntityManager.createQuery(ENTITY_QUERY, CachedEntity.class);
+      lCache.getResultList(lEntityManager, lQuery.setParameter("max", 2L));
+      assertEquals(0, lCache.size());
+
+      // Cacheable queries are only executed once per parameter value. Cached entities are loaded by every entity
+      // manager itself so they are never shared.
+      List<CachedEntity> lResult = lCache.getResultList(lEntityManager, this.createQuery(lEntityManager, 2));
+      assertEquals(Arrays.asList("A", "B"), this.getNames(lResult));
+      assertEquals(1, lCache.getMissCount());
+      EntityManager lOtherEntityManager = lFactory.createEntityManager();
+      List<CachedEntity> lCachedResult =
+          lCache.getResultList(lOtherEntityManager, this.createQuery(lOtherEntityManager, 2));
+      assertEquals(1, lCache.getHitCount());
+      assertEquals(Arrays.asList("A", "B"), this.getNames(lCachedResult));
+      assertNotSame(lResult.get(0), lCachedResult.get(0));
+      assertTrue(lOtherEntityManager.contains(lCachedResult.get(0)));
+      assertThrows(UnsupportedOperationException.class, ( ) -> lCachedResult.add(new CachedEntity(9, "X")));
+      lCache.getResultList(lOtherEntityManager, this.createQuery(lOtherEntityManager, 1));
+      assertEquals(2, lCache.getMissCount());
+      assertEquals(2, lCache.size());
+
+      // Results that are too large are not cached.
+      lCache.getResultList(lEntityManager, this.createQuery(lEntityManager, 4));
+      assertEquals(2, lCache.size());
+
+      // Scalar results are cached as they are.
+      TypedQuery<String> lNameQuery = lEntityManager.createQuery("select e.name from CachedEntity e order by e.id",
+          String.class);
+      lNameQuery.setHint(QueryResultCache.CACHEABLE_HINT, "true").setMaxResults(3);
+      assertEquals(Arrays.asList("A", "B", "C"), lCache.getResultList(lEntityManager, lNameQuery));
+      assertEquals(Arrays.asList("A", "B", "C"), lCache.getResultList(lOtherEntityManager, lNameQuery));
+      assertEquals(2, lCache.getHitCount());
+      lEntityManager.close();
+      lOtherEntityManager.close();
+
+      // Entity managers with uncommitted changes have to see them, so the cache is bypassed.
+      lEntityManager = lFactory.createEntityManager();
+      lEntityManager.getTransaction().begin();
+      lEntityManager.persist(new CachedEntity(0, "Z"));
+      lResult = lCache.getResultList(lEntityManager, this.createQuery(lEntityManager, 2));
+      assertEquals(Arrays.asList("Z", "A", "B"), this.getNames(lResult));
+      assertEquals(2, lCache.getHitCount());
+      lEntityManager.getTransaction().rollback();
+      lEntityManager.close();
+      this.execute(lFactory, pEntityManager -> {
+        lCache.getResultList(pEntityManager, this.createQuery(pEntityManager, 2));
+      });
+      assertEquals(3, lCache.getHitCount());
+
+      // Committed changes invalidate the cache of the persistence unit.
+      this.execute(lFactory, pEntityManager -> pEntityManager.remove(pEntityManager.find(CachedEntity.class, 2L)));
+      this.execute(lFactory, pEntityManager -> {
+        List<CachedEntity> lChangedResult = lCache.getResultList(pEntityManager, this.createQuery(pEntityManager, 2));
+        assertEquals(Arrays.asList("A"), this.getNames(lChangedResult));
+      });
+      assertEquals(3, lCache.getHitCount());
+    }
+    finally {
+      lFactory.close();
+      QueryResultCache.removeCache(UNIT_NAME);
+    }
+    assertNull(QueryResultCache.getCache(UNIT_NAME));
+  }
+
+  @Test
+  public void testInvalidation( ) {
+    EntityManagerFactory lFactory = this.bootstrap();
+    EntityManager lEntityManager = lFactory.createEntityManager();
+    try {
+      QueryResultCache lCache = QueryResultCache.getCache(lFactory);
+      TypedQuery<CachedEntity> lEntityQuery = this.createQuery(lEntityManager, 1);
+      TypedQuery<CachedEntity> lGlobalQuery = this.createQuery(lEntityManager, 2);
+      lCache.getResultList(lEntityManager, lEntityQuery, CachedEntity.class);
+      lCache.getResultList(lEntityManager, lGlobalQuery);
+      assertEquals(2, lCache.getMissCount());
+
+      // Changes of other classes only affect queries without explicit dependencies.
+      lCache.invalidate(Collections.singleton(String.class));
+      lCache.getResultList(lEntityManager, lEntityQuery, CachedEntity.class);
+      lCache.getResultList(lEntityManager, lGlobalQuery);
+      assertEquals(1, lCache.getHitCount());
+      assertEquals(3, lCache.getMissCount());
+
+      // Changes of sub classes invalidate queries on their super classes.
+      lCache.invalidate(Collections.singleton(SpecialCachedEntity.class));
+      lCache.getResultList(lEntityManager, lEntityQuery, CachedEntity.class);
+      assertEquals(4, lCache.getMissCount());
+
+      // Interceptors that do not know their persistence unit invalidate the caches of all persistence units.
+      QueryCacheInterceptor lInterceptor = new QueryCacheInterceptor();
+      lInterceptor.onDelete(new CachedEntity(1, "A"), 1, null, null, null);
+      lInterceptor.afterTransactionCompletion(this.createTransaction(TransactionStatus.COMMITTED));
+      assertTrue(lInterceptor.getChangedClasses().isEmpty());
+      lCache.getResultList(lEntityManager, lEntityQuery, CachedEntity.class);
+      assertEquals(5, lCache.getMissCount());
+
+      // Rolled back changes do not invalidate the cache.
+      lInterceptor = new QueryCacheInterceptor(UNIT_NAME);
+      lInterceptor.onSave(new CachedEntity(1, "A"), 1, null, null, null);
+      assertEquals(Collections.singleton(CachedEntity.class), lInterceptor.getChangedClasses());
+      lInterceptor.afterTransactionCompletion(this.createTransaction(TransactionStatus.ROLLED_BACK));
+      lCache.getResultList(lEntityManager, lEntityQuery, CachedEntity.class);
+      assertEquals(5, lCache.getMissCount());
+
+      // Clearing the cache removes all results.
+      lCache.clear();
+      assertEquals(0, lCache.size());
+      lCache.getResultList(lEntityManager, lEntityQuery, CachedEntity.class);
+      assertEquals(6, lCache.getMissCount());
+    }
+    finally {
+      lEntityManager.close();
+      lFactory.close();
+      QueryResultCache.removeCache(UNIT_NAME);
+    }
+  }
+
+  @Test
+  public void testInterceptorConfiguration( ) {
+    Properties lProperties = new PersistenceUnitInfoImpl(QueryCachePersistenceUnit.class).getProperties();
+    Object lSupplier = lProperties.get("hibernate.session_factory.session_scoped_interceptor");
+    assertTrue(lSupplier instanceof Supplier);
+    QueryCacheInterceptor lInterceptor = (QueryCacheInterceptor) ((Supplier<?>) lSupplier).get();
+    assertEquals(UNIT_NAME, lInterceptor.getPersistenceUnitName());
+    assertNotSame(lInterceptor, ((Supplier<?>) lSupplier).get());
+
+    // Explicitly configured interceptors are not replaced.
+    lProperties.put("hibernate.session_factory.session_scoped_interceptor", "MyInterceptor");
+    QueryCacheInterceptor.configure(lProperties, UNIT_NAME);
+    assertEquals("MyInterceptor", lProperties.get("hibernate.session_factory.session_scoped_interceptor"));
+    lProperties.remove(PersistenceUnitInfoImpl.QUERY_CACHE_PROPERTY);
+    lProperties.remove("hibernate.session_factory.session_scoped_interceptor");
+    QueryCacheInterceptor.configure(lProperties, UNIT_NAME);
+    assertFalse(lProperties.containsKey("hibernate.session_factory.session_scoped_interceptor"));
+  }
+
+  /**
+   * Method creates the entity manager factory of the test persistence unit and stores the test data.
+   */
+  private EntityManagerFactory bootstrap( ) {
+    PersistenceUnitInfoImpl lInfo = new PersistenceUnitInfoImpl(QueryCachePersistenceUnit.class);
+    EntityManagerFactory lFactory =
+        new HibernatePersistenceProvider().createContainerEntityManagerFactory(lInfo, Collections.emptyMap());
+    this.execute(lFactory, pEntityManager -> {
+      pEntityManager.persist(new CachedEntity(1, "A"));
+      pEntityManager.persist(new CachedEntity(2, "B"));
+      pEntityManager.persist(new CachedEntity(3, "C"));
+      pEntityManager.persist(new CachedEntity(4, "D"));
+    });
+    return lFactory;
+  }
+
+  private void execute( EntityManagerFactory pFactory, Consumer<EntityManager> pWork ) {
+    EntityManager lEntityManager = pFactory.createEntityManager();
+    try {
+      lEntityManager.getTransaction().begin();
+      pWork.accept(lEntityManager);
+      lEntityManager.getTransaction().commit();
+    }
+    finally {
+      lEntityManager.close();
+    }
+  }
+
+  private TypedQuery<CachedEntity> createQuery( EntityManager pEntityManager, long pMaxID ) {
+    TypedQuery<CachedEntity> lQuery = pEntityManager.createQuery(ENTITY_QUERY, CachedEntity.class);
+    lQuery.setParameter("max", pMaxID);
+    lQuery.setHint(QueryResultCache.CACHEABLE_HINT, Boolean.TRUE);
+    return lQuery;
+  }
+
+  private List<String> getNames( List<CachedEntity> pEntities ) {
+    String[] lNames = new String[pEntities.size()];
+    for (int i = 0; i < lNames.length; i++) {
+      lNames[i] = pEntities.get(i).getName();
+    }
+    return Arrays.asList(lNames);
+  }
+
+  private Transaction createTransaction( TransactionStatus pStatus ) {
+    return (Transaction) Proxy.newProxyInstance(this.getClass().getClassLoader(), new Class<?>[] { Transaction.class },
+        (pProxy, pMethod, pArgs) -> {
+          if ("getStatus".equals(pMethod.getName())) {
+            return pStatus;
+          }
+          throw new UnsupportedOperationException(pMethod.getName());
+        });
+  }
+
+  static class SpecialCachedEntity extends CachedEntity {
+    SpecialCachedEntity( ) {
+      super(2, "B");
+    }
+  }
+}
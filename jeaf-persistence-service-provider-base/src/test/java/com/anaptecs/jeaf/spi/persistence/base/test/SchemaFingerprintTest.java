@@ -0,0 +1,107 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.Collections;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceException;
+
+import com.anaptecs.jeaf.spi.persistence.base.PersistenceUnitInfoImpl;
+import com.anaptecs.jeaf.spi.persistence.base.bootstrap.SchemaFingerprintManagementTool;
+import com.anaptecs.jeaf.spi.persistence.base.bootstrap.SchemaFingerprintStore;
+import com.anaptecs.jeaf.spi.persistence.base.test.persistenceunit.SchemaFingerprintPersistenceUnit;
+import org.hibernate.jpa.HibernatePersistenceProvider;
+import org.junit.jupiter.api.Test;
+
+public class SchemaFingerprintTest {
+  private static final String UNIT_NAME = "SchemaFingerprintPersistenceUnit";
+
+  private static final Timestamp OUTDATED = Timestamp.valueOf("2000-01-01 00:00:00");
+
+  @Test
+  public void testSchemaFingerprint( ) throws SQLException {
+    try (Connection lConnection =
+        DriverManager.getConnection("jdbc:h2:mem:jeaf_schema_fingerprint_test;DB_CLOSE_DELAY=-1", "sa", "");
+        Statement lStatement = lConnection.createStatement()) {
+      lStatement.executeUpdate("CREATE TABLE IndexedEntity (id BIGINT NOT NULL PRIMARY KEY)");
+
+      // Fingerprint is checked by Hibernate's schema management and not while the properties are resolved.
+      PersistenceUnitInfoImpl lInfo = new PersistenceUnitInfoImpl(SchemaFingerprintPersistenceUnit.class);
+      assertEquals(SchemaFingerprintManagementTool.class.getName(),
+          lInfo.getProperties().getProperty("hibernate.schema_management_tool"));
+      assertNull(SchemaFingerprintStore.readFingerprint(lConnection, UNIT_NAME));
+
+      // No fingerprint stored yet so schema is validated and the fingerprint is stored afterwards.
+      this.bootstrap();
+      String lFingerprint = SchemaFingerprintStore.readFingerprint(lConnection, UNIT_NAME);
+      assertNotNull(lFingerprint);
+
+      // Unchanged mapping and database schema skip validation, so the fingerprint is not written again.
+      this.markOutdated(lStatement);
+      this.bootstrap();
+      assertEquals(OUTDATED, this.getValidationTime(lStatement));
+
+      // Changed database schema requires validation again.
+      lStatement.executeUpdate("ALTER TABLE IndexedEntity ADD COLUMN description VARCHAR(100)");
+      this.bootstrap();
+      assertNotEquals(OUTDATED, this.getValidationTime(lStatement));
+      String lChangedFingerprint = SchemaFingerprintStore.readFingerprint(lConnection, UNIT_NAME);
+      assertNotEquals(lFingerprint, lChangedFingerprint);
+
+      // Failed validation does not store a fingerprint.
+      lStatement.executeUpdate("DROP TABLE IndexedEntity");
+      lStatement.executeUpdate("CREATE TABLE IndexedEntity (name VARCHAR(100) NOT NULL PRIMARY KEY)");
+      assertThrows(PersistenceException.class, this::bootstrap);
+      assertEquals(lChangedFingerprint, SchemaFingerprintStore.readFingerprint(lConnection, UNIT_NAME));
+      lStatement.executeUpdate("DROP TABLE IndexedEntity");
+      lStatement.executeUpdate("DROP TABLE " + SchemaFingerprintStore.TABLE_NAME);
+
+      // Table is created within the transaction of connections whose auto-commit is disabled.
+      assertNull(SchemaFingerprintStore.readFingerprint(lConnection, UNIT_NAME));
+      lConnection.setAutoCommit(false);
+      SchemaFingerprintStore.writeFingerprint(lConnection, UNIT_NAME, lFingerprint);
+      SchemaFingerprintStore.writeFingerprint(lConnection, UNIT_NAME, lChangedFingerprint);
+      assertFalse(lConnection.getAutoCommit());
+      lConnection.setAutoCommit(true);
+      assertEquals(lChangedFingerprint, SchemaFingerprintStore.readFingerprint(lConnection, UNIT_NAME));
+      lStatement.executeUpdate("DROP TABLE " + SchemaFingerprintStore.TABLE_NAME);
+    }
+  }
+
+  private void bootstrap( ) {
+    PersistenceUnitInfoImpl lInfo = new PersistenceUnitInfoImpl(SchemaFingerprintPersistenceUnit.class);
+    EntityManagerFactory lFactory =
+        new HibernatePersistenceProvider().createContainerEntityManagerFactory(lInfo, Collections.emptyMap());
+    lFactory.close();
+  }
+
+  private void markOutdated( Statement pStatement ) throws SQLException {
+    pStatement.executeUpdate("UPDATE " + SchemaFingerprintStore.TABLE_NAME + " SET VALIDATED_AT = TIMESTAMP '"
+        + OUTDATED + "'");
+  }
+
+  private Timestamp getValidationTime( Statement pStatement ) throws SQLException {
+    try (ResultSet lResultSet =
+        pStatement.executeQuery("SELECT VALIDATED_AT FROM " + SchemaFingerprintStore.TABLE_NAME)) {
+      lResultSet.next();
+      return lResultSet.getTimestamp(1);
+    }
+  }
+}
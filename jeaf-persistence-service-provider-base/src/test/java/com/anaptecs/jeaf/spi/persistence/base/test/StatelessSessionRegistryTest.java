@@ -0,0 +1,144 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.test;
+
+import static com.anaptecs.jeaf.spi.persistence.base.test.TestProxies.createProxy;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
+import org.hibernate.jdbc.ReturningWork;
+import org.hibernate.jpa.HibernatePersistenceProvider;
+
+import com.anaptecs.jeaf.spi.persistence.base.PersistenceUnitInfoImpl;
+import com.anaptecs.jeaf.spi.persistence.base.StatelessSessionRegistry;
+import com.anaptecs.jeaf.spi.persistence.base.test.persistenceunit.BatchJobPersistenceUnit;
+import com.anaptecs.jeaf.spi.persistence.base.test.persistenceunit.CachedEntity;
+import org.junit.jupiter.api.Test;
+
+public class StatelessSessionRegistryTest {
+  /**
+   * Synchronizations that were registered on the mocked transactions.
+   */
+  private final List<Synchronization> synchronizations = new ArrayList<>();
+
+  /**
+   * Connections with which stateless sessions were opened.
+   */
+  private final List<Connection> connections = new ArrayList<>();
+
+  private int closedSessions;
+
+  @Test
+  public void testStatelessSessions( ) {
+    StatelessSessionRegistry lRegistry = new StatelessSessionRegistry();
+    Connection lConnectionA = createProxy(Connection.class);
+    Connection lConnectionB = createProxy(Connection.class);
+    EntityManager lEntityManagerA = this.createEntityManager(lConnectionA);
+    EntityManager lEntityManagerB = this.createEntityManager(lConnectionB);
+
+    // Every entity manager has its own stateless session that uses the entity manager's connection.
+    StatelessSession lSessionA = lRegistry.getStatelessSession(lEntityManagerA);
+    assertSame(lSessionA, lRegistry.getStatelessSession(lEntityManagerA));
+    StatelessSession lSessionB = lRegistry.getStatelessSession(lEntityManagerB);
+    assertNotSame(lSessionA, lSessionB);
+    assertEquals(2, lRegistry.size());
+    assertSame(lConnectionA, connections.get(0));
+    assertSame(lConnectionB, connections.get(1));
+    assertEquals(2, synchronizations.size());
+
+    // Stateless sessions are closed when the transaction of their entity manager completed.
+    synchronizations.get(0).afterCompletion(Status.STATUS_COMMITTED);
+    assertEquals(1, lRegistry.size());
+    assertEquals(1, closedSessions);
+    assertNotSame(lSessionA, lRegistry.getStatelessSession(lEntityManagerA));
+    synchronizations.get(1).afterCompletion(Status.STATUS_ROLLEDBACK);
+    synchronizations.get(2).afterCompletion(Status.STATUS_COMMITTED);
+    assertEquals(0, lRegistry.size());
+    assertEquals(3, closedSessions);
+  }
+
+  @Test
+  public void testStatelessSessionsWithDatabase( ) {
+    EntityManagerFactory lFactory = new HibernatePersistenceProvider().createContainerEntityManagerFactory(
+        new PersistenceUnitInfoImpl(BatchJobPersistenceUnit.class), Collections.emptyMap());
+    StatelessSessionRegistry lRegistry = new StatelessSessionRegistry();
+    EntityManager lEntityManager = lFactory.createEntityManager();
+    try {
+      // Rows that are inserted through the stateless session bypass the persistence context of the entity manager but
+      // are committed together with its transaction.
+      lEntityManager.getTransaction().begin();
+      StatelessSession lStatelessSession = lRegistry.getStatelessSession(lEntityManager);
+      for (int i = 0; i < 10; i++) {
+        lStatelessSession.insert(new CachedEntity(i, "Entity " + i));
+      }
+      Session lSession = lEntityManager.unwrap(Session.class);
+      assertEquals(0, lSession.getStatistics().getEntityCount());
+      assertEquals(10L, this.countEntities(lEntityManager));
+      lEntityManager.getTransaction().commit();
+      assertEquals(0, lRegistry.size());
+      assertFalse(lStatelessSession.isOpen());
+
+      // Changes of the stateless session are rolled back together with the transaction of the entity manager.
+      lEntityManager.getTransaction().begin();
+      lRegistry.getStatelessSession(lEntityManager).insert(new CachedEntity(10, "Entity 10"));
+      assertEquals(11L, this.countEntities(lEntityManager));
+      lEntityManager.getTransaction().rollback();
+      assertEquals(0, lRegistry.size());
+      assertEquals(10L, this.countEntities(lEntityManager));
+    }
+    finally {
+      lEntityManager.close();
+      lFactory.close();
+    }
+  }
+
+  private long countEntities( EntityManager pEntityManager ) {
+    return pEntityManager.createQuery("select count(e) from CachedEntity e", Long.class).getSingleResult();
+  }
+
+  private EntityManager createEntityManager( Connection pConnection ) {
+    SessionFactory lSessionFactory = createProxy(SessionFactory.class, (pMethod, pArgs) -> {
+      connections.add((Connection) pArgs[0]);
+      return createProxy(StatelessSession.class, (pStatelessMethod, pStatelessArgs) -> {
+        closedSessions++;
+        return null;
+      });
+    });
+    Transaction lTransaction = createProxy(Transaction.class, (pMethod, pArgs) -> {
+      synchronizations.add((Synchronization) pArgs[0]);
+      return null;
+    });
+    Session lSession = createProxy(Session.class, (pMethod, pArgs) -> {
+      switch (pMethod) {
+        case "doReturningWork":
+          return ((ReturningWork<?>) pArgs[0]).execute(pConnection);
+        case "getSessionFactory":
+          return lSessionFactory;
+        case "getTransaction":
+          return lTransaction;
+        default:
+          throw new UnsupportedOperationException(pMethod);
+      }
+    });
+    return createProxy(EntityManager.class, (pMethod, pArgs) -> lSession);
+  }
+}
@@ -0,0 +1,226 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.test;
+
+import static com.anaptecs.jeaf.spi.persistence.base.test.TestProxies.createProxy;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.TypedQuery;
+
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.hibernate.jpa.HibernatePersistenceProvider;
+import org.hibernate.query.Query;
+
+import com.anaptecs.jeaf.spi.persistence.base.PersistenceUnitInfoImpl;
+
+import com.anaptecs.jeaf.spi.persistence.base.query.StreamingQuery;
+import com.anaptecs.jeaf.spi.persistence.base.query.StreamingQuery.ReleaseMode;
+import com.anaptecs.jeaf.spi.persistence.base.test.persistenceunit.BatchJobPersistenceUnit;
+import com.anaptecs.jeaf.spi.persistence.base.test.persistenceunit.CachedEntity;
+import org.junit.jupiter.api.Test;
+
+public class StreamingQueryTest {
+  /**
+   * Calls of the mocked Hibernate objects.
+   */
+  private final List<String> calls = new ArrayList<>();
+
+  /**
+   * Entities within the mocked persistence context.
+   */
+  private final Set<Object> persistenceContext = new HashSet<>();
+
+  @Test
+  public void testDetachConsumedRows( ) {
+    List<Object> lRows = this.createEntities(5);
+    try (Stream<CachedEntity> lStream =
+        StreamingQuery.stream(this.createEntityManager(), this.createQuery(lRows), 2, ReleaseMode.DETACH)) {
+      List<Long> lIDs = lStream.map(pEntity -> {
+        // Only the current row is part of the persistence context.
+        assertEquals(1, persistenceContext.size());
+        return pEntity.getId();
+      }).collect(Collectors.toList());
+      assertEquals(Arrays.asList(0L, 1L, 2L, 3L, 4L), lIDs);
+    }
+    assertTrue(persistenceContext.isEmpty());
+    assertTrue(calls.contains("setFetchSize(2)"));
+    assertTrue(calls.contains("setReadOnly(true)"));
+    assertTrue(calls.contains("scroll(FORWARD_ONLY)"));
+    assertEquals(5, calls.stream().filter(pCall -> pCall.equals("evict")).count());
+    assertEquals(1, calls.stream().filter(pCall -> pCall.equals("close")).count());
+  }
+
+  @Test
+  public void testClearPersistenceContext( ) {
+    List<Object> lRows = this.createEntities(5);
+    try (StreamingQuery<CachedEntity> lQuery =
+        new StreamingQuery<>(this.createEntityManager(), this.createQuery(lRows), 2, ReleaseMode.CLEAR)) {
+      lQuery.next();
+      lQuery.next();
+      assertEquals(2, persistenceContext.size());
+      lQuery.next();
+      assertEquals(1, persistenceContext.size());
+      assertEquals(3, lQuery.getRowCount());
+    }
+    assertEquals(1, calls.stream().filter(pCall -> pCall.equals("clear")).count());
+    assertFalse(calls.contains("evict"));
+    assertEquals(1, calls.stream().filter(pCall -> pCall.equals("close")).count());
+  }
+
+  @Test
+  public void testScalarRows( ) {
+    List<Object> lRows = Arrays.asList(new Object[] { "A", 1 }, new Object[] { "B", 2 });
+    StreamingQuery<Object[]> lQuery =
+        new StreamingQuery<>(this.createEntityManager(), this.createQuery(lRows), 10, ReleaseMode.DETACH);
+    assertEquals("A", lQuery.next()[0]);
+    assertEquals(2, lQuery.next()[1]);
+    assertFalse(lQuery.hasNext());
+    assertThrows(NoSuchElementException.class, lQuery::next);
+    assertTrue(calls.contains("close"));
+    assertThrows(IllegalArgumentException.class,
+        ( ) -> new StreamingQuery<>(this.createEntityManager(), this.createQuery(lRows), 0, ReleaseMode.DETACH));
+  }
+
+  @Test
+  public void testStreamFromDatabase( ) {
+    EntityManagerFactory lFactory = new HibernatePersistenceProvider().createContainerEntityManagerFactory(
+        new PersistenceUnitInfoImpl(BatchJobPersistenceUnit.class), Collections.emptyMap());
+    EntityManager lEntityManager = lFactory.createEntityManager();
+    try {
+      lEntityManager.getTransaction().begin();
+      for (int i = 0; i < 20; i++) {
+        lEntityManager.persist(new CachedEntity(i, "Entity " + i));
+      }
+      lEntityManager.getTransaction().commit();
+      lEntityManager.clear();
+      Session lSession = lEntityManager.unwrap(Session.class);
+
+      // Consumed entities are detached, so only the current one is part of the persistence context.
+      TypedQuery<CachedEntity> lQuery =
+          lEntityManager.createQuery("select e from CachedEntity e order by e.id", CachedEntity.class);
+      try (Stream<CachedEntity> lStream = StreamingQuery.stream(lEntityManager, lQuery, 5, ReleaseMode.DETACH)) {
+        List<Long> lIDs = lStream.map(pEntity -> {
+          assertEquals(1, lSession.getStatistics().getEntityCount());
+          assertTrue(lSession.isReadOnly(pEntity));
+          return pEntity.getId();
+        }).collect(Collectors.toList());
+        assertEquals(20, lIDs.size());
+        assertEquals(19L, lIDs.get(19).longValue());
+      }
+      assertEquals(0, lSession.getStatistics().getEntityCount());
+
+      // The persistence context is cleared after every block of the fetch size.
+      try (StreamingQuery<CachedEntity> lStreamingQuery =
+          new StreamingQuery<>(lEntityManager, lQuery, 5, ReleaseMode.CLEAR)) {
+        for (int i = 0; i < 5; i++) {
+          lStreamingQuery.next();
+        }
+        assertEquals(5, lSession.getStatistics().getEntityCount());
+        lStreamingQuery.next();
+        assertEquals(1, lSession.getStatistics().getEntityCount());
+      }
+
+      // Scalar rows are not part of the persistence context.
+      TypedQuery<Object[]> lScalarQuery =
+          lEntityManager.createQuery("select e.id, e.name from CachedEntity e order by e.id", Object[].class);
+      try (Stream<Object[]> lStream = StreamingQuery.stream(lEntityManager, lScalarQuery, 5, ReleaseMode.DETACH)) {
+        assertEquals("Entity 19", lStream.reduce((pFirst, pSecond) -> pSecond).get()[1]);
+      }
+    }
+    finally {
+      lEntityManager.close();
+      lFactory.close();
+    }
+  }
+
+  private List<Object> createEntities( int pCount ) {
+    List<Object> lRows = new ArrayList<>();
+    for (int i = 0; i < pCount; i++) {
+      lRows.add(new CachedEntity(i, "Entity " + i));
+    }
+    return lRows;
+  }
+
+  private EntityManager createEntityManager( ) {
+    Session lSession = createProxy(Session.class, (pMethod, pArgs) -> {
+      calls.add(pMethod);
+      switch (pMethod) {
+        case "contains":
+          if (pArgs[0] instanceof CachedEntity == false) {
+            throw new IllegalArgumentException("Not an entity");
+          }
+          return persistenceContext.contains(pArgs[0]);
+        case "evict":
+          persistenceContext.remove(pArgs[0]);
+          return null;
+        case "clear":
+          persistenceContext.clear();
+          return null;
+        default:
+          throw new UnsupportedOperationException(pMethod);
+      }
+    });
+    return createProxy(EntityManager.class, (pMethod, pArgs) -> lSession);
+  }
+
+  @SuppressWarnings("unchecked")
+  private <T> TypedQuery<T> createQuery( List<Object> pRows ) {
+    int[] lPosition = { -1 };
+    ScrollableResults lResults = createProxy(ScrollableResults.class, (pMethod, pArgs) -> {
+      calls.add(pMethod);
+      switch (pMethod) {
+        case "next":
+          lPosition[0]++;
+          boolean lHasRow = lPosition[0] < pRows.size();
+          if (lHasRow == true && pRows.get(lPosition[0]) instanceof CachedEntity) {
+            persistenceContext.add(pRows.get(lPosition[0]));
+          }
+          return lHasRow;
+        case "get":
+          Object lRow = pRows.get(lPosition[0]);
+          return lRow instanceof Object[] ? lRow : new Object[] { lRow };
+        case "close":
+          return null;
+        default:
+          throw new UnsupportedOperationException(pMethod);
+      }
+    });
+    Object[] lQuery = new Object[1];
+    lQuery[0] = createProxy(Query.class, (pMethod, pArgs) -> {
+      switch (pMethod) {
+        case "unwrap":
+          return lQuery[0];
+        case "setFetchSize":
+        case "setReadOnly":
+          calls.add(pMethod + "(" + pArgs[0] + ")");
+          return lQuery[0];
+        case "scroll":
+          calls.add(pMethod + "(" + (ScrollMode) pArgs[0] + ")");
+          return lResults;
+        default:
+          throw new UnsupportedOperationException(pMethod);
+      }
+    });
+    return (TypedQuery<T>) lQuery[0];
+  }
+}
@@ -0,0 +1,77 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.test;
+
+import java.lang.reflect.Proxy;
+
+/**
+ * Class creates dynamic proxies that replace JPA and Hibernate objects within tests. Calls are passed to a handler
+ * together with the name of the called method. Only <code>equals(Object)</code> and <code>hashCode()</code> are
+ * implemented by the proxy itself based on its identity, so that proxies can be used as keys of maps.
+ *
+ * @author JEAF Development Team
+ */
+final class TestProxies {
+  /**
+   * Interface is implemented by the handlers of test proxies.
+   */
+  interface Handler {
+    /**
+     * Method is called for every call of the proxy.
+     *
+     * @param pMethod Name of the called method. The parameter is never null.
+     * @param pArgs Arguments of the call. The parameter is null if the method has no parameters.
+     * @return {@link Object} Result of the call.
+     * @throws Exception if the call should fail.
+     */
+    Object invoke( String pMethod, Object[] pArgs ) throws Exception;
+  }
+
+  /**
+   * Constructor is private as class only provides static methods.
+   */
+  private TestProxies( ) {
+  }
+
+  /**
+   * Method creates a proxy that does not support any method.
+   *
+   * @param pInterface Interface that is implemented by the proxy. The parameter must not be null.
+   * @return T Created proxy. The method never returns null.
+   */
+  static <T> T createProxy( Class<T> pInterface ) {
+    return createProxy(pInterface, (pMethod, pArgs) -> {
+      throw new UnsupportedOperationException(pMethod);
+    });
+  }
+
+  /**
+   * Method creates a proxy that passes all calls except <code>equals(Object)</code> and <code>hashCode()</code> to the
+   * passed handler.
+   *
+   * @param pInterface Interface that is implemented by the proxy. The parameter must not be null.
+   * @param pHandler Handler that is called for every call of the proxy. The parameter must not be null.
+   * @return T Created proxy. The method never returns null.
+   */
+  @SuppressWarnings("unchecked")
+  static <T> T createProxy( Class<T> pInterface, Handler pHandler ) {
+    return (T) Proxy.newProxyInstance(TestProxies.class.getClassLoader(), new Class<?>[] { pInterface },
+        (pProxy, pMethod, pArgs) -> {
+          String lMethodName = pMethod.getName();
+          Object lResult;
+          if ("equals".equals(lMethodName) && pMethod.getParameterCount() == 1) {
+            lResult = pProxy == pArgs[0];
+          }
+          else if ("hashCode".equals(lMethodName) && pMethod.getParameterCount() == 0) {
+            lResult = System.identityHashCode(pProxy);
+          }
+          else {
+            lResult = pHandler.invoke(lMethodName, pArgs);
+          }
+          return lResult;
+        });
+  }
+}
@@ -0,0 +1,124 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import com.anaptecs.jeaf.spi.persistence.base.PersistenceUnitInfoImpl;
+import com.anaptecs.jeaf.spi.persistence.base.cache.TinyLfuCache;
+import com.anaptecs.jeaf.spi.persistence.base.cache.TinyLfuRegionFactory;
+import com.anaptecs.jeaf.spi.persistence.base.test.persistenceunit.SecondLevelCachePersistenceUnit;
+import org.hibernate.cache.spi.QueryResultsRegion;
+import org.hibernate.cache.spi.TimestampsRegion;
+import org.junit.jupiter.api.Test;
+
+public class TinyLfuCacheTest {
+  @Test
+  public void testBasicOperations( ) {
+    TinyLfuCache<String, String> lCache = new TinyLfuCache<>(10, 0, TimeUnit.SECONDS);
+    assertNull(lCache.get("a"));
+    lCache.put("a", "A");
+    assertEquals("A", lCache.get("a"));
+    assertTrue(lCache.containsKey("a"));
+    lCache.put("a", "AA");
+    assertEquals("AA", lCache.get("a"));
+    assertEquals(1, lCache.size());
+    lCache.remove("a");
+    assertFalse(lCache.containsKey("a"));
+    lCache.put("b", "B");
+    lCache.clear();
+    assertEquals(0, lCache.size());
+    assertEquals(2, lCache.getHitCount());
+    assertEquals(1, lCache.getMissCount());
+    assertEquals(2.0 / 3, lCache.getHitRatio(), 0.0001);
+  }
+
+  @Test
+  public void testSizeBoundAndAdmission( ) {
+    TinyLfuCache<Integer, Integer> lCache = new TinyLfuCache<>(100, 0, TimeUnit.SECONDS);
+
+    // Make some entries hot.
+    for (int i = 0; i < 50; i++) {
+      lCache.put(i, i);
+    }
+    for (int lRound = 0; lRound < 5; lRound++) {
+      for (int i = 0; i < 50; i++) {
+        assertNotNull(lCache.get(i));
+      }
+    }
+
+    // Scan with one-hit wonders must not flush the hot entries.
+    for (int i = 1000; i < 11000; i++) {
+      lCache.put(i, i);
+      assertTrue(lCache.size() <= 100);
+    }
+    int lHotEntries = 0;
+    for (int i = 0; i < 50; i++) {
+      if (lCache.containsKey(i)) {
+        lHotEntries++;
+      }
+    }
+    assertTrue(lHotEntries >= 45, "Only " + lHotEntries + " hot entries survived.");
+    assertEquals(100, lCache.size());
+    assertEquals(10050 - 100, lCache.getEvictionCount());
+  }
+
+  @Test
+  public void testTimeToLive( ) throws InterruptedException {
+    TinyLfuCache<String, String> lCache = new TinyLfuCache<>(10, 50, TimeUnit.MILLISECONDS);
+    lCache.put("a", "A");
+    assertEquals("A", lCache.get("a"));
+    Thread.sleep(100);
+    assertFalse(lCache.containsKey("a"));
+    assertNull(lCache.get("a"));
+    assertEquals(0, lCache.size());
+  }
+
+  @Test
+  public void testRegionFactory( ) {
+    // Region factory is configured automatically if shared caching is enabled.
+    PersistenceUnitInfoImpl lInfo = new PersistenceUnitInfoImpl(SecondLevelCachePersistenceUnit.class);
+    Properties lProperties = lInfo.getProperties();
+    assertEquals(TinyLfuRegionFactory.class.getName(), lProperties.get("hibernate.cache.region.factory_class"));
+    assertEquals("true", lProperties.get("hibernate.cache.use_second_level_cache"));
+
+    Map<String, String> lConfigValues = new HashMap<>();
+    lConfigValues.put(TinyLfuRegionFactory.MAX_ENTRIES_PROPERTY, "100");
+    lConfigValues.put(TinyLfuRegionFactory.TIME_TO_LIVE_PROPERTY, "300");
+    lConfigValues.put(TinyLfuRegionFactory.REGION_PROPERTY_PREFIX + "query.ttl", "10");
+    TinyLfuRegionFactory lRegionFactory = new TinyLfuRegionFactory();
+    lRegionFactory.start(null, lConfigValues);
+    try {
+      QueryResultsRegion lQueryRegion = lRegionFactory.buildQueryResultsRegion("query", null);
+      TimestampsRegion lTimestampsRegion = lRegionFactory.buildTimestampsRegion("timestamps", null);
+
+      // Region specific settings take precedence over defaults. Timestamps never expire.
+      TinyLfuCache<Object, Object> lCache = lRegionFactory.getCache("query");
+      assertEquals(100, lCache.getMaximumSize());
+      assertEquals(10, lCache.getTimeToLive(TimeUnit.SECONDS));
+      assertEquals(0, lRegionFactory.getCache("timestamps").getTimeToLive(TimeUnit.SECONDS));
+      assertEquals(2, lRegionFactory.getCaches().size());
+
+      lQueryRegion.putIntoCache("key", "value", null);
+      assertEquals("value", lQueryRegion.getFromCache("key", null));
+      assertNull(lTimestampsRegion.getFromCache("key", null));
+      assertEquals(1, lCache.getHitCount());
+    }
+    finally {
+      lRegionFactory.stop();
+    }
+    assertTrue(lRegionFactory.getCaches().isEmpty());
+  }
+}
@@ -0,0 +1,16 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.test.discovery;
+
+import com.anaptecs.jeaf.spi.persistence.annotations.PersistenceConfig;
+import com.anaptecs.jeaf.spi.persistence.base.test.persistenceunit.JEAFConnectionPoolPersistenceUnit;
+
+@PersistenceConfig(
+    persistenceUnitConfigClass = JEAFConnectionPoolPersistenceUnit.class,
+    applicationManagedConnectionDefinition = JEAFConnectionPoolPersistenceUnit.class)
+
+public interface DiscoveredPersistenceUnit {
+}
@@ -0,0 +1,44 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.test.persistenceunit;
+
+import javax.persistence.spi.PersistenceUnitTransactionType;
+
+import com.anaptecs.jeaf.spi.persistence.annotations.ApplicationManagedConnections;
+import com.anaptecs.jeaf.spi.persistence.annotations.ManagedClasses;
+import com.anaptecs.jeaf.spi.persistence.annotations.MappingFiles;
+import com.anaptecs.jeaf.spi.persistence.annotations.PersistenceConfig;
+import com.anaptecs.jeaf.spi.persistence.annotations.PersistenceUnit;
+import com.anaptecs.jeaf.spi.persistence.annotations.Property;
+import com.anaptecs.jeaf.spi.persistence.base.PersistenceUnitInfoImpl;
+import org.h2.Driver;
+
+@PersistenceConfig(
+    persistenceUnitConfigClass = BatchWritePersistenceUnit.class,
+    applicationManagedConnectionDefinition = BatchWritePersistenceUnit.class)
+
+@PersistenceUnit(
+    name = "BatchWritePersistenceUnit",
+    managedClassesDefinition = BatchWritePersistenceUnit.class,
+    mappingFilesDefinition = BatchWritePersistenceUnit.class,
+    properties = {
+        @Property(name = PersistenceUnitInfoImpl.PERFORMANCE_PROFILE_PROPERTY, value = "batch-write"),
+        @Property(name = "hibernate.jdbc.batch_size", value = "250"),
+        @Property(name = "hibernate.generate_statistics", value = "true"),
+        @Property(name = "hibernate.hbm2ddl.auto", value = "create-drop") })
+
+@ApplicationManagedConnections(
+    transactionType = PersistenceUnitTransactionType.RESOURCE_LOCAL,
+    jdbcDriver = Driver.class,
+    connectionURL = "jdbc:h2:mem:jeaf_batch_write_test;DB_CLOSE_DELAY=-1",
+    username = "sa")
+
+@ManagedClasses(managedClasses = { IndexedEntity.class, BulkEntity.class })
+
+@MappingFiles(mappingFiles = { "com/anaptecs/jeaf/spi/persistence/base/test/persistenceunit/PersistentObject.orm.xml" })
+
+public interface BatchWritePersistenceUnit {
+}
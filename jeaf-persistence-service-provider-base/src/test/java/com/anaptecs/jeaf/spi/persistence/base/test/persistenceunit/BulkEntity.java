@@ -0,0 +1,34 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.test.persistenceunit;
+
+import javax.persistence.Entity;
+
+import com.anaptecs.jeaf.spi.persistence.ClassID;
+import com.anaptecs.jeaf.spi.persistence.PersistentObject;
+
+@Entity
+public class BulkEntity extends PersistentObject {
+  public static final ClassID CLASS_ID = ClassID.createClassID(435, BulkEntity.class);
+
+  private String name;
+
+  public BulkEntity( ) {
+  }
+
+  public BulkEntity( String pName ) {
+    name = pName;
+  }
+
+  public String getName( ) {
+    return name;
+  }
+
+  @Override
+  public ClassID getClassID( ) {
+    return CLASS_ID;
+  }
+}
@@ -0,0 +1,35 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.test.persistenceunit;
+
+import javax.persistence.Cacheable;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+
+@Entity
+@Cacheable
+public class CachedEntity {
+  @Id
+  private long id;
+
+  private String name;
+
+  public CachedEntity( ) {
+  }
+
+  public CachedEntity( long pID, String pName ) {
+    id = pID;
+    name = pName;
+  }
+
+  public long getId( ) {
+    return id;
+  }
+
+  public String getName( ) {
+    return name;
+  }
+}
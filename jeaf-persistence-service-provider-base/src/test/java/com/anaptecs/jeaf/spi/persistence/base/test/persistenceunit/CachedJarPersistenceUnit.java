@@ -0,0 +1,34 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.test.persistenceunit;
+
+import javax.persistence.spi.PersistenceUnitTransactionType;
+
+import com.anaptecs.jeaf.spi.persistence.annotations.ApplicationManagedConnections;
+import com.anaptecs.jeaf.spi.persistence.annotations.PersistenceConfig;
+import com.anaptecs.jeaf.spi.persistence.annotations.PersistenceUnit;
+import com.anaptecs.jeaf.spi.persistence.annotations.Property;
+import com.anaptecs.jeaf.spi.persistence.base.PersistenceUnitInfoImpl;
+import org.h2.Driver;
+
+@PersistenceConfig(
+    persistenceUnitConfigClass = CachedJarPersistenceUnit.class,
+    applicationManagedConnectionDefinition = CachedJarPersistenceUnit.class)
+
+@PersistenceUnit(
+    name = "CachedJarPersistenceUnit",
+    jarFiles = { CachedJarPersistenceUnit.JAR_FILE },
+    properties = { @Property(name = PersistenceUnitInfoImpl.BOOTSTRAP_CACHE_PROPERTY, value = "true") })
+
+@ApplicationManagedConnections(
+    transactionType = PersistenceUnitTransactionType.RESOURCE_LOCAL,
+    jdbcDriver = Driver.class,
+    connectionURL = "jdbc:h2:mem:jeaf_bootstrap_cache_test",
+    username = "sa")
+
+public interface CachedJarPersistenceUnit {
+  String JAR_FILE = "target/jeaf-bootstrap-cache-test.jar";
+}
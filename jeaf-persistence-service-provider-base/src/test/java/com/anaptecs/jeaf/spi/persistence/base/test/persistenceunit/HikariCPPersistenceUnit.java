@@ -0,0 +1,40 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.test.persistenceunit;
+
+import com.anaptecs.jeaf.spi.persistence.annotations.ApplicationManagedConnections;
+import com.anaptecs.jeaf.spi.persistence.annotations.ConnectionPool;
+import com.anaptecs.jeaf.spi.persistence.annotations.PersistenceConfig;
+import com.anaptecs.jeaf.spi.persistence.annotations.PersistenceUnit;
+import com.anaptecs.jeaf.spi.persistence.annotations.Property;
+import com.anaptecs.jeaf.spi.persistence.base.pool.ConnectionPoolProvider;
+import com.mysql.cj.jdbc.Driver;
+
+@PersistenceConfig(
+    persistenceUnitConfigClass = HikariCPPersistenceUnit.class,
+    applicationManagedConnectionDefinition = HikariCPPersistenceUnit.class)
+
+@PersistenceUnit(
+    name = "HikariCPPersistenceUnit",
+    managedClassesDefinition = EntityMappings.class,
+
+    properties = { @Property(name = ConnectionPoolProvider.CONNECTION_POOL_PROVIDER_PROPERTY, value = "hikaricp") })
+
+@ApplicationManagedConnections(
+    jdbcDriver = Driver.class,
+    connectionURL = "jdbc:mysql://localhost:3306/jeaf_test?useSSL=false&serverTimezone=CET",
+
+    // Connection pool settings
+    connectionPool = @ConnectionPool(
+        minSize = "5",
+        maxSize = "50",
+        incrementSize = "2",
+        preparedStatementCacheSize = "250",
+        timeout = "600",
+        idleTestPeriod = "100"))
+
+public interface HikariCPPersistenceUnit {
+}
@@ -0,0 +1,15 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.test.persistenceunit;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+
+@Entity
+public class IndexedEntity {
+  @Id
+  private long id;
+}
@@ -0,0 +1,29 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.test.persistenceunit;
+
+import javax.persistence.spi.PersistenceUnitTransactionType;
+
+import com.anaptecs.jeaf.spi.persistence.annotations.ApplicationManagedConnections;
+import com.anaptecs.jeaf.spi.persistence.annotations.PersistenceConfig;
+import com.anaptecs.jeaf.spi.persistence.annotations.PersistenceUnit;
+import org.h2.Driver;
+
+@PersistenceConfig(
+    persistenceUnitConfigClass = IndexedJarPersistenceUnit.class,
+    applicationManagedConnectionDefinition = IndexedJarPersistenceUnit.class)
+
+@PersistenceUnit(name = "IndexedJarPersistenceUnit", jarFiles = { IndexedJarPersistenceUnit.JAR_FILE })
+
+@ApplicationManagedConnections(
+    transactionType = PersistenceUnitTransactionType.RESOURCE_LOCAL,
+    jdbcDriver = Driver.class,
+    connectionURL = "jdbc:h2:mem:jeaf_index_test",
+    username = "sa")
+
+public interface IndexedJarPersistenceUnit {
+  String JAR_FILE = "target/jeaf-entity-index-test.jar";
+}
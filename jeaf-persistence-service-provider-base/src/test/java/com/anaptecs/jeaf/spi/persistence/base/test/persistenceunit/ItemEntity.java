@@ -0,0 +1,36 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.test.persistenceunit;
+
+import javax.persistence.Entity;
+import javax.persistence.FetchType;
+import javax.persistence.Id;
+import javax.persistence.ManyToOne;
+
+@Entity
+public class ItemEntity {
+  @Id
+  private long id;
+
+  @ManyToOne(fetch = FetchType.LAZY)
+  private OrderEntity order;
+
+  public ItemEntity( ) {
+  }
+
+  public ItemEntity( long pID, OrderEntity pOrder ) {
+    id = pID;
+    order = pOrder;
+  }
+
+  public long getId( ) {
+    return id;
+  }
+
+  public OrderEntity getOrder( ) {
+    return order;
+  }
+}
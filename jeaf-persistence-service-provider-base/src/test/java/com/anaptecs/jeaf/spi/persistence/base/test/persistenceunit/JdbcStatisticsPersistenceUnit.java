@@ -0,0 +1,39 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.test.persistenceunit;
+
+import javax.persistence.spi.PersistenceUnitTransactionType;
+
+import com.anaptecs.jeaf.spi.persistence.annotations.ApplicationManagedConnections;
+import com.anaptecs.jeaf.spi.persistence.annotations.ManagedClasses;
+import com.anaptecs.jeaf.spi.persistence.annotations.PersistenceConfig;
+import com.anaptecs.jeaf.spi.persistence.annotations.PersistenceUnit;
+import com.anaptecs.jeaf.spi.persistence.annotations.Property;
+import com.anaptecs.jeaf.spi.persistence.base.jdbc.JdbcStatistics;
+import org.h2.Driver;
+
+@PersistenceConfig(
+    persistenceUnitConfigClass = JdbcStatisticsPersistenceUnit.class,
+    applicationManagedConnectionDefinition = JdbcStatisticsPersistenceUnit.class)
+
+@PersistenceUnit(
+    name = "JdbcStatisticsPersistenceUnit",
+    managedClassesDefinition = JdbcStatisticsPersistenceUnit.class,
+    properties = {
+        @Property(name = JdbcStatistics.ENABLED_PROPERTY, value = "true"),
+        @Property(name = JdbcStatistics.SLOW_QUERY_THRESHOLD_PROPERTY, value = "0"),
+        @Property(name = JdbcStatistics.SLOW_QUERY_LOG_SIZE_PROPERTY, value = "3") })
+
+@ApplicationManagedConnections(
+    transactionType = PersistenceUnitTransactionType.RESOURCE_LOCAL,
+    jdbcDriver = Driver.class,
+    connectionURL = "jdbc:h2:mem:jeaf_jdbc_statistics_test;DB_CLOSE_DELAY=-1",
+    username = "sa")
+
+@ManagedClasses(managedClasses = { IndexedEntity.class })
+
+public interface JdbcStatisticsPersistenceUnit {
+}
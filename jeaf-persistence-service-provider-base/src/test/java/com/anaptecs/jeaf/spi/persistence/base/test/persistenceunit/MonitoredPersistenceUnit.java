@@ -0,0 +1,35 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.test.persistenceunit;
+
+import javax.persistence.spi.PersistenceUnitTransactionType;
+
+import com.anaptecs.jeaf.spi.persistence.annotations.ApplicationManagedConnections;
+import com.anaptecs.jeaf.spi.persistence.annotations.ManagedClasses;
+import com.anaptecs.jeaf.spi.persistence.annotations.PersistenceConfig;
+import com.anaptecs.jeaf.spi.persistence.annotations.PersistenceUnit;
+import com.anaptecs.jeaf.spi.persistence.annotations.Property;
+import org.h2.Driver;
+
+@PersistenceConfig(
+    persistenceUnitConfigClass = MonitoredPersistenceUnit.class,
+    applicationManagedConnectionDefinition = MonitoredPersistenceUnit.class)
+
+@PersistenceUnit(
+    name = "MonitoredPersistenceUnit",
+    managedClassesDefinition = MonitoredPersistenceUnit.class,
+    properties = { @Property(name = "hibernate.hbm2ddl.auto", value = "create-drop") })
+
+@ApplicationManagedConnections(
+    transactionType = PersistenceUnitTransactionType.RESOURCE_LOCAL,
+    jdbcDriver = Driver.class,
+    connectionURL = "jdbc:h2:mem:jeaf_monitored_test;DB_CLOSE_DELAY=-1",
+    username = "sa")
+
+@ManagedClasses(managedClasses = { CachedEntity.class })
+
+public interface MonitoredPersistenceUnit {
+}
@@ -0,0 +1,38 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.test.persistenceunit;
+
+import javax.persistence.spi.PersistenceUnitTransactionType;
+
+import com.anaptecs.jeaf.spi.persistence.annotations.ApplicationManagedConnections;
+import com.anaptecs.jeaf.spi.persistence.annotations.ManagedClasses;
+import com.anaptecs.jeaf.spi.persistence.annotations.PersistenceConfig;
+import com.anaptecs.jeaf.spi.persistence.annotations.PersistenceUnit;
+import com.anaptecs.jeaf.spi.persistence.annotations.Property;
+import com.anaptecs.jeaf.spi.persistence.base.query.NPlusOneDetector;
+import org.h2.Driver;
+
+@PersistenceConfig(
+    persistenceUnitConfigClass = NPlusOnePersistenceUnit.class,
+    applicationManagedConnectionDefinition = NPlusOnePersistenceUnit.class)
+
+@PersistenceUnit(
+    name = "NPlusOnePersistenceUnit",
+    managedClassesDefinition = NPlusOnePersistenceUnit.class,
+    properties = {
+        @Property(name = "hibernate.hbm2ddl.auto", value = "create-drop"),
+        @Property(name = NPlusOneDetector.THRESHOLD_PROPERTY, value = "3") })
+
+@ApplicationManagedConnections(
+    transactionType = PersistenceUnitTransactionType.RESOURCE_LOCAL,
+    jdbcDriver = Driver.class,
+    connectionURL = "jdbc:h2:mem:jeaf_n_plus_one_test;DB_CLOSE_DELAY=-1",
+    username = "sa")
+
+@ManagedClasses(managedClasses = { OrderEntity.class, ItemEntity.class })
+
+public interface NPlusOnePersistenceUnit {
+}
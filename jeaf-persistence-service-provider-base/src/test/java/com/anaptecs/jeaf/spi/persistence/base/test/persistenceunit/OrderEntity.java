@@ -0,0 +1,37 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.test.persistenceunit;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.OneToMany;
+
+@Entity
+public class OrderEntity {
+  @Id
+  private long id;
+
+  @OneToMany(mappedBy = "order")
+  private List<ItemEntity> items = new ArrayList<>();
+
+  public OrderEntity( ) {
+  }
+
+  public OrderEntity( long pID ) {
+    id = pID;
+  }
+
+  public long getId( ) {
+    return id;
+  }
+
+  public List<ItemEntity> getItems( ) {
+    return items;
+  }
+}
@@ -0,0 +1,43 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.test.persistenceunit;
+
+import javax.persistence.spi.PersistenceUnitTransactionType;
+
+import com.anaptecs.jeaf.spi.persistence.annotations.ApplicationManagedConnections;
+import com.anaptecs.jeaf.spi.persistence.annotations.ConnectionPool;
+import com.anaptecs.jeaf.spi.persistence.annotations.PersistenceConfig;
+import com.anaptecs.jeaf.spi.persistence.annotations.PersistenceUnit;
+import com.anaptecs.jeaf.spi.persistence.annotations.Property;
+import com.anaptecs.jeaf.spi.persistence.base.pool.ConnectionPoolProvider;
+import com.anaptecs.jeaf.spi.persistence.base.pool.PooledDataSource;
+import org.h2.Driver;
+
+@PersistenceConfig(
+    persistenceUnitConfigClass = PrewarmedConnectionPoolPersistenceUnit.class,
+    applicationManagedConnectionDefinition = PrewarmedConnectionPoolPersistenceUnit.class)
+
+@PersistenceUnit(
+    name = "PrewarmedConnectionPoolPersistenceUnit",
+    managedClassesDefinition = EntityMappings.class,
+
+    properties = { @Property(name = ConnectionPoolProvider.CONNECTION_POOL_PROVIDER_PROPERTY, value = "jeaf") })
+
+@ApplicationManagedConnections(
+    transactionType = PersistenceUnitTransactionType.RESOURCE_LOCAL,
+    jdbcDriver = Driver.class,
+    connectionURL = "jdbc:h2:mem:jeaf_prewarm_test;DB_CLOSE_DELAY=-1",
+    username = "sa",
+
+    // Connection pool settings
+    connectionPool = @ConnectionPool(minSize = "4", maxSize = "6"),
+
+    properties = {
+      @Property(name = PooledDataSource.PREWARM_PROPERTY, value = "true"),
+      @Property(name = PooledDataSource.PREWARM_TIMEOUT_PROPERTY, value = "10") })
+
+public interface PrewarmedConnectionPoolPersistenceUnit {
+}
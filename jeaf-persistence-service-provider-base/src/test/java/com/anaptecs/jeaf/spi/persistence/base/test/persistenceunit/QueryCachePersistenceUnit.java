@@ -0,0 +1,43 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.test.persistenceunit;
+
+import javax.persistence.SharedCacheMode;
+import javax.persistence.spi.PersistenceUnitTransactionType;
+
+import com.anaptecs.jeaf.spi.persistence.annotations.ApplicationManagedConnections;
+import com.anaptecs.jeaf.spi.persistence.annotations.ManagedClasses;
+import com.anaptecs.jeaf.spi.persistence.annotations.PersistenceConfig;
+import com.anaptecs.jeaf.spi.persistence.annotations.PersistenceUnit;
+import com.anaptecs.jeaf.spi.persistence.annotations.Property;
+import com.anaptecs.jeaf.spi.persistence.base.PersistenceUnitInfoImpl;
+import com.anaptecs.jeaf.spi.persistence.base.query.QueryResultCache;
+import org.h2.Driver;
+
+@PersistenceConfig(
+    persistenceUnitConfigClass = QueryCachePersistenceUnit.class,
+    applicationManagedConnectionDefinition = QueryCachePersistenceUnit.class)
+
+@PersistenceUnit(
+    name = "QueryCachePersistenceUnit",
+    sharedCacheMode = SharedCacheMode.ENABLE_SELECTIVE,
+    managedClassesDefinition = QueryCachePersistenceUnit.class,
+    properties = {
+        @Property(name = "hibernate.hbm2ddl.auto", value = "create-drop"),
+        @Property(name = PersistenceUnitInfoImpl.QUERY_CACHE_PROPERTY, value = "true"),
+        @Property(name = QueryResultCache.MAX_ENTRIES_PROPERTY, value = "10"),
+        @Property(name = QueryResultCache.MAX_RESULT_SIZE_PROPERTY, value = "3") })
+
+@ApplicationManagedConnections(
+    transactionType = PersistenceUnitTransactionType.RESOURCE_LOCAL,
+    jdbcDriver = Driver.class,
+    connectionURL = "jdbc:h2:mem:jeaf_query_cache_test;DB_CLOSE_DELAY=-1",
+    username = "sa")
+
+@ManagedClasses(managedClasses = { CachedEntity.class })
+
+public interface QueryCachePersistenceUnit {
+}
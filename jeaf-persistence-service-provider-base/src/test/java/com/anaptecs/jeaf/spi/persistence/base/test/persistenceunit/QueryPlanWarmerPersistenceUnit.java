@@ -0,0 +1,40 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.test.persistenceunit;
+
+import javax.persistence.spi.PersistenceUnitTransactionType;
+
+import com.anaptecs.jeaf.spi.persistence.annotations.ApplicationManagedConnections;
+import com.anaptecs.jeaf.spi.persistence.annotations.ManagedClasses;
+import com.anaptecs.jeaf.spi.persistence.annotations.MappingFiles;
+import com.anaptecs.jeaf.spi.persistence.annotations.PersistenceConfig;
+import com.anaptecs.jeaf.spi.persistence.annotations.PersistenceUnit;
+import com.anaptecs.jeaf.spi.persistence.annotations.Property;
+import com.anaptecs.jeaf.spi.persistence.base.query.QueryPlanWarmer;
+import org.h2.Driver;
+
+@PersistenceConfig(
+    persistenceUnitConfigClass = QueryPlanWarmerPersistenceUnit.class,
+    applicationManagedConnectionDefinition = QueryPlanWarmerPersistenceUnit.class)
+
+@PersistenceUnit(
+    name = "QueryPlanWarmerPersistenceUnit",
+    managedClassesDefinition = QueryPlanWarmerPersistenceUnit.class,
+    mappingFilesDefinition = QueryPlanWarmerPersistenceUnit.class,
+    properties = { @Property(name = QueryPlanWarmer.PRECOMPILATION_PROPERTY, value = "true") })
+
+@ApplicationManagedConnections(
+    transactionType = PersistenceUnitTransactionType.RESOURCE_LOCAL,
+    jdbcDriver = Driver.class,
+    connectionURL = "jdbc:h2:mem:jeaf_query_plan_warmer_test",
+    username = "sa")
+
+@ManagedClasses(managedClasses = { CachedEntity.class })
+
+@MappingFiles(mappingFiles = { "com/anaptecs/jeaf/spi/persistence/base/test/persistenceunit/NamedQueries.orm.xml" })
+
+public interface QueryPlanWarmerPersistenceUnit {
+}
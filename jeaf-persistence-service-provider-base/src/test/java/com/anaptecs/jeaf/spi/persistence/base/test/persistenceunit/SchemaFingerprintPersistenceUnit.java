@@ -0,0 +1,38 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.test.persistenceunit;
+
+import javax.persistence.spi.PersistenceUnitTransactionType;
+
+import com.anaptecs.jeaf.spi.persistence.annotations.ApplicationManagedConnections;
+import com.anaptecs.jeaf.spi.persistence.annotations.ManagedClasses;
+import com.anaptecs.jeaf.spi.persistence.annotations.PersistenceConfig;
+import com.anaptecs.jeaf.spi.persistence.annotations.PersistenceUnit;
+import com.anaptecs.jeaf.spi.persistence.annotations.Property;
+import com.anaptecs.jeaf.spi.persistence.base.PersistenceUnitInfoImpl;
+import org.h2.Driver;
+
+@PersistenceConfig(
+    persistenceUnitConfigClass = SchemaFingerprintPersistenceUnit.class,
+    applicationManagedConnectionDefinition = SchemaFingerprintPersistenceUnit.class)
+
+@PersistenceUnit(
+    name = "SchemaFingerprintPersistenceUnit",
+    managedClassesDefinition = SchemaFingerprintPersistenceUnit.class,
+    properties = {
+        @Property(name = "hibernate.hbm2ddl.auto", value = "validate"),
+        @Property(name = PersistenceUnitInfoImpl.SCHEMA_FINGERPRINT_PROPERTY, value = "true") })
+
+@ApplicationManagedConnections(
+    transactionType = PersistenceUnitTransactionType.RESOURCE_LOCAL,
+    jdbcDriver = Driver.class,
+    connectionURL = "jdbc:h2:mem:jeaf_schema_fingerprint_test;DB_CLOSE_DELAY=-1",
+    username = "sa")
+
+@ManagedClasses(managedClasses = { IndexedEntity.class })
+
+public interface SchemaFingerprintPersistenceUnit {
+}
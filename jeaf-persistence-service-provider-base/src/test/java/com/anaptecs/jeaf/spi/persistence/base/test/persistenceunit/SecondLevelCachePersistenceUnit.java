@@ -0,0 +1,45 @@
+/**
+ * Copyright 2004 - 2020 anaptecs GmbH, Burgstr. 96, 72764 Reutlingen, Germany
+ *
+ * All rights reserved.
+ */
+package com.anaptecs.jeaf.spi.persistence.base.test.persistenceunit;
+
+import javax.persistence.SharedCacheMode;
+import javax.persistence.spi.PersistenceUnitTransactionType;
+
+import com.anaptecs.jeaf.spi.persistence.annotations.ApplicationManagedConnections;
+import com.anaptecs.jeaf.spi.persistence.annotations.ManagedClasses;
+import com.anaptecs.jeaf.spi.persistence.annotations.PersistenceConfig;
+import com.anaptecs.jeaf.spi.persistence.annotations.PersistenceUnit;
+import com.anaptecs.jeaf.spi.persistence.annotations.Property;
+import com.anaptecs.jeaf.spi.persistence.base.PersistenceUnitInfoImpl;
+import com.anaptecs.jeaf.spi.persistence.base.cache.TinyLfuRegionFactory;
+import com.anaptecs.jeaf.spi.persistence.base.query.QueryPlanWarmer;
+import org.h2.Driver;
+
+@PersistenceConfig(
+    persistenceUnitConfigClass = SecondLevelCachePersistenceUnit.class,
+    applicationManagedConnectionDefinition = SecondLevelCachePersistenceUnit.class)
+
+@PersistenceUnit(
+    name = "SecondLevelCachePersistenceUnit",
+    sharedCacheMode = SharedCacheMode.ENABLE_SELECTIVE,
+    managedClassesDefinition = SecondLevelCachePersistenceUnit.class,
+    properties = {
+        @Property(name = "hibernate.hbm2ddl.auto", value = "create-drop"),
+        @Property(name = TinyLfuRegionFactory.MAX_ENTRIES_PROPERTY, value = "100"),
+        @Property(name = TinyLfuRegionFactory.TIME_TO_LIVE_PROPERTY, value = "300"),
+        @Property(name = PersistenceUnitInfoImpl.QUERY_CACHE_PROPERTY, value = "true"),
+        @Property(name = QueryPlanWarmer.PRECOMPILATION_PROPERTY, value = "true") })
+
+@ApplicationManagedConnections(
+    transactionType = PersistenceUnitTransactionType.RESOURCE_LOCAL,
+    jdbcDriver = Driver.class,
+    connectionURL = "jdbc:h2:mem:jeaf_second_level_cache_test;DB_CLOSE_DELAY=-1",
+    username = "sa")
+
+@ManagedClasses(managedClasses = { CachedEntity.class })
+
+public interface SecondLevelCachePersistenceUnit {
+}